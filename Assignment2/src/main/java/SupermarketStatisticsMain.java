@@ -29,6 +29,7 @@ public class SupermarketStatisticsMain {
         );
 
         purchaseTracker.showTotals();
+        purchaseTracker.showSubtotals();
     }
 
 
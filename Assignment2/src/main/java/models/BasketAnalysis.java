@@ -0,0 +1,440 @@
+package models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * market-basket analysis over receipts: which products are frequently bought together
+ * the frequent itemsets are mined by FP-Growth, and the pairs of products are rated by their lift
+ * products are mapped to the dense ids of the ProductCatalogue, and all receipts are stored in two int arrays,
+ * such that no object is created per purchased item
+ * the FP-tree is built in parallel, one tree per partition of the receipts, and the trees are merged afterwards
+ */
+public class BasketAnalysis {
+    private final ProductCatalogue catalogue;
+    private int[] receiptItems = new int[1024];     // the distinct product ids of all receipts, in ascending order per receipt
+    private int[] receiptStarts = new int[256];     // the start of each receipt in receiptItems, and the end of the last one
+    private int numReceipts = 0;
+
+    /**
+     * representation invariant:
+     * the product ids of receipt r are receiptItems[receiptStarts[r] .. receiptStarts[r + 1] - 1]
+     **/
+
+    /**
+     * a set of products that has been bought together on a number of receipts
+     */
+    public static class Itemset {
+        private final List<Product> products;
+        private final int support;
+
+        private Itemset(List<Product> products, int support) {
+            this.products = products;
+            this.support = support;
+        }
+
+        /**
+         * @return the products of the set, in order of barcode
+         */
+        public List<Product> getProducts() {
+            return this.products;
+        }
+
+        /**
+         * @return the number of receipts that contain all products of the set
+         */
+        public int getSupport() {
+            return this.support;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("{");
+            for (Product product : this.products) {
+                if (text.length() > 1) text.append(", ");
+                text.append(product.getTitle());
+            }
+            return text.append("} on ").append(this.support).append(" receipts").toString();
+        }
+    }
+
+    /**
+     * the association between two products that have been bought together
+     */
+    public static class ProductPair {
+        private final Product first;
+        private final Product second;
+        private final int support;
+        private final double confidence;
+        private final double lift;
+
+        private ProductPair(Product first, Product second, int support, double confidence, double lift) {
+            this.first = first;
+            this.second = second;
+            this.support = support;
+            this.confidence = confidence;
+            this.lift = lift;
+        }
+
+        public Product getFirst() {
+            return this.first;
+        }
+
+        public Product getSecond() {
+            return this.second;
+        }
+
+        /**
+         * @return the number of receipts with both products
+         */
+        public int getSupport() {
+            return this.support;
+        }
+
+        /**
+         * @return the fraction of the receipts with the first product that also have the second product
+         */
+        public double getConfidence() {
+            return this.confidence;
+        }
+
+        /**
+         * @return how much more often the products are bought together than they would be independently;
+         * above 1 for products that attract each other
+         */
+        public double getLift() {
+            return this.lift;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s + %s: %d receipts, confidence %.2f, lift %.2f",
+                    this.first.getTitle(), this.second.getTitle(), this.support, this.confidence, this.lift);
+        }
+    }
+
+    /**
+     * an FP-tree in parallel primitive arrays
+     * every node holds an item rank, where rank 0 is the most frequent item, and the paths from the root
+     * follow increasing ranks; the nodes of the same rank are chained by node links from a header per rank
+     */
+    private static class FPTree {
+        private static final int ROOT = 0;
+
+        private final int numRanks;
+        private int[] ranks = new int[64];
+        private int[] counts = new int[64];
+        private int[] parents = new int[64];
+        private int[] nodeLinks = new int[64];      // the next node of the same rank, or -1
+        private int size = 1;
+        private final int[] heads;                  // the first node of each rank, or -1
+        private final int[] rankCounts;             // the total count of the nodes of each rank
+        private final LongIndexMap children = new LongIndexMap();   // the child of a node by (node * numRanks + rank)
+
+        /**
+         * representation invariants:
+         * 1. parents[node] < node for all nodes but the root, i.e. parents are created before their children
+         * 2. ranks[node] > ranks[parents[node]] for all nodes below the children of the root
+         * 3. rankCounts[r] is the sum of counts[node] over all nodes with ranks[node] == r
+         **/
+
+        FPTree(int numRanks) {
+            this.numRanks = numRanks;
+            this.heads = new int[numRanks];
+            this.rankCounts = new int[numRanks];
+            Arrays.fill(this.heads, -1);
+            this.ranks[ROOT] = -1;
+            this.parents[ROOT] = -1;
+        }
+
+        /**
+         * @return the child of the node with the rank, which is created if it does not exist yet
+         */
+        private int childOf(int node, int rank) {
+            int child = this.children.putIfAbsent((long) node * this.numRanks + rank, this.size);
+            if (child >= 0) return child;
+            if (this.size == this.ranks.length) {
+                int capacity = 2 * this.size;
+                this.ranks = Arrays.copyOf(this.ranks, capacity);
+                this.counts = Arrays.copyOf(this.counts, capacity);
+                this.parents = Arrays.copyOf(this.parents, capacity);
+                this.nodeLinks = Arrays.copyOf(this.nodeLinks, capacity);
+            }
+            child = this.size++;
+            this.ranks[child] = rank;
+            this.counts[child] = 0;
+            this.parents[child] = node;
+            this.nodeLinks[child] = this.heads[rank];
+            this.heads[rank] = child;
+            return child;
+        }
+
+        /**
+         * inserts a path of ranks in increasing order, with a count
+         */
+        void insert(int[] path, int length, int count) {
+            int node = ROOT;
+            for (int i = 0; i < length; i++) {
+                node = this.childOf(node, path[i]);
+                this.counts[node] += count;
+                this.rankCounts[path[i]] += count;
+            }
+        }
+
+        /**
+         * merges all paths of another tree of the same ranks into this tree
+         */
+        FPTree addAll(FPTree other) {
+            int[] mapped = new int[other.size];
+            mapped[ROOT] = ROOT;
+            for (int node = 1; node < other.size; node++) {
+                mapped[node] = this.childOf(mapped[other.parents[node]], other.ranks[node]);
+                this.counts[mapped[node]] += other.counts[node];
+            }
+            for (int rank = 0; rank < this.numRanks; rank++) {
+                this.rankCounts[rank] += other.rankCounts[rank];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * @param catalogue the products that can be found on the receipts
+     */
+    public BasketAnalysis(ProductCatalogue catalogue) {
+        this.catalogue = catalogue;
+    }
+
+    /**
+     * adds a receipt; barcodes that are not in the catalogue are ignored, and so are repetitions of a barcode
+     *
+     * @param barcodes the barcodes of the purchased products
+     * @return whether the receipt has been added; returns false if none of its barcodes is a known product
+     */
+    public boolean addReceipt(long... barcodes) {
+        int start = this.receiptStarts[this.numReceipts];
+        if (this.receiptItems.length < start + barcodes.length) {
+            this.receiptItems = Arrays.copyOf(this.receiptItems, Math.max(2 * this.receiptItems.length, start + barcodes.length));
+        }
+        int end = start;
+        for (long barcode : barcodes) {
+            int id = this.catalogue.indexOf(barcode);
+            if (id >= 0) this.receiptItems[end++] = id;
+        }
+        Arrays.sort(this.receiptItems, start, end);
+        int distinctEnd = start;
+        for (int i = start; i < end; i++) {
+            if (distinctEnd == start || this.receiptItems[distinctEnd - 1] != this.receiptItems[i]) {
+                this.receiptItems[distinctEnd++] = this.receiptItems[i];
+            }
+        }
+        if (distinctEnd == start) return false;
+
+        if (this.numReceipts + 2 > this.receiptStarts.length) {
+            this.receiptStarts = Arrays.copyOf(this.receiptStarts, 2 * this.receiptStarts.length);
+        }
+        this.receiptStarts[++this.numReceipts] = distinctEnd;
+        return true;
+    }
+
+    /**
+     * imports the receipts from a text file with one receipt per line, of format: barcode, barcode, ...
+     * lines with an invalid barcode are skipped
+     *
+     * @param receiptFile
+     * @return the number of receipts that have been added
+     */
+    public int importReceiptsFromFile(Path receiptFile) {
+        int numAdded = 0;
+        long[] barcodes = new long[16];
+        try (BufferedReader reader = Files.newBufferedReader(receiptFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length > barcodes.length) barcodes = new long[2 * fields.length];
+                try {
+                    for (int i = 0; i < fields.length; i++) {
+                        barcodes[i] = Long.parseLong(fields[i].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (this.addReceipt(Arrays.copyOf(barcodes, fields.length))) numAdded++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the receipts from " + receiptFile, e);
+        }
+        return numAdded;
+    }
+
+    public int getNumReceipts() {
+        return this.numReceipts;
+    }
+
+    /**
+     * counts the receipts of every product id
+     */
+    private int[] countItems() {
+        int[] itemCounts = new int[this.catalogue.size()];
+        for (int i = 0; i < this.receiptStarts[this.numReceipts]; i++) {
+            itemCounts[this.receiptItems[i]]++;
+        }
+        return itemCounts;
+    }
+
+    /**
+     * builds the FP-tree of the receipts of one partition
+     *
+     * @param rankOf the rank of every product id, or -1 for infrequent products
+     */
+    private FPTree buildTree(int partition, int numPartitions, int[] rankOf, int numRanks) {
+        FPTree tree = new FPTree(numRanks);
+        int from = (int) ((long) this.numReceipts * partition / numPartitions);
+        int to = (int) ((long) this.numReceipts * (partition + 1) / numPartitions);
+        int[] path = new int[numRanks];
+        for (int receipt = from; receipt < to; receipt++) {
+            int length = 0;
+            for (int i = this.receiptStarts[receipt]; i < this.receiptStarts[receipt + 1]; i++) {
+                int rank = rankOf[this.receiptItems[i]];
+                if (rank >= 0) path[length++] = rank;
+            }
+            Arrays.sort(path, 0, length);
+            tree.insert(path, length, 1);
+        }
+        return tree;
+    }
+
+    /**
+     * mines all sets of at most maxSize products that have been bought together on at least minSupport receipts
+     *
+     * @param minSupport  the minimum number of receipts of an itemset, at least 1
+     * @param maxSize     the maximum number of products of an itemset
+     * @param parallelism the number of threads that build the FP-tree, each of its own partition of the receipts
+     * @return the frequent itemsets, in order of decreasing support, and of increasing size for equal support
+     */
+    public List<Itemset> findFrequentItemsets(int minSupport, int maxSize, int parallelism) {
+        // rank the frequent products by decreasing number of receipts
+        int[] itemCounts = this.countItems();
+        int[] ranked = IntStream.range(0, itemCounts.length)
+                .filter(id -> itemCounts[id] >= minSupport)
+                .boxed()
+                .sorted((id1, id2) -> itemCounts[id1] != itemCounts[id2]
+                        ? Integer.compare(itemCounts[id2], itemCounts[id1]) : Integer.compare(id1, id2))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] rankOf = new int[itemCounts.length];
+        Arrays.fill(rankOf, -1);
+        for (int rank = 0; rank < ranked.length; rank++) {
+            rankOf[ranked[rank]] = rank;
+        }
+
+        int numPartitions = Math.max(1, Math.min(parallelism, this.numReceipts));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        FPTree tree;
+        try {
+            tree = pool.submit(() -> IntStream.range(0, numPartitions).parallel()
+                    .mapToObj(partition -> this.buildTree(partition, numPartitions, rankOf, ranked.length))
+                    .reduce(FPTree::addAll)
+                    .orElseGet(() -> new FPTree(ranked.length))
+            ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building the FP-tree");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Itemset> itemsets = new ArrayList<>();
+        this.mine(tree, new int[maxSize], 0, minSupport, maxSize, ranked, itemsets);
+        itemsets.sort((set1, set2) -> set1.support != set2.support
+                ? Integer.compare(set2.support, set1.support)
+                : Integer.compare(set1.products.size(), set2.products.size()));
+        return itemsets;
+    }
+
+    /**
+     * FP-Growth: finds the frequent itemsets of the tree that extend the prefix,
+     * from the conditional tree of the paths towards every frequent rank
+     */
+    private void mine(FPTree tree, int[] prefix, int prefixLength, int minSupport, int maxSize,
+                      int[] ranked, List<Itemset> itemsets) {
+        int[] path = new int[tree.numRanks];
+        for (int rank = tree.numRanks - 1; rank >= 0; rank--) {
+            if (tree.rankCounts[rank] < minSupport) continue;
+            prefix[prefixLength] = rank;
+            itemsets.add(this.toItemset(prefix, prefixLength + 1, tree.rankCounts[rank], ranked));
+            if (prefixLength + 1 == maxSize) continue;
+
+            // count the ranks on the paths towards this rank
+            int[] conditionalCounts = new int[rank];
+            for (int node = tree.heads[rank]; node >= 0; node = tree.nodeLinks[node]) {
+                for (int ancestor = tree.parents[node]; ancestor != FPTree.ROOT; ancestor = tree.parents[ancestor]) {
+                    conditionalCounts[tree.ranks[ancestor]] += tree.counts[node];
+                }
+            }
+            // build the conditional tree of the frequent ranks on these paths
+            FPTree conditionalTree = null;
+            for (int node = tree.heads[rank]; node >= 0; node = tree.nodeLinks[node]) {
+                int length = 0;
+                for (int ancestor = tree.parents[node]; ancestor != FPTree.ROOT; ancestor = tree.parents[ancestor]) {
+                    if (conditionalCounts[tree.ranks[ancestor]] >= minSupport) path[length++] = tree.ranks[ancestor];
+                }
+                if (length == 0) continue;
+                // the path has been collected upwards, so reverse it into increasing ranks
+                for (int i = 0, j = length - 1; i < j; i++, j--) {
+                    int swap = path[i];
+                    path[i] = path[j];
+                    path[j] = swap;
+                }
+                if (conditionalTree == null) conditionalTree = new FPTree(rank);
+                conditionalTree.insert(path, length, tree.counts[node]);
+            }
+            if (conditionalTree != null) {
+                this.mine(conditionalTree, prefix, prefixLength + 1, minSupport, maxSize, ranked, itemsets);
+            }
+        }
+    }
+
+    private Itemset toItemset(int[] prefix, int length, int support, int[] ranked) {
+        List<Product> products = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            products.add(this.catalogue.getProduct(ranked[prefix[i]]));
+        }
+        products.sort((p1, p2) -> Long.compare(p1.getBarcode(), p2.getBarcode()));
+        return new Itemset(products, support);
+    }
+
+    /**
+     * finds the pairs of products that have been bought together on at least minSupport receipts
+     *
+     * @param minSupport  the minimum number of receipts with both products, at least 1
+     * @param parallelism the number of threads that build the FP-tree
+     * @return the pairs, in order of decreasing lift; the first product of a pair has the lower barcode
+     */
+    public List<ProductPair> findProductPairs(int minSupport, int parallelism) {
+        int[] itemCounts = this.countItems();
+        List<ProductPair> pairs = new ArrayList<>();
+        for (Itemset itemset : this.findFrequentItemsets(minSupport, 2, parallelism)) {
+            if (itemset.products.size() != 2) continue;
+            Product first = itemset.products.get(0), second = itemset.products.get(1);
+            int firstCount = itemCounts[this.catalogue.indexOf(first.getBarcode())];
+            int secondCount = itemCounts[this.catalogue.indexOf(second.getBarcode())];
+            pairs.add(new ProductPair(first, second, itemset.support, (double) itemset.support / firstCount,
+                    (double) itemset.support * this.numReceipts / ((double) firstCount * secondCount)));
+        }
+        pairs.sort((pair1, pair2) -> Double.compare(pair2.lift, pair1.lift));
+        return pairs;
+    }
+}
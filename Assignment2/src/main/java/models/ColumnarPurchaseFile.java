@@ -0,0 +1,316 @@
+package models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a compact, columnar file format for a batch of purchases, as an alternative to a raw purchase text file
+ * the purchase lines are ordered by barcode (stable, so lines of the same barcode keep their order),
+ * and stored in blocks of up to BLOCK_SIZE rows, each with two bit-packed columns:
+ * - the barcode column holds ids into a dictionary of the distinct barcodes of the batch,
+ * as the delta to the id of the previous row (mostly 0 or 1, so one or two bits per row)
+ * - the count column holds the count minus the smallest count of the block (frame of reference)
+ * the dictionary itself holds the sorted barcodes as bit-packed deltas to their predecessor
+ * a block index with the minimum and maximum barcode of every block allows scans to skip blocks by barcode range
+ * lay-out, all numbers in big-endian order:
+ * - header:     magic "PCOL", version (short), number of rows (long)
+ * - dictionary: size (int), first barcode (long), delta width (byte), delta words (long[])
+ * - index:      number of blocks (int), then per block:
+ * min barcode (long), max barcode (long), number of rows (int), first id (int),
+ * id delta width (byte), count base (int), count width (byte), data offset (long)
+ * - data:       per block: id delta words (long[]), count words (long[])
+ */
+public class ColumnarPurchaseFile {
+    public static final String EXTENSION = ".pcol";
+    static final int BLOCK_SIZE = 4096;
+    private static final byte[] MAGIC = "PCOL".getBytes(StandardCharsets.US_ASCII);
+    private static final short VERSION = 1;
+    private static final int BLOCK_HEADER_SIZE = 8 + 8 + 4 + 4 + 1 + 4 + 1 + 8;
+
+    private ColumnarPurchaseFile() {
+    }
+
+    /**
+     * converts a raw purchase text file into a columnar file
+     *
+     * @param textFile   the raw purchase file with lines of format: barcode, count
+     * @param columnFile the columnar file to be (re)placed
+     * @return the number of purchase rows that have been converted
+     */
+    public static long convert(Path textFile, Path columnFile) {
+        // collect the rows of the text file
+        long[][] barcodes = {new long[1024]};
+        int[][] counts = {new int[1024]};
+        int[] numRows = {0};
+        new PurchaseFileParser().parse(textFile, (barcode, count) -> {
+            if (numRows[0] == barcodes[0].length) {
+                barcodes[0] = Arrays.copyOf(barcodes[0], 2 * numRows[0]);
+                counts[0] = Arrays.copyOf(counts[0], 2 * numRows[0]);
+            }
+            barcodes[0][numRows[0]] = barcode;
+            counts[0][numRows[0]++] = count;
+        });
+        write(columnFile, barcodes[0], counts[0], numRows[0]);
+        return numRows[0];
+    }
+
+    /**
+     * converts all raw purchase files of a vault into columnar files in a mirrored folder tree,
+     * e.g. 20211001/Amsterdam/damrak.txt into 20211001/Amsterdam/damrak.pcol
+     *
+     * @param textRoot   the root folder of the raw purchase files
+     * @param columnRoot the root folder of the columnar files
+     * @return the number of files that have been converted
+     */
+    public static int convertVault(Path textRoot, Path columnRoot) {
+        List<Path> textFiles = PurchaseFileParser.findPurchaseFiles(textRoot);
+        for (Path textFile : textFiles) {
+            String name = textRoot.relativize(textFile).toString();
+            Path columnFile = columnRoot.resolve(name.substring(0, name.length() - PurchaseFileParser.PURCHASE_FILE_EXTENSION.length()) + EXTENSION);
+            try {
+                Files.createDirectories(columnFile.getParent());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create the folder of " + columnFile, e);
+            }
+            convert(textFile, columnFile);
+        }
+        return textFiles.size();
+    }
+
+    /**
+     * writes purchase rows into a columnar file
+     *
+     * @param columnFile the file to be (re)placed
+     * @param barcodes   the barcode of every row
+     * @param counts     the count of every row
+     * @param numRows    the number of rows
+     */
+    static void write(Path columnFile, long[] barcodes, int[] counts, int numRows) {
+        // build the dictionary of the distinct barcodes in order
+        long[] dictionary = Arrays.copyOf(barcodes, numRows);
+        Arrays.sort(dictionary);
+        int numDistinct = 0;
+        for (int row = 0; row < numRows; row++) {
+            if (numDistinct == 0 || dictionary[numDistinct - 1] != dictionary[row]) dictionary[numDistinct++] = dictionary[row];
+        }
+        dictionary = Arrays.copyOf(dictionary, numDistinct);
+        LongIndexMap ids = new LongIndexMap(numDistinct);
+        for (int id = 0; id < numDistinct; id++) {
+            ids.put(dictionary[id], id);
+        }
+
+        // order the rows by barcode with a stable counting sort on their ids
+        int[] starts = new int[numDistinct + 1];
+        int[] rowIds = new int[numRows];
+        for (int row = 0; row < numRows; row++) {
+            rowIds[row] = ids.get(barcodes[row]);
+            starts[rowIds[row] + 1]++;
+        }
+        for (int id = 0; id < numDistinct; id++) {
+            starts[id + 1] += starts[id];
+        }
+        int[] sortedIds = new int[numRows];
+        int[] sortedCounts = new int[numRows];
+        for (int row = 0; row < numRows; row++) {
+            int position = starts[rowIds[row]]++;
+            sortedIds[position] = rowIds[row];
+            sortedCounts[position] = counts[row];
+        }
+
+        // encode the dictionary and the blocks
+        long[] dictionaryDeltas = new long[Math.max(0, numDistinct - 1)];
+        for (int id = 1; id < numDistinct; id++) {
+            dictionaryDeltas[id - 1] = dictionary[id] - dictionary[id - 1];
+        }
+        int dictionaryWidth = bitWidth(dictionaryDeltas, dictionaryDeltas.length);
+        long[] dictionaryWords = pack(dictionaryDeltas, dictionaryDeltas.length, dictionaryWidth);
+
+        int numBlocks = (numRows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long[][] idWords = new long[numBlocks][], countWords = new long[numBlocks][];
+        ByteBuffer index = ByteBuffer.allocate(4 + numBlocks * BLOCK_HEADER_SIZE);
+        index.putInt(numBlocks);
+        long dataOffset = 0;
+        long[] values = new long[BLOCK_SIZE];
+        for (int block = 0; block < numBlocks; block++) {
+            int from = block * BLOCK_SIZE, to = Math.min(numRows, from + BLOCK_SIZE);
+            for (int row = from; row < to; row++) {
+                values[row - from] = row == from ? 0 : sortedIds[row] - sortedIds[row - 1];
+            }
+            int idWidth = bitWidth(values, to - from);
+            idWords[block] = pack(values, to - from, idWidth);
+
+            int countBase = Integer.MAX_VALUE;
+            for (int row = from; row < to; row++) {
+                countBase = Math.min(countBase, sortedCounts[row]);
+            }
+            for (int row = from; row < to; row++) {
+                values[row - from] = (long) sortedCounts[row] - countBase;
+            }
+            int countWidth = bitWidth(values, to - from);
+            countWords[block] = pack(values, to - from, countWidth);
+
+            index.putLong(dictionary[sortedIds[from]]).putLong(dictionary[sortedIds[to - 1]])
+                    .putInt(to - from).putInt(sortedIds[from])
+                    .put((byte) idWidth).putInt(countBase).put((byte) countWidth)
+                    .putLong(dataOffset);
+            dataOffset += 8L * (idWords[block].length + countWords[block].length);
+        }
+
+        // write header, dictionary, index and data in one sequential pass
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 2 + 8 + 4 + 8 + 1 + 8 * dictionaryWords.length);
+        header.put(MAGIC).putShort(VERSION).putLong(numRows)
+                .putInt(numDistinct).putLong(numDistinct == 0 ? 0 : dictionary[0]).put((byte) dictionaryWidth);
+        for (long word : dictionaryWords) {
+            header.putLong(word);
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) dataOffset);
+        for (int block = 0; block < numBlocks; block++) {
+            for (long word : idWords[block]) data.putLong(word);
+            for (long word : countWords[block]) data.putLong(word);
+        }
+
+        try (FileChannel channel = FileChannel.open(columnFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = {header.flip(), index.flip(), data.flip()};
+            long remaining = header.remaining() + index.remaining() + data.remaining();
+            while (remaining > 0) remaining -= channel.write(buffers);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the columnar file " + columnFile, e);
+        }
+    }
+
+    /**
+     * @return the number of bits that is needed for the largest of the non-negative values
+     */
+    private static int bitWidth(long[] values, int numValues) {
+        long all = 0;
+        for (int i = 0; i < numValues; i++) {
+            all |= values[i];
+        }
+        return 64 - Long.numberOfLeadingZeros(all);
+    }
+
+    /**
+     * packs the values into consecutive bit fields of the given width
+     */
+    private static long[] pack(long[] values, int numValues, int width) {
+        long[] words = new long[(int) (((long) numValues * width + 63) / 64)];
+        for (int i = 0; i < numValues && width > 0; i++) {
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6), shift = (int) (bit & 63);
+            words[word] |= values[i] << shift;
+            if (shift + width > 64) words[word + 1] |= values[i] >>> (64 - shift);
+        }
+        return words;
+    }
+
+    /**
+     * unpacks numValues bit fields of the given width from the words at the position of the buffer
+     * into the values array, and advances the position of the buffer beyond the words
+     */
+    private static void unpack(ByteBuffer buffer, int numValues, int width, long[] words, long[] values) {
+        int numWords = (int) (((long) numValues * width + 63) / 64);
+        buffer.asLongBuffer().get(words, 0, numWords);
+        buffer.position(buffer.position() + 8 * numWords);
+        if (width == 0) {
+            Arrays.fill(values, 0, numValues, 0L);
+            return;
+        }
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        long bit = 0;
+        for (int i = 0; i < numValues; i++, bit += width) {
+            int word = (int) (bit >>> 6), shift = (int) (bit & 63);
+            long value = words[word] >>> shift;
+            if (shift + width > 64) value |= words[word + 1] << (64 - shift);
+            values[i] = value & mask;
+        }
+    }
+
+    /**
+     * aggregates the purchases of a columnar file within a range of barcodes
+     * blocks of which the barcodes are all outside of the range are skipped without decoding them,
+     * and consecutive rows of the same barcode are summed before they are delivered
+     *
+     * @param columnFile  the columnar file
+     * @param fromBarcode the lowest barcode of the range (inclusive)
+     * @param toBarcode   the highest barcode of the range (exclusive)
+     * @param consumer    receives the barcodes in ascending order with their summed counts;
+     *                    a barcode may be delivered more than once if its rows span several blocks
+     * @return the number of rows that have been decoded
+     */
+    public static long scan(Path columnFile, long fromBarcode, long toBarcode, PurchaseFileParser.PurchaseConsumer consumer) {
+        try (FileChannel channel = FileChannel.open(columnFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(MAGIC, magic) || buffer.getShort() != VERSION) {
+                throw new IllegalStateException("Not a columnar purchase file of version " + VERSION + ": " + columnFile);
+            }
+            buffer.getLong();
+
+            // decode the dictionary
+            int numDistinct = buffer.getInt();
+            long firstBarcode = buffer.getLong();
+            int dictionaryWidth = buffer.get();
+            long[] dictionary = new long[Math.max(1, numDistinct)];
+            long[] words = new long[Math.max(1, (int) (((long) numDistinct * dictionaryWidth + 63) / 64))];
+            unpack(buffer, Math.max(0, numDistinct - 1), dictionaryWidth, words, dictionary);
+            // the deltas have been unpacked at positions 0 .. numDistinct - 2, turn them into barcodes from the back
+            for (int id = numDistinct - 1; id > 0; id--) {
+                dictionary[id] = dictionary[id - 1];
+            }
+            dictionary[0] = firstBarcode;
+            for (int id = 1; id < numDistinct; id++) {
+                dictionary[id] += dictionary[id - 1];
+            }
+
+            int numBlocks = buffer.getInt();
+            int dataStart = buffer.position() + numBlocks * BLOCK_HEADER_SIZE;
+            long[] blockWords = new long[BLOCK_SIZE + 1];
+            long[] idDeltas = new long[BLOCK_SIZE], counts = new long[BLOCK_SIZE];
+            long numDecoded = 0;
+            for (int block = 0; block < numBlocks; block++) {
+                long minBarcode = buffer.getLong(), maxBarcode = buffer.getLong();
+                int numRows = buffer.getInt(), firstId = buffer.getInt();
+                int idWidth = buffer.get(), countBase = buffer.getInt(), countWidth = buffer.get();
+                long offset = buffer.getLong();
+                if (maxBarcode < fromBarcode || minBarcode >= toBarcode) continue;
+
+                ByteBuffer data = buffer.duplicate();
+                data.position((int) (dataStart + offset));
+                unpack(data, numRows, idWidth, blockWords, idDeltas);
+                unpack(data, numRows, countWidth, blockWords, counts);
+                numDecoded += numRows;
+
+                // sum the runs of equal ids, and deliver the runs within the range
+                int id = firstId;
+                long sum = 0;
+                for (int row = 0; row < numRows; row++) {
+                    if (idDeltas[row] != 0) {
+                        deliver(dictionary[id], sum, fromBarcode, toBarcode, consumer);
+                        id += (int) idDeltas[row];
+                        sum = 0;
+                    }
+                    sum += counts[row] + countBase;
+                }
+                deliver(dictionary[id], sum, fromBarcode, toBarcode, consumer);
+            }
+            return numDecoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not scan the columnar file " + columnFile, e);
+        }
+    }
+
+    private static void deliver(long barcode, long sum, long fromBarcode, long toBarcode,
+                                PurchaseFileParser.PurchaseConsumer consumer) {
+        if (barcode >= fromBarcode && barcode < toBarcode) consumer.accept(barcode, (int) sum);
+    }
+}
@@ -0,0 +1,94 @@
+package models;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.StreamSupport;
+
+/**
+ * accumulates a sum of doubles with Neumaier's variant of Kahan summation
+ * the rounding error of every addition is kept in a separate compensation, and added back at the end,
+ * such that the error of the sum does not grow with the number of terms
+ * (a plain double sum of many revenues drifts by several cents, a compensated sum stays within one rounding)
+ */
+public class CompensatedSum {
+    private double sum = 0.0;
+    private double compensation = 0.0;      // the accumulated low-order parts that were lost from sum
+
+    public CompensatedSum() {
+    }
+
+    /**
+     * @return a new array of n compensated sums, e.g. one for every metric of a multi-metric aggregation
+     */
+    public static CompensatedSum[] newArray(int n) {
+        CompensatedSum[] sums = new CompensatedSum[n];
+        for (int i = 0; i < n; i++) {
+            sums[i] = new CompensatedSum();
+        }
+        return sums;
+    }
+
+    /**
+     * adds the value of every mapper for the item to the corresponding sum
+     */
+    public static <E> void addAll(CompensatedSum[] sums, E item, List<ToDoubleFunction<E>> mappers) {
+        for (int m = 0; m < sums.length; m++) {
+            sums[m].add(mappers.get(m).applyAsDouble(item));
+        }
+    }
+
+    /**
+     * @return the compensated totals of the sums
+     */
+    public static double[] getSums(CompensatedSum[] sums) {
+        double[] totals = new double[sums.length];
+        for (int m = 0; m < sums.length; m++) {
+            totals[m] = sums[m].getSum();
+        }
+        return totals;
+    }
+
+    /**
+     * sums the mappers over all items of the spliterator in parallel on the common ForkJoinPool
+     * every chunk that the spliterator splits off is summed into its own compensated sums,
+     * and the partial sums are combined with their compensations
+     *
+     * @return the sum of every mapper, in the order of the mappers
+     */
+    public static <E> double[] sumInParallel(Spliterator<E> items, List<ToDoubleFunction<E>> mappers) {
+        CompensatedSum[] sums = StreamSupport.stream(items, true).collect(
+                () -> newArray(mappers.size()),
+                (partial, item) -> addAll(partial, item, mappers),
+                (partial, other) -> {
+                    for (int m = 0; m < partial.length; m++) {
+                        partial[m].add(other[m]);
+                    }
+                });
+        return getSums(sums);
+    }
+
+    public void add(double value) {
+        double total = this.sum + value;
+        if (Math.abs(this.sum) >= Math.abs(value)) {
+            // the low-order digits of value have been lost
+            this.compensation += (this.sum - total) + value;
+        } else {
+            // the low-order digits of sum have been lost
+            this.compensation += (value - total) + this.sum;
+        }
+        this.sum = total;
+    }
+
+    /**
+     * adds the sum of another (partial) aggregation, including its compensation
+     */
+    public void add(CompensatedSum other) {
+        this.add(other.sum);
+        this.add(other.compensation);
+    }
+
+    public double getSum() {
+        return this.sum + this.compensation;
+    }
+}
@@ -0,0 +1,307 @@
+package models;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * aggregates purchase counts by barcode from multiple concurrent writers, e.g. one thread per branch feed
+ * the barcodes are spread over a number of shards by a hash, each shard with its own lock,
+ * such that writers of different barcodes hardly ever wait for each other
+ * a merge locks one shard only; snapshots lock all shards (always in the same order), such that they are consistent
+ * optionally, every shard maintains its own top n purchases by some scores with every merge,
+ * from which the live top n of the table is selected without walking all purchases
+ */
+public class ConcurrentPurchaseTable {
+
+    /**
+     * a segment of the table, with the aggregated purchases of all barcodes that hash into the segment
+     */
+    private static class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongIndexMap index = new LongIndexMap();     // the position of each barcode in the array
+        private Purchase[] purchases = new Purchase[16];
+        private int size = 0;
+        private TopRanking[] rankings = new TopRanking[0];        // the top purchases of the shard by every score
+
+        /**
+         * adds the count to the purchase of the barcode of the product, the caller shall hold the lock
+         *
+         * @return the new purchase if the barcode had not been purchased before, or null
+         */
+        Purchase merge(Product product, int count) {
+            int position = this.index.get(product.getBarcode());
+            Purchase purchase, added = null;
+            if (position >= 0) {
+                purchase = this.purchases[position];
+                purchase.addCount(count);
+            } else {
+                purchase = added = new Purchase(product, count);
+                this.add(purchase);
+            }
+            for (TopRanking ranking : this.rankings) {
+                // a return lowers the scores, so the ranking will be rebuilt on its next query
+                if (count < 0) ranking.invalidate();
+                else ranking.update(purchase);
+            }
+            return added;
+        }
+
+        /**
+         * adds a purchase of a barcode that is not in the shard yet, the caller shall hold the lock
+         */
+        void add(Purchase purchase) {
+            if (this.size == this.purchases.length) this.purchases = Arrays.copyOf(this.purchases, 2 * this.size);
+            this.index.put(purchase.getBarcode(), this.size);
+            this.purchases[this.size++] = purchase;
+        }
+
+        List<Purchase> purchases() {
+            return Arrays.asList(this.purchases).subList(0, this.size);
+        }
+    }
+
+    private final Shard[] shards;
+    private final int shardShift;       // the number of bits to drop from a 32-bit hash to select a shard
+    private int numTops = 0;            // the number n of top purchases that every shard maintains by every score
+    private List<ToDoubleFunction<Purchase>> scorers = List.of();
+
+    /**
+     * representation invariant:
+     * 1. every barcode is aggregated in shards[shardOf(barcode)] only
+     * 2. every shard has a ranking of capacity numTops for each of the scorers, in the same order
+     **/
+
+    public ConcurrentPurchaseTable() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param minNumShards the minimum number of shards, which is rounded up to a power of two
+     */
+    public ConcurrentPurchaseTable(int minNumShards) {
+        int numShards = 1;
+        while (numShards < minNumShards) numShards *= 2;
+        this.shards = new Shard[numShards];
+        for (int s = 0; s < numShards; s++) {
+            this.shards[s] = new Shard();
+        }
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(numShards);
+    }
+
+    public int getNumShards() {
+        return this.shards.length;
+    }
+
+    private Shard shardOf(long barcode) {
+        // the golden ratio hash takes the highest bits, which depend on all bits of the barcode
+        int hash = Long.hashCode(barcode) * 0x9E3779B9;
+        return this.shards[this.shardShift == 32 ? 0 : hash >>> this.shardShift];
+    }
+
+    /**
+     * adds the count of the purchase to the aggregated count of its barcode; may be called concurrently
+     */
+    public void merge(Purchase purchase) {
+        this.merge(purchase.getProduct(), purchase.getCount());
+    }
+
+    /**
+     * adds the count to the aggregated count of the barcode of the product; may be called concurrently
+     *
+     * @return the new purchase instance that aggregates the barcode, if the barcode had not been purchased before,
+     * or null; the instance is updated in place by later merges
+     */
+    public Purchase merge(Product product, int count) {
+        Shard shard = this.shardOf(product.getBarcode());
+        shard.lock.lock();
+        try {
+            return shard.merge(product, count);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * adds an aggregated purchase instance, which is updated in place by later merges of its barcode
+     * the barcode shall not have been purchased yet
+     */
+    void add(Purchase purchase) {
+        Shard shard = this.shardOf(purchase.getBarcode());
+        shard.lock.lock();
+        try {
+            shard.add(purchase);
+            for (TopRanking ranking : shard.rankings) {
+                ranking.update(purchase);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * starts maintaining the top n purchases of every shard by each of the scores, with every merge
+     *
+     * @param n       the number of top purchases to be maintained for each score
+     * @param scorers the scores, of which a higher score ranks better; they are referred to by their index
+     */
+    void startRankings(int n, List<ToDoubleFunction<Purchase>> scorers) {
+        this.lockAll();
+        try {
+            this.numTops = n;
+            this.scorers = List.copyOf(scorers);
+            for (Shard shard : this.shards) {
+                shard.rankings = new TopRanking[scorers.size()];
+                for (int r = 0; r < scorers.size(); r++) {
+                    shard.rankings[r] = new TopRanking(n, scorers.get(r));
+                    shard.rankings[r].rebuild(shard.purchases());
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    int getNumTops() {
+        return this.numTops;
+    }
+
+    /**
+     * marks a ranking of all shards as inexact, after the scores have changed otherwise than by a merge,
+     * e.g. by a price change
+     *
+     * @param ranking the index of the score
+     */
+    void invalidateRanking(int ranking) {
+        this.lockAll();
+        try {
+            for (Shard shard : this.shards) {
+                shard.rankings[ranking].invalidate();
+            }
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    /**
+     * selects the live top n purchases by a score from the top n purchases of every shard,
+     * after rebuilding the shard rankings that have become inexact
+     *
+     * @param ranking the index of the score
+     * @return the top n purchases of a consistent snapshot, in order of decreasing score
+     */
+    List<Purchase> getRankedTops(int ranking) {
+        List<Purchase> candidates = new ArrayList<>();
+        this.lockAll();
+        try {
+            for (Shard shard : this.shards) {
+                if (!shard.rankings[ranking].isExact()) shard.rankings[ranking].rebuild(shard.purchases());
+                candidates.addAll(shard.rankings[ranking].getTops());
+            }
+            TopRanking tops = new TopRanking(this.numTops, this.scorers.get(ranking));
+            tops.rebuild(candidates);
+            return tops.getTops();
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    /**
+     * @return the aggregated count of the barcode, or 0 if the barcode has not been purchased
+     */
+    public int getCount(long barcode) {
+        Shard shard = this.shardOf(barcode);
+        shard.lock.lock();
+        try {
+            int position = shard.index.get(barcode);
+            return position < 0 ? 0 : shard.purchases[position].getCount();
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * takes a consistent snapshot of all aggregated purchases, i.e. every merge is either fully included or not at all
+     *
+     * @return new purchase instances with the aggregated counts, ordered by barcode
+     */
+    public OrderedList<Purchase> snapshot() {
+        OrderedList<Purchase> purchases = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        this.lockAll();
+        try {
+            for (Shard shard : this.shards) {
+                for (int i = 0; i < shard.size; i++) {
+                    purchases.add(new Purchase(shard.purchases[i].getProduct(), shard.purchases[i].getCount()));
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+        purchases.sort();
+        return purchases;
+    }
+
+    /**
+     * calculates the sum of the mapper over a consistent snapshot of all aggregated purchases
+     */
+    public double aggregate(ToDoubleFunction<Purchase> mapper) {
+        return this.snapshot().aggregate(mapper);
+    }
+
+    /**
+     * @return the total count over all aggregated purchases, consistent with all completed merges
+     */
+    public long aggregateCounts() {
+        long total = 0;
+        this.lockAll();
+        try {
+            for (Shard shard : this.shards) {
+                for (int i = 0; i < shard.size; i++) {
+                    total += shard.purchases[i].getCount();
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+        return total;
+    }
+
+    /**
+     * finds the top n purchases of a consistent snapshot
+     *
+     * @param n      the number of top purchases
+     * @param ranker the comparator that orders the best purchase first
+     * @return the top n purchases, in order of the ranker
+     */
+    public List<Purchase> getTops(int n, Comparator<Purchase> ranker) {
+        return TopRanking.select(n, ranker, this.snapshot());
+    }
+
+    /**
+     * @return the number of different barcodes that have been purchased
+     */
+    public int size() {
+        this.lockAll();
+        try {
+            int size = 0;
+            for (Shard shard : this.shards) {
+                size += shard.size;
+            }
+            return size;
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    private void lockAll() {
+        for (Shard shard : this.shards) {
+            shard.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int s = this.shards.length - 1; s >= 0; s--) {
+            this.shards[s].lock.unlock();
+        }
+    }
+}
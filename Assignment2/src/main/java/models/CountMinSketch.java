@@ -0,0 +1,107 @@
+package models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * approximates the purchase count of every barcode in a fixed table of depth x width counters
+ * every barcode adds its count to one counter in each row, chosen by a different hash per row,
+ * and its estimate is the minimum of these counters
+ * with non-negative counts the estimate is never too low, and too high by at most e * totalCount / width
+ * with probability 1 - exp(-depth)
+ * sketches with the same dimensions can be merged, e.g. the sketches of all stores of a city, by adding their tables
+ */
+public class CountMinSketch {
+    private final int depth;
+    private final int width;            // a power of two
+    private final long[] counters;      // the counters of row r at [r * width, (r + 1) * width)
+    private long totalCount = 0;
+
+    /**
+     * @param depth    the number of rows, e.g. 4
+     * @param minWidth the minimum number of counters per row, which is rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int minWidth) {
+        if (depth < 1 || minWidth < 1) throw new IllegalArgumentException("A sketch needs at least one row and column");
+        int width = 1;
+        while (width < minWidth) width *= 2;
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    /**
+     * finds the counter of the barcode in the row, with an independent hash per row
+     */
+    private int index(int row, long barcode) {
+        long hash = barcode + (row + 1) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return row * this.width + ((int) hash & (this.width - 1));
+    }
+
+    public void add(long barcode, int count) {
+        for (int row = 0; row < this.depth; row++) {
+            this.counters[this.index(row, barcode)] += count;
+        }
+        this.totalCount += count;
+    }
+
+    /**
+     * @return the estimated count of the barcode, which is at least its true count if no count was negative
+     */
+    public long estimate(long barcode) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) {
+            estimate = Math.min(estimate, this.counters[this.index(row, barcode)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * adds the counts of another sketch with the same dimensions to this sketch
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != this.depth || other.width != this.width) {
+            throw new IllegalArgumentException("Only sketches of the same dimensions can be merged");
+        }
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] += other.counters[i];
+        }
+        this.totalCount += other.totalCount;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(this.depth);
+        output.writeInt(this.width);
+        output.writeLong(this.totalCount);
+        for (long counter : this.counters) {
+            output.writeLong(counter);
+        }
+    }
+
+    public static CountMinSketch readFrom(DataInput input) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(input.readInt(), input.readInt());
+        sketch.totalCount = input.readLong();
+        for (int i = 0; i < sketch.counters.length; i++) {
+            sketch.counters[i] = input.readLong();
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,256 @@
+package models;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * aggregates purchase counts by barcode from purchase files that are too large to be aggregated in the heap
+ * the purchases are read in chunks of a bounded number of barcodes; each chunk is sorted by barcode
+ * and spilled as a sorted run into a temporary file, with a binary record of barcode (long) and count (int) per purchase
+ * the runs are then merged k-way through a heap, adding up the counts of equal barcodes,
+ * in several passes if there are more runs than can be opened within the memory cap
+ * runs are written and read sequentially through buffered streams
+ */
+public class ExternalPurchaseSorter implements Closeable {
+    // the estimated heap size of a barcode in a chunk: a Purchase instance, its slot in the list and in the index
+    static final int BYTES_PER_PURCHASE = 64;
+    static final int RUN_BUFFER_SIZE = 1 << 16;     // the buffer size of each run that is written or read
+
+    private final ProductCatalogue catalogue;
+    private final Path tempFolder;
+    private final int maxChunkSize;                 // the maximum number of barcodes in a chunk
+    private final int maxFanIn;                     // the maximum number of runs that are merged at once
+    private final Deque<Path> runs = new ArrayDeque<>();    // the runs that have not been merged yet, oldest first
+    private final PurchaseFileParser parser = new PurchaseFileParser();
+    private PurchaseAggregate chunk = new PurchaseAggregate();
+    private int numSpilledRuns = 0;
+
+    /**
+     * @param catalogue      the products that can be purchased; purchases of other barcodes are ignored
+     * @param tempFolder     the folder for the temporary run files
+     * @param memoryCapBytes the heap memory that may be used by a chunk, and by the buffers of the runs of a merge
+     */
+    public ExternalPurchaseSorter(ProductCatalogue catalogue, Path tempFolder, long memoryCapBytes) {
+        this.catalogue = catalogue;
+        this.tempFolder = tempFolder;
+        this.maxChunkSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, memoryCapBytes / BYTES_PER_PURCHASE));
+        this.maxFanIn = (int) Math.max(2, Math.min(1024, memoryCapBytes / RUN_BUFFER_SIZE));
+    }
+
+    public int getMaxChunkSize() {
+        return this.maxChunkSize;
+    }
+
+    public int getMaxFanIn() {
+        return this.maxFanIn;
+    }
+
+    /**
+     * @return the total number of runs that have been spilled, including intermediate merge results
+     */
+    public int getNumSpilledRuns() {
+        return this.numSpilledRuns;
+    }
+
+    /**
+     * adds all purchases of a raw purchase file, spilling a sorted run whenever the chunk is full
+     */
+    public void addFile(Path purchaseFile) {
+        this.parser.parse(purchaseFile, this::add);
+    }
+
+    /**
+     * adds a purchase amount to the current chunk, spilling a sorted run when the chunk is full
+     */
+    public void add(long barcode, int count) {
+        if (this.chunk.addCount(barcode, count)) return;
+        Product product = this.catalogue.findProduct(barcode);
+        if (product == null) return;
+        if (this.chunk.size() >= this.maxChunkSize) this.spillChunk();
+        this.chunk.add(new Purchase(product, count));
+    }
+
+    /**
+     * sorts the current chunk by barcode and writes it into a new run
+     */
+    private void spillChunk() {
+        if (this.chunk.size() == 0) return;
+        OrderedList<Purchase> sorted = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        sorted.addAll(this.chunk.getPurchases());
+        sorted.sort();
+        // release the chunk before the run is written
+        this.chunk = new PurchaseAggregate();
+
+        Path run = this.newRun();
+        try (DataOutputStream output = openOutput(run)) {
+            for (Purchase purchase : sorted) {
+                output.writeLong(purchase.getBarcode());
+                output.writeInt(purchase.getCount());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the run " + run, e);
+        }
+        this.runs.addLast(run);
+    }
+
+    private Path newRun() {
+        try {
+            this.numSpilledRuns++;
+            return Files.createTempFile(this.tempFolder, "purchases-run-", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a run in " + this.tempFolder, e);
+        }
+    }
+
+    private static DataOutputStream openOutput(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    /**
+     * merges all purchases that have been added, and delivers the aggregated count of every barcode in order of barcode
+     * the sorter is empty afterwards, and can be re-used
+     *
+     * @param consumer receives every barcode once, with its aggregated count
+     * @return the number of different barcodes
+     */
+    public long merge(PurchaseFileParser.PurchaseConsumer consumer) {
+        this.spillChunk();
+
+        // reduce the number of runs by intermediate merges of the oldest runs, until one final merge remains
+        while (this.runs.size() > this.maxFanIn) {
+            List<Path> group = new ArrayList<>(this.maxFanIn);
+            while (group.size() < this.maxFanIn) group.add(this.runs.removeFirst());
+            Path merged = this.newRun();
+            try (DataOutputStream output = openOutput(merged)) {
+                mergeRuns(group, (barcode, count) -> {
+                    try {
+                        output.writeLong(barcode);
+                        output.writeInt(count);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not write the run " + merged, e);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the run " + merged, e);
+            }
+            this.runs.addLast(merged);
+        }
+
+        List<Path> group = new ArrayList<>(this.runs);
+        this.runs.clear();
+        return mergeRuns(group, consumer);
+    }
+
+    /**
+     * merges the purchases that have been added into new purchase instances, and finds the top n of them
+     * the sorter is empty afterwards, and can be re-used
+     *
+     * @param n      the number of top purchases
+     * @param ranker the comparator that orders the best purchase first
+     * @return the top n purchases, in order of the ranker
+     */
+    public List<Purchase> getTops(int n, Comparator<Purchase> ranker) {
+        TopRanking.Selector tops = new TopRanking.Selector(n, ranker);
+        this.merge((barcode, count) -> tops.accept(new Purchase(this.catalogue.findProduct(barcode), count)));
+        return tops.getTops();
+    }
+
+    /**
+     * reads one run sequentially, one purchase ahead
+     */
+    private static class RunReader implements Closeable {
+        private final Path run;
+        private final DataInputStream input;
+        private long barcode;
+        private int count;
+
+        RunReader(Path run) throws IOException {
+            this.run = run;
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+        }
+
+        /**
+         * reads the next purchase of the run
+         *
+         * @return false if the run has been exhausted
+         */
+        boolean advance() throws IOException {
+            try {
+                this.barcode = this.input.readLong();
+                this.count = this.input.readInt();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.input.close();
+            Files.deleteIfExists(this.run);
+        }
+    }
+
+    /**
+     * merges sorted runs by a heap of their current barcodes, and deletes the runs
+     *
+     * @return the number of different barcodes that have been delivered to the consumer
+     */
+    private static long mergeRuns(List<Path> group, PurchaseFileParser.PurchaseConsumer consumer) {
+        List<RunReader> readers = new ArrayList<>(group.size());
+        PriorityQueue<RunReader> heap = new PriorityQueue<>(Math.max(1, group.size()),
+                Comparator.comparingLong(reader -> reader.barcode));
+        long numBarcodes = 0;
+        try {
+            for (Path run : group) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) heap.add(reader);
+            }
+
+            while (!heap.isEmpty()) {
+                // add up the counts of the barcode from all runs that are positioned at it
+                RunReader reader = heap.poll();
+                long barcode = reader.barcode;
+                long count = 0;
+                while (true) {
+                    count += reader.count;
+                    if (reader.advance()) heap.add(reader);
+                    if (heap.isEmpty() || heap.peek().barcode != barcode) break;
+                    reader = heap.poll();
+                }
+                consumer.accept(barcode, (int) count);
+                numBarcodes++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not merge the runs " + group, e);
+        } finally {
+            for (RunReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // the temporary file is left behind
+                }
+            }
+        }
+        return numBarcodes;
+    }
+
+    /**
+     * deletes the runs that have not been merged
+     */
+    @Override
+    public void close() {
+        for (Path run : this.runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                // the temporary file is left behind
+            }
+        }
+        this.runs.clear();
+        this.chunk = new PurchaseAggregate();
+    }
+}
@@ -0,0 +1,91 @@
+package models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * estimates the number of distinct barcodes in a stream of purchases, in 2^precision bytes
+ * every barcode is hashed; the first precision bits of the hash select a register,
+ * which keeps the maximum position of the first 1-bit in the remaining bits
+ * the standard error of the estimate is about 1.04 / sqrt(2^precision), e.g. 1.6% at precision 12
+ * sketches of the same precision can be merged, e.g. to count the distinct products of a city over a week
+ */
+public class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision the number of hash bits that select a register, between 4 and 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) throw new IllegalArgumentException("The precision shall be between 4 and 18");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return this.precision;
+    }
+
+    private static long hash(long barcode) {
+        barcode ^= barcode >>> 33;
+        barcode *= 0xff51afd7ed558ccdL;
+        barcode ^= barcode >>> 33;
+        barcode *= 0xc4ceb9fe1a85ec53L;
+        barcode ^= barcode >>> 33;
+        return barcode;
+    }
+
+    public void add(long barcode) {
+        long hash = hash(barcode);
+        int register = (int) (hash >>> (64 - this.precision));
+        // the rank of the first 1-bit after the register bits; the sentinel bit limits the rank if all bits are 0
+        long remainder = (hash << this.precision) | (1L << (this.precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+        if (rank > this.registers[register]) this.registers[register] = rank;
+    }
+
+    /**
+     * @return the estimated number of distinct barcodes that have been added
+     */
+    public long estimate() {
+        int m = this.registers.length;
+        double sum = 0.0;
+        int numZeros = 0;
+        for (byte register : this.registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) numZeros++;
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && numZeros > 0) {
+            // small cardinalities are estimated more accurately by counting the empty registers
+            estimate = m * Math.log((double) m / numZeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * adds the barcodes of another sketch of the same precision to this sketch
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != this.precision) {
+            throw new IllegalArgumentException("Only sketches of the same precision can be merged");
+        }
+        for (int i = 0; i < this.registers.length; i++) {
+            if (other.registers[i] > this.registers[i]) this.registers[i] = other.registers[i];
+        }
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeByte(this.precision);
+        output.write(this.registers);
+    }
+
+    public static HyperLogLog readFrom(DataInput input) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(input.readByte());
+        input.readFully(sketch.registers);
+        return sketch;
+    }
+}
@@ -0,0 +1,158 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * hash map from primitive long keys (e.g. barcodes) to non-negative int values (e.g. list positions)
+ * uses open addressing with linear probing into parallel arrays, such that no key or value is boxed
+ * and a lookup costs O(1) on average
+ */
+public class LongIndexMap {
+    private static final int EMPTY = -1;            // the value that marks an empty slot
+    private static final double MAX_LOAD = 0.5;     // the table grows when it would become fuller than this
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    /**
+     * representation invariants:
+     * 1. keys.length == values.length is a power of two, and size <= MAX_LOAD * keys.length
+     * 2. values[slot] == EMPTY for all empty slots, values[slot] >= 0 for all occupied slots
+     * 3. every key is found by probing from slot(key) without passing an empty slot
+     **/
+
+    public LongIndexMap() {
+        this(16);
+    }
+
+    public LongIndexMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize) capacity *= 2;
+        this.allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(this.values, EMPTY);
+    }
+
+    /**
+     * spreads the bits of the key over the table (the finalizer of the MurmurHash3 64-bit hash)
+     * barcodes share long common prefixes, so their lower bits alone would cluster
+     */
+    private int slot(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & (this.keys.length - 1);
+    }
+
+    /**
+     * @param key the key to be searched
+     * @return the value associated with the key, or -1 if the key is not in the map
+     */
+    public int get(long key) {
+        int mask = this.keys.length - 1;
+        for (int slot = this.slot(key); this.values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) return this.values[slot];
+        }
+        return -1;
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) >= 0;
+    }
+
+    /**
+     * associates the value with the key, replacing any earlier value of the key
+     *
+     * @param key   the key
+     * @param value a non-negative value
+     * @return the earlier value of the key, or -1 if the key was not in the map yet
+     */
+    public int put(long key, int value) {
+        if (value < 0) throw new IllegalArgumentException("LongIndexMap values shall not be negative: " + value);
+        int mask = this.keys.length - 1;
+        int slot = this.slot(key);
+        for (; this.values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                int oldValue = this.values[slot];
+                this.values[slot] = value;
+                return oldValue;
+            }
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size > MAX_LOAD * this.keys.length) this.grow();
+        return -1;
+    }
+
+    /**
+     * associates the value with the key, only if the key is not in the map yet
+     *
+     * @return the value that was associated with the key already, or -1 if the given value has been associated now
+     */
+    public int putIfAbsent(long key, int value) {
+        int oldValue = this.get(key);
+        return oldValue >= 0 ? oldValue : this.put(key, value);
+    }
+
+    /**
+     * removes the key from the map
+     *
+     * @return the value that was associated with the key, or -1 if the key was not in the map
+     */
+    public int remove(long key) {
+        int mask = this.keys.length - 1;
+        int slot = this.slot(key);
+        while (this.values[slot] != EMPTY && this.keys[slot] != key) slot = (slot + 1) & mask;
+        if (this.values[slot] == EMPTY) return -1;
+        int oldValue = this.values[slot];
+
+        // shift later keys of the probe sequence backwards into the gap, such that no probe passes an empty slot
+        int gap = slot;
+        for (int next = (gap + 1) & mask; this.values[next] != EMPTY; next = (next + 1) & mask) {
+            int home = this.slot(this.keys[next]);
+            // the key at next may fill the gap if its home slot is not in between the gap and next (cyclically)
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+        }
+        this.values[gap] = EMPTY;
+        this.size--;
+        return oldValue;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.allocate(2 * oldKeys.length);
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == EMPTY) continue;
+            int slot = this.slot(oldKeys[i]);
+            while (this.values[slot] != EMPTY) slot = (slot + 1) & mask;
+            this.keys[slot] = oldKeys[i];
+            this.values[slot] = oldValues[i];
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, EMPTY);
+        this.size = 0;
+    }
+}
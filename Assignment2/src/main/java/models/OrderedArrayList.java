@@ -1,8 +1,9 @@
 package models;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.*;
 import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
 
 public class OrderedArrayList<E>
         extends ArrayList<E>
@@ -10,6 +11,7 @@ public class OrderedArrayList<E>
 
     protected Comparator<? super E> ordening;   // the comparator that has been used with the latest sort
     private int nSorted;                        // the number of items that have been ordered by barcode in the list
+    private static final int MIN_AGGREGATION_CHUNK = 4096;  // the smallest range that is split off for a parallel aggregation
     // representation-invariant
     //      all items at index positions 0 <= index < nSorted have been ordered by the given ordening comparator
     //      other items at index position nSorted <= index < size() can be in any order amongst themselves
@@ -69,10 +71,286 @@ public class OrderedArrayList<E>
         return super.remove(o);
     }
 
+    /**
+     * sorts the list by this.ordening
+     * if a sorted section exists already, only the unsorted section is sorted,
+     * and then merged with the sorted section in linear time
+     */
     @Override
     public void sort() {
-        if (this.nSorted < this.size()) {
+        if (this.nSorted >= this.size()) return;
+
+        if (this.nSorted == 0 || this.ordening == null) {
             this.sort(this.ordening);
+        } else {
+            // copy the unsorted section into the auxiliary buffer, and sort it there
+            Object[] tail = this.subList(this.nSorted, this.size()).toArray();
+            Arrays.sort(tail, this.objectOrdening());
+            this.mergeIntoSortedSection(tail);
+        }
+    }
+
+    /**
+     * adds a batch of items that has been sorted by this.ordening already, and merges it with the sorted section
+     * such that the whole list is sorted afterwards, in time linear to the size of the list
+     * if the batch turns out not to be sorted, it is sorted first
+     *
+     * @param sortedItems the items to be added, in order of this.ordening
+     * @return whether the list has changed
+     */
+    public boolean addAllSorted(Collection<? extends E> sortedItems) {
+        if (sortedItems.isEmpty()) return false;
+        if (this.ordening == null) {
+            this.addAll(sortedItems);
+            this.sort(null);
+            return true;
+        }
+        this.sort();
+
+        Object[] batch = sortedItems.toArray();
+        for (int i = 1; i < batch.length; i++) {
+            if (this.compare(batch[i - 1], batch[i]) > 0) {
+                Arrays.sort(batch, this.objectOrdening());
+                break;
+            }
+        }
+        this.mergeIntoSortedSection(batch);
+        return true;
+    }
+
+    /**
+     * merges a batch of items into the list, like merge does for every item, in a single linear pass
+     * the batch is sorted, and walked along the sorted section together: matches are merged in place,
+     * and the new items are merged into the sorted section at the end, in O(n + b log b) time for a batch of b items
+     * equal items within the batch are merged with each other first
+     *
+     * @param newItems the items to be added or merged, in any order
+     * @param merger   the function that merges a new item into its match, see merge
+     */
+    @Override
+    public void mergeAll(Collection<? extends E> newItems, BinaryOperator<E> merger) {
+        if (newItems.isEmpty()) return;
+        if (this.ordening == null) {
+            OrderedList.super.mergeAll(newItems, merger);
+            return;
+        }
+        this.sort();
+
+        Object[] batch = newItems.toArray();
+        Arrays.sort(batch, this.objectOrdening());
+        List<Object> addedItems = new ArrayList<>();
+        int index = 0;      // the first item of the sorted section that is not ordered before the next item of the batch
+        for (Object newItem : batch) {
+            while (index < this.nSorted && this.compare(this.get(index), newItem) < 0) index++;
+            if (index < this.nSorted && this.compare(this.get(index), newItem) == 0) {
+                super.set(index, merger.apply(this.get(index), this.itemOf(newItem)));
+            } else if (!addedItems.isEmpty() && this.compare(addedItems.get(addedItems.size() - 1), newItem) == 0) {
+                int last = addedItems.size() - 1;
+                addedItems.set(last, merger.apply(this.itemOf(addedItems.get(last)), this.itemOf(newItem)));
+            } else {
+                addedItems.add(newItem);
+            }
+        }
+        this.mergeIntoSortedSection(addedItems.toArray());
+    }
+
+    /**
+     * merges a sorted buffer into the sorted section of the list, from the back to the front
+     * the buffer replaces the unsorted section, if any; the list shall be as long as the sorted section and the buffer together
+     * items of the sorted section precede equal items of the buffer, such that the merge is stable
+     *
+     * @param buffer the items to be merged, in order of this.ordening
+     */
+    private void mergeIntoSortedSection(Object[] buffer) {
+        // make room at the end of the list, if the buffer has not been taken from the list
+        this.ensureCapacity(this.nSorted + buffer.length);
+        while (this.size() < this.nSorted + buffer.length) super.add(null);
+
+        int i = this.nSorted - 1;       // the last unmerged item of the sorted section
+        int j = buffer.length - 1;      // the last unmerged item of the buffer
+        int target = this.nSorted + buffer.length - 1;
+        // the merge is complete as soon as the buffer has been exhausted, the front of the sorted section stays in place
+        while (j >= 0) {
+            if (i >= 0 && this.compare(this.get(i), buffer[j]) > 0) {
+                super.set(target--, this.get(i--));
+            } else {
+                super.set(target--, this.itemOf(buffer[j--]));
+            }
+        }
+        this.nSorted = this.size();
+    }
+
+    private int compare(Object item1, Object item2) {
+        return this.objectOrdening().compare(item1, item2);
+    }
+
+    /**
+     * @return this.ordening, for items that have been copied into an Object[] buffer
+     */
+    @SuppressWarnings("unchecked")
+    private Comparator<Object> objectOrdening() {
+        return (Comparator<Object>) this.ordening;
+    }
+
+    /**
+     * @return an item of an Object[] buffer, which only holds items of the list
+     */
+    @SuppressWarnings("unchecked")
+    private E itemOf(Object item) {
+        return (E) item;
+    }
+
+    /**
+     * finds the first position in the sorted section at which the searchItem could be inserted
+     * by binary search, using the this.ordening comparator
+     *
+     * @param searchItem the item to be searched on the basis of comparison by this.ordening
+     * @return the index of the first item in the sorted section that is not ordered before the searchItem,
+     * or nSorted if there is no such item
+     */
+    @Override
+    public int lowerBound(E searchItem) {
+        int left = 0, right = this.nSorted;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (this.compare(this.get(mid), searchItem) < 0) left = mid + 1;
+            else right = mid;
+        }
+        return left;
+    }
+
+    /**
+     * finds the last position in the sorted section at which the searchItem could be inserted
+     * by binary search, using the this.ordening comparator
+     *
+     * @param searchItem the item to be searched on the basis of comparison by this.ordening
+     * @return the index of the first item in the sorted section that is ordered after the searchItem,
+     * or nSorted if there is no such item
+     */
+    @Override
+    public int upperBound(E searchItem) {
+        int left = 0, right = this.nSorted;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (this.compare(this.get(mid), searchItem) <= 0) left = mid + 1;
+            else right = mid;
+        }
+        return left;
+    }
+
+    /**
+     * provides all items from fromItem (inclusive) to toItem (exclusive) in order of this.ordening
+     * the items of the sorted section are found by binary search and viewed in place,
+     * only the matching items of the unsorted section are collected and sorted, when the view is iterated,
+     * such that the range is found in O(log n + k + t log t) time for k items in the range and t unsorted items
+     * the view reflects the list at the time of the call, so it shall not be used after the list has been modified
+     *
+     * @param fromItem the lower bound of the range, e.g. a product with the first barcode of a manufacturer
+     * @param toItem   the upper bound of the range, which is not included
+     * @return an unmodifiable view of the items in the range
+     */
+    @Override
+    public Collection<E> subRange(E fromItem, E toItem) {
+        int from = this.lowerBound(fromItem);
+        int to = Math.max(from, this.lowerBound(toItem));
+        if (this.nSorted == this.size()) return Collections.unmodifiableList(this.subList(from, to));
+        return new RangeView(from, to, fromItem, toItem);
+    }
+
+    /**
+     * provides all items in order of this.ordening, without sorting the list itself
+     * only the unsorted section is copied and sorted, when the iteration starts
+     */
+    @Override
+    public Iterator<E> orderedIterator() {
+        return new MergedIterator(0, this.nSorted, null, null);
+    }
+
+    /**
+     * a view of a range of items in order, see subRange
+     */
+    private class RangeView extends AbstractCollection<E> {
+        private final int from, to;                 // the range within the sorted section
+        private final E fromItem, toItem;           // the bounds of the range, for the unsorted section
+        private int size = -1;
+
+        RangeView(int from, int to, E fromItem, E toItem) {
+            this.from = from;
+            this.to = to;
+            this.fromItem = fromItem;
+            this.toItem = toItem;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new MergedIterator(this.from, this.to, this.fromItem, this.toItem);
+        }
+
+        @Override
+        public int size() {
+            if (this.size < 0) {
+                this.size = this.to - this.from;
+                for (int index = OrderedArrayList.this.nSorted; index < OrderedArrayList.this.size(); index++) {
+                    if (inRange(OrderedArrayList.this.get(index), this.fromItem, this.toItem)) this.size++;
+                }
+            }
+            return this.size;
+        }
+    }
+
+    private boolean inRange(E item, E fromItem, E toItem) {
+        return (fromItem == null || this.compare(item, fromItem) >= 0)
+                && (toItem == null || this.compare(item, toItem) < 0);
+    }
+
+    /**
+     * walks a range of the sorted section and the matching items of the unsorted section together, in order
+     * the unsorted items are collected and sorted lazily, at the first step of the iteration
+     * items of the sorted section precede equal items of the unsorted section, like in sort()
+     */
+    private class MergedIterator implements Iterator<E> {
+        private int next;                           // the index of the next item of the sorted section
+        private final int to;                       // the end of the range within the sorted section
+        private final E fromItem, toItem;           // the bounds of the range, or null if unbounded
+        private Object[] tail;                      // the sorted items of the unsorted section within the range
+        private int nextOfTail = 0;
+
+        MergedIterator(int from, int to, E fromItem, E toItem) {
+            this.next = from;
+            this.to = to;
+            this.fromItem = fromItem;
+            this.toItem = toItem;
+        }
+
+        private Object[] tail() {
+            if (this.tail == null) {
+                List<Object> matches = new ArrayList<>();
+                for (int index = OrderedArrayList.this.nSorted; index < OrderedArrayList.this.size(); index++) {
+                    E item = OrderedArrayList.this.get(index);
+                    if (inRange(item, this.fromItem, this.toItem)) matches.add(item);
+                }
+                this.tail = matches.toArray();
+                Arrays.sort(this.tail, OrderedArrayList.this.objectOrdening());
+            }
+            return this.tail;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < this.to || this.nextOfTail < this.tail().length;
+        }
+
+        @Override
+        public E next() {
+            Object[] tail = this.tail();
+            if (this.nextOfTail >= tail.length) {
+                if (this.next >= this.to) throw new NoSuchElementException();
+                return OrderedArrayList.this.get(this.next++);
+            }
+            if (this.next < this.to && compare(OrderedArrayList.this.get(this.next), tail[this.nextOfTail]) <= 0) {
+                return OrderedArrayList.this.get(this.next++);
+            }
+            return OrderedArrayList.this.itemOf(tail[this.nextOfTail++]);
         }
     }
 
@@ -88,7 +366,7 @@ public class OrderedArrayList<E>
     @Override
     public int indexOfByBinarySearch(E searchItem) {
         if (searchItem != null) {
-            // when looking at the time stamps of the tests, the times didn't vary that much
+            // the iterative search avoids a call per halving, see OrderedArrayListPerformanceTest.iterativeVersusRecursiveBinarySearch
             return indexOfByIterativeBinarySearch(searchItem);
         } else {
             return -1;
@@ -105,7 +383,7 @@ public class OrderedArrayList<E>
      * @param searchItem the item to be searched on the basis of comparison by this.ordening
      * @return the position index of the found item in the arrayList, or -1 if no item matches the search item.
      */
-    private int indexOfByIterativeBinarySearch(E searchItem) {
+    int indexOfByIterativeBinarySearch(E searchItem) {
         if (size() == 0) {
             return -1; // there are no items to search for
         }
@@ -164,7 +442,7 @@ public class OrderedArrayList<E>
      * @param searchItem the item to be searched on the basis of comparison by this.ordening
      * @return the position index of the found item in the arrayList, or -1 if no item matches the search item.
      */
-    private int indexOfByRecursiveBinarySearch(E searchItem) {
+    int indexOfByRecursiveBinarySearch(E searchItem) {
         int index = recursiveBinarySearch(searchItem, 0, nSorted - 1);
         if (index == -1) {
             index = linearSearch(searchItem, nSorted - 1);
@@ -233,4 +511,63 @@ public class OrderedArrayList<E>
             return false;
         }
     }
+
+    /**
+     * calculates the sums of multiple mappers in a single parallel traversal of the list
+     * the list is split into index ranges of at least MIN_AGGREGATION_CHUNK items,
+     * such that every task sums a contiguous chunk of the backing array with its own compensated sums
+     * the list shall not be modified during the aggregation
+     */
+    @Override
+    public double[] aggregateInParallel(List<ToDoubleFunction<E>> mappers) {
+        if (this.size() < 2 * MIN_AGGREGATION_CHUNK) return this.aggregate(mappers);
+        return CompensatedSum.sumInParallel(new RangeSpliterator(0, this.size()), mappers);
+    }
+
+    /**
+     * splits an index range of the list in halves, down to MIN_AGGREGATION_CHUNK items
+     */
+    private class RangeSpliterator implements Spliterator<E> {
+        private int from;           // the index of the next item to be traversed
+        private final int to;       // the index after the last item of the range
+
+        RangeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (this.from >= this.to) return false;
+            action.accept(OrderedArrayList.this.get(this.from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            for (int index = this.from; index < this.to; index++) {
+                action.accept(OrderedArrayList.this.get(index));
+            }
+            this.from = this.to;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            if (this.to - this.from < 2 * MIN_AGGREGATION_CHUNK) return null;
+            int mid = (this.from + this.to) >>> 1;
+            RangeSpliterator prefix = new RangeSpliterator(this.from, mid);
+            this.from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.to - this.from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
 }
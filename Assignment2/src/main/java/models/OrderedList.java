@@ -1,6 +1,8 @@
 package models;
 
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.BinaryOperator;
 import java.util.function.ToDoubleFunction;
@@ -9,14 +11,75 @@ public interface OrderedList<E> extends List<E> {
     void sort();
     int indexOfByBinarySearch(E searchItem);
     boolean merge(E item, BinaryOperator<E> merger);
+
+    /**
+     * merges every item of a batch, as if by merge
+     */
+    default void mergeAll(Collection<? extends E> items, BinaryOperator<E> merger) {
+        for (E item : items) {
+            this.merge(item, merger);
+        }
+    }
+
     Comparator<? super E> getOrdening();
 
+    /**
+     * @return the index of the first item in the sorted section that is not ordered before the searchItem
+     */
+    int lowerBound(E searchItem);
+
+    /**
+     * @return the index of the first item in the sorted section that is ordered after the searchItem
+     */
+    int upperBound(E searchItem);
+
+    /**
+     * @return a view of all items from fromItem (inclusive) to toItem (exclusive) in order, without copying the list
+     */
+    Collection<E> subRange(E fromItem, E toItem);
+
+    /**
+     * @return an iterator over all items in order, also if the list has not been fully sorted
+     */
+    Iterator<E> orderedIterator();
+
     default double aggregate(ToDoubleFunction<E> mapper) {
-        double sum = 0;
+        CompensatedSum sum = new CompensatedSum();
         for (E item : this) {
             // for each item in the list, the mapper will be used to add a value to the sum
-            sum += mapper.applyAsDouble(item);
+            sum.add(mapper.applyAsDouble(item));
         }
-        return sum;
+        return sum.getSum();
+    }
+
+    /**
+     * calculates the sums of multiple mappers in a single traversal of the list
+     *
+     * @param mappers the mappers, e.g. the count and the revenue of a purchase
+     * @return the sum of every mapper, in the order of the mappers
+     */
+    default double[] aggregate(List<ToDoubleFunction<E>> mappers) {
+        CompensatedSum[] sums = CompensatedSum.newArray(mappers.size());
+        for (E item : this) {
+            CompensatedSum.addAll(sums, item, mappers);
+        }
+        return CompensatedSum.getSums(sums);
+    }
+
+    /**
+     * calculates the sum of the mapper, splitting the list over the threads of the common ForkJoinPool
+     * the list shall not be modified during the aggregation
+     */
+    default double aggregateInParallel(ToDoubleFunction<E> mapper) {
+        return this.aggregateInParallel(List.of(mapper))[0];
+    }
+
+    /**
+     * calculates the sums of multiple mappers in a single parallel traversal of the list
+     * every chunk of the list is summed with its own compensated sums, which are combined at the end
+     * the list shall not be modified during the aggregation
+     */
+    default double[] aggregateInParallel(List<ToDoubleFunction<E>> mappers) {
+        return CompensatedSum.sumInParallel(this.spliterator(), mappers);
     }
 }
@@ -0,0 +1,265 @@
+package models;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * ordered list of entries that are keyed by a primitive long (e.g. a barcode), each with an int count and an optional value
+ * the entries are kept in parallel arrays (a structure of arrays) instead of one object per entry,
+ * such that sorting, searching and merging compare primitive keys without boxing or dereferencing
+ * it provides the same operations as an OrderedList (sort, indexOfByBinarySearch, merge and aggregate),
+ * but not the List interface itself, because that would require a boxed object per entry
+ *
+ * @param <V> the type of the values, e.g. Product
+ */
+public class OrderedLongKeyList<V> {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * maps an entry onto a double, without boxing its key or count
+     */
+    public interface EntryToDoubleFunction<V> {
+        double applyAsDouble(long key, int count, V value);
+    }
+
+    private long[] keys;
+    private int[] counts;
+    private Object[] values;
+    private int size = 0;
+    private int nSorted = 0;        // the number of entries that have been ordered by key at the front of the list
+
+    /**
+     * representation invariants:
+     * 1. keys.length == counts.length == values.length >= size
+     * 2. keys[i-1] <= keys[i] for all 0 < i < nSorted
+     * 3. entries at positions nSorted <= i < size can be in any order
+     **/
+
+    public OrderedLongKeyList() {
+        this(16);
+    }
+
+    public OrderedLongKeyList(int initialCapacity) {
+        initialCapacity = Math.max(1, initialCapacity);
+        this.keys = new long[initialCapacity];
+        this.counts = new int[initialCapacity];
+        this.values = new Object[initialCapacity];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int getNumSorted() {
+        return this.nSorted;
+    }
+
+    public long getKey(int index) {
+        this.checkIndex(index);
+        return this.keys[index];
+    }
+
+    public int getCount(int index) {
+        this.checkIndex(index);
+        return this.counts[index];
+    }
+
+    public void setCount(int index, int count) {
+        this.checkIndex(index);
+        this.counts[index] = count;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getValue(int index) {
+        this.checkIndex(index);
+        return (V) this.values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.size);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+        this.nSorted = 0;
+    }
+
+    /**
+     * appends an entry to the unsorted section of the list
+     */
+    public void add(long key, int count, V value) {
+        if (this.size == this.keys.length) this.grow(this.size + 1);
+        this.keys[this.size] = key;
+        this.counts[this.size] = count;
+        this.values[this.size] = value;
+        this.size++;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, this.keys.length + (this.keys.length >> 1));
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.counts = Arrays.copyOf(this.counts, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+    }
+
+    /**
+     * sorts the list by key
+     * only the unsorted section is sorted, and then merged with the sorted section in linear time
+     */
+    public void sort() {
+        if (this.nSorted >= this.size) return;
+        quickSort(this.keys, this.counts, this.values, this.nSorted, this.size);
+
+        if (this.nSorted > 0 && this.keys[this.nSorted - 1] > this.keys[this.nSorted]) {
+            // copy the sorted tail into auxiliary buffers, and merge it with the sorted section from the back
+            long[] tailKeys = Arrays.copyOfRange(this.keys, this.nSorted, this.size);
+            int[] tailCounts = Arrays.copyOfRange(this.counts, this.nSorted, this.size);
+            Object[] tailValues = Arrays.copyOfRange(this.values, this.nSorted, this.size);
+            int i = this.nSorted - 1, j = tailKeys.length - 1, target = this.size - 1;
+            while (j >= 0) {
+                if (i >= 0 && this.keys[i] > tailKeys[j]) {
+                    this.move(i--, target--);
+                } else {
+                    this.keys[target] = tailKeys[j];
+                    this.counts[target] = tailCounts[j];
+                    this.values[target--] = tailValues[j--];
+                }
+            }
+        }
+        this.nSorted = this.size;
+    }
+
+    private void move(int from, int to) {
+        this.keys[to] = this.keys[from];
+        this.counts[to] = this.counts[from];
+        this.values[to] = this.values[from];
+    }
+
+    /**
+     * sorts the entries from (inclusive) .. to (exclusive) of the parallel arrays by key
+     */
+    private static void quickSort(long[] keys, int[] counts, Object[] values, int from, int to) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            // median of three pivot
+            int mid = (from + to) >>> 1;
+            if (keys[mid] < keys[from]) swap(keys, counts, values, mid, from);
+            if (keys[to - 1] < keys[from]) swap(keys, counts, values, to - 1, from);
+            if (keys[to - 1] < keys[mid]) swap(keys, counts, values, to - 1, mid);
+            long pivot = keys[mid];
+
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) swap(keys, counts, values, i++, j--);
+            }
+            // recurse into the smaller part, and continue with the larger part, to limit the recursion depth
+            if (j + 1 - from < to - i) {
+                quickSort(keys, counts, values, from, j + 1);
+                from = i;
+            } else {
+                quickSort(keys, counts, values, i, to);
+                to = j + 1;
+            }
+        }
+
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+                swap(keys, counts, values, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, int[] counts, Object[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        Object value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * finds the position of an entry with the key by binary search in the sorted section of the list
+     * and by linear search in the unsorted section
+     *
+     * @param key the key to be searched
+     * @return the position of an entry with the key, or -1 if no entry has the key
+     */
+    public int indexOfByBinarySearch(long key) {
+        int left = 0, right = this.nSorted;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (this.keys[mid] < key) {
+                left = mid + 1;
+            } else if (this.keys[mid] > key) {
+                right = mid;
+            } else {
+                return mid;
+            }
+        }
+        for (int i = this.nSorted; i < this.size; i++) {
+            if (this.keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * adds the count to the entry with the key, or adds a new entry if no entry has the key
+     *
+     * @return whether a new entry was added to the list
+     */
+    public boolean merge(long key, int count, V value) {
+        return this.merge(key, count, value, Integer::sum);
+    }
+
+    /**
+     * finds the entry with the key and replaces its count by the outcome of the merger,
+     * or adds a new entry if no entry has the key
+     *
+     * @param merger combines the count of the found entry with the given count
+     * @return whether a new entry was added to the list
+     */
+    public boolean merge(long key, int count, V value, IntBinaryOperator merger) {
+        int index = this.indexOfByBinarySearch(key);
+        if (index < 0) {
+            this.add(key, count, value);
+            return true;
+        }
+        this.counts[index] = merger.applyAsInt(this.counts[index], count);
+        return false;
+    }
+
+    /**
+     * @return the sum of the counts of all entries
+     */
+    public long aggregateCounts() {
+        long sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += this.counts[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the mapper over all entries
+     */
+    @SuppressWarnings("unchecked")
+    public double aggregate(EntryToDoubleFunction<V> mapper) {
+        double sum = 0;
+        for (int i = 0; i < this.size; i++) {
+            sum += mapper.applyAsDouble(this.keys[i], this.counts[i], (V) this.values[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,221 @@
+package models;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * the catalogue of all products of the SuperMarket chain, with a versioned price history per product
+ * products are found by barcode in O(1) through a hash index, with a small direct-mapped front cache
+ * of recent lookups, in which the few hot barcodes that dominate the purchases stay resident
+ * a price change does not overwrite the price of a product, but adds a new price version with its effective date,
+ * such that revenues of earlier days keep using the price that was valid on the day of purchase
+ * lookups do not create any objects
+ */
+public class ProductCatalogue {
+    private static final int CACHE_SIZE = 64;               // a power of two
+
+    /**
+     * the immutable price changes of a product, replaced as a whole by every change
+     * such that concurrent lookups see either the old or the new history
+     */
+    private static class PriceHistory {
+        private static final PriceHistory NONE = new PriceHistory(new long[0], new double[0]);
+
+        private final long[] days;          // the epoch days of the price changes, strictly increasing
+        private final double[] prices;      // the price from each of these days on
+
+        PriceHistory(long[] days, double[] prices) {
+            this.days = days;
+            this.prices = prices;
+        }
+    }
+
+    private final Product[] products;                       // the products by product id
+    private final LongIndexMap index;                       // the product id of each barcode
+    private final double[] basePrices;                      // the price of each product before any price change
+    private final PriceHistory[] histories;                 // the price changes of each product
+    // the front cache of barcode lookups; a slot may be stale or torn by concurrent lookups,
+    // which is detected by verifying the barcode of the cached product id
+    private final long[] cachedBarcodes = new long[CACHE_SIZE];
+    private final int[] cachedIds = new int[CACHE_SIZE];
+
+    /**
+     * representation invariants:
+     * 1. index.get(products[id].getBarcode()) == id for all product ids
+     * 2. the price of product id on day d is histories[id].prices[k] for the last k with histories[id].days[k] <= d,
+     * or basePrices[id] if there is no such k
+     **/
+
+    /**
+     * @param products the products; their current prices become the base prices, valid before any price change
+     */
+    public ProductCatalogue(List<Product> products) {
+        int numProducts = products.size();
+        this.products = products.toArray(new Product[0]);
+        this.index = new LongIndexMap(numProducts);
+        this.basePrices = new double[numProducts];
+        this.histories = new PriceHistory[numProducts];
+        for (int id = 0; id < numProducts; id++) {
+            this.index.put(this.products[id].getBarcode(), id);
+            this.basePrices[id] = this.products[id].getPrice();
+            this.histories[id] = PriceHistory.NONE;
+        }
+        Arrays.fill(this.cachedIds, -1);
+    }
+
+    public int size() {
+        return this.products.length;
+    }
+
+    public Product getProduct(int productId) {
+        return this.products[productId];
+    }
+
+    /**
+     * finds the product id of a barcode, through the front cache
+     *
+     * @param barcode
+     * @return the product id, or -1 if the barcode is not in the catalogue
+     */
+    public int indexOf(long barcode) {
+        int slot = (int) ((barcode * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(CACHE_SIZE)));
+        int id = this.cachedIds[slot];
+        if (id >= 0 && this.cachedBarcodes[slot] == barcode && this.products[id].getBarcode() == barcode) return id;
+
+        id = this.index.get(barcode);
+        if (id >= 0) {
+            // a rare barcode displaces a hot one only until the hot one comes back
+            this.cachedIds[slot] = id;
+            this.cachedBarcodes[slot] = barcode;
+        }
+        return id;
+    }
+
+    /**
+     * @param barcode
+     * @return the product, or null if the barcode is not in the catalogue
+     */
+    public Product findProduct(long barcode) {
+        int id = this.indexOf(barcode);
+        return id < 0 ? null : this.products[id];
+    }
+
+    /**
+     * changes the price of a product from a given day on
+     * a price change at a day that has already been changed replaces that version
+     *
+     * @param barcode
+     * @param effectiveFrom the first day of the new price
+     * @param price
+     * @return whether the price has been changed; returns false if the barcode is not in the catalogue
+     */
+    public synchronized boolean changePrice(long barcode, LocalDate effectiveFrom, double price) {
+        int id = this.index.get(barcode);
+        if (id < 0) return false;
+
+        long day = effectiveFrom.toEpochDay();
+        long[] days = this.histories[id].days;
+        double[] prices = this.histories[id].prices;
+        int position = Arrays.binarySearch(days, day);
+        if (position >= 0) {
+            prices = prices.clone();
+            prices[position] = price;
+            this.histories[id] = new PriceHistory(days, prices);
+            return true;
+        }
+
+        position = -position - 1;
+        long[] newDays = new long[days.length + 1];
+        double[] newPrices = new double[prices.length + 1];
+        System.arraycopy(days, 0, newDays, 0, position);
+        System.arraycopy(prices, 0, newPrices, 0, position);
+        newDays[position] = day;
+        newPrices[position] = price;
+        System.arraycopy(days, position, newDays, position + 1, days.length - position);
+        System.arraycopy(prices, position, newPrices, position + 1, prices.length - position);
+        this.histories[id] = new PriceHistory(newDays, newPrices);
+        return true;
+    }
+
+    /**
+     * changes the base price of a product, which is valid on all days before its first dated price change
+     * the dated price changes are kept, and the product gets the new price as well
+     *
+     * @param barcode
+     * @param price
+     * @return whether the price has been changed; returns false if the barcode is not in the catalogue
+     */
+    public synchronized boolean changePrice(long barcode, double price) {
+        int id = this.index.get(barcode);
+        if (id < 0) return false;
+        this.basePrices[id] = price;
+        this.products[id].setPrice(price);
+        return true;
+    }
+
+    /**
+     * @param productId
+     * @return the price of the product before any dated price change
+     */
+    public double getBasePrice(int productId) {
+        return this.basePrices[productId];
+    }
+
+    /**
+     * @param productId
+     * @param epochDay  the day as counted by LocalDate.toEpochDay
+     * @return the price of the product that was valid on the day
+     */
+    public double getPrice(int productId, long epochDay) {
+        PriceHistory history = this.histories[productId];
+        // find the last price change on or before the day
+        int left = 0, right = history.days.length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (history.days[mid] <= epochDay) left = mid + 1;
+            else right = mid;
+        }
+        return left == 0 ? this.basePrices[productId] : history.prices[left - 1];
+    }
+
+    /**
+     * @param barcode
+     * @param date
+     * @return the price of the product that was valid on the date, or -1 if the barcode is not in the catalogue
+     */
+    public double getPrice(long barcode, LocalDate date) {
+        int id = this.indexOf(barcode);
+        return id < 0 ? -1 : this.getPrice(id, date.toEpochDay());
+    }
+
+    /**
+     * fills the prices of all products that were valid on the day, in order of product id
+     *
+     * @param epochDay the day as counted by LocalDate.toEpochDay
+     * @param prices   the array to be filled, with a length of at least size()
+     * @return the filled array
+     */
+    public double[] getPrices(long epochDay, double[] prices) {
+        for (int id = 0; id < this.products.length; id++) {
+            prices[id] = this.getPrice(id, epochDay);
+        }
+        return prices;
+    }
+
+    /**
+     * @param barcode
+     * @return the prices of the product by their effective date, with the base price at LocalDate.MIN,
+     * or an empty map if the barcode is not in the catalogue
+     */
+    public SortedMap<LocalDate, Double> getPriceHistory(long barcode) {
+        SortedMap<LocalDate, Double> history = new TreeMap<>();
+        int id = this.index.get(barcode);
+        if (id < 0) return history;
+        history.put(LocalDate.MIN, this.basePrices[id]);
+        PriceHistory changes = this.histories[id];
+        for (int k = 0; k < changes.days.length; k++) {
+            history.put(LocalDate.ofEpochDay(changes.days[k]), changes.prices[k]);
+        }
+        return history;
+    }
+}
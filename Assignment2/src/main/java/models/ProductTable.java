@@ -0,0 +1,222 @@
+package models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * a compact, struct-of-arrays representation of the product catalogue, for tens of millions of products
+ * instead of an object with a header, a String and a byte array per product, every product is a row in
+ * parallel primitive arrays, and all titles are stored once in a shared pool of UTF-8 bytes
+ * equal titles are stored only once, and products are found by a binary search on their barcodes
+ * Product instances are created on demand, as views that are not retained by the table
+ * a product takes 8 + 8 + 4 bytes plus its share of the title pool, instead of about 100 bytes as objects
+ */
+public class ProductTable {
+    private final long[] barcodes;          // the barcode of each product id, in ascending order
+    private final double[] prices;          // the price of each product id
+    private final int[] titleOffsets;       // the position of the title of each product id in titlePool, or -1
+    private final byte[] titlePool;         // the distinct titles, each as its UTF-8 length (varint) and bytes
+
+    /**
+     * representation invariants:
+     * 1. barcodes[id - 1] < barcodes[id] for all 0 < id < size()
+     * 2. titleOffsets[id] == -1 if product id has no title,
+     * otherwise the title starts with its length at titlePool[titleOffsets[id]]
+     **/
+
+    /**
+     * accumulates the products of a table, with their titles in a pool without duplicates
+     */
+    private static class Builder {
+        private long[] barcodes = new long[1024];
+        private double[] prices = new double[1024];
+        private int[] titleOffsets = new int[1024];
+        private byte[] titlePool = new byte[4096];
+        private int size = 0;
+        private int poolSize = 0;
+        private final Map<String, Integer> pooledTitles = new HashMap<>();  // the offset of each pooled title
+
+        void add(long barcode, String title, double price) {
+            if (this.size == this.barcodes.length) {
+                this.barcodes = Arrays.copyOf(this.barcodes, 2 * this.size);
+                this.prices = Arrays.copyOf(this.prices, 2 * this.size);
+                this.titleOffsets = Arrays.copyOf(this.titleOffsets, 2 * this.size);
+            }
+            this.barcodes[this.size] = barcode;
+            this.prices[this.size] = price;
+            this.titleOffsets[this.size++] = title == null ? -1 : this.pooledTitles.computeIfAbsent(title, this::pool);
+        }
+
+        /**
+         * appends a title to the pool
+         *
+         * @return the offset of the title in the pool
+         */
+        private int pool(String title) {
+            byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+            if (this.poolSize + bytes.length + 5 > this.titlePool.length) {
+                this.titlePool = Arrays.copyOf(this.titlePool, Math.max(2 * this.titlePool.length, this.poolSize + bytes.length + 5));
+            }
+            int offset = this.poolSize;
+            for (int length = bytes.length; ; length >>>= 7) {
+                if (length < 0x80) {
+                    this.titlePool[this.poolSize++] = (byte) length;
+                    break;
+                }
+                this.titlePool[this.poolSize++] = (byte) (length & 0x7F | 0x80);
+            }
+            System.arraycopy(bytes, 0, this.titlePool, this.poolSize, bytes.length);
+            this.poolSize += bytes.length;
+            return offset;
+        }
+    }
+
+    /**
+     * @param products the products, in any order; products with a duplicate barcode are ignored
+     */
+    public ProductTable(List<Product> products) {
+        this(build(products));
+    }
+
+    private static Builder build(List<Product> products) {
+        Builder builder = new Builder();
+        for (Product product : products) {
+            builder.add(product.getBarcode(), product.getTitle(), product.getPrice());
+        }
+        return builder;
+    }
+
+    private ProductTable(Builder builder) {
+        // order the rows by barcode, and drop the rows of duplicate barcodes
+        // products files are mostly in order of barcode already, which needs no sort
+        int[] order = IntStream.range(0, builder.size).toArray();
+        boolean sorted = true;
+        for (int row = 1; row < builder.size && sorted; row++) {
+            sorted = builder.barcodes[row - 1] <= builder.barcodes[row];
+        }
+        if (!sorted) {
+            order = IntStream.range(0, builder.size).boxed()
+                    .sorted((row1, row2) -> Long.compare(builder.barcodes[row1], builder.barcodes[row2]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        int size = 0;
+        for (int row : order) {
+            if (size == 0 || builder.barcodes[order[size - 1]] != builder.barcodes[row]) order[size++] = row;
+        }
+        this.barcodes = new long[size];
+        this.prices = new double[size];
+        this.titleOffsets = new int[size];
+        for (int id = 0; id < size; id++) {
+            this.barcodes[id] = builder.barcodes[order[id]];
+            this.prices[id] = builder.prices[order[id]];
+            this.titleOffsets[id] = builder.titleOffsets[order[id]];
+        }
+        this.titlePool = Arrays.copyOf(builder.titlePool, builder.poolSize);
+    }
+
+    /**
+     * imports the products from a text file with lines of format: barcode, title, price
+     * without creating any Product instance; corrupt lines are skipped
+     *
+     * @param productFile
+     * @return the table of the products
+     */
+    public static ProductTable importFromFile(Path productFile) {
+        Builder builder = new Builder();
+        try (BufferedReader reader = Files.newBufferedReader(productFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] splitText = line.split(", ");
+                try {
+                    builder.add(Long.parseLong(splitText[0]),
+                            splitText.length > 1 ? splitText[1] : null,
+                            splitText.length > 2 ? Double.parseDouble(splitText[2]) : 0);
+                } catch (NumberFormatException e) {
+                    // skip the corrupt line
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the products from " + productFile, e);
+        }
+        return new ProductTable(builder);
+    }
+
+    public int size() {
+        return this.barcodes.length;
+    }
+
+    /**
+     * @param barcode
+     * @return the product id of the barcode, or -1 if the barcode is not in the table
+     */
+    public int indexOf(long barcode) {
+        int id = Arrays.binarySearch(this.barcodes, barcode);
+        return id >= 0 ? id : -1;
+    }
+
+    public long getBarcode(int id) {
+        return this.barcodes[id];
+    }
+
+    public double getPrice(int id) {
+        return this.prices[id];
+    }
+
+    public void setPrice(int id, double price) {
+        this.prices[id] = price;
+    }
+
+    /**
+     * decodes the title of a product from the pool
+     *
+     * @param id
+     * @return a new String of the title, or null if the product has no title
+     */
+    public String getTitle(int id) {
+        int position = this.titleOffsets[id];
+        if (position < 0) return null;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = this.titlePool[position++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return new String(this.titlePool, position, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * creates a view of a product; changes to the view are not reflected in the table
+     *
+     * @param id
+     * @return a new Product instance with the barcode, title and price of the product id
+     */
+    public Product getProduct(int id) {
+        return new Product(this.barcodes[id], this.getTitle(id), this.prices[id]);
+    }
+
+    /**
+     * @param barcode
+     * @return a new view of the product, or null if the barcode is not in the table
+     */
+    public Product findProduct(long barcode) {
+        int id = this.indexOf(barcode);
+        return id < 0 ? null : this.getProduct(id);
+    }
+
+    /**
+     * @return the number of bytes of the pool of distinct titles
+     */
+    public int getTitlePoolSize() {
+        return this.titlePool.length;
+    }
+}
@@ -0,0 +1,66 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * accumulates purchase counts by barcode, without any ordering
+ * a purchase is merged in O(1) by a lookup of its barcode in a primitive index
+ * partial aggregates of different threads can be combined afterwards by addAll
+ */
+class PurchaseAggregate {
+    private final LongIndexMap index = new LongIndexMap();      // the position of each barcode in this.purchases
+    private final List<Purchase> purchases = new ArrayList<>();
+
+    /**
+     * representation invariant:
+     * index.get(purchases.get(i).getBarcode()) == i for all 0 <= i < purchases.size()
+     **/
+
+    /**
+     * adds the count of the purchase to the aggregated purchase of the same barcode,
+     * or takes the purchase itself as the aggregate if its barcode has not been added before
+     *
+     * @param purchase the purchase to be added, which may be updated by later additions
+     */
+    public void add(Purchase purchase) {
+        int position = this.index.putIfAbsent(purchase.getBarcode(), this.purchases.size());
+        if (position < 0) {
+            this.purchases.add(purchase);
+        } else {
+            this.purchases.get(position).addCount(purchase.getCount());
+        }
+    }
+
+    /**
+     * adds the count to the aggregated purchase of the barcode, if the barcode has been added before
+     *
+     * @return whether the barcode has been found
+     */
+    public boolean addCount(long barcode, int count) {
+        int position = this.index.get(barcode);
+        if (position < 0) return false;
+        this.purchases.get(position).addCount(count);
+        return true;
+    }
+
+    /**
+     * combines another aggregate into this one; the other aggregate shall not be used anymore afterwards
+     */
+    public void addAll(PurchaseAggregate other) {
+        for (Purchase purchase : other.purchases) {
+            this.add(purchase);
+        }
+    }
+
+    /**
+     * @return the aggregated purchases, in order of the first arrival of their barcode
+     */
+    public List<Purchase> getPurchases() {
+        return this.purchases;
+    }
+
+    public int size() {
+        return this.purchases.size();
+    }
+}
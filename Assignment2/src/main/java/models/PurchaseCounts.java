@@ -0,0 +1,99 @@
+package models;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * the aggregated purchase counts of all products of a ProductTable, in a struct-of-arrays representation
+ * the count of every product is held in a primitive array by product id, such that a merge costs a binary search
+ * and no object; Purchase instances are created on demand, as views that are not retained
+ */
+public class PurchaseCounts {
+    private final ProductTable products;
+    private final int[] counts;             // the aggregated count of each product id
+    private final BitSet purchased;         // the product ids that have been purchased (or returned)
+
+    /**
+     * representation invariant:
+     * counts[id] == 0 for all product ids that are not in purchased
+     **/
+
+    public PurchaseCounts(ProductTable products) {
+        this.products = products;
+        this.counts = new int[products.size()];
+        this.purchased = new BitSet(products.size());
+    }
+
+    /**
+     * adds a purchase amount to the count of the barcode
+     *
+     * @return whether the barcode has been found in the products
+     */
+    public boolean addCount(long barcode, int count) {
+        int id = this.products.indexOf(barcode);
+        if (id < 0) return false;
+        this.counts[id] += count;
+        this.purchased.set(id);
+        return true;
+    }
+
+    /**
+     * merges all purchases of a raw purchase file with lines of format: barcode, count
+     *
+     * @param purchaseFile
+     * @param parser       the parser of the file
+     */
+    public void importPurchasesFromFile(Path purchaseFile, PurchaseFileParser parser) {
+        parser.parse(purchaseFile, this::addCount);
+    }
+
+    public ProductTable getProducts() {
+        return this.products;
+    }
+
+    /**
+     * @return the number of products that have been purchased
+     */
+    public int size() {
+        return this.purchased.cardinality();
+    }
+
+    /**
+     * @return the aggregated count of the barcode, or 0 if it has not been purchased
+     */
+    public int getCount(long barcode) {
+        int id = this.products.indexOf(barcode);
+        return id < 0 ? 0 : this.counts[id];
+    }
+
+    public long getTotalCount() {
+        long totalCount = 0;
+        for (int count : this.counts) {
+            totalCount += count;
+        }
+        return totalCount;
+    }
+
+    /**
+     * creates a view of the aggregated purchase of a barcode; changes to the view are not reflected in the counts
+     *
+     * @return a new Purchase instance, or null if the barcode has not been purchased
+     */
+    public Purchase findPurchase(long barcode) {
+        int id = this.products.indexOf(barcode);
+        return id < 0 || !this.purchased.get(id) ? null : new Purchase(this.products.getProduct(id), this.counts[id]);
+    }
+
+    /**
+     * @return new views of all aggregated purchases, in order of barcode
+     */
+    public List<Purchase> getPurchases() {
+        List<Purchase> purchases = new ArrayList<>(this.size());
+        for (int id = this.purchased.nextSetBit(0); id >= 0; id = this.purchased.nextSetBit(id + 1)) {
+            purchases.add(new Purchase(this.products.getProduct(id), this.counts[id]));
+        }
+        return purchases;
+    }
+}
@@ -0,0 +1,354 @@
+package models;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * aggregation cube of purchase counts by day x city x store x product,
+ * built in one pass over a vault with the lay-out purchases/<yyyyMMdd>/<city>/<store>.txt
+ * (files directly in a day folder, like webshop.txt, are attributed to the city ONLINE)
+ * the cube keeps the counts of every day and store as a sparse column of product counts,
+ * and pre-aggregates these into rollups by day and city, and by day, each with its total volume
+ * revenues are calculated when they are queried, with the catalogue prices that are valid on the day of each cell,
+ * such that they follow any later price change
+ * queries over a range of days combine the cells of the coarsest rollup that matches the query,
+ * without reading any purchase file again
+ */
+public class PurchaseCube {
+    public static final String ONLINE = "online";        // the city of purchase files without a city folder
+
+    /**
+     * the aggregated product counts of a single cell of the cube, in order of product id
+     */
+    private static class Cell {
+        private final int[] productIds;
+        private final int[] counts;
+        private final long volume;
+        private final long epochDay;        // the day of the cell, of which the prices give its revenue
+
+        /**
+         * compresses the non-zero counts of the touched products into a cell, and resets them in the dense counts
+         */
+        Cell(int[] denseCounts, int[] touched, int numTouched, long epochDay) {
+            Arrays.sort(touched, 0, numTouched);
+            int size = 0;
+            for (int t = 0; t < numTouched; t++) {
+                if (denseCounts[touched[t]] != 0) size++;
+            }
+            this.productIds = new int[size];
+            this.counts = new int[size];
+            long volume = 0;
+            int i = 0;
+            for (int t = 0; t < numTouched; t++) {
+                int productId = touched[t];
+                if (denseCounts[productId] == 0) continue;
+                this.productIds[i] = productId;
+                this.counts[i++] = denseCounts[productId];
+                volume += denseCounts[productId];
+                denseCounts[productId] = 0;
+            }
+            this.volume = volume;
+            this.epochDay = epochDay;
+        }
+
+        /**
+         * @return the revenue of the cell at the prices of its day, as they are in the catalogue now
+         */
+        double revenue(ProductCatalogue catalogue) {
+            double revenue = 0.0;
+            for (int i = 0; i < this.productIds.length; i++) {
+                revenue += this.counts[i] * catalogue.getPrice(this.productIds[i], this.epochDay);
+            }
+            return revenue;
+        }
+    }
+
+    /**
+     * accumulates product counts into a dense array, remembering which products have been touched
+     */
+    private static class Accumulator {
+        private final int[] counts;
+        private final boolean[] isTouched;
+        private final int[] touched;
+        private int numTouched = 0;
+
+        Accumulator(int numProducts) {
+            this.counts = new int[numProducts];
+            this.isTouched = new boolean[numProducts];
+            this.touched = new int[numProducts];
+        }
+
+        void add(int productId, int count) {
+            this.counts[productId] += count;
+            if (!this.isTouched[productId]) {
+                this.isTouched[productId] = true;
+                this.touched[this.numTouched++] = productId;
+            }
+        }
+
+        void add(Cell cell) {
+            if (cell == null) return;
+            for (int i = 0; i < cell.productIds.length; i++) {
+                this.add(cell.productIds[i], cell.counts[i]);
+            }
+        }
+
+        /**
+         * @param epochDay the day of the cell
+         * @return the accumulated counts as a new cell; the accumulator is empty afterwards
+         */
+        Cell toCell(long epochDay) {
+            for (int t = 0; t < this.numTouched; t++) {
+                this.isTouched[this.touched[t]] = false;
+            }
+            Cell cell = new Cell(this.counts, this.touched, this.numTouched, epochDay);
+            this.numTouched = 0;
+            return cell;
+        }
+    }
+
+    private final ProductCatalogue catalogue;         // the products and their prices by product id
+    private final List<LocalDate> days;               // the days by day id, in chronological order
+    private final List<String> cities;                // the cities by city id, in alphabetical order
+    private final List<String> stores;                // the stores by store id, in order of city and name
+    private final int[] storeCity;                    // the city id of each store
+    private final Cell[] storeCells;                  // the cell of each (day, store) at [day * numStores + store], or null
+    private final Cell[] cityCells;                   // the rollup of each (day, city) at [day * numCities + city]
+    private final Cell[] dayCells;                    // the rollup of each day
+
+    /**
+     * representation invariants:
+     * 1. cityCells[d * numCities + c] is the sum of storeCells[d * numStores + s] over all stores s with storeCity[s] == c
+     * 2. dayCells[d] is the sum of cityCells[d * numCities + c] over all cities c
+     **/
+
+    /**
+     * builds the cube from all purchase files in the vault, in one pass over their content
+     *
+     * @param products the products that can be purchased at their current prices; purchases of other barcodes are ignored
+     * @param root     the root folder of the vault, with a folder per day
+     */
+    public PurchaseCube(List<Product> products, Path root) {
+        this(new ProductCatalogue(products), root);
+    }
+
+    /**
+     * builds the cube from all purchase files in the vault, in one pass over their content
+     * the revenue of every day is calculated with the prices that are valid on that day, at the time of the query
+     *
+     * @param catalogue the products that can be purchased; purchases of other barcodes are ignored
+     * @param root      the root folder of the vault, with a folder per day
+     */
+    public PurchaseCube(ProductCatalogue catalogue, Path root) {
+        this.catalogue = catalogue;
+
+        // first establish the dimensions from the folder structure
+        Map<Path, String[]> files = findPurchaseFiles(root);
+        SortedSet<LocalDate> daySet = new TreeSet<>();
+        SortedSet<String> citySet = new TreeSet<>();
+        SortedSet<String> storeSet = new TreeSet<>();
+        for (String[] coordinates : files.values()) {
+            daySet.add(LocalDate.parse(coordinates[0], DateTimeFormatter.BASIC_ISO_DATE));
+            citySet.add(coordinates[1]);
+            storeSet.add(coordinates[1] + "/" + coordinates[2]);
+        }
+        this.days = new ArrayList<>(daySet);
+        this.cities = new ArrayList<>(citySet);
+        this.stores = new ArrayList<>(storeSet);
+        this.storeCity = new int[this.stores.size()];
+        for (int store = 0; store < this.stores.size(); store++) {
+            String city = this.stores.get(store).substring(0, this.stores.get(store).indexOf('/'));
+            this.storeCity[store] = Collections.binarySearch(this.cities, city);
+        }
+
+        // then aggregate every file into the cell of its day and store
+        int numStores = this.stores.size(), numCities = this.cities.size();
+        this.storeCells = new Cell[this.days.size() * numStores];
+        Accumulator accumulator = new Accumulator(catalogue.size());
+        PurchaseFileParser parser = new PurchaseFileParser();
+        for (Map.Entry<Path, String[]> file : files.entrySet()) {
+            String[] coordinates = file.getValue();
+            int day = Collections.binarySearch(this.days, LocalDate.parse(coordinates[0], DateTimeFormatter.BASIC_ISO_DATE));
+            int store = Collections.binarySearch(this.stores, coordinates[1] + "/" + coordinates[2]);
+            int cellIndex = day * numStores + store;
+
+            accumulator.add(this.storeCells[cellIndex]);
+            parser.parse(file.getKey(), (barcode, count) -> {
+                int productId = catalogue.indexOf(barcode);
+                if (productId >= 0) accumulator.add(productId, count);
+            });
+            this.storeCells[cellIndex] = accumulator.toCell(this.days.get(day).toEpochDay());
+        }
+
+        // finally pre-aggregate the rollups by day and city, and by day
+        this.cityCells = new Cell[this.days.size() * numCities];
+        this.dayCells = new Cell[this.days.size()];
+        for (int day = 0; day < this.days.size(); day++) {
+            for (int city = 0; city < numCities; city++) {
+                for (int store = 0; store < numStores; store++) {
+                    if (this.storeCity[store] == city) accumulator.add(this.storeCells[day * numStores + store]);
+                }
+                this.cityCells[day * numCities + city] = accumulator.toCell(this.days.get(day).toEpochDay());
+            }
+            for (int city = 0; city < numCities; city++) {
+                accumulator.add(this.cityCells[day * numCities + city]);
+            }
+            this.dayCells[day] = accumulator.toCell(this.days.get(day).toEpochDay());
+        }
+    }
+
+    /**
+     * finds all purchase files in the vault, with their day, city and store
+     *
+     * @return the day, city and store of each purchase file, in a fixed order
+     */
+    private static Map<Path, String[]> findPurchaseFiles(Path root) {
+        Map<Path, String[]> files = new TreeMap<>();
+        for (Path path : PurchaseFileParser.findPurchaseFiles(root)) {
+            Path relative = root.relativize(path);
+            String fileName = relative.getFileName().toString();
+            String store = fileName.substring(0, fileName.length() - PurchaseFileParser.PURCHASE_FILE_EXTENSION.length());
+            String day = relative.getName(0).toString();
+            try {
+                LocalDate.parse(day, DateTimeFormatter.BASIC_ISO_DATE);
+            } catch (DateTimeParseException e) {
+                // files outside of a day folder do not belong to the cube
+                continue;
+            }
+            if (relative.getNameCount() == 2) {
+                files.put(path, new String[]{day, ONLINE, store});
+            } else if (relative.getNameCount() == 3) {
+                files.put(path, new String[]{day, relative.getName(1).toString(), store});
+            }
+        }
+        return files;
+    }
+
+    public List<LocalDate> getDays() {
+        return Collections.unmodifiableList(this.days);
+    }
+
+    public List<String> getCities() {
+        return Collections.unmodifiableList(this.cities);
+    }
+
+    /**
+     * @return the stores of the city, or of all cities if city == null
+     */
+    public List<String> getStores(String city) {
+        List<String> cityStores = new ArrayList<>();
+        for (String store : this.stores) {
+            if (city == null || store.startsWith(city + "/")) cityStores.add(store.substring(store.indexOf('/') + 1));
+        }
+        return cityStores;
+    }
+
+    /**
+     * selects the cells of the coarsest rollup that matches the query
+     *
+     * @param from  the first day of the query (inclusive), or null for the first day of the cube
+     * @param to    the last day of the query (inclusive), or null for the last day of the cube
+     * @param city  the city of the query, or null for all cities
+     * @param store the store of the query within the city, or null for all stores of the city
+     * @return the cells, or an empty list if the city or store is not in the cube
+     */
+    private List<Cell> selectCells(LocalDate from, LocalDate to, String city, String store) {
+        List<Cell> cells = new ArrayList<>();
+        int cityId = city == null ? -1 : Collections.binarySearch(this.cities, city);
+        int storeId = store == null ? -1 : Collections.binarySearch(this.stores, city + "/" + store);
+        if ((city != null && cityId < 0) || (store != null && storeId < 0)) return cells;
+
+        for (int day = 0; day < this.days.size(); day++) {
+            LocalDate date = this.days.get(day);
+            if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) continue;
+            if (store != null) {
+                Cell cell = this.storeCells[day * this.stores.size() + storeId];
+                if (cell != null) cells.add(cell);
+            } else if (city != null) {
+                cells.add(this.cityCells[day * this.cities.size() + cityId]);
+            } else {
+                cells.add(this.dayCells[day]);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * calculates the total purchase volume of a selection of the cube
+     * see selectCells for the parameters
+     */
+    public long getVolume(LocalDate from, LocalDate to, String city, String store) {
+        long volume = 0;
+        for (Cell cell : this.selectCells(from, to, city, store)) {
+            volume += cell.volume;
+        }
+        return volume;
+    }
+
+    /**
+     * calculates the total revenue of a selection of the cube
+     * see selectCells for the parameters
+     */
+    public double getRevenue(LocalDate from, LocalDate to, String city, String store) {
+        double revenue = 0.0;
+        for (Cell cell : this.selectCells(from, to, city, store)) {
+            revenue += cell.revenue(this.catalogue);
+        }
+        return revenue;
+    }
+
+    /**
+     * aggregates the purchases of a selection of the cube, e.g. of Rotterdam in the last week
+     * see selectCells for the parameters
+     *
+     * @return new purchase instances with the aggregated counts of every purchased product, ordered by barcode
+     */
+    public List<Purchase> getPurchases(LocalDate from, LocalDate to, String city, String store) {
+        Accumulator accumulator = new Accumulator(this.catalogue.size());
+        for (Cell cell : this.selectCells(from, to, city, store)) {
+            accumulator.add(cell);
+        }
+        // the cells may be of different days, so the total has no day of its own and is not priced
+        Cell total = accumulator.toCell(Long.MIN_VALUE);
+        List<Purchase> purchases = new ArrayList<>(total.productIds.length);
+        for (int i = 0; i < total.productIds.length; i++) {
+            purchases.add(new Purchase(this.catalogue.getProduct(total.productIds[i]), total.counts[i]));
+        }
+        purchases.sort(Comparator.comparing(Purchase::getBarcode));
+        return purchases;
+    }
+
+    /**
+     * finds the top n purchases of a selection of the cube
+     * see selectCells for the other parameters
+     *
+     * @param n      the number of top purchases
+     * @param ranker the comparator that orders the best purchase first
+     * @return the top n purchases, in order of the ranker
+     */
+    public List<Purchase> getTops(int n, Comparator<Purchase> ranker,
+                                  LocalDate from, LocalDate to, String city, String store) {
+        return TopRanking.select(n, ranker, this.getPurchases(from, to, city, store));
+    }
+
+    /**
+     * @return the revenue of every store (as city/store) on every day within the range, in chronological order
+     */
+    public SortedMap<LocalDate, Map<String, Double>> getRevenueByStorePerDay(LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, Map<String, Double>> revenues = new TreeMap<>();
+        for (int day = 0; day < this.days.size(); day++) {
+            LocalDate date = this.days.get(day);
+            if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) continue;
+            Map<String, Double> storeRevenues = new LinkedHashMap<>();
+            for (int store = 0; store < this.stores.size(); store++) {
+                Cell cell = this.storeCells[day * this.stores.size() + store];
+                if (cell != null) storeRevenues.put(this.stores.get(store), cell.revenue(this.catalogue));
+            }
+            revenues.put(date, storeRevenues);
+        }
+        return revenues;
+    }
+}
@@ -0,0 +1,221 @@
+package models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * parses raw purchase files with lines of format: barcode, count
+ * directly from the bytes of the file, without creating any Strings or other objects per line
+ * small files are read through a re-usable buffer, large files are memory mapped
+ * a parser keeps state while parsing a file, so every thread shall use its own parser
+ */
+public class PurchaseFileParser {
+    public static final String PURCHASE_FILE_EXTENSION = ".txt";    // the extension of the raw purchase files
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final long MAPPING_THRESHOLD = 1 << 22;       // files of at least this size are memory mapped
+    private static final long MAX_MAPPING_SIZE = 1 << 30;        // the size of the regions of a mapped file
+
+    /**
+     * receives the barcode and count of every purchase line that has been parsed
+     */
+    public interface PurchaseConsumer {
+        void accept(long barcode, int count);
+    }
+
+    private final ByteBuffer buffer;
+
+    /**
+     * finds all raw purchase files in a folder tree, such as the vault
+     *
+     * @param root the root folder
+     * @return the paths of all regular files with the purchase file extension, in order of path
+     */
+    public static List<Path> findPurchaseFiles(Path root) {
+        return findFiles(root, PURCHASE_FILE_EXTENSION);
+    }
+
+    /**
+     * finds all regular files with the extension in a folder tree
+     *
+     * @return the paths of the files, in order of path
+     */
+    static List<Path> findFiles(Path root, String extension) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(extension))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not traverse the folder at " + root, e);
+        }
+    }
+
+    // parse state of the current line, which may continue across buffer boundaries
+    private int field;              // 0 = barcode, 1 = count, 2 = any trailing fields
+    private long barcode;
+    private int count;
+    private boolean hasBarcode;
+    private boolean negative;
+    private boolean corrupt;
+    private long numLines;          // the number of valid lines of the current file
+    private long offset;            // the position in the file of the first byte in the current buffer
+    private long lineEnd;           // the position in the file after the latest newline
+
+    public PurchaseFileParser() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public PurchaseFileParser(int bufferSize) {
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * parses all purchase lines from the file
+     * lines without a barcode or with unexpected characters are skipped, a line without a count has count 0
+     *
+     * @param file     the path of the purchase file
+     * @param consumer receives the barcode and count of each valid line
+     * @return the number of valid lines that have been parsed
+     */
+    public long parse(Path file, PurchaseConsumer consumer) {
+        this.parse(file, 0L, true, consumer);
+        return this.numLines;
+    }
+
+    /**
+     * parses all purchase lines of a complete file from a position on, e.g. the lines that have been appended
+     * since the file was parsed before, including an unterminated last line
+     *
+     * @param file     the path of the purchase file
+     * @param position the position in the file after the last line that has been parsed before
+     * @param consumer receives the barcode and count of each valid line
+     * @return the number of valid lines that have been parsed; getLineEnd() gives the end of the parsed lines
+     */
+    public long parse(Path file, long position, PurchaseConsumer consumer) {
+        this.parse(file, position, true, consumer);
+        return this.numLines;
+    }
+
+    /**
+     * parses the complete purchase lines that have been appended to a file since an earlier position,
+     * e.g. to follow a file that is still being written
+     * an unterminated line at the end of the file is left for the next call
+     *
+     * @param file     the path of the purchase file
+     * @param position the position in the file after the last line that has been parsed before
+     * @param consumer receives the barcode and count of each valid line
+     * @return the position in the file after the last complete line
+     */
+    public long parseAppended(Path file, long position, PurchaseConsumer consumer) {
+        return this.parse(file, position, false, consumer);
+    }
+
+    /**
+     * @return the position in the file after the last line that has been parsed by the latest call,
+     * which includes an unterminated last line if the file has been parsed as complete
+     */
+    public long getLineEnd() {
+        return this.lineEnd;
+    }
+
+    /**
+     * @return the number of valid lines that have been parsed by the latest call
+     */
+    public long getNumLines() {
+        return this.numLines;
+    }
+
+    private long parse(Path file, long position, boolean complete, PurchaseConsumer consumer) {
+        this.resetLine();
+        this.numLines = 0;
+        this.lineEnd = position;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size - position >= MAPPING_THRESHOLD) {
+                // map the file region by region, the parse state carries over between the regions
+                for (long start = position; start < size; start += MAX_MAPPING_SIZE) {
+                    this.offset = start;
+                    this.parseBytes(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(MAX_MAPPING_SIZE, size - start)), consumer);
+                }
+                this.offset = size;
+            } else {
+                channel.position(position);
+                this.offset = position;
+                this.buffer.clear();
+                int numRead;
+                while ((numRead = channel.read(this.buffer)) >= 0) {
+                    this.buffer.flip();
+                    this.parseBytes(this.buffer, consumer);
+                    this.offset += numRead;
+                    this.buffer.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not parse purchases from " + file, e);
+        }
+
+        // the last line need not be terminated by a newline when the file is complete
+        if (complete) {
+            this.endLine(consumer);
+            this.lineEnd = this.offset;
+        }
+        return this.lineEnd;
+    }
+
+    /**
+     * parses the bytes from the position to the limit of the buffer
+     */
+    private void parseBytes(ByteBuffer bytes, PurchaseConsumer consumer) {
+        int start = bytes.position();
+        int limit = bytes.limit();
+        for (int i = start; i < limit; i++) {
+            byte b = bytes.get(i);
+            if (b >= '0' && b <= '9') {
+                if (this.field == 0) {
+                    this.barcode = 10 * this.barcode + (b - '0');
+                    this.hasBarcode = true;
+                } else if (this.field == 1) {
+                    this.count = 10 * this.count + (b - '0');
+                }
+            } else if (b == '\n') {
+                this.endLine(consumer);
+                this.lineEnd = this.offset + (i - start) + 1;
+            } else if (b == ',') {
+                if (this.field == 0 && !this.hasBarcode) this.corrupt = true;
+                if (this.field < 2) this.field++;
+            } else if (b == '-' && this.field == 1 && this.count == 0) {
+                this.negative = true;
+            } else if (b != ' ' && b != '\r' && b != '\t' && this.field < 2) {
+                this.corrupt = true;
+            }
+        }
+    }
+
+    private void endLine(PurchaseConsumer consumer) {
+        if (this.hasBarcode && !this.corrupt) {
+            consumer.accept(this.barcode, this.negative ? -this.count : this.count);
+            this.numLines++;
+        }
+        this.resetLine();
+    }
+
+    private void resetLine() {
+        this.field = 0;
+        this.barcode = 0L;
+        this.count = 0;
+        this.hasBarcode = false;
+        this.negative = false;
+        this.corrupt = false;
+    }
+}
@@ -0,0 +1,91 @@
+package models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * follows the raw purchase files in a folder tree, like 'tail -f',
+ * and submits every purchase line that is appended to any of the files into a streaming PurchaseTracker
+ * new files are picked up as they appear; the folder tree is scanned by polling,
+ * because a WatchService does not watch sub folders and may miss events on network drives
+ */
+public class PurchaseFileWatcher implements Closeable {
+    private final PurchaseTracker tracker;
+    private final Path root;
+    private final PurchaseFileParser parser = new PurchaseFileParser();
+    private final Map<Path, Long> positions = new HashMap<>();  // the position after the last parsed line of each file
+    private ScheduledExecutorService scheduler;
+    private long numSubmitted = 0;
+
+    /**
+     * @param tracker the tracker that receives the purchases; it shall be streaming
+     * @param root    the root folder of the purchase files
+     */
+    public PurchaseFileWatcher(PurchaseTracker tracker, Path root) {
+        this.tracker = tracker;
+        this.root = root;
+    }
+
+    /**
+     * scans the folder tree once, and submits all complete purchase lines that have been appended since the latest scan
+     * files that exist already at the first scan are read from their beginning
+     *
+     * @return the number of purchases that have been submitted by this scan
+     */
+    public synchronized long poll() {
+        long numSubmittedBefore = this.numSubmitted;
+        for (Path purchaseFile : PurchaseFileParser.findPurchaseFiles(this.root)) {
+            long position = this.positions.getOrDefault(purchaseFile, 0L);
+            try {
+                if (Files.size(purchaseFile) <= position) continue;
+            } catch (IOException e) {
+                // the file may have been removed in the mean time
+                continue;
+            }
+            this.positions.put(purchaseFile, this.parser.parseAppended(purchaseFile, position,
+                    (barcode, count) -> {
+                        if (this.tracker.submit(barcode, count)) this.numSubmitted++;
+                    }));
+        }
+        return this.numSubmitted - numSubmittedBefore;
+    }
+
+    /**
+     * starts polling the folder tree in the background
+     *
+     * @param intervalMillis the time between the start of consecutive scans
+     */
+    public synchronized void start(long intervalMillis) {
+        if (this.scheduler != null) return;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "purchase-file-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * stops polling in the background
+     */
+    @Override
+    public synchronized void close() {
+        if (this.scheduler == null) return;
+        this.scheduler.shutdown();
+        this.scheduler = null;
+    }
+
+    /**
+     * @return the total number of purchases that have been submitted
+     */
+    public synchronized long getNumSubmitted() {
+        return this.numSubmitted;
+    }
+}
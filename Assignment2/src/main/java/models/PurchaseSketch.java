@@ -0,0 +1,133 @@
+package models;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * an approximate aggregation of purchases in a small, fixed amount of memory, e.g. for real-time dashboards
+ * it combines a Count-Min sketch for the count of any barcode, a Space-Saving summary of the top sellers,
+ * and a HyperLogLog sketch of the number of distinct products that have been purchased
+ * sketches of the same configuration can be merged, e.g. those of all stores and days of a city in a week,
+ * and can be saved and loaded in a compact binary form
+ */
+public class PurchaseSketch {
+    private static final int MAGIC = 0x50534B31;     // "PSK1"
+
+    private final CountMinSketch counts;
+    private final SpaceSaving heavyHitters;
+    private final HyperLogLog distinctProducts;
+
+    /**
+     * creates a sketch with 4 x 1024 counters, 64 monitored barcodes and 2^12 distinct count registers,
+     * i.e. less than 40 kB
+     */
+    public PurchaseSketch() {
+        this(4, 1024, 64, 12);
+    }
+
+    /**
+     * @param depth           the number of rows of the Count-Min sketch
+     * @param width           the minimum number of counters per row of the Count-Min sketch
+     * @param numHeavyHitters the number of barcodes that are monitored as potential top sellers
+     * @param precision       the precision of the HyperLogLog sketch
+     */
+    public PurchaseSketch(int depth, int width, int numHeavyHitters, int precision) {
+        this(new CountMinSketch(depth, width), new SpaceSaving(numHeavyHitters), new HyperLogLog(precision));
+    }
+
+    private PurchaseSketch(CountMinSketch counts, SpaceSaving heavyHitters, HyperLogLog distinctProducts) {
+        this.counts = counts;
+        this.heavyHitters = heavyHitters;
+        this.distinctProducts = distinctProducts;
+    }
+
+    /**
+     * adds a purchase amount of a barcode to all sketches
+     */
+    public void add(long barcode, int count) {
+        this.counts.add(barcode, count);
+        this.heavyHitters.add(barcode, count);
+        if (count > 0) this.distinctProducts.add(barcode);
+    }
+
+    /**
+     * @return the estimated purchase count of the barcode, which is never too low if there have been no returns
+     */
+    public long estimateCount(long barcode) {
+        return this.counts.estimate(barcode);
+    }
+
+    /**
+     * @return the estimated number of distinct barcodes that have been purchased
+     */
+    public long estimateDistinctProducts() {
+        return this.distinctProducts.estimate();
+    }
+
+    public long getTotalCount() {
+        return this.counts.getTotalCount();
+    }
+
+    /**
+     * finds the estimated top sellers
+     * the count of a top seller is the lower of its Space-Saving count and its Count-Min estimate,
+     * since both are upper bounds of its true count
+     *
+     * @param n         the number of top sellers, at most the number of monitored barcodes
+     * @param catalogue the catalogue of the products of the barcodes
+     * @return new purchase instances of the top sellers with their estimated counts, in order of decreasing count
+     */
+    public List<Purchase> getTops(int n, ProductCatalogue catalogue) {
+        List<Purchase> tops = new ArrayList<>(n);
+        for (long barcode : this.heavyHitters.getTopBarcodes(this.heavyHitters.size())) {
+            Product product = catalogue.findProduct(barcode);
+            if (product == null) continue;
+            long count = Math.min(this.heavyHitters.getCount(barcode), this.counts.estimate(barcode));
+            tops.add(new Purchase(product, (int) count));
+        }
+        tops.sort((p1, p2) -> p1.getCount() != p2.getCount()
+                ? Integer.compare(p2.getCount(), p1.getCount())
+                : Long.compare(p1.getBarcode(), p2.getBarcode()));
+        return tops.size() > n ? new ArrayList<>(tops.subList(0, n)) : tops;
+    }
+
+    /**
+     * adds all purchases of another sketch of the same configuration to this sketch
+     */
+    public void merge(PurchaseSketch other) {
+        this.counts.merge(other.counts);
+        this.heavyHitters.merge(other.heavyHitters);
+        this.distinctProducts.merge(other.distinctProducts);
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        this.counts.writeTo(output);
+        this.heavyHitters.writeTo(output);
+        this.distinctProducts.writeTo(output);
+    }
+
+    public static PurchaseSketch readFrom(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) throw new IllegalStateException("Not a purchase sketch");
+        return new PurchaseSketch(CountMinSketch.readFrom(input), SpaceSaving.readFrom(input), HyperLogLog.readFrom(input));
+    }
+
+    public void save(Path file) {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            this.writeTo(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save the sketch into " + file, e);
+        }
+    }
+
+    public static PurchaseSketch load(Path file) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return readFrom(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the sketch from " + file, e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * binary checkpoint of the state of a PurchaseTracker: its products, its aggregated purchases,
+ * and the manifest of purchase files (with the position after their last merged line) that have been merged into the purchases
+ * lay-out, all numbers in big-endian order:
+ * - header:    magic "PTSNAP", version (short)
+ * - titles:    count (int), then per distinct title: length (int) and UTF-8 bytes
+ * - products:  count (int), then per product: barcode (long), price (double), title index (int, -1 for no title)
+ * - purchases: count (int), then per purchase: barcode (long), count (int)
+ * - manifest:  count (int), then per file: length (int) and UTF-8 bytes of the path, merged position (long)
+ * the snapshot is written into a temporary file that replaces the snapshot only when complete,
+ * such that a crash while writing leaves the previous snapshot intact
+ */
+class PurchaseSnapshot {
+    private static final byte[] MAGIC = "PTSNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final short VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final List<Product> products;
+    private final List<Purchase> purchases;
+    private final Map<String, Long> manifest;
+
+    PurchaseSnapshot(List<Product> products, List<Purchase> purchases, Map<String, Long> manifest) {
+        this.products = products;
+        this.purchases = purchases;
+        this.manifest = manifest;
+    }
+
+    List<Product> getProducts() {
+        return this.products;
+    }
+
+    List<Purchase> getPurchases() {
+        return this.purchases;
+    }
+
+    Map<String, Long> getManifest() {
+        return this.manifest;
+    }
+
+    /**
+     * writes the snapshot through a FileChannel
+     *
+     * @param snapshotFile the file to be (re)placed
+     */
+    void write(Path snapshotFile) {
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.put(MAGIC).putShort(VERSION);
+
+            // intern the titles, such that products with the same title share one entry in the pool
+            Map<String, Integer> titleIndices = new LinkedHashMap<>();
+            for (Product product : this.products) {
+                if (product.getTitle() != null) titleIndices.putIfAbsent(product.getTitle(), titleIndices.size());
+            }
+            buffer.putInt(titleIndices.size());
+            for (String title : titleIndices.keySet()) {
+                buffer = putString(channel, buffer, title);
+            }
+
+            buffer = ensureRemaining(channel, buffer, 4);
+            buffer.putInt(this.products.size());
+            for (Product product : this.products) {
+                buffer = ensureRemaining(channel, buffer, 20);
+                buffer.putLong(product.getBarcode()).putDouble(product.getPrice())
+                        .putInt(product.getTitle() == null ? -1 : titleIndices.get(product.getTitle()));
+            }
+
+            buffer = ensureRemaining(channel, buffer, 4);
+            buffer.putInt(this.purchases.size());
+            for (Purchase purchase : this.purchases) {
+                buffer = ensureRemaining(channel, buffer, 12);
+                buffer.putLong(purchase.getBarcode()).putInt(purchase.getCount());
+            }
+
+            buffer = ensureRemaining(channel, buffer, 4);
+            buffer.putInt(this.manifest.size());
+            for (Map.Entry<String, Long> file : this.manifest.entrySet()) {
+                buffer = putString(channel, buffer, file.getKey());
+                buffer = ensureRemaining(channel, buffer, 8);
+                buffer.putLong(file.getValue());
+            }
+
+            flush(channel, buffer);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the snapshot " + tempFile, e);
+        }
+
+        try {
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replace the snapshot " + snapshotFile, e);
+        }
+    }
+
+    private static ByteBuffer putString(FileChannel channel, ByteBuffer buffer, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer = ensureRemaining(channel, buffer, 4 + bytes.length);
+        return buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * flushes the buffer into the channel if it has less room than needed,
+     * and provides a larger buffer if even an empty buffer would be too small
+     */
+    private static ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) return buffer;
+        flush(channel, buffer);
+        return buffer.capacity() >= needed ? buffer : ByteBuffer.allocate(needed);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * reads a snapshot by memory mapping the file
+     *
+     * @param snapshotFile the snapshot to be read
+     * @return the snapshot, with the purchases referring to the products of the snapshot,
+     * or null if the file does not exist
+     */
+    static PurchaseSnapshot read(Path snapshotFile) {
+        if (!Files.isRegularFile(snapshotFile)) return null;
+
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(MAGIC, magic) || buffer.getShort() != VERSION) {
+                throw new IllegalStateException("Not a purchase snapshot of version " + VERSION + ": " + snapshotFile);
+            }
+
+            String[] titles = new String[buffer.getInt()];
+            for (int i = 0; i < titles.length; i++) {
+                titles[i] = getString(buffer);
+            }
+
+            int numProducts = buffer.getInt();
+            List<Product> products = new ArrayList<>(numProducts);
+            LongIndexMap productIndex = new LongIndexMap(numProducts);
+            for (int i = 0; i < numProducts; i++) {
+                long barcode = buffer.getLong();
+                double price = buffer.getDouble();
+                int titleIndex = buffer.getInt();
+                productIndex.put(barcode, products.size());
+                products.add(new Product(barcode, titleIndex < 0 ? null : titles[titleIndex], price));
+            }
+
+            int numPurchases = buffer.getInt();
+            List<Purchase> purchases = new ArrayList<>(numPurchases);
+            for (int i = 0; i < numPurchases; i++) {
+                long barcode = buffer.getLong();
+                int count = buffer.getInt();
+                int productIndexOfPurchase = productIndex.get(barcode);
+                // a purchase without a product cannot be restored, just like it could not be imported
+                if (productIndexOfPurchase >= 0) purchases.add(new Purchase(products.get(productIndexOfPurchase), count));
+            }
+
+            int numFiles = buffer.getInt();
+            Map<String, Long> manifest = new HashMap<>(2 * numFiles);
+            for (int i = 0; i < numFiles; i++) {
+                String path = getString(buffer);
+                manifest.put(path, buffer.getLong());
+            }
+
+            return new PurchaseSnapshot(products, purchases, manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the snapshot " + snapshotFile, e);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
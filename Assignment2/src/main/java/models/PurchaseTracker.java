@@ -2,18 +2,63 @@ package models;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 public class PurchaseTracker {
     private final String PURCHASE_FILE_PATTERN = ".*\\.txt";
+    private static final int BY_COUNT = 0, BY_REVENUE = 1;     // the rankings of the feed
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
 
     private OrderedList<Product> products;        // the reference list of all Products available from the SuperMarket chain
     private OrderedList<Purchase> purchases;      // the aggregated volumes of all purchases of all products across all branches
+    private final AggregationMode aggregationMode;
+    private final LongIndexMap purchaseIndex;     // the position of each barcode in this.purchases, in BARCODE_INDEX mode
+    private ProductCatalogue catalogue;           // the barcode index and price history of this.products
+    // the purchases of this.purchases by barcode while streaming, which concurrent feeds merge into under one shard lock
+    private volatile ConcurrentPurchaseTable feed;
+    private volatile PurchaseWindows windows;     // the rolling volumes and revenues of the streamed purchases, if any
+    private volatile Clock clock = Clock.systemUTC();     // the clock that times the streamed purchases
+    // the volumes and revenues of this.purchases in total and by city and store, maintained with every merge
+    private final RevenueLedger ledger = new RevenueLedger();
+    // the position after the last line of every raw purchase file that has been merged into this.purchases, by absolute path
+    private final Map<String, Long> mergedFiles = new ConcurrentHashMap<>();
+    // the byte-level parsers of the raw purchase files, one for each importing thread
+    private static final ThreadLocal<PurchaseFileParser> purchaseFileParsers =
+            ThreadLocal.withInitial(PurchaseFileParser::new);
+
+    /**
+     * the ways by which raw purchase data are merged into the aggregated purchases
+     */
+    public enum AggregationMode {
+        ORDERED_LIST,   // re-sorts the purchases before every file, and merges each purchase by binary search
+        BARCODE_INDEX   // merges each purchase by a hash lookup of its barcode, and sorts only once after the import
+    }
 
     public PurchaseTracker() {
+        this(AggregationMode.ORDERED_LIST);
+    }
+
+    public PurchaseTracker(AggregationMode aggregationMode) {
         products = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
         purchases = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        this.aggregationMode = aggregationMode;
+        this.purchaseIndex = new LongIndexMap();
+        this.catalogue = new ProductCatalogue(this.products);
+    }
+
+    public AggregationMode getAggregationMode() {
+        return this.aggregationMode;
     }
 
     /**
@@ -31,6 +76,7 @@ public class PurchaseTracker {
 
         // sort the products for efficient later retrieval
         this.products.sort();
+        this.reindexProducts();
 
         System.out.printf("Imported %d products from %s.\n", products.size(), resourceName);
     }
@@ -41,14 +87,307 @@ public class PurchaseTracker {
      * @param resourceName
      */
     public void importPurchasesFromVault(String resourceName) {
-        this.purchases.clear();
-
-        mergePurchasesFromFileRecursively(
-                PurchaseTracker.class.getResource(resourceName).getPath());
+        this.importPurchasesFromFolder(PurchaseTracker.class.getResource(resourceName).getPath());
 
         System.out.printf("Accumulated purchases of %d products from files in %s.\n", this.purchases.size(), resourceName);
     }
 
+    /**
+     * imports and merges all raw purchase data from the files in the folder and its sub folders
+     *
+     * @param folderPath
+     */
+    void importPurchasesFromFolder(String folderPath) {
+        this.clearPurchases();
+
+        mergePurchasesFromFileRecursively(folderPath);
+
+        if (this.aggregationMode == AggregationMode.BARCODE_INDEX) {
+            // the purchases have been merged in order of arrival, so sort them once for showTops and showTotals
+            this.purchases.sort();
+            this.reindexPurchases();
+        }
+    }
+
+    /**
+     * imports and merges all raw purchase data of all branches from the hierarchical file structure of the vault,
+     * parsing the files concurrently with one thread per available processor
+     * the resulting purchases are identical to the purchases of importPurchasesFromVault, sorted by barcode
+     *
+     * @param resourceName
+     */
+    public void importPurchasesFromVaultInParallel(String resourceName) {
+        this.importPurchasesFromVaultInParallel(resourceName, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * imports and merges all raw purchase data of all branches from the hierarchical file structure of the vault,
+     * parsing the files concurrently on a dedicated ForkJoinPool
+     * every worker accumulates the files of its share into its own barcode aggregate,
+     * and the aggregates are combined at the end, such that no locking is needed while parsing
+     *
+     * @param resourceName
+     * @param parallelism  the number of threads to parse the files
+     */
+    public void importPurchasesFromVaultInParallel(String resourceName, int parallelism) {
+        int numFiles = this.importPurchasesFromFolderInParallel(
+                Paths.get(PurchaseTracker.class.getResource(resourceName).getPath()), parallelism);
+
+        System.out.printf("Accumulated purchases of %d products from %d files in %s.\n",
+                this.purchases.size(), numFiles, resourceName);
+    }
+
+    /**
+     * imports and merges all raw purchase data from the files in the folder and its sub folders,
+     * parsing the files concurrently on a dedicated ForkJoinPool
+     *
+     * @param root        the root folder of the raw purchase files
+     * @param parallelism the number of threads to parse the files
+     * @return the number of files that have been imported
+     */
+    int importPurchasesFromFolderInParallel(Path root, int parallelism) {
+        this.clearPurchases();
+
+        List<Path> purchaseFiles = PurchaseFileParser.findPurchaseFiles(root);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        PurchaseAggregate aggregate;
+        try {
+            aggregate = pool.submit(() -> purchaseFiles.parallelStream().collect(
+                    PurchaseAggregate::new,
+                    (partial, purchaseFile) -> this.aggregatePurchasesFromFile(partial, purchaseFile),
+                    PurchaseAggregate::addAll)
+            ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing purchases from " + root);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        this.purchases.addAll(aggregate.getPurchases());
+        this.purchases.sort();
+        if (this.aggregationMode == AggregationMode.BARCODE_INDEX) this.reindexPurchases();
+        return purchaseFiles.size();
+    }
+
+    /**
+     * imports the raw purchase data from the purchaseFile and adds the purchase amounts to the aggregate
+     * a Purchase instance is only created for the first purchase of a barcode
+     */
+    private void aggregatePurchasesFromFile(PurchaseAggregate aggregate, Path purchaseFile) {
+        RevenueLedger.Batch batch = new RevenueLedger.Batch();
+        PurchaseFileParser parser = purchaseFileParsers.get();
+        parser.parse(purchaseFile, (barcode, count) -> {
+            batch.accept(barcode, count);
+            if (!aggregate.addCount(barcode, count)) {
+                Product product = this.findProduct(barcode);
+                if (product != null) aggregate.add(new Purchase(product, count));
+            }
+        });
+        this.recordMergedFile(purchaseFile, parser.getLineEnd());
+        this.postRevenues(purchaseFile, batch);
+    }
+
+    /**
+     * builds an aggregation cube by day, city, store and product from the purchase files in the vault
+     * the products shall have been imported before
+     * the revenues of the cube are priced when queried, so they follow the price changes in the catalogue
+     *
+     * @param resourceName
+     * @return the cube, which is independent of the aggregated purchases of this tracker
+     */
+    public PurchaseCube buildCubeFromVault(String resourceName) {
+        PurchaseCube cube = new PurchaseCube(this.catalogue,
+                Paths.get(PurchaseTracker.class.getResource(resourceName).getPath()));
+        System.out.printf("Built a purchase cube of %d days and %d cities from %s.\n",
+                cube.getDays().size(), cube.getCities().size(), resourceName);
+        return cube;
+    }
+
+    /**
+     * saves the products, the aggregated purchases and the list of merged purchase files into a binary snapshot,
+     * such that a restarted tracker can restore its state without parsing the vault again
+     *
+     * @param snapshotFile
+     */
+    public synchronized void saveSnapshot(Path snapshotFile) {
+        new PurchaseSnapshot(this.products, this.purchases, this.mergedFiles).write(snapshotFile);
+        System.out.printf("Saved %d products and purchases of %d products into %s.\n",
+                this.products.size(), this.purchases.size(), snapshotFile);
+    }
+
+    /**
+     * replaces the products and the aggregated purchases by the state of a binary snapshot, and stops any streaming
+     *
+     * @param snapshotFile
+     * @return whether the snapshot has been loaded; returns false if the snapshot file does not exist
+     */
+    public synchronized boolean loadSnapshot(Path snapshotFile) {
+        PurchaseSnapshot snapshot = PurchaseSnapshot.read(snapshotFile);
+        if (snapshot == null) return false;
+
+        this.products.clear();
+        this.products.addAll(snapshot.getProducts());
+        this.products.sort();
+        this.reindexProducts();
+
+        this.clearPurchases();
+        this.purchases.addAll(snapshot.getPurchases());
+        this.purchases.sort();
+        this.reindexPurchases();
+        this.mergedFiles.putAll(snapshot.getManifest());
+        // the snapshot does not tell the stores and days of the purchases, so they only count in the totals, at base prices
+        RevenueLedger.Batch batch = new RevenueLedger.Batch();
+        for (Purchase purchase : this.purchases) {
+            batch.accept(purchase.getBarcode(), purchase.getCount());
+        }
+        this.ledger.post(null, null, RevenueLedger.UNDATED, batch, this.catalogue);
+
+        System.out.printf("Loaded %d products and purchases of %d products from %s.\n",
+                this.products.size(), this.purchases.size(), snapshotFile);
+        return true;
+    }
+
+    /**
+     * merges only the raw purchase data that have been added to the vault since the purchases were imported,
+     * or since the snapshot that the purchases were loaded from was saved
+     * new files are merged completely, and of grown files only the appended lines are merged
+     * if a merged file has shrunk or disappeared, its earlier contribution cannot be taken out,
+     * so then the whole vault is imported again
+     * any streaming is stopped
+     *
+     * @param resourceName
+     * @return the number of files that have been merged
+     */
+    public int importPurchasesFromVaultIncrementally(String resourceName) {
+        int numMergedFiles = this.importPurchasesIncrementally(
+                Paths.get(PurchaseTracker.class.getResource(resourceName).getPath()));
+
+        System.out.printf("Merged %d new or grown purchase files into purchases of %d products from %s.\n",
+                numMergedFiles, this.purchases.size(), resourceName);
+        return numMergedFiles;
+    }
+
+    /**
+     * merges only the raw purchase data that have been added to the folder since they were merged before
+     * the files are taken as complete, including an unterminated last line; use a PurchaseFileWatcher to follow
+     * files that are still being written
+     *
+     * @param root the root folder of the raw purchase files
+     * @return the number of files that have been merged
+     */
+    synchronized int importPurchasesIncrementally(Path root) {
+        List<Path> purchaseFiles = PurchaseFileParser.findPurchaseFiles(root);
+
+        Map<String, Long> newFileSizes = new HashMap<>();
+        Set<String> remainingFiles = new HashSet<>(this.mergedFiles.keySet());
+        for (Path purchaseFile : purchaseFiles) {
+            String key = purchaseFile.toAbsolutePath().toString();
+            remainingFiles.remove(key);
+            long size;
+            try {
+                size = Files.size(purchaseFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not access the purchase file " + purchaseFile, e);
+            }
+            Long mergedSize = this.mergedFiles.get(key);
+            if (mergedSize != null && size < mergedSize) remainingFiles.add(key);
+            else if (mergedSize == null || size > mergedSize) newFileSizes.put(key, size);
+        }
+
+        if (!remainingFiles.isEmpty()) {
+            System.out.printf("%d purchase files have shrunk or disappeared, importing all purchases again.\n",
+                    remainingFiles.size());
+            this.importPurchasesFromFolder(root.toString());
+            return purchaseFiles.size();
+        }
+
+        // the index is not maintained in ORDERED_LIST mode, and the rankings would not follow the merges
+        this.reindexPurchases();
+        this.feed = null;
+        PurchaseFileParser parser = purchaseFileParsers.get();
+        for (Map.Entry<String, Long> newFile : newFileSizes.entrySet()) {
+            Path purchaseFile = Paths.get(newFile.getKey());
+            Long mergedSize = this.mergedFiles.get(newFile.getKey());
+            RevenueLedger.Batch batch = new RevenueLedger.Batch();
+            // merge the lines that have been appended since the file was merged, or all of a new file
+            parser.parse(purchaseFile, mergedSize == null ? 0L : mergedSize, this.mergingByIndex(batch));
+            this.mergedFiles.put(newFile.getKey(), parser.getLineEnd());
+            this.postRevenues(purchaseFile, batch);
+        }
+        this.purchases.sort();
+        this.reindexPurchases();
+        return newFileSizes.size();
+    }
+
+    /**
+     * aggregates all raw purchase data of the vault into a compact struct-of-arrays representation,
+     * which takes a fraction of the heap of the Purchase instances of this tracker
+     * the products shall have been imported before
+     *
+     * @param resourceName
+     * @return the aggregated counts, which are independent of the aggregated purchases of this tracker
+     */
+    public PurchaseCounts countPurchasesFromVault(String resourceName) {
+        PurchaseCounts counts = new PurchaseCounts(new ProductTable(this.products));
+        for (Path purchaseFile : PurchaseFileParser.findPurchaseFiles(Paths.get(PurchaseTracker.class.getResource(resourceName).getPath()))) {
+            counts.importPurchasesFromFile(purchaseFile, purchaseFileParsers.get());
+        }
+        return counts;
+    }
+
+    /**
+     * converts all raw purchase files of the vault into columnar files in a mirrored folder tree,
+     * which can be imported much faster than the raw files, see ColumnarPurchaseFile
+     *
+     * @param resourceName the vault of the raw purchase files
+     * @param columnRoot   the root folder of the columnar files
+     * @return the number of files that have been converted
+     */
+    public int convertVaultToColumnar(String resourceName, Path columnRoot) {
+        int numFiles = ColumnarPurchaseFile.convertVault(
+                Paths.get(PurchaseTracker.class.getResource(resourceName).getPath()), columnRoot);
+        System.out.printf("Converted %d purchase files from %s into %s.\n", numFiles, resourceName, columnRoot);
+        return numFiles;
+    }
+
+    /**
+     * imports and merges all purchases from the columnar files in the folder and its sub folders
+     *
+     * @param columnRoot the root folder of the columnar files
+     * @return the number of files that have been imported
+     */
+    public int importPurchasesFromColumnarFolder(Path columnRoot) {
+        return this.importPurchasesFromColumnarFolder(columnRoot, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * imports and merges the purchases of a range of barcodes from the columnar files in the folder and its sub folders
+     * the purchases are aggregated straight from the compressed blocks, and blocks outside of the range are skipped
+     *
+     * @param columnRoot  the root folder of the columnar files
+     * @param fromBarcode the lowest barcode of the range (inclusive)
+     * @param toBarcode   the highest barcode of the range (exclusive)
+     * @return the number of files that have been imported
+     */
+    public synchronized int importPurchasesFromColumnarFolder(Path columnRoot, long fromBarcode, long toBarcode) {
+        this.clearPurchases();
+
+        List<Path> columnFiles = PurchaseFileParser.findFiles(columnRoot, ColumnarPurchaseFile.EXTENSION);
+        for (Path columnFile : columnFiles) {
+            RevenueLedger.Batch batch = new RevenueLedger.Batch();
+            ColumnarPurchaseFile.scan(columnFile, fromBarcode, toBarcode, this.mergingByIndex(batch));
+            this.postRevenues(columnFile, batch);
+        }
+        this.purchases.sort();
+        this.reindexPurchases();
+        return columnFiles.size();
+    }
+
     /**
      * traverses the purchases vault recursively and processes every data file that it finds
      *
@@ -96,20 +435,304 @@ public class PurchaseTracker {
         }
     }
 
+    /**
+     * shows the top n purchases of all raw purchase data in the vault, without aggregating them in this.purchases
+     * the purchases are sorted and merged externally, in temporary files, such that their heap use is capped
+     *
+     * @param resourceName   the vault of the raw purchase files
+     * @param n              the number of top purchases to be shown
+     * @param subTitle       some title text that clarifies the list
+     * @param ranker         the comparator used to rank the purchases
+     * @param memoryCapBytes the heap memory that may be used for sorting and merging
+     */
+    public void showTopsFromVaultExternally(String resourceName, int n, String subTitle,
+                                            Comparator<Purchase> ranker, long memoryCapBytes) {
+        List<Purchase> tops;
+        Path tempFolder;
+        try {
+            tempFolder = Files.createTempDirectory("purchases-");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a folder for the runs", e);
+        }
+        try (ExternalPurchaseSorter sorter = new ExternalPurchaseSorter(this.catalogue, tempFolder, memoryCapBytes)) {
+            for (Path purchaseFile : PurchaseFileParser.findPurchaseFiles(
+                    Paths.get(PurchaseTracker.class.getResource(resourceName).getPath()))) {
+                sorter.addFile(purchaseFile);
+            }
+            tops = sorter.getTops(n, ranker);
+        } finally {
+            tempFolder.toFile().delete();
+        }
+
+        System.out.printf("%d purchases with %s:\n", n, subTitle);
+        for (int rank = 0; rank < tops.size(); rank++) {
+            System.out.printf("%d: %s\n", rank + 1, tops.get(rank));
+        }
+    }
+
+    /**
+     * sketches the raw purchase data of every store on every day in the vault, as an alternative to exact aggregation
+     * every sketch takes a small, fixed amount of memory, and the sketches can be merged into any combination
+     * of stores and days, e.g. all stores of a city in a week
+     *
+     * @param resourceName
+     * @return the sketch of every purchase file, by its path within the vault without the .txt extension,
+     * e.g. 20211001/Amsterdam/vijzelstraat
+     */
+    public Map<String, PurchaseSketch> sketchPurchasesFromVault(String resourceName) {
+        Path root = Paths.get(PurchaseTracker.class.getResource(resourceName).getPath());
+        Map<String, PurchaseSketch> sketches = new TreeMap<>();
+        PurchaseFileParser parser = purchaseFileParsers.get();
+        for (Path purchaseFile : PurchaseFileParser.findPurchaseFiles(root)) {
+            PurchaseSketch sketch = new PurchaseSketch();
+            parser.parse(purchaseFile, (barcode, count) -> {
+                if (this.catalogue.indexOf(barcode) >= 0) sketch.add(barcode, count);
+            });
+            String name = root.relativize(purchaseFile).toString().replace(File.separatorChar, '/');
+            sketches.put(name.substring(0, name.length() - PurchaseFileParser.PURCHASE_FILE_EXTENSION.length()), sketch);
+        }
+
+        System.out.printf("Sketched purchases of %d files in %s.\n", sketches.size(), resourceName);
+        return sketches;
+    }
+
+    /**
+     * shows the estimated top sellers, the estimated number of distinct products and the total volume of a sketch
+     *
+     * @param n      the number of top sellers to be shown
+     * @param sketch the (merged) sketch of the purchases
+     */
+    public void showApproximateStatistics(int n, PurchaseSketch sketch) {
+        System.out.printf("%d purchases with best estimated sales volume:\n", n);
+        List<Purchase> tops = sketch.getTops(n, this.catalogue);
+        for (int rank = 0; rank < tops.size(); rank++) {
+            System.out.printf("%d: %s\n", rank + 1, tops.get(rank));
+        }
+        System.out.printf("Estimated number of distinct products purchased: %d\n", sketch.estimateDistinctProducts());
+        System.out.printf("Total volume of all purchases: %d\n", sketch.getTotalCount());
+    }
+
     /**
      * shows total volume and total revenue sales statistics
+     * the totals are maintained incrementally with every merge and price change, so they are shown in O(1)
      */
     public void showTotals() {
-        // calculate the total revenue of all the purchases combined
-        double totalRevenue = 0;
+        System.out.printf("Total volume of all purchases: %d\n",
+                this.ledger.getTotalCount());
+        System.out.printf("Total revenue from all purchases: %.2f\n",
+                this.ledger.getTotalRevenue());
+    }
+
+    /**
+     * shows the volume and revenue subtotals of every city and of every store in the city
+     */
+    public void showSubtotals() {
+        for (String city : this.ledger.getCities()) {
+            System.out.printf("%s: volume %d, revenue %.2f\n",
+                    city, this.ledger.getCityCount(city), this.ledger.getCityRevenue(city));
+            for (String store : this.ledger.getStores(city)) {
+                System.out.printf("  %s: volume %d, revenue %.2f\n",
+                        store, this.ledger.getStoreCount(city, store), this.ledger.getStoreRevenue(city, store));
+            }
+        }
+    }
+
+    /**
+     * changes the base price of a product in the catalogue, which is valid before its first dated price change,
+     * and rebooks the purchases of the affected days in the ledger by count * delta, without recomputing them
+     * the windows and the cubes price their counts through the catalogue when queried, so they follow the change as well
+     *
+     * @param barcode
+     * @param price   the new price
+     * @return whether the barcode is a known product
+     */
+    public synchronized boolean changePrice(long barcode, double price) {
+        if (!this.catalogue.changePrice(barcode, price)) return false;
+        if (this.feed != null) this.feed.invalidateRanking(BY_REVENUE);
+        this.ledger.changePrice(barcode, this.catalogue);
+        return true;
+    }
+
+    /**
+     * changes the price of a product in the catalogue from a given day on,
+     * and rebooks the purchases of the affected days in the ledger by count * delta, without recomputing them
+     * price changes shall go through the tracker rather than through getCatalogue(), such that the ledger follows them
+     *
+     * @param barcode
+     * @param effectiveFrom the first day of the new price
+     * @param price         the new price
+     * @return whether the barcode is a known product
+     */
+    public synchronized boolean changePrice(long barcode, LocalDate effectiveFrom, double price) {
+        if (!this.catalogue.changePrice(barcode, effectiveFrom, price)) return false;
+        this.ledger.changePrice(barcode, this.catalogue);
+        return true;
+    }
+
+    /**
+     * @return the incrementally maintained volumes and revenues of the purchases, in total and by city and store
+     */
+    public RevenueLedger getLedger() {
+        return this.ledger;
+    }
+
+    /**
+     * starts the streaming ingestion of purchases on top of the purchases that have been imported so far
+     * from now on, submitted purchases are merged in O(1) into the aggregated purchases through a ConcurrentPurchaseTable,
+     * such that feeds of different branches can submit concurrently, and only wait for each other on the same shard
+     * every shard maintains its top n purchases by count and by revenue with every submission
+     * the counts of this.purchases are updated in place under the shard locks, new barcodes are appended under this lock
+     * a later import of the vault stops the streaming
+     *
+     * @param n the number of top purchases to be maintained for each ranking
+     */
+    public synchronized void startStreaming(int n) {
+        this.reindexPurchases();
+        ConcurrentPurchaseTable feed = new ConcurrentPurchaseTable();
         for (Purchase purchase : this.purchases) {
-            totalRevenue += purchase.getCount() * purchase.getProduct().getPrice();
+            feed.add(purchase);
         }
+        feed.startRankings(n, List.of(Purchase::getCount, PurchaseTracker::revenueOf));
+        this.feed = feed;
+    }
 
-        System.out.printf("Total volume of all purchases: %.0f\n",
-                purchases.aggregate(Purchase::getCount));
-        System.out.printf("Total revenue from all purchases: %.2f\n",
-                totalRevenue);
+    /**
+     * starts maintaining the rolling volumes and revenues of the last hour, day and week per product,
+     * of all purchases that are submitted from now on
+     *
+     * @param clock the clock that times the submitted purchases, in the windows as well as in the ledger
+     * @return the windowed aggregation, which can also emit rollups periodically
+     */
+    public synchronized PurchaseWindows startWindows(Clock clock) {
+        this.clock = clock;
+        this.windows = new PurchaseWindows(this.catalogue, clock);
+        return this.windows;
+    }
+
+    /**
+     * @return the windowed aggregation of the submitted purchases, or null if it has not been started
+     */
+    public synchronized PurchaseWindows getWindows() {
+        return this.windows;
+    }
+
+    public boolean isStreaming() {
+        return this.feed != null;
+    }
+
+    /**
+     * merges another purchase into the aggregated purchases, while streaming
+     * the submitted instance is not retained by the tracker
+     *
+     * @param purchase the purchase to be merged
+     */
+    public void submit(Purchase purchase) {
+        this.submit(purchase.getProduct(), purchase.getCount());
+    }
+
+    /**
+     * merges another purchase into the aggregated purchases, while streaming; may be called concurrently
+     *
+     * @param barcode the barcode of the purchased product
+     * @param count   the purchased amount
+     * @return whether the purchase has been merged; returns false if the barcode is not a known product
+     */
+    public boolean submit(long barcode, int count) {
+        Product product = this.findProduct(barcode);
+        if (product == null) return false;
+        this.submit(product, count);
+        return true;
+    }
+
+    /**
+     * merges the purchase into its shard of the feed, which holds the lock of that shard only
+     * the ledger and the windows have their own locks, which are held just as briefly
+     * both book the purchase at the same time of the clock, and thereby at the same price
+     */
+    private void submit(Product product, int count) {
+        ConcurrentPurchaseTable feed = this.feed;
+        if (feed == null) throw new IllegalStateException("Purchases can only be submitted after startStreaming");
+
+        Purchase added = feed.merge(product, count);
+        if (added != null) {
+            // the barcode has not been purchased before
+            synchronized (this) {
+                if (this.feed == feed) {
+                    this.purchaseIndex.put(product.getBarcode(), this.purchases.size());
+                    this.purchases.add(added);
+                }
+            }
+        }
+        long timeMillis = this.clock.millis();
+        PurchaseWindows windows = this.windows;
+        if (windows != null) windows.add(product.getBarcode(), count, timeMillis);
+        this.ledger.post(null, null, Math.floorDiv(timeMillis, DAY_MILLIS), product.getBarcode(), count, this.catalogue);
+    }
+
+    /**
+     * @return the live top n purchases by count, in order of decreasing count
+     */
+    public List<Purchase> getLiveTopsByCount() {
+        return this.liveTops(BY_COUNT);
+    }
+
+    /**
+     * @return the live top n purchases by revenue, in order of decreasing revenue
+     */
+    public List<Purchase> getLiveTopsByRevenue() {
+        return this.liveTops(BY_REVENUE);
+    }
+
+    private List<Purchase> liveTops(int ranking) {
+        ConcurrentPurchaseTable feed = this.feed;
+        if (feed == null) throw new IllegalStateException("Live tops are only available after startStreaming");
+        return feed.getRankedTops(ranking);
+    }
+
+    /**
+     * @return the total count of all purchases, as maintained by the ledger
+     */
+    public long getTotalCount() {
+        return this.ledger.getTotalCount();
+    }
+
+    /**
+     * @return the total revenue of all purchases, as maintained by the ledger
+     */
+    public double getTotalRevenue() {
+        return this.ledger.getTotalRevenue();
+    }
+
+    /**
+     * shows the live top purchases by count and by revenue, and the totals of the ledger, while streaming
+     */
+    public synchronized void showLiveStatistics() {
+        System.out.printf("%d purchases with best sales volume:\n", this.feed.getNumTops());
+        List<Purchase> tops = this.getLiveTopsByCount();
+        for (int rank = 0; rank < tops.size(); rank++) {
+            System.out.printf("%d: %s\n", rank + 1, tops.get(rank));
+        }
+        System.out.printf("%d purchases with best sales revenue:\n", this.feed.getNumTops());
+        tops = this.getLiveTopsByRevenue();
+        for (int rank = 0; rank < tops.size(); rank++) {
+            System.out.printf("%d: %s\n", rank + 1, tops.get(rank));
+        }
+        this.showTotals();
+    }
+
+    private static double revenueOf(Purchase purchase) {
+        return purchase.getCount() * purchase.getProduct().getPrice();
+    }
+
+    /**
+     * removes all aggregated purchases, and stops any streaming
+     */
+    private synchronized void clearPurchases() {
+        this.purchases.clear();
+        this.purchaseIndex.clear();
+        this.mergedFiles.clear();
+        this.ledger.clear();
+        this.feed = null;
     }
 
     /**
@@ -143,32 +766,160 @@ public class PurchaseTracker {
      * @param filePath
      */
     private void mergePurchasesFromFile(String filePath) {
+        if (this.aggregationMode == AggregationMode.BARCODE_INDEX) {
+            this.mergePurchasesFromFileByIndex(filePath);
+            return;
+        }
         int originalNumPurchases = purchases.size();
 
         // create a temporary ordered list for the additional purchases, ordered by same comparator as the main list
         OrderedList<Purchase> newPurchases = new OrderedArrayList<>(this.purchases.getOrdening());
 
-        // re-sort the accumulated purchases for efficient searching
-        this.purchases.sort();
-
-        importItemsFromFile(newPurchases, filePath,
-                this::fromLine
+        RevenueLedger.Batch batch = new RevenueLedger.Batch();
+        PurchaseFileParser parser = purchaseFileParsers.get();
+        parser.parse(Paths.get(filePath), (barcode, count) -> {
+            Product product = this.findProduct(barcode);
+            if (product == null) return;
+            batch.accept(barcode, count);
+            newPurchases.add(new Purchase(product, count));
+        });
+        this.recordMergedFile(Paths.get(filePath), parser.getLineEnd());
+        // sort the additional purchases, and merge them with the accumulated purchases in a single linear pass
+        this.purchases.mergeAll(newPurchases,
+            // this binary operator will be used when an item needs to be merged with another item
+            (p1, p2) -> {
+                p1.addCount(p2.getCount());
+                return p1;
+            }
         );
-
-        for (Purchase purchase : newPurchases) {
-            this.purchases.merge(purchase,
-                // this binary operator will be used when an item needs to be merged with another item
-                (p1, p2) -> {
-                    p1.addCount(p2.getCount());
-                    return p1;
-                }
-            );
-        }
+        this.postRevenues(Paths.get(filePath), batch);
 
         int addedCount = purchases.size() - originalNumPurchases;
 //        System.out.printf("Merged %d, added %d new purchases from %s.\n", newPurchases.size() - addedCount, addedCount, filePath);
     }
 
+    /**
+     * imports another batch of raw purchase data from the filePath text file
+     * and merges each purchase amount in O(1) into this.purchases, by a lookup of its barcode in this.purchaseIndex
+     * new barcodes are appended to the unsorted section of this.purchases
+     * the file is parsed at byte level, and a Purchase instance is only created for the first purchase of a barcode
+     *
+     * @param filePath
+     */
+    private void mergePurchasesFromFileByIndex(String filePath) {
+        RevenueLedger.Batch batch = new RevenueLedger.Batch();
+        PurchaseFileParser parser = purchaseFileParsers.get();
+        parser.parse(Paths.get(filePath), this.mergingByIndex(batch));
+        this.recordMergedFile(Paths.get(filePath), parser.getLineEnd());
+        this.postRevenues(Paths.get(filePath), batch);
+    }
+
+    /**
+     * @return a consumer that merges every purchase by index, and also adds it to the batch for the ledger
+     */
+    private PurchaseFileParser.PurchaseConsumer mergingByIndex(RevenueLedger.Batch batch) {
+        return (barcode, count) -> {
+            batch.accept(barcode, count);
+            this.mergePurchaseByIndex(barcode, count);
+        };
+    }
+
+    /**
+     * posts the purchases of a file into the ledger, at the city, store and day of the file
+     */
+    private void postRevenues(Path purchaseFile, RevenueLedger.Batch batch) {
+        String[] location = RevenueLedger.locate(purchaseFile);
+        this.ledger.post(location[0], location[1], RevenueLedger.dayOf(purchaseFile), batch, this.catalogue);
+    }
+
+    /**
+     * merges a purchase amount in O(1) into this.purchases, by a lookup of its barcode in this.purchaseIndex
+     * a new barcode is appended to the unsorted section of this.purchases, unless it is not a known product
+     */
+    private void mergePurchaseByIndex(long barcode, int count) {
+        int index = this.purchaseIndex.get(barcode);
+        if (index >= 0) {
+            this.purchases.get(index).addCount(count);
+        } else {
+            // the barcode has not been purchased before
+            Product product = this.findProduct(barcode);
+            if (product == null) return;
+            this.purchaseIndex.put(barcode, this.purchases.size());
+            this.purchases.add(new Purchase(product, count));
+        }
+    }
+
+    /**
+     * records the position after the last line of a raw purchase file that has been merged, for incremental imports
+     * the imported files are complete, so this includes an unterminated last line;
+     * lines that are appended while or after the file was parsed are merged by the next incremental import
+     */
+    private void recordMergedFile(Path purchaseFile, long position) {
+        this.mergedFiles.put(purchaseFile.toAbsolutePath().toString(), position);
+    }
+
+    /**
+     * finds a product by its barcode, without creating any search item
+     *
+     * @param barcode
+     * @return the product, or null if no product with the barcode has been imported
+     */
+    public Product findProduct(long barcode) {
+        return this.catalogue.findProduct(barcode);
+    }
+
+    /**
+     * finds all products of which the barcode starts with the prefix, e.g. the company prefix of a manufacturer
+     * barcodes of any length are compared on their decimal digits, so "770835" also finds 9-digit barcodes like 770835501
+     * the products are found by one range query on the sorted products per barcode length,
+     * in O(log n + k) time for k matching products
+     *
+     * @param prefix the leading digits of the barcodes, at most 18
+     * @return the matching products, in order of barcode
+     * @throws IllegalArgumentException if the prefix is empty, too long, or not all digits
+     */
+    public Collection<Product> findProductsByBarcodePrefix(String prefix) {
+        if (!prefix.matches("\\d{1,18}")) {
+            throw new IllegalArgumentException("A barcode prefix shall have 1 to 18 digits, not '" + prefix + "'");
+        }
+        List<Product> matches = new ArrayList<>();
+        // barcodes have no leading zeros
+        if (prefix.charAt(0) == '0') return matches;
+
+        // a shorter barcode is smaller than a longer one, so the ranges of increasing length follow each other
+        long fromBarcode = Long.parseLong(prefix), scale = 1;
+        for (int length = prefix.length(); length <= 18; length++) {
+            matches.addAll(this.products.subRange(new Product(fromBarcode * scale), new Product((fromBarcode + 1) * scale)));
+            scale *= 10;
+        }
+        return matches;
+    }
+
+    /**
+     * rebuilds the catalogue after this.products have been replaced
+     * the prices of the products become the base prices of the catalogue, without any price changes
+     */
+    private void reindexProducts() {
+        this.catalogue = new ProductCatalogue(this.products);
+    }
+
+    /**
+     * @return the catalogue of the imported products, in which prices can be changed from a given day on
+     */
+    public ProductCatalogue getCatalogue() {
+        return this.catalogue;
+    }
+
+    /**
+     * rebuilds the barcode index after the positions in this.purchases have changed
+     */
+    private void reindexPurchases() {
+        this.purchaseIndex.clear();
+        for (int index = 0; index < this.purchases.size(); index++) {
+            this.purchaseIndex.put(this.purchases.get(index).getBarcode(), index);
+        }
+    }
+
     /**
      * helper method to create a scanner on a file and handle the exception
      *
@@ -190,14 +941,4 @@ public class PurchaseTracker {
     public List<Purchase> getPurchases() {
         return purchases;
     }
-
-    /**
-     * This method tries to create a purchase with the local products array
-     *
-     * @param textLine the line to be converted to a purchase instance
-     * @return the purchase if the creation was successful, and otherwise null
-     */
-    private Purchase fromLine(String textLine) {
-        return Purchase.fromLine(textLine, this.products);
-    }
 }
@@ -0,0 +1,380 @@
+package models;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * rolling purchase volumes and revenues per product over the last hour, day and week, updated as purchases stream in
+ * the purchases of every product are accumulated in ring buffers of time buckets in primitive arrays:
+ * a ring of 60 minute buckets for the last hour, and a ring of 168 hour buckets for the last day and week
+ * a purchase is added in O(1): buckets that have fallen out of a ring are cleared lazily when a product advances
+ * to a later bucket, which costs no more than one clear per elapsed bucket
+ * a window query merges the buckets of the window, and the total counts of all products are kept in an extra row
+ * the rings only hold rows for the products that have been purchased, which are allocated when their first purchase arrives
+ * the buckets only hold counts, which are priced when queried at the catalogue price of the (UTC) day of each bucket,
+ * such that revenues follow later price changes; the total revenue is the sum of the revenues of the product rows
+ * rollups of all windows can be emitted to a sink periodically
+ * times are in epoch milliseconds
+ */
+public class PurchaseWindows implements Closeable {
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final int INITIAL_ROWS = 16;
+    private static final int TOTAL_ROW = 0;        // the row of the totals of all products in every ring
+
+    /**
+     * the sliding windows, each of a number of buckets in one of the rings
+     */
+    public enum Window {
+        HOUR(0, 60),    // 60 minute buckets
+        DAY(1, 24),     // 24 hour buckets
+        WEEK(1, 168);   // 168 hour buckets
+
+        private final int ring;
+        private final int numBuckets;
+
+        Window(int ring, int numBuckets) {
+            this.ring = ring;
+            this.numBuckets = numBuckets;
+        }
+    }
+
+    /**
+     * a ring of time buckets for every row, which grows by a row at a time
+     */
+    private static class Ring {
+        private final long bucketMillis;
+        private final int size;
+        private long[] counts;                  // the count of bucket b of row r at r * size + floorMod(b, size)
+        private long[] latestBuckets;           // the latest bucket of each row
+        private int numRows = 0;
+
+        /**
+         * representation invariant:
+         * the slots of row r hold the buckets latestBuckets[r] - size + 1 .. latestBuckets[r],
+         * or zeros for those of the buckets that have received no purchases
+         **/
+
+        Ring(long bucketMillis, int size) {
+            this.bucketMillis = bucketMillis;
+            this.size = size;
+            this.counts = new long[INITIAL_ROWS * size];
+            this.latestBuckets = new long[INITIAL_ROWS];
+        }
+
+        /**
+         * @return the new row, without any purchases
+         */
+        int addRow() {
+            if (this.numRows == this.latestBuckets.length) {
+                this.counts = Arrays.copyOf(this.counts, 2 * this.counts.length);
+                this.latestBuckets = Arrays.copyOf(this.latestBuckets, 2 * this.latestBuckets.length);
+            }
+            this.latestBuckets[this.numRows] = Long.MIN_VALUE;
+            return this.numRows++;
+        }
+
+        /**
+         * @return whether the bucket of the time is still within the ring
+         */
+        boolean add(int row, long timeMillis, long count) {
+            long bucket = Math.floorDiv(timeMillis, this.bucketMillis);
+            long latest = this.latestBuckets[row];
+            if (bucket > latest) {
+                // clear the slots of the buckets that are passed, at most all slots of the row
+                for (long passed = Math.max(latest + 1, bucket - this.size + 1); passed <= bucket; passed++) {
+                    this.counts[this.slotOf(row, passed)] = 0;
+                }
+                this.latestBuckets[row] = bucket;
+            } else if (bucket <= latest - this.size) {
+                return false;
+            }
+            this.counts[this.slotOf(row, bucket)] += count;
+            return true;
+        }
+
+        /**
+         * merges the buckets of the numBuckets up to and including the bucket of the time
+         *
+         * @param catalogue the prices of the product
+         * @param id        the product id of the row, or -1 to merge the counts only
+         * @param sums      receives the count at index 0 and the revenue at index 1
+         */
+        void merge(int row, long timeMillis, int numBuckets, ProductCatalogue catalogue, int id, double[] sums) {
+            long bucket = Math.floorDiv(timeMillis, this.bucketMillis);
+            long latest = this.latestBuckets[row];
+            long from = Math.max(bucket - numBuckets + 1, latest - this.size + 1), to = Math.min(bucket, latest);
+            long count = 0;
+            double revenue = 0.0;
+            for (long merged = from; merged <= to; merged++) {
+                long bucketCount = this.counts[this.slotOf(row, merged)];
+                count += bucketCount;
+                if (bucketCount != 0 && id >= 0) {
+                    revenue += bucketCount * catalogue.getPrice(id, Math.floorDiv(merged * this.bucketMillis, DAY_MILLIS));
+                }
+            }
+            sums[0] = count;
+            sums[1] = revenue;
+        }
+
+        private int slotOf(int row, long bucket) {
+            return row * this.size + (int) Math.floorMod(bucket, (long) this.size);
+        }
+    }
+
+    /**
+     * the volumes and revenues of all products in a window that ends at a given time
+     */
+    public static class Rollup {
+        private final Window window;
+        private final long endMillis;
+        private final ProductCatalogue catalogue;
+        private final long[] counts;            // by product id, and the total at the end
+        private final double[] revenues;        // by product id, and the total at the end
+
+        private Rollup(Window window, long endMillis, ProductCatalogue catalogue, long[] counts, double[] revenues) {
+            this.window = window;
+            this.endMillis = endMillis;
+            this.catalogue = catalogue;
+            this.counts = counts;
+            this.revenues = revenues;
+        }
+
+        public Window getWindow() {
+            return this.window;
+        }
+
+        public long getEndMillis() {
+            return this.endMillis;
+        }
+
+        public long getTotalCount() {
+            return this.counts[this.catalogue.size()];
+        }
+
+        public double getTotalRevenue() {
+            return this.revenues[this.catalogue.size()];
+        }
+
+        /**
+         * @return the count of the barcode in the window, or 0 if the barcode is not in the catalogue
+         */
+        public long getCount(long barcode) {
+            int id = this.catalogue.indexOf(barcode);
+            return id < 0 ? 0 : this.counts[id];
+        }
+
+        /**
+         * @return the revenue of the barcode in the window, or 0 if the barcode is not in the catalogue
+         */
+        public double getRevenue(long barcode) {
+            int id = this.catalogue.indexOf(barcode);
+            return id < 0 ? 0.0 : this.revenues[id];
+        }
+
+        /**
+         * @return new purchase instances of all products with a non-zero count in the window, in order of product id
+         */
+        public List<Purchase> getPurchases() {
+            List<Purchase> purchases = new ArrayList<>();
+            for (int id = 0; id < this.catalogue.size(); id++) {
+                if (this.counts[id] != 0) purchases.add(new Purchase(this.catalogue.getProduct(id), (int) this.counts[id]));
+            }
+            return purchases;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s until %d: volume %d, revenue %.2f",
+                    this.window, this.endMillis, this.getTotalCount(), this.getTotalRevenue());
+        }
+    }
+
+    private final ProductCatalogue catalogue;
+    private final Clock clock;
+    private final Ring[] rings;
+    private final int[] rowsOfIds;                  // the row of each product id in every ring, or -1 if not purchased yet
+    private int[] idsOfRows = new int[INITIAL_ROWS];    // the product id of each row, after the total row
+    private int numRows;
+    private final double[] sums = new double[2];    // the result of the latest merge
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param catalogue the products and their prices
+     * @param clock     the clock that times the purchases without an explicit time, and the rollups
+     */
+    public PurchaseWindows(ProductCatalogue catalogue, Clock clock) {
+        this.catalogue = catalogue;
+        this.clock = clock;
+        this.rings = new Ring[]{
+                new Ring(MINUTE_MILLIS, Window.HOUR.numBuckets),
+                new Ring(HOUR_MILLIS, Window.WEEK.numBuckets)
+        };
+        this.rowsOfIds = new int[catalogue.size()];
+        Arrays.fill(this.rowsOfIds, -1);
+        for (Ring ring : this.rings) {
+            ring.addRow();
+        }
+        this.idsOfRows[TOTAL_ROW] = -1;
+        this.numRows = 1;
+    }
+
+    public PurchaseWindows(ProductCatalogue catalogue) {
+        this(catalogue, Clock.systemUTC());
+    }
+
+    /**
+     * adds a purchase at the current time of the clock
+     *
+     * @return whether the purchase has been added; returns false if the barcode is not a known product
+     * or if the purchase is older than every window
+     */
+    public boolean add(long barcode, int count) {
+        return this.add(barcode, count, this.clock.millis());
+    }
+
+    /**
+     * adds a purchase at a given time
+     * purchases that arrive late are added to the buckets of their time, as long as these are still within the rings
+     * a ring accepts a purchase if its bucket is within the latest buckets of the total row,
+     * which are at least as late as those of any product row
+     *
+     * @param barcode    the barcode of the purchased product
+     * @param count      the purchased amount
+     * @param timeMillis the time of the purchase in epoch milliseconds
+     * @return whether the purchase has been added to any window; returns false if the barcode is not a known product
+     * or if the purchase is older than every window
+     */
+    public synchronized boolean add(long barcode, int count, long timeMillis) {
+        int id = this.catalogue.indexOf(barcode);
+        if (id < 0) return false;
+        boolean added = false;
+        for (Ring ring : this.rings) {
+            if (!ring.add(TOTAL_ROW, timeMillis, count)) continue;
+            ring.add(this.rowOf(id), timeMillis, count);
+            added = true;
+        }
+        return added;
+    }
+
+    /**
+     * @return the row of the product id in every ring, which is added if the product has not been purchased before
+     */
+    private int rowOf(int id) {
+        int row = this.rowsOfIds[id];
+        if (row >= 0) return row;
+        for (Ring ring : this.rings) {
+            row = ring.addRow();
+        }
+        if (row == this.idsOfRows.length) this.idsOfRows = Arrays.copyOf(this.idsOfRows, 2 * row);
+        this.idsOfRows[row] = id;
+        this.rowsOfIds[id] = row;
+        this.numRows = row + 1;
+        return row;
+    }
+
+    /**
+     * @return the count of the barcode in the window that ends at the time, or 0 if the barcode is not a known product
+     */
+    public synchronized long getCount(long barcode, Window window, long endMillis) {
+        int id = this.catalogue.indexOf(barcode);
+        if (id < 0 || this.rowsOfIds[id] < 0) return 0;
+        this.rings[window.ring].merge(this.rowsOfIds[id], endMillis, window.numBuckets, this.catalogue, -1, this.sums);
+        return (long) this.sums[0];
+    }
+
+    /**
+     * @return the revenue of the barcode in the window that ends at the time, or 0 if the barcode is not a known product
+     */
+    public synchronized double getRevenue(long barcode, Window window, long endMillis) {
+        int id = this.catalogue.indexOf(barcode);
+        if (id < 0 || this.rowsOfIds[id] < 0) return 0.0;
+        this.rings[window.ring].merge(this.rowsOfIds[id], endMillis, window.numBuckets, this.catalogue, id, this.sums);
+        return this.sums[1];
+    }
+
+    /**
+     * @return the total count of all products in the window that ends at the time
+     */
+    public synchronized long getTotalCount(Window window, long endMillis) {
+        this.rings[window.ring].merge(TOTAL_ROW, endMillis, window.numBuckets, this.catalogue, -1, this.sums);
+        return (long) this.sums[0];
+    }
+
+    /**
+     * sums the revenues of the rows of all purchased products, which takes O(rows * buckets)
+     *
+     * @return the total revenue of all products in the window that ends at the time
+     */
+    public synchronized double getTotalRevenue(Window window, long endMillis) {
+        double revenue = 0.0;
+        for (int row = TOTAL_ROW + 1; row < this.numRows; row++) {
+            this.rings[window.ring].merge(row, endMillis, window.numBuckets, this.catalogue, this.idsOfRows[row], this.sums);
+            revenue += this.sums[1];
+        }
+        return revenue;
+    }
+
+    /**
+     * @return the volumes and revenues of all products in the window that ends at the time
+     */
+    public synchronized Rollup getRollup(Window window, long endMillis) {
+        int totalIndex = this.catalogue.size();
+        long[] counts = new long[totalIndex + 1];
+        double[] revenues = new double[totalIndex + 1];
+        for (int row = TOTAL_ROW + 1; row < this.numRows; row++) {
+            int id = this.idsOfRows[row];
+            this.rings[window.ring].merge(row, endMillis, window.numBuckets, this.catalogue, id, this.sums);
+            counts[id] = (long) this.sums[0];
+            revenues[id] = this.sums[1];
+            revenues[totalIndex] += this.sums[1];
+        }
+        this.rings[window.ring].merge(TOTAL_ROW, endMillis, window.numBuckets, this.catalogue, -1, this.sums);
+        counts[totalIndex] = (long) this.sums[0];
+        return new Rollup(window, endMillis, this.catalogue, counts, revenues);
+    }
+
+    /**
+     * emits the rollups of all windows that end at the current time of the clock
+     */
+    public void emitRollups(Consumer<Rollup> sink) {
+        long endMillis = this.clock.millis();
+        for (Window window : Window.values()) {
+            sink.accept(this.getRollup(window, endMillis));
+        }
+    }
+
+    /**
+     * starts emitting the rollups of all windows in the background
+     *
+     * @param intervalMillis the time between the start of consecutive emissions
+     * @param sink           receives the rollups, on the background thread
+     */
+    public synchronized void startRollups(long intervalMillis, Consumer<Rollup> sink) {
+        if (this.scheduler != null) return;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "purchase-window-rollups");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(() -> this.emitRollups(sink), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * stops emitting rollups in the background
+     */
+    @Override
+    public synchronized void close() {
+        if (this.scheduler == null) return;
+        this.scheduler.shutdown();
+        this.scheduler = null;
+    }
+}
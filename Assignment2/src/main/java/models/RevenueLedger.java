@@ -0,0 +1,340 @@
+package models;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * incrementally maintained purchase volumes and revenues, in total and by city and store
+ * every purchase is posted once, at the catalogue price of its product on the day of purchase, into a row per barcode and day,
+ * and a price change adjusts all revenues by count * delta instead of recomputing them: only the rows of the days
+ * of which the price has changed are rebooked, and a reverse index from each row to the stores that sold it
+ * gives the counts of which the store and city subtotals are adjusted, each in O(1)
+ * purchases that cannot be attributed to a store (e.g. from a snapshot, or streamed) only count in the total
+ * purchases of which the day is not known (e.g. from a snapshot) are booked at the base price
+ * all revenues are compensated sums, such that many small adjustments do not drift
+ */
+public class RevenueLedger {
+    public static final long UNDATED = Long.MIN_VALUE;     // the day of the purchases of an unknown day
+
+    /**
+     * the purchase counts of one purchase file or feed, by barcode, to be posted into the ledger at once
+     */
+    public static class Batch implements PurchaseFileParser.PurchaseConsumer {
+        private final LongIndexMap index = new LongIndexMap();      // the position of each barcode in the arrays
+        private long[] barcodes = new long[64];
+        private long[] counts = new long[64];
+        private int size = 0;
+
+        @Override
+        public void accept(long barcode, int count) {
+            int position = this.index.putIfAbsent(barcode, this.size);
+            if (position >= 0) {
+                this.counts[position] += count;
+                return;
+            }
+            if (this.size == this.barcodes.length) {
+                this.barcodes = Arrays.copyOf(this.barcodes, 2 * this.size);
+                this.counts = Arrays.copyOf(this.counts, 2 * this.size);
+            }
+            this.barcodes[this.size] = barcode;
+            this.counts[this.size++] = count;
+        }
+    }
+
+    // the purchased barcodes by day, by row
+    private final LongIndexMap rows = new LongIndexMap();           // the latest row of each barcode
+    private long[] rowDays = new long[64];                          // the epoch day of a row, or UNDATED
+    private double[] rowPrices = new double[64];                    // the price at which the revenues of a row are booked
+    private long[] rowCounts = new long[64];                        // the total count of a row
+    private int[] firstCells = new int[64];                         // the first cell of a row, or -1
+    private int[] nextRows = new int[64];                           // the next row of the same barcode, or -1
+    private int numRows = 0;
+
+    // the reverse index: the cells of (barcode, store), chained per barcode
+    private final LongIndexMap cells = new LongIndexMap();          // the cell of each (row << 32 | store)
+    private int[] cellStores = new int[256];
+    private long[] cellCounts = new long[256];
+    private int[] nextCells = new int[256];                         // the next cell of the same row, or -1
+    private int numCells = 0;
+
+    // the cities and stores, with their subtotals
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private final Map<String, Integer> storeIds = new HashMap<>();  // the store id of each "city/store"
+    private final List<String> cities = new ArrayList<>();
+    private final List<String> stores = new ArrayList<>();          // the "city/store" of each store id
+    private final List<Integer> storeCities = new ArrayList<>();    // the city id of each store id
+    private final List<CompensatedSum> cityRevenues = new ArrayList<>();
+    private final List<CompensatedSum> storeRevenues = new ArrayList<>();
+    private long[] cityCounts = new long[8];
+    private long[] storeCounts = new long[16];
+
+    private long totalCount = 0;
+    private CompensatedSum totalRevenue = new CompensatedSum();
+
+    /**
+     * representation invariants:
+     * 1. totalRevenue == sum of rowCounts[r] * rowPrices[r] over all rows r
+     * 2. the revenue of store s == sum of cellCounts[c] * rowPrices[r] over all cells c of store s, with r the row of c
+     * 3. the revenue of city c == sum of the revenues of the stores s with storeCities[s] == c
+     * 4. rowCounts[r] >= the sum of cellCounts over the cells of row r; the difference has not been attributed
+     * 5. the rows of a barcode have distinct days, and are chained from rows.get(barcode) through nextRows
+     **/
+
+    /**
+     * finds the city and store of a purchase file in a vault with the lay-out <yyyyMMdd>/<city>/<store>.txt,
+     * where files directly in a day folder, like webshop.txt, are attributed to the city PurchaseCube.ONLINE
+     *
+     * @param purchaseFile the path of the purchase file, with any extension
+     * @return the city and the store of the file
+     */
+    public static String[] locate(Path purchaseFile) {
+        String fileName = purchaseFile.getFileName().toString();
+        String store = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        Path folder = purchaseFile.getParent();
+        String city = folder == null || folder.getFileName() == null ? PurchaseCube.ONLINE : folder.getFileName().toString();
+        if (city.matches("\\d{8}")) city = PurchaseCube.ONLINE;
+        return new String[]{city, store};
+    }
+
+    /**
+     * finds the day of a purchase file in a vault with the lay-out <yyyyMMdd>/<city>/<store>.txt
+     *
+     * @param purchaseFile the path of the purchase file
+     * @return the epoch day of the nearest day folder of the file, or UNDATED if it is not in a day folder
+     */
+    public static long dayOf(Path purchaseFile) {
+        for (Path folder = purchaseFile.getParent(); folder != null; folder = folder.getParent()) {
+            if (folder.getFileName() == null || !folder.getFileName().toString().matches("\\d{8}")) continue;
+            try {
+                return LocalDate.parse(folder.getFileName().toString(), DateTimeFormatter.BASIC_ISO_DATE).toEpochDay();
+            } catch (DateTimeParseException e) {
+                // not a valid date, so not a day folder
+            }
+        }
+        return UNDATED;
+    }
+
+    /**
+     * posts all purchases of a batch at the prices of their products in the catalogue on the day of purchase
+     * barcodes that are not in the catalogue are ignored
+     *
+     * @param city      the city of the purchases, or null if they cannot be attributed to a store
+     * @param store     the store of the purchases in the city
+     * @param epochDay  the day of the purchases as counted by LocalDate.toEpochDay, or UNDATED
+     * @param batch     the purchase counts by barcode
+     * @param catalogue the products of the barcodes, with their prices
+     */
+    public synchronized void post(String city, String store, long epochDay, Batch batch, ProductCatalogue catalogue) {
+        int storeId = city == null ? -1 : this.storeIdOf(city, store);
+        for (int i = 0; i < batch.size; i++) {
+            this.post(storeId, epochDay, batch.barcodes[i], batch.counts[i], catalogue);
+        }
+    }
+
+    /**
+     * posts a single purchase at the price of its product in the catalogue on the day of purchase
+     *
+     * @param city     the city of the purchase, or null if it cannot be attributed to a store
+     * @param epochDay the day of the purchase as counted by LocalDate.toEpochDay, or UNDATED
+     */
+    public synchronized void post(String city, String store, long epochDay, long barcode, long count,
+                                  ProductCatalogue catalogue) {
+        this.post(city == null ? -1 : this.storeIdOf(city, store), epochDay, barcode, count, catalogue);
+    }
+
+    private void post(int storeId, long epochDay, long barcode, long count, ProductCatalogue catalogue) {
+        int row = this.rowOf(barcode, epochDay, catalogue);
+        if (row < 0) return;
+        double revenue = count * this.rowPrices[row];
+        this.rowCounts[row] += count;
+        this.totalCount += count;
+        this.totalRevenue.add(revenue);
+        if (storeId < 0) return;
+
+        int cell = this.cellOf(row, storeId);
+        this.cellCounts[cell] += count;
+        int cityId = this.storeCities.get(storeId);
+        this.storeCounts[storeId] += count;
+        this.cityCounts[cityId] += count;
+        this.storeRevenues.get(storeId).add(revenue);
+        this.cityRevenues.get(cityId).add(revenue);
+    }
+
+    /**
+     * rebooks the purchases of a barcode at the prices of its product in the catalogue, after a price change
+     * only the days of which the price has changed are rebooked: their revenues are adjusted by count * delta
+     * in O(1) for the total and for every store and city that sold the barcode on that day
+     *
+     * @param barcode
+     * @param catalogue the product of the barcode, with its new prices
+     */
+    public synchronized void changePrice(long barcode, ProductCatalogue catalogue) {
+        int id = catalogue.indexOf(barcode);
+        if (id < 0) return;
+        for (int row = this.rows.get(barcode); row >= 0; row = this.nextRows[row]) {
+            double price = catalogue.getPrice(id, this.rowDays[row]);
+            double delta = price - this.rowPrices[row];
+            if (delta == 0.0) continue;
+            this.rowPrices[row] = price;
+            this.totalRevenue.add(this.rowCounts[row] * delta);
+            for (int cell = this.firstCells[row]; cell >= 0; cell = this.nextCells[cell]) {
+                int storeId = this.cellStores[cell];
+                double adjustment = this.cellCounts[cell] * delta;
+                this.storeRevenues.get(storeId).add(adjustment);
+                this.cityRevenues.get(this.storeCities.get(storeId)).add(adjustment);
+            }
+        }
+    }
+
+    /**
+     * removes all purchases
+     */
+    public synchronized void clear() {
+        this.rows.clear();
+        this.cells.clear();
+        this.numRows = 0;
+        this.numCells = 0;
+        this.cityIds.clear();
+        this.storeIds.clear();
+        this.cities.clear();
+        this.stores.clear();
+        this.storeCities.clear();
+        this.cityRevenues.clear();
+        this.storeRevenues.clear();
+        Arrays.fill(this.cityCounts, 0);
+        Arrays.fill(this.storeCounts, 0);
+        this.totalCount = 0;
+        this.totalRevenue = new CompensatedSum();
+    }
+
+    /**
+     * @return the row of the barcode on the day, which is added at the price of that day if it is not there yet,
+     * or -1 if the barcode is not in the catalogue
+     */
+    private int rowOf(long barcode, long epochDay, ProductCatalogue catalogue) {
+        int latestRow = this.rows.get(barcode);
+        for (int row = latestRow; row >= 0; row = this.nextRows[row]) {
+            if (this.rowDays[row] == epochDay) return row;
+        }
+        int id = catalogue.indexOf(barcode);
+        if (id < 0) return -1;
+        if (this.numRows == this.rowPrices.length) {
+            this.rowDays = Arrays.copyOf(this.rowDays, 2 * this.numRows);
+            this.rowPrices = Arrays.copyOf(this.rowPrices, 2 * this.numRows);
+            this.rowCounts = Arrays.copyOf(this.rowCounts, 2 * this.numRows);
+            this.firstCells = Arrays.copyOf(this.firstCells, 2 * this.numRows);
+            this.nextRows = Arrays.copyOf(this.nextRows, 2 * this.numRows);
+        }
+        int row = this.numRows++;
+        this.rows.put(barcode, row);
+        this.rowDays[row] = epochDay;
+        this.rowPrices[row] = catalogue.getPrice(id, epochDay);
+        this.rowCounts[row] = 0;
+        this.firstCells[row] = -1;
+        this.nextRows[row] = latestRow;
+        return row;
+    }
+
+    private int cellOf(int row, int storeId) {
+        int cell = this.cells.putIfAbsent((long) row << 32 | storeId, this.numCells);
+        if (cell >= 0) return cell;
+        if (this.numCells == this.cellStores.length) {
+            this.cellStores = Arrays.copyOf(this.cellStores, 2 * this.numCells);
+            this.cellCounts = Arrays.copyOf(this.cellCounts, 2 * this.numCells);
+            this.nextCells = Arrays.copyOf(this.nextCells, 2 * this.numCells);
+        }
+        cell = this.numCells++;
+        this.cellStores[cell] = storeId;
+        this.cellCounts[cell] = 0;
+        this.nextCells[cell] = this.firstCells[row];
+        this.firstCells[row] = cell;
+        return cell;
+    }
+
+    private int storeIdOf(String city, String store) {
+        Integer storeId = this.storeIds.get(city + "/" + store);
+        if (storeId != null) return storeId;
+
+        Integer cityId = this.cityIds.get(city);
+        if (cityId == null) {
+            cityId = this.cities.size();
+            this.cityIds.put(city, cityId);
+            this.cities.add(city);
+            this.cityRevenues.add(new CompensatedSum());
+            if (cityId == this.cityCounts.length) this.cityCounts = Arrays.copyOf(this.cityCounts, 2 * cityId);
+            this.cityCounts[cityId] = 0;
+        }
+        storeId = this.stores.size();
+        this.storeIds.put(city + "/" + store, storeId);
+        this.stores.add(city + "/" + store);
+        this.storeCities.add(cityId);
+        this.storeRevenues.add(new CompensatedSum());
+        if (storeId == this.storeCounts.length) this.storeCounts = Arrays.copyOf(this.storeCounts, 2 * storeId);
+        this.storeCounts[storeId] = 0;
+        return storeId;
+    }
+
+    public synchronized long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public synchronized double getTotalRevenue() {
+        return this.totalRevenue.getSum();
+    }
+
+    /**
+     * @return the cities with purchases, in alphabetical order
+     */
+    public synchronized List<String> getCities() {
+        List<String> sortedCities = new ArrayList<>(this.cities);
+        Collections.sort(sortedCities);
+        return sortedCities;
+    }
+
+    /**
+     * @return the stores with purchases in the city, in alphabetical order
+     */
+    public synchronized List<String> getStores(String city) {
+        List<String> cityStores = new ArrayList<>();
+        for (String store : this.stores) {
+            if (store.startsWith(city + "/")) cityStores.add(store.substring(city.length() + 1));
+        }
+        Collections.sort(cityStores);
+        return cityStores;
+    }
+
+    /**
+     * @return the total count of the city, or 0 if the city has no purchases
+     */
+    public synchronized long getCityCount(String city) {
+        Integer cityId = this.cityIds.get(city);
+        return cityId == null ? 0 : this.cityCounts[cityId];
+    }
+
+    /**
+     * @return the total revenue of the city, or 0 if the city has no purchases
+     */
+    public synchronized double getCityRevenue(String city) {
+        Integer cityId = this.cityIds.get(city);
+        return cityId == null ? 0.0 : this.cityRevenues.get(cityId).getSum();
+    }
+
+    /**
+     * @return the total count of the store in the city, or 0 if the store has no purchases
+     */
+    public synchronized long getStoreCount(String city, String store) {
+        Integer storeId = this.storeIds.get(city + "/" + store);
+        return storeId == null ? 0 : this.storeCounts[storeId];
+    }
+
+    /**
+     * @return the total revenue of the store in the city, or 0 if the store has no purchases
+     */
+    public synchronized double getStoreRevenue(String city, String store) {
+        Integer storeId = this.storeIds.get(city + "/" + store);
+        return storeId == null ? 0.0 : this.storeRevenues.get(storeId).getSum();
+    }
+}
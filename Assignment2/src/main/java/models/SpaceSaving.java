@@ -0,0 +1,227 @@
+package models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * tracks the heavy hitters (the most purchased barcodes) of a stream of purchases with the Space-Saving algorithm
+ * at most capacity barcodes are monitored, each with a count and the maximum overestimation of that count
+ * an unmonitored barcode replaces the monitored barcode with the lowest count, and inherits that count as its error
+ * every barcode with a true count above totalCount / capacity is guaranteed to be monitored
+ * summaries can be merged, e.g. the summaries of all stores of a city (Agarwal et al., Mergeable Summaries)
+ */
+public class SpaceSaving {
+    private final int capacity;
+    private final long[] barcodes;          // the monitored barcodes, as a binary min-heap by count
+    private final long[] counts;            // the (over)estimated count of each monitored barcode
+    private final long[] errors;            // the maximum overestimation of each count
+    private final LongIndexMap positions;   // the heap position of each monitored barcode
+    private int size = 0;
+    private long totalCount = 0;
+
+    /**
+     * representation invariants:
+     * 1. counts[(i - 1) / 2] <= counts[i] for all 0 < i < size
+     * 2. positions.get(barcodes[i]) == i for all 0 <= i < size
+     * 3. errors[i] >= 0
+     **/
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("At least one barcode shall be monitored");
+        this.capacity = capacity;
+        this.barcodes = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new LongIndexMap(capacity);
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    /**
+     * adds a purchase amount of a barcode
+     * negative amounts (returns) only lower the count of a monitored barcode
+     */
+    public void add(long barcode, int count) {
+        this.totalCount += count;
+        int position = this.positions.get(barcode);
+        if (position >= 0) {
+            this.counts[position] += count;
+            if (count >= 0) this.siftDown(position);
+            else this.siftUp(position);
+            return;
+        }
+        if (count <= 0) return;
+
+        if (this.size < this.capacity) {
+            this.barcodes[this.size] = barcode;
+            this.counts[this.size] = count;
+            this.errors[this.size] = 0;
+            this.positions.put(barcode, this.size);
+            this.siftUp(this.size++);
+        } else {
+            // replace the barcode with the lowest count, which may have been purchased as often as the new barcode
+            long minCount = this.counts[0];
+            this.positions.remove(this.barcodes[0]);
+            this.barcodes[0] = barcode;
+            this.counts[0] = minCount + count;
+            this.errors[0] = minCount;
+            this.positions.put(barcode, 0);
+            this.siftDown(0);
+        }
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (this.counts[parent] <= this.counts[position]) return;
+            this.swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position, left = 2 * position + 1, right = left + 1;
+            if (left < this.size && this.counts[left] < this.counts[smallest]) smallest = left;
+            if (right < this.size && this.counts[right] < this.counts[smallest]) smallest = right;
+            if (smallest == position) return;
+            this.swap(smallest, position);
+            position = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long barcode = this.barcodes[i];
+        this.barcodes[i] = this.barcodes[j];
+        this.barcodes[j] = barcode;
+        long count = this.counts[i];
+        this.counts[i] = this.counts[j];
+        this.counts[j] = count;
+        long error = this.errors[i];
+        this.errors[i] = this.errors[j];
+        this.errors[j] = error;
+        this.positions.put(this.barcodes[i], i);
+        this.positions.put(this.barcodes[j], j);
+    }
+
+    /**
+     * @return the estimated count of a monitored barcode, or 0 if the barcode is not monitored
+     */
+    public long getCount(long barcode) {
+        int position = this.positions.get(barcode);
+        return position < 0 ? 0 : this.counts[position];
+    }
+
+    /**
+     * @return the maximum overestimation of the count of a monitored barcode, or 0 if the barcode is not monitored
+     */
+    public long getError(long barcode) {
+        int position = this.positions.get(barcode);
+        return position < 0 ? 0 : this.errors[position];
+    }
+
+    /**
+     * @param n the number of heavy hitters
+     * @return the barcodes with the n highest estimated counts, in order of decreasing count
+     */
+    public long[] getTopBarcodes(int n) {
+        Integer[] order = new Integer[this.size];
+        for (int i = 0; i < this.size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> this.counts[i] != this.counts[j]
+                ? Long.compare(this.counts[j], this.counts[i])
+                : Long.compare(this.barcodes[i], this.barcodes[j]));
+        long[] tops = new long[Math.min(n, this.size)];
+        for (int rank = 0; rank < tops.length; rank++) {
+            tops[rank] = this.barcodes[order[rank]];
+        }
+        return tops;
+    }
+
+    /**
+     * merges the monitored barcodes of another summary of the same capacity into this summary
+     * a barcode that is monitored by one summary only may have been purchased up to the minimum count
+     * of the other summary, if that one is full, so that minimum is added to both its count and its error
+     */
+    public void merge(SpaceSaving other) {
+        if (other.capacity != this.capacity) {
+            throw new IllegalArgumentException("Only summaries of the same capacity can be merged");
+        }
+        long thisMin = this.size == this.capacity ? this.counts[0] : 0;
+        long otherMin = other.size == other.capacity ? other.counts[0] : 0;
+
+        // collect the union of the monitored barcodes with their combined counts and errors
+        int maxSize = this.size + other.size;
+        long[] mergedBarcodes = new long[maxSize];
+        long[] mergedCounts = new long[maxSize];
+        long[] mergedErrors = new long[maxSize];
+        int numMerged = 0;
+        for (int i = 0; i < this.size; i++) {
+            int position = other.positions.get(this.barcodes[i]);
+            mergedBarcodes[numMerged] = this.barcodes[i];
+            mergedCounts[numMerged] = this.counts[i] + (position >= 0 ? other.counts[position] : otherMin);
+            mergedErrors[numMerged++] = this.errors[i] + (position >= 0 ? other.errors[position] : otherMin);
+        }
+        for (int i = 0; i < other.size; i++) {
+            if (this.positions.containsKey(other.barcodes[i])) continue;
+            mergedBarcodes[numMerged] = other.barcodes[i];
+            mergedCounts[numMerged] = other.counts[i] + thisMin;
+            mergedErrors[numMerged++] = other.errors[i] + thisMin;
+        }
+
+        // keep the capacity barcodes with the highest combined counts
+        Integer[] order = new Integer[numMerged];
+        for (int i = 0; i < numMerged; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Long.compare(mergedCounts[j], mergedCounts[i]));
+        this.positions.clear();
+        this.size = 0;
+        for (int rank = 0; rank < Math.min(numMerged, this.capacity); rank++) {
+            int i = order[rank];
+            this.barcodes[this.size] = mergedBarcodes[i];
+            this.counts[this.size] = mergedCounts[i];
+            this.errors[this.size] = mergedErrors[i];
+            this.positions.put(mergedBarcodes[i], this.size);
+            this.siftUp(this.size++);
+        }
+        this.totalCount += other.totalCount;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(this.capacity);
+        output.writeInt(this.size);
+        output.writeLong(this.totalCount);
+        for (int i = 0; i < this.size; i++) {
+            output.writeLong(this.barcodes[i]);
+            output.writeLong(this.counts[i]);
+            output.writeLong(this.errors[i]);
+        }
+    }
+
+    public static SpaceSaving readFrom(DataInput input) throws IOException {
+        SpaceSaving summary = new SpaceSaving(input.readInt());
+        summary.size = input.readInt();
+        summary.totalCount = input.readLong();
+        for (int i = 0; i < summary.size; i++) {
+            summary.barcodes[i] = input.readLong();
+            summary.counts[i] = input.readLong();
+            summary.errors[i] = input.readLong();
+            summary.positions.put(summary.barcodes[i], i);
+        }
+        return summary;
+    }
+}
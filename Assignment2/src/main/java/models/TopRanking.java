@@ -0,0 +1,183 @@
+package models;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * maintains the top n purchases by some score (e.g. count or revenue) while purchases keep arriving
+ * the ranking is a bounded min-heap of the n best purchases, with the weakest of them at the root,
+ * and a barcode index into the heap, such that the score of a ranked purchase can be increased in O(log n)
+ * while scores only increase, the heap holds the exact top n; after any decrease it needs to be rebuilt
+ */
+class TopRanking {
+    private final int capacity;                          // the number n of top purchases to be maintained
+    private final ToDoubleFunction<Purchase> scorer;
+    private final Purchase[] heap;
+    private final double[] scores;                       // the score of each heap entry at the time of its latest update
+    private final LongIndexMap positions = new LongIndexMap();   // the heap position of each ranked barcode
+    private int size = 0;
+    private boolean exact = true;                        // false after a score has decreased
+
+    /**
+     * representation invariants:
+     * 1. positions.get(heap[i].getBarcode()) == i for all 0 <= i < size
+     * 2. heap[(i-1)/2] ranks below or equal to heap[i] for all 0 < i < size
+     * 3. if exact, no purchase outside the heap has a higher score than heap[0]
+     **/
+
+    /**
+     * selects the top n of a one-off series of purchases, by a comparator instead of a maintained score
+     * the n best purchases so far are kept in a heap with the weakest one at the root,
+     * such that m purchases are selected from in O(m log n) time
+     */
+    static class Selector implements Consumer<Purchase> {
+        private final int n;
+        private final Comparator<Purchase> ranker;
+        private final PriorityQueue<Purchase> tops;
+
+        /**
+         * @param n      the number of top purchases
+         * @param ranker the comparator that orders the best purchase first
+         */
+        Selector(int n, Comparator<Purchase> ranker) {
+            this.n = n;
+            this.ranker = ranker;
+            this.tops = new PriorityQueue<>(Math.max(1, n), ranker.reversed());
+        }
+
+        @Override
+        public void accept(Purchase purchase) {
+            this.tops.add(purchase);
+            if (this.tops.size() > this.n) this.tops.poll();
+        }
+
+        /**
+         * @return the top n purchases, in order of the ranker
+         */
+        List<Purchase> getTops() {
+            List<Purchase> ranked = new ArrayList<>(this.tops);
+            ranked.sort(this.ranker);
+            return ranked;
+        }
+    }
+
+    /**
+     * @return the top n of the purchases, in order of the ranker, see Selector
+     */
+    static List<Purchase> select(int n, Comparator<Purchase> ranker, Iterable<Purchase> purchases) {
+        Selector selector = new Selector(n, ranker);
+        purchases.forEach(selector);
+        return selector.getTops();
+    }
+
+    TopRanking(int capacity, ToDoubleFunction<Purchase> scorer) {
+        this.capacity = capacity;
+        this.scorer = scorer;
+        this.heap = new Purchase[capacity];
+        this.scores = new double[capacity];
+    }
+
+    /**
+     * updates the ranking after the score of the purchase has increased, or the purchase has arrived
+     */
+    void update(Purchase purchase) {
+        if (this.capacity == 0) return;
+        double score = this.scorer.applyAsDouble(purchase);
+        int position = this.positions.get(purchase.getBarcode());
+
+        if (position >= 0) {
+            // the purchase is ranked already, and can only move away from the root
+            this.scores[position] = score;
+            this.siftDown(position);
+        } else if (this.size < this.capacity) {
+            this.place(this.size++, purchase, score);
+            this.siftUp(this.size - 1);
+        } else if (this.ranksBelow(this.scores[0], this.heap[0], score, purchase)) {
+            // the purchase beats the weakest ranked purchase
+            this.positions.remove(this.heap[0].getBarcode());
+            this.place(0, purchase, score);
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * marks the ranking as inexact, after the score of some purchase has decreased
+     */
+    void invalidate() {
+        this.exact = false;
+    }
+
+    boolean isExact() {
+        return this.exact;
+    }
+
+    /**
+     * rebuilds the ranking from scratch
+     *
+     * @param purchases all purchases to be ranked
+     */
+    void rebuild(Collection<Purchase> purchases) {
+        this.size = 0;
+        this.positions.clear();
+        this.exact = true;
+        for (Purchase purchase : purchases) {
+            this.update(purchase);
+        }
+    }
+
+    /**
+     * @return the ranked purchases in order of decreasing score
+     */
+    List<Purchase> getTops() {
+        List<Purchase> tops = new ArrayList<>(Arrays.asList(this.heap).subList(0, this.size));
+        tops.sort((p1, p2) -> {
+            int order = Double.compare(this.scorer.applyAsDouble(p2), this.scorer.applyAsDouble(p1));
+            return order != 0 ? order : Long.compare(p1.getBarcode(), p2.getBarcode());
+        });
+        return tops;
+    }
+
+    /**
+     * orders by score, and by decreasing barcode on equal scores, such that ties are ranked deterministically
+     */
+    private boolean ranksBelow(double score1, Purchase purchase1, double score2, Purchase purchase2) {
+        return score1 < score2 || (score1 == score2 && purchase1.getBarcode() > purchase2.getBarcode());
+    }
+
+    private void place(int position, Purchase purchase, double score) {
+        this.heap[position] = purchase;
+        this.scores[position] = score;
+        this.positions.put(purchase.getBarcode(), position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!this.ranksBelow(this.scores[position], this.heap[position], this.scores[parent], this.heap[parent])) break;
+            this.swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int weakest = position;
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < this.size; child++) {
+                if (this.ranksBelow(this.scores[child], this.heap[child], this.scores[weakest], this.heap[weakest])) {
+                    weakest = child;
+                }
+            }
+            if (weakest == position) return;
+            this.swap(position, weakest);
+            position = weakest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Purchase purchase = this.heap[i];
+        double score = this.scores[i];
+        this.place(i, this.heap[j], this.scores[j]);
+        this.place(j, purchase, score);
+    }
+}
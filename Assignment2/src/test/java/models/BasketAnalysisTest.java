@@ -0,0 +1,154 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BasketAnalysisTest {
+
+    @TempDir
+    Path folder;
+
+    ProductCatalogue catalogue;
+    List<long[]> receipts;
+
+    @BeforeEach
+    void setup() {
+        PurchaseTracker purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        catalogue = purchaseTracker.getCatalogue();
+
+        // receipts of 1 to 6 of the first 12 products with a skewed popularity,
+        // and products 30 and 31 on every 20th receipt, together or mostly together
+        Random random = new Random(48);
+        receipts = new ArrayList<>();
+        for (int r = 0; r < 2000; r++) {
+            long[] receipt = new long[1 + random.nextInt(6) + (r % 20 == 0 ? 2 : 0)];
+            for (int i = 0; i < receipt.length; i++) {
+                int id = Math.min(random.nextInt(12), random.nextInt(catalogue.size()));
+                receipt[i] = catalogue.getProduct(id).getBarcode();
+            }
+            if (r % 20 == 0) {
+                receipt[0] = catalogue.getProduct(30).getBarcode();
+                receipt[1] = catalogue.getProduct(r % 100 == 0 ? 5 : 31).getBarcode();
+            }
+            receipts.add(receipt);
+        }
+    }
+
+    private BasketAnalysis analyse(List<long[]> receipts) {
+        BasketAnalysis analysis = new BasketAnalysis(catalogue);
+        for (long[] receipt : receipts) {
+            analysis.addReceipt(receipt);
+        }
+        return analysis;
+    }
+
+    /**
+     * counts the receipts of every itemset of at most maxSize products by enumeration
+     */
+    private Map<Set<Long>, Integer> countItemsets(int maxSize) {
+        Map<Set<Long>, Integer> supports = new HashMap<>();
+        for (long[] receipt : receipts) {
+            Long[] items = Arrays.stream(receipt).boxed().distinct().toArray(Long[]::new);
+            for (int mask = 1; mask < 1 << items.length; mask++) {
+                if (Integer.bitCount(mask) > maxSize) continue;
+                Set<Long> itemset = new HashSet<>();
+                for (int i = 0; i < items.length; i++) {
+                    if ((mask & 1 << i) != 0) itemset.add(items[i]);
+                }
+                supports.merge(itemset, 1, Integer::sum);
+            }
+        }
+        return supports;
+    }
+
+    private static Map<Set<Long>, Integer> toMap(List<BasketAnalysis.Itemset> itemsets) {
+        Map<Set<Long>, Integer> supports = new HashMap<>();
+        for (BasketAnalysis.Itemset itemset : itemsets) {
+            Set<Long> barcodes = new HashSet<>();
+            for (Product product : itemset.getProducts()) {
+                barcodes.add(product.getBarcode());
+            }
+            assertNull(supports.put(barcodes, itemset.getSupport()));
+        }
+        return supports;
+    }
+
+    @Test
+    public void frequentItemsetsMatchBruteForceCounts() {
+        final int minSupport = 20, maxSize = 3;
+        BasketAnalysis analysis = analyse(receipts);
+        assertEquals(2000, analysis.getNumReceipts());
+
+        Map<Set<Long>, Integer> expected = new HashMap<>();
+        countItemsets(maxSize).forEach((itemset, support) -> {
+            if (support >= minSupport) expected.put(itemset, support);
+        });
+        List<BasketAnalysis.Itemset> itemsets = analysis.findFrequentItemsets(minSupport, maxSize, 1);
+        assertEquals(expected, toMap(itemsets));
+        assertTrue(expected.keySet().stream().anyMatch(itemset -> itemset.size() == 3));
+        for (int i = 1; i < itemsets.size(); i++) {
+            assertTrue(itemsets.get(i - 1).getSupport() >= itemsets.get(i).getSupport());
+        }
+
+        // the trees of the partitions merge into the same tree
+        assertEquals(expected, toMap(analysis.findFrequentItemsets(minSupport, maxSize, 4)));
+    }
+
+    @Test
+    public void pairsAreRatedByLift() {
+        BasketAnalysis analysis = analyse(receipts);
+        List<BasketAnalysis.ProductPair> pairs = analysis.findProductPairs(30, 2);
+        assertFalse(pairs.isEmpty());
+
+        Map<Set<Long>, Integer> supports = countItemsets(2);
+        for (BasketAnalysis.ProductPair pair : pairs) {
+            long first = pair.getFirst().getBarcode(), second = pair.getSecond().getBarcode();
+            assertTrue(first < second);
+            int both = supports.get(new HashSet<>(Arrays.asList(first, second)));
+            int firstOnly = supports.get(Collections.singleton(first)), secondOnly = supports.get(Collections.singleton(second));
+            assertEquals(both, pair.getSupport());
+            assertEquals((double) both / firstOnly, pair.getConfidence(), 1E-9);
+            assertEquals((double) both * 2000 / firstOnly / secondOnly, pair.getLift(), 1E-9);
+        }
+        for (int i = 1; i < pairs.size(); i++) {
+            assertTrue(pairs.get(i - 1).getLift() >= pairs.get(i).getLift());
+        }
+
+        // product 31 is only bought together with product 30
+        Set<Long> attracted = new HashSet<>(Arrays.asList(catalogue.getProduct(30).getBarcode(), catalogue.getProduct(31).getBarcode()));
+        BasketAnalysis.ProductPair top = pairs.get(0);
+        assertEquals(attracted, new HashSet<>(Arrays.asList(top.getFirst().getBarcode(), top.getSecond().getBarcode())));
+        assertTrue(top.getLift() > 10);
+        assertEquals(80, top.getSupport());
+    }
+
+    @Test
+    public void receiptsAreImportedFromFile() throws IOException {
+        long barcode0 = catalogue.getProduct(0).getBarcode(), barcode1 = catalogue.getProduct(1).getBarcode();
+        Path receiptFile = folder.resolve("receipts.txt");
+        Files.write(receiptFile, Arrays.asList(
+                barcode0 + ", " + barcode1,
+                barcode1 + ", " + barcode0 + ", " + barcode0 + ", 1",
+                "1, 2",
+                barcode0 + ", none",
+                String.valueOf(barcode0)));
+
+        BasketAnalysis analysis = new BasketAnalysis(catalogue);
+        assertEquals(3, analysis.importReceiptsFromFile(receiptFile));
+        List<BasketAnalysis.Itemset> itemsets = analysis.findFrequentItemsets(2, 5, 2);
+        assertEquals(3, itemsets.size());
+        assertEquals(3, itemsets.get(0).getSupport());
+        assertEquals(barcode0, itemsets.get(0).getProducts().get(0).getBarcode());
+        assertEquals(2, itemsets.get(2).getProducts().size());
+        assertEquals(2, itemsets.get(2).getSupport());
+    }
+}
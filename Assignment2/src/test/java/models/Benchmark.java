@@ -0,0 +1,92 @@
+package models;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * a minimal micro-benchmark harness for the performance tests, after the model of JMH:
+ * every benchmark is warmed up first, then measured over several iterations,
+ * and reported with its throughput and its heap allocation per operation (like the gc profiler of JMH)
+ * the results of the operations are consumed, such that the JIT compiler cannot eliminate them
+ */
+class Benchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private long sink = 0;                  // consumes the results of all operations
+
+    Benchmark(int warmupIterations, int measurementIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+    }
+
+    /**
+     * the outcome of a benchmark, averaged over the measurement iterations
+     */
+    static class Result {
+        final String name;
+        final double opsPerSecond;
+        final double bytesPerOp;
+
+        Result(String name, double opsPerSecond, double bytesPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-50s %14.1f ops/s %12.1f B/op", this.name, this.opsPerSecond, this.bytesPerOp);
+        }
+    }
+
+    /**
+     * runs a benchmark and prints its result
+     *
+     * @param name          the name of the benchmark, as reported
+     * @param opsPerCall    the number of operations that are performed by one call of the operation
+     * @param callsPerRound the number of calls per iteration
+     * @param setup         prepares the state of every iteration, outside of the measurement; may be null
+     * @param operation     the measured operation, which returns a result to be consumed
+     */
+    Result run(String name, long opsPerCall, int callsPerRound, Runnable setup, IntSupplier operation) {
+        for (int iteration = 0; iteration < this.warmupIterations; iteration++) {
+            this.round(callsPerRound, setup, operation);
+        }
+        long totalNanos = 0, totalBytes = 0;
+        for (int iteration = 0; iteration < this.measurementIterations; iteration++) {
+            long[] measurement = this.round(callsPerRound, setup, operation);
+            totalNanos += measurement[0];
+            totalBytes += measurement[1];
+        }
+        double ops = (double) opsPerCall * callsPerRound * this.measurementIterations;
+        Result result = new Result(name, ops / (totalNanos / 1E9), totalBytes / ops);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * @return the total number of bytes that the current thread has allocated on the heap so far
+     */
+    static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long[] round(int calls, Runnable setup, IntSupplier operation) {
+        if (setup != null) setup.run();
+        long threadId = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int call = 0; call < calls; call++) {
+            this.sink += operation.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        return new long[]{nanos, THREADS.getThreadAllocatedBytes(threadId) - bytes};
+    }
+
+    long getSink() {
+        return this.sink;
+    }
+}
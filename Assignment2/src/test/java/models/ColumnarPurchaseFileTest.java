@@ -0,0 +1,121 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarPurchaseFileTest {
+
+    @TempDir
+    Path folder;
+
+    PurchaseTracker purchaseTracker;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.importPurchasesFromVault("/purchases");
+    }
+
+    private static Map<Long, Long> sumsOf(Path columnFile, long fromBarcode, long toBarcode) {
+        Map<Long, Long> sums = new HashMap<>();
+        ColumnarPurchaseFile.scan(columnFile, fromBarcode, toBarcode,
+                (barcode, count) -> sums.merge(barcode, (long) count, Long::sum));
+        return sums;
+    }
+
+    @Test
+    public void columnarVaultImportsTheSamePurchases() {
+        Path columnRoot = folder.resolve("columnar");
+        assertEquals(14, purchaseTracker.convertVaultToColumnar("/purchases", columnRoot));
+        assertTrue(Files.exists(columnRoot.resolve("20211001").resolve("Amsterdam")));
+
+        for (PurchaseTracker.AggregationMode mode : PurchaseTracker.AggregationMode.values()) {
+            PurchaseTracker columnarTracker = new PurchaseTracker(mode);
+            columnarTracker.importProductsFromVault("/products.txt");
+            assertEquals(14, columnarTracker.importPurchasesFromColumnarFolder(columnRoot));
+
+            assertEquals(purchaseTracker.getPurchases().size(), columnarTracker.getPurchases().size());
+            for (int i = 0; i < purchaseTracker.getPurchases().size(); i++) {
+                assertEquals(purchaseTracker.getPurchases().get(i).getBarcode(), columnarTracker.getPurchases().get(i).getBarcode());
+                assertEquals(purchaseTracker.getPurchases().get(i).getCount(), columnarTracker.getPurchases().get(i).getCount());
+            }
+        }
+    }
+
+    @Test
+    public void scanSkipsBlocksOutsideOfTheRange() {
+        // 20000 rows over 5 blocks, with barcodes that increase with the block, and negative counts of returns
+        int numRows = 20_000;
+        long[] barcodes = new long[numRows];
+        int[] counts = new int[numRows];
+        Random random = new Random(46);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int row = 0; row < numRows; row++) {
+            barcodes[row] = 8710000000000L + 1000L * random.nextInt(500);
+            counts[row] = random.nextInt(20) - 2;
+            expected.merge(barcodes[row], (long) counts[row], Long::sum);
+        }
+        Path columnFile = folder.resolve("random" + ColumnarPurchaseFile.EXTENSION);
+        ColumnarPurchaseFile.write(columnFile, barcodes, counts, numRows);
+
+        assertEquals(expected, sumsOf(columnFile, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(numRows, ColumnarPurchaseFile.scan(columnFile, Long.MIN_VALUE, Long.MAX_VALUE, (b, c) -> { }));
+
+        long fromBarcode = 8710000100000L, toBarcode = 8710000150000L;
+        Map<Long, Long> expectedRange = new HashMap<>();
+        expected.forEach((barcode, sum) -> {
+            if (barcode >= fromBarcode && barcode < toBarcode) expectedRange.put(barcode, sum);
+        });
+        assertEquals(expectedRange, sumsOf(columnFile, fromBarcode, toBarcode));
+        // a tenth of the barcodes spans at most two of the five blocks
+        assertTrue(ColumnarPurchaseFile.scan(columnFile, fromBarcode, toBarcode, (b, c) -> { })
+                <= 2 * ColumnarPurchaseFile.BLOCK_SIZE);
+        assertEquals(0, ColumnarPurchaseFile.scan(columnFile, 0, 1, (b, c) -> { }));
+
+        ColumnarPurchaseFile.write(columnFile, new long[0], new int[0], 0);
+        assertTrue(sumsOf(columnFile, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void columnarFilesAreSmallerAndFasterThanTextFiles() throws IOException {
+        // a day of a large store, with 100000 purchase lines of the known products
+        final int numRows = 100_000;
+        Path textFile = folder.resolve("store.txt");
+        Random random = new Random(1001);
+        StringBuilder lines = new StringBuilder();
+        for (int row = 0; row < numRows; row++) {
+            Product product = purchaseTracker.getProducts().get(random.nextInt(purchaseTracker.getProducts().size()));
+            lines.append(product.getBarcode()).append(", ").append(1 + random.nextInt(9)).append('\n');
+        }
+        Files.write(textFile, lines.toString().getBytes());
+        Path columnFile = folder.resolve("store" + ColumnarPurchaseFile.EXTENSION);
+        assertEquals(numRows, ColumnarPurchaseFile.convert(textFile, columnFile));
+
+        long textBytes = Files.size(textFile), columnBytes = Files.size(columnFile);
+        System.out.printf("text file of %d bytes, columnar file of %d bytes (%.1fx smaller)\n",
+                textBytes, columnBytes, (double) textBytes / columnBytes);
+        assertTrue(10 * columnBytes < textBytes);
+
+        Benchmark benchmark = new Benchmark(3, 5);
+        PurchaseFileParser parser = new PurchaseFileParser();
+        long[] textSum = new long[1], columnSum = new long[1];
+        benchmark.run("aggregate text file", numRows, 10, () -> textSum[0] = 0,
+                () -> (int) parser.parse(textFile, (barcode, count) -> textSum[0] += count));
+        benchmark.run("aggregate columnar file", numRows, 10, () -> columnSum[0] = 0,
+                () -> (int) ColumnarPurchaseFile.scan(columnFile, Long.MIN_VALUE, Long.MAX_VALUE,
+                        (barcode, count) -> columnSum[0] += count));
+        assertEquals(textSum[0], columnSum[0]);
+    }
+}
@@ -0,0 +1,72 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * compares concurrent merging into the sharded ConcurrentPurchaseTable
+ * with merging into a single OrderedArrayList that is guarded by one lock, at increasing numbers of writer threads
+ */
+public class ConcurrentPurchaseTablePerformanceTest {
+    private static final int NUMBER_OF_BARCODES = 20_000;
+    private static final int MERGES_PER_THREAD = 200_000;
+    private static final int SORT_INTERVAL = 1_000;     // the locked list is re-sorted after this number of merges
+
+    private final Product[] products = SyntheticProducts.create(NUMBER_OF_BARCODES);
+
+    /**
+     * runs the merger on the given number of threads, each with its own random purchases
+     *
+     * @return the elapsed time in seconds
+     */
+    private double runThreads(int numThreads, Consumer<Random> merger) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> merger.accept(random)));
+        }
+        System.gc();
+        long start = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        return (System.nanoTime() - start) / 1E9;
+    }
+
+    @Test
+    void compareConcurrentMergePerformance() throws InterruptedException {
+        for (int numThreads = 1; numThreads <= 8; numThreads *= 2) {
+            ConcurrentPurchaseTable table = new ConcurrentPurchaseTable();
+            double shardedSeconds = this.runThreads(numThreads, random -> {
+                for (int i = 0; i < MERGES_PER_THREAD; i++) {
+                    table.merge(this.products[random.nextInt(NUMBER_OF_BARCODES)], 1);
+                }
+            });
+
+            OrderedArrayList<Purchase> list = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+            double lockedSeconds = this.runThreads(numThreads, random -> {
+                for (int i = 0; i < MERGES_PER_THREAD; i++) {
+                    Purchase purchase = new Purchase(this.products[random.nextInt(NUMBER_OF_BARCODES)], 1);
+                    synchronized (list) {
+                        list.merge(purchase, (p1, p2) -> {
+                            p1.addCount(p2.getCount());
+                            return p1;
+                        });
+                        if (i % SORT_INTERVAL == 0) list.sort();
+                    }
+                }
+            });
+
+            System.out.printf("%d threads x %d merges: synchronized OrderedArrayList %.3f s, ConcurrentPurchaseTable %.3f s%n",
+                    numThreads, MERGES_PER_THREAD, lockedSeconds, shardedSeconds);
+            assertEquals((long) numThreads * MERGES_PER_THREAD, table.aggregateCounts());
+            assertEquals(table.aggregateCounts(), (long) list.aggregate(Purchase::getCount));
+        }
+    }
+}
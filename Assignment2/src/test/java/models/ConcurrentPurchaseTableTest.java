@@ -0,0 +1,95 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentPurchaseTableTest {
+    List<Product> products;
+
+    @BeforeEach
+    void setup() {
+        products = new ArrayList<>();
+        PurchaseTracker.importItemsFromFile(products,
+                ConcurrentPurchaseTableTest.class.getResource("/products.txt").getPath(),
+                Product::fromLine);
+    }
+
+    @Test
+    void mergeAndSnapshot() {
+        ConcurrentPurchaseTable table = new ConcurrentPurchaseTable(1);
+        assertEquals(1, table.getNumShards());
+        table.merge(new Purchase(products.get(0), 3));
+        table.merge(products.get(1), 4);
+        table.merge(products.get(0), 5);
+
+        assertEquals(8, table.getCount(products.get(0).getBarcode()));
+        assertEquals(0, table.getCount(products.get(2).getBarcode()));
+        assertEquals(2, table.size());
+        assertEquals(12, table.aggregateCounts());
+
+        List<Purchase> snapshot = table.snapshot();
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.get(0).getBarcode() < snapshot.get(1).getBarcode());
+        // the snapshot does not change with later merges
+        table.merge(products.get(1), 1);
+        assertEquals(12, snapshot.stream().mapToInt(Purchase::getCount).sum());
+
+        List<Purchase> tops = table.getTops(1, Comparator.comparingInt(Purchase::getCount).reversed());
+        assertEquals(1, tops.size());
+        assertEquals(products.get(0).getBarcode(), tops.get(0).getBarcode());
+    }
+
+    @Test
+    void shardRankingsFollowTheMerges() {
+        ConcurrentPurchaseTable table = new ConcurrentPurchaseTable(4);
+        Purchase adopted = new Purchase(products.get(0), 10);
+        table.add(adopted);
+        table.startRankings(2, List.of(Purchase::getCount));
+        assertNotNull(table.merge(products.get(1), 7));
+        assertNull(table.merge(products.get(1), 1));
+        table.merge(products.get(2), 9);
+        table.merge(products.get(0), 2);
+        assertSame(adopted, table.getRankedTops(0).get(0));
+        assertEquals(12, adopted.getCount());
+        assertEquals(List.of(products.get(0).getBarcode(), products.get(2).getBarcode()),
+                table.getRankedTops(0).stream().map(Purchase::getBarcode).collect(Collectors.toList()));
+
+        // a return makes its shard rebuild the ranking
+        table.merge(products.get(2), -5);
+        assertEquals(List.of(products.get(0).getBarcode(), products.get(1).getBarcode()),
+                table.getRankedTops(0).stream().map(Purchase::getBarcode).collect(Collectors.toList()));
+    }
+
+    @Test
+    void concurrentMergesAreNotLost() throws Exception {
+        ConcurrentPurchaseTable table = new ConcurrentPurchaseTable(8);
+        int numThreads = 8, numMerges = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < numMerges; i++) {
+                    table.merge(products.get(random.nextInt(products.size())), 1);
+                    // read consistent totals while other threads keep merging
+                    if (i % 5000 == 0) assertTrue(table.aggregateCounts() > i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals((long) numThreads * numMerges, table.aggregateCounts());
+        assertEquals(numThreads * numMerges, table.aggregate(Purchase::getCount), 0.0);
+        assertEquals(products.stream().mapToLong(Product::getBarcode).distinct().count(), table.size());
+    }
+}
@@ -0,0 +1,102 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalPurchaseSorterTest {
+
+    @TempDir
+    Path tempFolder;
+
+    PurchaseTracker purchaseTracker;
+    List<Path> purchaseFiles;
+
+    @BeforeEach
+    void setup() throws IOException {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.importPurchasesFromVault("/purchases");
+        try (Stream<Path> paths = Files.walk(Paths.get(PurchaseTracker.class.getResource("/purchases").getPath()))) {
+            purchaseFiles = paths.filter(path -> path.toString().endsWith(".txt")).collect(Collectors.toList());
+        }
+    }
+
+    private Map<Long, Integer> mergeAll(ExternalPurchaseSorter sorter) {
+        for (Path purchaseFile : purchaseFiles) {
+            sorter.addFile(purchaseFile);
+        }
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        long[] previous = {Long.MIN_VALUE};
+        long numBarcodes = sorter.merge((barcode, count) -> {
+            // the barcodes arrive in ascending order, each barcode once
+            assertTrue(barcode > previous[0]);
+            previous[0] = barcode;
+            counts.put(barcode, count);
+        });
+        assertEquals(counts.size(), numBarcodes);
+        return counts;
+    }
+
+    private Map<Long, Integer> importedCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Purchase purchase : purchaseTracker.getPurchases()) {
+            counts.put(purchase.getBarcode(), purchase.getCount());
+        }
+        return counts;
+    }
+
+    @Test
+    void mergesWithinOneRunWhenEverythingFits() {
+        ExternalPurchaseSorter sorter = new ExternalPurchaseSorter(purchaseTracker.getCatalogue(), tempFolder, 1 << 20);
+        assertEquals(importedCounts(), mergeAll(sorter));
+        assertEquals(1, sorter.getNumSpilledRuns());
+    }
+
+    @Test
+    void mergesManyRunsInSeveralPasses() throws IOException {
+        // a cap of 640 bytes allows chunks of 10 barcodes, and merges of 2 runs at a time
+        ExternalPurchaseSorter sorter = new ExternalPurchaseSorter(purchaseTracker.getCatalogue(), tempFolder, 640);
+        assertEquals(10, sorter.getMaxChunkSize());
+        assertEquals(2, sorter.getMaxFanIn());
+
+        assertEquals(importedCounts(), mergeAll(sorter));
+        assertTrue(sorter.getNumSpilledRuns() > 2 * purchaseFiles.size());
+        try (Stream<Path> leftOvers = Files.list(tempFolder)) {
+            assertEquals(0, leftOvers.count());
+        }
+
+        // the sorter can be re-used
+        assertEquals(importedCounts(), mergeAll(sorter));
+    }
+
+    @Test
+    void findsTheSameTopsAsTheTracker() {
+        Comparator<Purchase> ranker = Comparator.comparing(Purchase::getCount).reversed()
+                .thenComparing(Purchase::getBarcode);
+        List<Purchase> expected = new ArrayList<>(purchaseTracker.getPurchases());
+        expected.sort(ranker);
+
+        try (ExternalPurchaseSorter sorter = new ExternalPurchaseSorter(purchaseTracker.getCatalogue(), tempFolder, 1024)) {
+            for (Path purchaseFile : purchaseFiles) {
+                sorter.addFile(purchaseFile);
+            }
+            List<Purchase> tops = sorter.getTops(5, ranker);
+            assertEquals(5, tops.size());
+            for (int rank = 0; rank < 5; rank++) {
+                assertEquals(expected.get(rank).getBarcode(), tops.get(rank).getBarcode());
+                assertEquals(expected.get(rank).getCount(), tops.get(rank).getCount());
+            }
+        }
+    }
+}
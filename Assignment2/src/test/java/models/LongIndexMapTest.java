@@ -0,0 +1,77 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongIndexMapTest {
+
+    @Test
+    public void putAndGet() {
+        LongIndexMap map = new LongIndexMap();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(8710400280583L));
+
+        assertEquals(-1, map.put(8710400280583L, 0));
+        assertEquals(-1, map.put(8710400514107L, 1));
+        assertEquals(0, map.put(8710400280583L, 2));
+        assertEquals(2, map.size());
+        assertEquals(2, map.get(8710400280583L));
+        assertEquals(1, map.get(8710400514107L));
+
+        assertEquals(1, map.putIfAbsent(8710400514107L, 5));
+        assertEquals(-1, map.putIfAbsent(0L, 5));
+        assertEquals(5, map.get(0L));
+        assertTrue(map.containsKey(0L));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(0L));
+        assertThrows(IllegalArgumentException.class, () -> map.put(1L, -1));
+    }
+
+    @Test
+    public void growsAndAgreesWithHashMap() {
+        LongIndexMap map = new LongIndexMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(2021L);
+
+        for (int i = 0; i < 100_000; i++) {
+            // barcodes with a common prefix, as in the products vault
+            long barcode = 8710400000000L + random.nextInt(50_000);
+            Integer oldValue = expected.put(barcode, i);
+            assertEquals(oldValue == null ? -1 : oldValue, map.put(barcode, i));
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertEquals(-1, map.get(8710400000000L + 50_000));
+    }
+
+    @Test
+    public void removeKeepsOtherKeysReachable() {
+        LongIndexMap map = new LongIndexMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(2022L);
+
+        for (int i = 0; i < 100_000; i++) {
+            long barcode = 8710400000000L + random.nextInt(1000);
+            if (random.nextBoolean()) {
+                Integer oldValue = expected.remove(barcode);
+                assertEquals(oldValue == null ? -1 : oldValue, map.remove(barcode));
+            } else {
+                expected.put(barcode, i);
+                map.put(barcode, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long barcode = 8710400000000L; barcode < 8710400001000L; barcode++) {
+            assertEquals(expected.getOrDefault(barcode, -1), map.get(barcode));
+        }
+    }
+}
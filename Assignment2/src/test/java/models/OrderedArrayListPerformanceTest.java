@@ -0,0 +1,138 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * benchmarks the searching, merging, sorting and parsing operations that PurchaseTracker builds upon
+ * every benchmark reports its throughput and its heap allocation per operation, see Benchmark
+ */
+public class OrderedArrayListPerformanceTest {
+    private static final int NUMBER_OF_PRODUCTS = 100_000;
+    private static final int LOOKUPS_PER_CALL = 1_024;
+
+    private final Benchmark benchmark = new Benchmark(3, 5);
+    private final Random random = new Random(20211001L);
+    private final Product[] products = SyntheticProducts.create(NUMBER_OF_PRODUCTS);
+
+    /**
+     * @return a list of the first size products, of which the first nSorted are in the sorted section
+     */
+    private OrderedArrayList<Product> createList(int size, int nSorted) {
+        List<Product> shuffled = new ArrayList<>(Arrays.asList(this.products).subList(0, size));
+        Collections.shuffle(shuffled, this.random);
+        OrderedArrayList<Product> list = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
+        list.addAll(shuffled.subList(0, nSorted));
+        list.sort();
+        list.addAll(shuffled.subList(nSorted, size));
+        return list;
+    }
+
+    private Product[] randomSearchItems(int size, int count) {
+        Product[] searchItems = new Product[count];
+        for (int i = 0; i < count; i++) {
+            searchItems[i] = new Product(this.products[this.random.nextInt(size)].getBarcode());
+        }
+        return searchItems;
+    }
+
+    @Test
+    public void iterativeVersusRecursiveBinarySearch() {
+        OrderedArrayList<Product> list = this.createList(NUMBER_OF_PRODUCTS, NUMBER_OF_PRODUCTS);
+        Product[] searchItems = this.randomSearchItems(NUMBER_OF_PRODUCTS, LOOKUPS_PER_CALL);
+
+        Benchmark.Result iterative = this.benchmark.run("binary search, iterative", LOOKUPS_PER_CALL, 200, null, () -> {
+            int found = 0;
+            for (Product searchItem : searchItems) {
+                found += list.indexOfByIterativeBinarySearch(searchItem);
+            }
+            return found;
+        });
+        Benchmark.Result recursive = this.benchmark.run("binary search, recursive", LOOKUPS_PER_CALL, 200, null, () -> {
+            int found = 0;
+            for (Product searchItem : searchItems) {
+                found += list.indexOfByRecursiveBinarySearch(searchItem);
+            }
+            return found;
+        });
+
+        for (Product searchItem : searchItems) {
+            assertEquals(list.indexOfByIterativeBinarySearch(searchItem), list.indexOfByRecursiveBinarySearch(searchItem));
+        }
+        assertTrue(iterative.opsPerSecond > 0 && recursive.opsPerSecond > 0);
+    }
+
+    @Test
+    public void mergeAtVaryingSortedRatios() {
+        final int size = 10_000;
+        Product[] mergeItems = this.randomSearchItems(size, LOOKUPS_PER_CALL);
+        for (double sortedRatio : new double[]{1.0, 0.99, 0.9, 0.5}) {
+            OrderedArrayList<Product>[] list = new OrderedArrayList[1];
+            this.benchmark.run(String.format("merge, %.0f%% sorted of %d", 100 * sortedRatio, size),
+                    LOOKUPS_PER_CALL, 5,
+                    () -> list[0] = this.createList(size, (int) (sortedRatio * size)),
+                    () -> {
+                        int added = 0;
+                        for (Product mergeItem : mergeItems) {
+                            if (list[0].merge(mergeItem, (p1, p2) -> p1)) added++;
+                        }
+                        return added;
+                    });
+            assertEquals(size, list[0].size());
+        }
+    }
+
+    @Test
+    public void sortAfterSmallAppends() {
+        final int calls = 50;
+        for (int appended : new int[]{10, 100, 1_000}) {
+            OrderedArrayList<Product>[] list = new OrderedArrayList[1];
+            Product[] appendItems = this.randomSearchItems(NUMBER_OF_PRODUCTS, appended * calls);
+            int[] next = new int[1];
+            this.benchmark.run(String.format("sort after %d appends to %d", appended, NUMBER_OF_PRODUCTS),
+                    1, calls,
+                    () -> {
+                        list[0] = this.createList(NUMBER_OF_PRODUCTS, NUMBER_OF_PRODUCTS);
+                        next[0] = 0;
+                    },
+                    () -> {
+                        for (int i = 0; i < appended; i++) {
+                            list[0].add(appendItems[next[0]++]);
+                        }
+                        list[0].sort();
+                        return list[0].size();
+                    });
+        }
+    }
+
+    @Test
+    public void fromLineParsing() {
+        OrderedArrayList<Product> list = this.createList(NUMBER_OF_PRODUCTS, NUMBER_OF_PRODUCTS);
+        String[] productLines = new String[LOOKUPS_PER_CALL];
+        String[] purchaseLines = new String[LOOKUPS_PER_CALL];
+        for (int i = 0; i < LOOKUPS_PER_CALL; i++) {
+            Product product = this.products[this.random.nextInt(NUMBER_OF_PRODUCTS)];
+            productLines[i] = product.getBarcode() + ", " + product.getTitle() + ", " + product.getPrice();
+            purchaseLines[i] = product.getBarcode() + ", " + (1 + this.random.nextInt(99));
+        }
+
+        this.benchmark.run("Product.fromLine", LOOKUPS_PER_CALL, 200, null, () -> {
+            int parsed = 0;
+            for (String line : productLines) {
+                if (Product.fromLine(line) != null) parsed++;
+            }
+            return parsed;
+        });
+        this.benchmark.run("Purchase.fromLine", LOOKUPS_PER_CALL, 200, null, () -> {
+            int count = 0;
+            for (String line : purchaseLines) {
+                count += Purchase.fromLine(line, list).getCount();
+            }
+            return count;
+        });
+    }
+}
@@ -3,9 +3,10 @@ package models;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Comparator;
+import java.util.*;
+import java.util.function.BinaryOperator;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * This class tests the capabilities of the OrderedArrayList class
@@ -74,4 +75,151 @@ public class OrderedArrayListTest {
         // Check if the element gets added to the right index.
         assertEquals(11, products.indexOf(product8));
     }
+
+    @Test
+    public void TestSortMergesUnsortedTail() {
+        Random random = new Random(2021L);
+        OrderedArrayList<Purchase> purchases = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        List<Purchase> expected = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            // append a tail of varying length after the sorted section, with duplicate barcodes
+            int tailLength = round % 3 == 0 ? 1 + random.nextInt(3) : random.nextInt(500);
+            for (int i = 0; i < tailLength; i++) {
+                Purchase purchase = new Purchase(products.get(random.nextInt(products.size())), purchases.size());
+                purchases.add(purchase);
+                expected.add(purchase);
+            }
+            purchases.sort();
+            // List.sort is stable, and so shall be the merge of the sorted section with the tail
+            expected.sort(Comparator.comparing(Purchase::getBarcode));
+            assertEquals(expected, purchases);
+        }
+    }
+
+    @Test
+    public void TestAddAllSorted() {
+        products.sort();
+        List<Product> expected = new ArrayList<>(products);
+
+        List<Product> batch = List.of(product3, product4, product5);
+        assertTrue(((OrderedArrayList<Product>) products).addAllSorted(batch));
+        expected.addAll(batch);
+        expected.sort(Comparator.comparing(Product::getBarcode));
+        assertEquals(expected, products);
+        assertEquals(products.indexOf(product4), expected.indexOf(product4));
+
+        // a batch that is not sorted is sorted first
+        Product product9 = new Product(1L, "", 0.0);
+        assertTrue(((OrderedArrayList<Product>) products).addAllSorted(List.of(product5, product9)));
+        expected.addAll(List.of(product5, product9));
+        expected.sort(Comparator.comparing(Product::getBarcode));
+        assertEquals(expected, products);
+        assertEquals(0, products.indexOf(product9));
+        assertFalse(((OrderedArrayList<Product>) products).addAllSorted(List.of()));
+    }
+
+    @Test
+    public void TestMergeAll() {
+        BinaryOperator<Product> merger = (p1, p2) -> {
+            p1.setPrice(p1.getPrice() + p2.getPrice());
+            return p1;
+        };
+        OrderedList<Product> expected = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
+        for (Product product : products) {
+            expected.add(new Product(product.getBarcode(), product.getTitle(), product.getPrice()));
+        }
+        expected.sort();
+
+        // matches, new items and equal new items, in any order
+        List<Product> batch = List.of(new Product(product2.getBarcode(), "", 1.0), product5,
+                new Product(product3.getBarcode(), "", 0.5), new Product(product5.getBarcode(), "", 0.25), product3);
+        for (Product product : batch) {
+            expected.merge(new Product(product.getBarcode(), product.getTitle(), product.getPrice()), merger);
+        }
+        products.mergeAll(batch, merger);
+
+        expected.sort();
+        assertEquals(expected.size(), products.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getBarcode(), products.get(i).getBarcode());
+            assertEquals(expected.get(i).getPrice(), products.get(i).getPrice(), 1e-9);
+        }
+        assertSame(product5, products.get(products.indexOf(product5)));
+        assertEquals(0.85 + 0.25, product5.getPrice(), 1e-9);
+    }
+
+    @Test
+    public void TestMultiMetricAggregation() {
+        double[] totals = products.aggregate(List.of(p -> 1.0, Product::getPrice));
+        assertEquals(products.size(), totals[0]);
+        assertEquals(products.aggregate(Product::getPrice), totals[1], 1e-9);
+        assertArrayEquals(totals, products.aggregateInParallel(List.of(p -> 1.0, Product::getPrice)), 1e-9);
+    }
+
+    @Test
+    public void TestParallelAggregationIsCompensated() {
+        // 0.1 is not exact in binary, so a plain sum of a million times 0.1 drifts away from 100000
+        OrderedList<Product> manyProducts = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
+        for (int i = 0; i < 1_000_000; i++) {
+            manyProducts.add(new Product(i, null, 0.1));
+        }
+        double plainSum = 0;
+        for (Product product : manyProducts) {
+            plainSum += product.getPrice();
+        }
+        assertNotEquals(100000.0, plainSum, 1e-9);
+
+        assertEquals(100000.0, manyProducts.aggregate(Product::getPrice), 1e-9);
+        assertEquals(100000.0, manyProducts.aggregateInParallel(Product::getPrice), 1e-9);
+        double[] totals = manyProducts.aggregateInParallel(List.of(p -> 1.0, Product::getPrice));
+        assertEquals(1_000_000.0, totals[0]);
+        assertEquals(100000.0, totals[1], 1e-9);
+    }
+
+    @Test
+    public void TestLowerAndUpperBound() {
+        products.sort();
+        products.add(product4);
+        Product first = products.get(0), last = products.get(products.size() - 2);
+        assertEquals(0, products.lowerBound(first));
+        assertEquals(1, products.upperBound(first));
+        assertEquals(0, products.lowerBound(new Product(0)));
+        // the unsorted tail is not part of the bounds
+        assertEquals(products.size() - 1, products.upperBound(last));
+        assertEquals(products.size() - 1, products.lowerBound(new Product(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void TestSubRangeAndOrderedIterator() {
+        products.sort();
+        List<Product> expected = new ArrayList<>(products);
+        expected.add(product3);
+        expected.add(product5);
+        expected.add(product4);
+        expected.sort(Comparator.comparing(Product::getBarcode));
+
+        long fromBarcode = expected.get(2).getBarcode(), toBarcode = expected.get(expected.size() - 2).getBarcode();
+        Collection<Product> range = products.subRange(new Product(fromBarcode), new Product(toBarcode));
+        List<Product> sortedInRange = new ArrayList<>(expected.subList(2, expected.size() - 2));
+        sortedInRange.removeAll(List.of(product3, product4, product5));
+        assertEquals(sortedInRange, new ArrayList<>(range));
+
+        // items of the unsorted tail are merged into the range and the iteration, without sorting the list itself
+        products.add(product3);
+        products.add(product5);
+        products.add(product4);
+        range = products.subRange(new Product(fromBarcode), new Product(toBarcode));
+        assertEquals(expected.subList(2, expected.size() - 2), new ArrayList<>(range));
+        assertEquals(expected.size() - 4, range.size());
+        List<Product> iterated = new ArrayList<>();
+        products.orderedIterator().forEachRemaining(iterated::add);
+        assertEquals(expected, iterated);
+        assertSame(product4, products.get(products.size() - 1));
+
+        assertTrue(products.subRange(new Product(1), new Product(2)).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> {
+            products.sort();
+            products.subRange(new Product(0), new Product(Long.MAX_VALUE)).clear();
+        });
+    }
 }
@@ -0,0 +1,102 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * compares the primitive OrderedLongKeyList with an OrderedArrayList of Purchases on the same merge and sort workload
+ */
+public class OrderedLongKeyListPerformanceTest {
+    private static final int NUMBER_OF_BARCODES = 50_000;
+    private static final int NUMBER_OF_MERGES = 500_000;
+    private static final int SORT_INTERVAL = 2_000;       // the unsorted section is sorted after this number of merges
+
+    private long[] generateBarcodes(long seed) {
+        Random random = new Random(seed);
+        long[] barcodes = new long[NUMBER_OF_MERGES];
+        for (int i = 0; i < barcodes.length; i++) {
+            barcodes[i] = SyntheticProducts.barcode(random.nextInt(NUMBER_OF_BARCODES));
+        }
+        return barcodes;
+    }
+
+    @Test
+    void compareMergePerformance() {
+        long[] barcodes = this.generateBarcodes(2021L);
+        Product product = new Product(0L, "any", 1.0);
+
+        System.gc();
+        long start = System.nanoTime();
+        OrderedArrayList<Purchase> objectList = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        for (int i = 0; i < barcodes.length; i++) {
+            objectList.merge(new Purchase(new Product(barcodes[i]), 1), (p1, p2) -> {
+                p1.addCount(p2.getCount());
+                return p1;
+            });
+            if (i % SORT_INTERVAL == 0) objectList.sort();
+        }
+        objectList.sort();
+        double objectSeconds = (System.nanoTime() - start) / 1E9;
+
+        System.gc();
+        start = System.nanoTime();
+        OrderedLongKeyList<Product> primitiveList = new OrderedLongKeyList<>();
+        for (int i = 0; i < barcodes.length; i++) {
+            primitiveList.merge(barcodes[i], 1, product);
+            if (i % SORT_INTERVAL == 0) primitiveList.sort();
+        }
+        primitiveList.sort();
+        double primitiveSeconds = (System.nanoTime() - start) / 1E9;
+
+        System.out.printf("%d merges into %d barcodes: OrderedArrayList %.3f s, OrderedLongKeyList %.3f s (%.1fx)%n",
+                NUMBER_OF_MERGES, primitiveList.size(), objectSeconds, primitiveSeconds, objectSeconds / primitiveSeconds);
+        assertEquals(objectList.size(), primitiveList.size());
+        assertEquals((long) objectList.aggregate(Purchase::getCount), primitiveList.aggregateCounts());
+        for (int i = 0; i < objectList.size(); i++) {
+            assertEquals(objectList.get(i).getBarcode(), primitiveList.getKey(i));
+        }
+    }
+
+    /**
+     * compares the retained heap of both lists with the same purchases of the same products
+     * both lists are allocated at their final capacity, such that building them leaves no garbage
+     * and every byte that is allocated is retained; the used heap after garbage collection proved too noisy
+     * in a shared test JVM to tell the difference
+     */
+    @Test
+    void compareRetainedHeap() {
+        final int numEntries = 500_000;
+        List<Product> products = new ArrayList<>(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            products.add(new Product(8710000000000L + 7L * i, null, 1.0));
+        }
+
+        long start = Benchmark.allocatedBytes();
+        OrderedArrayList<Purchase> objectList = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        objectList.ensureCapacity(numEntries);
+        for (Product product : products) {
+            objectList.add(new Purchase(product, 1));
+        }
+        long objectBytes = Benchmark.allocatedBytes() - start;
+
+        start = Benchmark.allocatedBytes();
+        OrderedLongKeyList<Product> primitiveList = new OrderedLongKeyList<>(numEntries);
+        for (Product product : products) {
+            primitiveList.add(product.getBarcode(), 1, product);
+        }
+        long primitiveBytes = Benchmark.allocatedBytes() - start;
+
+        System.out.printf("%d entries: OrderedArrayList %.1f bytes each, OrderedLongKeyList %.1f bytes each%n",
+                numEntries, (double) objectBytes / numEntries, (double) primitiveBytes / numEntries);
+        assertEquals(objectList.size(), primitiveList.size());
+        // a Purchase of 24 bytes and a reference of 4 bytes, against a long, an int and a reference
+        assertTrue(primitiveBytes * 3 < objectBytes * 2);
+    }
+}
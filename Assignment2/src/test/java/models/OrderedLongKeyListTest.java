@@ -0,0 +1,90 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderedLongKeyListTest {
+    OrderedList<Product> products;
+    OrderedLongKeyList<Product> purchases;
+
+    @BeforeEach
+    void setup() {
+        products = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
+        PurchaseTracker.importItemsFromFile(products,
+                OrderedLongKeyListTest.class.getResource("/products.txt").getPath(),
+                Product::fromLine);
+        purchases = new OrderedLongKeyList<>(4);
+    }
+
+    @Test
+    void sortMatchesObjectList() {
+        Random random = new Random(2021L);
+        OrderedList<Purchase> expected = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1 + random.nextInt(300); i++) {
+                Product product = products.get(random.nextInt(products.size()));
+                // also keys outside of the product range
+                long key = random.nextInt(4) == 0 ? random.nextLong() : product.getBarcode();
+                purchases.add(key, i, product);
+                expected.add(new Purchase(new Product(key), i));
+            }
+            purchases.sort();
+            expected.sort();
+            assertEquals(expected.size(), purchases.size());
+            assertEquals(purchases.size(), purchases.getNumSorted());
+            for (int i = 0; i < purchases.size(); i++) {
+                assertEquals(expected.get(i).getBarcode(), purchases.getKey(i));
+            }
+        }
+    }
+
+    @Test
+    void mergeAndSearch() {
+        Product product = products.get(0);
+        assertEquals(-1, purchases.indexOfByBinarySearch(product.getBarcode()));
+        assertTrue(purchases.merge(product.getBarcode(), 5, product));
+        assertFalse(purchases.merge(product.getBarcode(), 7, product));
+        // found by linear search in the unsorted section
+        assertEquals(0, purchases.indexOfByBinarySearch(product.getBarcode()));
+        assertEquals(12, purchases.getCount(0));
+
+        for (Product other : products) {
+            purchases.merge(other.getBarcode(), 1, other);
+        }
+        purchases.sort();
+        int index = purchases.indexOfByBinarySearch(product.getBarcode());
+        assertEquals(13, purchases.getCount(index));
+        assertSame(product, purchases.getValue(index));
+        assertFalse(purchases.merge(product.getBarcode(), 2, product, Math::max));
+        assertEquals(13, purchases.getCount(index));
+        assertEquals(-1, purchases.indexOfByBinarySearch(1L));
+        assertThrows(IndexOutOfBoundsException.class, () -> purchases.getKey(purchases.size()));
+    }
+
+    @Test
+    void aggregateMatchesObjectList() {
+        Random random = new Random(2022L);
+        OrderedList<Purchase> expected = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        for (int i = 0; i < 10_000; i++) {
+            Product product = products.get(random.nextInt(products.size()));
+            int count = random.nextInt(100);
+            purchases.merge(product.getBarcode(), count, product);
+            expected.merge(new Purchase(product, count), (p1, p2) -> {
+                p1.addCount(p2.getCount());
+                return p1;
+            });
+        }
+        assertEquals(expected.size(), purchases.size());
+        assertEquals(expected.aggregate(Purchase::getCount), purchases.aggregateCounts());
+        assertEquals(expected.aggregate(p -> p.getCount() * p.getProduct().getPrice()),
+                purchases.aggregate((barcode, count, product) -> count * product.getPrice()), 0.001);
+
+        purchases.clear();
+        assertTrue(purchases.isEmpty());
+        assertEquals(0, purchases.aggregateCounts());
+    }
+}
@@ -0,0 +1,91 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductCatalogueTest {
+    static final LocalDate DAY1 = LocalDate.of(2021, 10, 1);
+    static final LocalDate DAY2 = LocalDate.of(2021, 10, 2);
+
+    PurchaseTracker purchaseTracker;
+    ProductCatalogue catalogue;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        catalogue = purchaseTracker.getCatalogue();
+    }
+
+    @Test
+    void findsAllProductsByBarcode() {
+        assertEquals(purchaseTracker.getProducts().size(), catalogue.size());
+        for (int round = 0; round < 2; round++) {
+            // the second round is served from the front cache
+            for (Product product : purchaseTracker.getProducts()) {
+                assertSame(product, catalogue.findProduct(product.getBarcode()));
+                assertSame(product, catalogue.getProduct(catalogue.indexOf(product.getBarcode())));
+            }
+        }
+        assertNull(catalogue.findProduct(404040404040404L));
+        assertEquals(-1, catalogue.indexOf(404040404040404L));
+    }
+
+    @Test
+    void pricesFollowTheirEffectiveDates() {
+        Product product = purchaseTracker.getProducts().get(0);
+        double basePrice = product.getPrice();
+        assertTrue(catalogue.changePrice(product.getBarcode(), DAY2.plusDays(7), 3.0));
+        assertTrue(catalogue.changePrice(product.getBarcode(), DAY2, 2.0));
+        assertFalse(catalogue.changePrice(404040404040404L, DAY2, 1.0));
+
+        assertEquals(basePrice, catalogue.getPrice(product.getBarcode(), DAY1));
+        assertEquals(2.0, catalogue.getPrice(product.getBarcode(), DAY2));
+        assertEquals(2.0, catalogue.getPrice(product.getBarcode(), DAY2.plusDays(6)));
+        assertEquals(3.0, catalogue.getPrice(product.getBarcode(), DAY2.plusDays(7)));
+        // the product itself, and thereby the reported totals, keep the price that was imported
+        assertEquals(basePrice, product.getPrice());
+
+        // a change at the same day replaces that version
+        catalogue.changePrice(product.getBarcode(), DAY2, 2.5);
+        SortedMap<LocalDate, Double> history = catalogue.getPriceHistory(product.getBarcode());
+        assertEquals(List.of(LocalDate.MIN, DAY2, DAY2.plusDays(7)), new ArrayList<>(history.keySet()));
+        assertEquals(List.of(basePrice, 2.5, 3.0), new ArrayList<>(history.values()));
+
+        // an undated change replaces the base price, of the product as well, and keeps the dated versions
+        assertTrue(catalogue.changePrice(product.getBarcode(), 4.0));
+        assertFalse(catalogue.changePrice(404040404040404L, 4.0));
+        history = catalogue.getPriceHistory(product.getBarcode());
+        assertEquals(List.of(LocalDate.MIN, DAY2, DAY2.plusDays(7)), new ArrayList<>(history.keySet()));
+        assertEquals(List.of(4.0, 2.5, 3.0), new ArrayList<>(history.values()));
+        assertEquals(4.0, catalogue.getPrice(product.getBarcode(), DAY1));
+        assertEquals(2.5, catalogue.getPrice(product.getBarcode(), DAY2));
+        assertEquals(3.0, catalogue.getPrice(product.getBarcode(), DAY2.plusDays(7)));
+        assertEquals(4.0, catalogue.getBasePrice(catalogue.indexOf(product.getBarcode())));
+        assertEquals(4.0, product.getPrice());
+    }
+
+    @Test
+    void cubeRevenueUsesThePriceOfTheDay() {
+        PurchaseCube cube = purchaseTracker.buildCubeFromVault("/purchases");
+        Product product = purchaseTracker.getProducts().get(0);
+        long volumeOnDay2 = cube.getPurchases(DAY2, DAY2, null, null).stream()
+                .filter(purchase -> purchase.getBarcode() == product.getBarcode())
+                .mapToLong(Purchase::getCount).sum();
+        double revenueOnDay1 = cube.getRevenue(DAY1, DAY1, null, null);
+        double revenueOnDay2 = cube.getRevenue(DAY2, DAY2, null, null);
+
+        catalogue.changePrice(product.getBarcode(), DAY2, product.getPrice() + 1.0);
+
+        // the cube that has been built before the change follows it, like a cube that is built afterwards
+        PurchaseCube after = purchaseTracker.buildCubeFromVault("/purchases");
+        assertEquals(revenueOnDay1, cube.getRevenue(DAY1, DAY1, null, null), 1e-6);
+        assertEquals(revenueOnDay2 + volumeOnDay2, cube.getRevenue(DAY2, DAY2, null, null), 1e-6);
+        assertEquals(after.getRevenue(DAY2, DAY2, null, null), cube.getRevenue(DAY2, DAY2, null, null), 1e-6);
+    }
+}
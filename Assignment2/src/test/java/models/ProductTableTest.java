@@ -0,0 +1,124 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductTableTest {
+
+    @TempDir
+    Path folder;
+
+    PurchaseTracker purchaseTracker;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.importPurchasesFromVault("/purchases");
+    }
+
+    @Test
+    public void tableViewsMatchTheProducts() throws IOException {
+        ProductTable table = ProductTable.importFromFile(
+                Paths.get(PurchaseTracker.class.getResource("/products.txt").getPath()));
+        assertEquals(purchaseTracker.getProducts().size(), table.size());
+        for (Product product : purchaseTracker.getProducts()) {
+            Product view = table.findProduct(product.getBarcode());
+            assertEquals(product.getBarcode(), view.getBarcode());
+            assertEquals(product.getTitle(), view.getTitle());
+            assertEquals(product.getPrice(), view.getPrice());
+        }
+        assertNull(table.findProduct(1L));
+        assertEquals(-1, table.indexOf(Long.MAX_VALUE));
+
+        // equal titles are pooled once, titles are UTF-8, and rows are ordered by barcode without duplicates
+        Path productFile = folder.resolve("products.txt");
+        Files.write(productFile, Arrays.asList("30, Crème brûlée, 2.5", "10, Crème brûlée, 3.0", "20", "10, Crème brûlée, 1.0", "x, y"));
+        table = ProductTable.importFromFile(productFile);
+        assertEquals(3, table.size());
+        assertEquals(10L, table.getBarcode(0));
+        assertEquals("Crème brûlée", table.getTitle(0));
+        assertEquals("Crème brûlée", table.getTitle(2));
+        assertNull(table.getTitle(1));
+        assertEquals(1 + "Crème brûlée".getBytes("UTF-8").length, table.getTitlePoolSize());
+        table.setPrice(2, 2.75);
+        assertEquals(2.75, table.findProduct(30L).getPrice());
+    }
+
+    @Test
+    public void countsMatchTheAggregatedPurchases() {
+        PurchaseCounts counts = purchaseTracker.countPurchasesFromVault("/purchases");
+        List<Purchase> purchases = counts.getPurchases();
+        assertEquals(purchaseTracker.getPurchases().size(), counts.size());
+        for (int i = 0; i < purchases.size(); i++) {
+            Purchase purchase = purchaseTracker.getPurchases().get(i);
+            assertEquals(purchase.getBarcode(), purchases.get(i).getBarcode());
+            assertEquals(purchase.getCount(), purchases.get(i).getCount());
+            assertEquals(purchase.getProduct().getTitle(), purchases.get(i).getProduct().getTitle());
+            assertEquals(purchase.getCount(), counts.getCount(purchase.getBarcode()));
+        }
+        assertEquals(16730, counts.getTotalCount());
+        assertFalse(counts.addCount(1L, 5));
+        assertNull(counts.findPurchase(1L));
+        assertEquals(0, counts.getCount(1L));
+    }
+
+    /**
+     * @return the used heap after a full garbage collection, as far as it can be requested
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * compares the retained heap of Product and Purchase instances with the struct-of-arrays representation,
+     * as the difference in used heap after garbage collection (JOL is not available in this build)
+     */
+    @Test
+    public void tableTakesAFractionOfTheHeapOfObjects() {
+        final int numProducts = 500_000;
+        final int numTitles = 1_000;
+
+        long before = usedHeap();
+        List<Product> products = new ArrayList<>(numProducts);
+        List<Purchase> purchases = new ArrayList<>(numProducts);
+        for (int i = 0; i < numProducts; i++) {
+            // every title is a new String, as it is when parsed from its own line
+            Product product = new Product(8710000000000L + 7L * i, "product title " + i % numTitles, 1.0 + i % 10);
+            products.add(product);
+            purchases.add(new Purchase(product, i % 7));
+        }
+        long objectBytes = usedHeap() - before;
+
+        // the objects remain on the heap, such that only the retained arrays of the table add up
+        before = usedHeap();
+        PurchaseCounts counts = new PurchaseCounts(new ProductTable(products));
+        for (int i = 0; i < numProducts; i++) {
+            counts.addCount(purchases.get(i).getBarcode(), purchases.get(i).getCount());
+        }
+        long tableBytes = usedHeap() - before;
+
+        System.out.printf("%d products and purchases: %.1f bytes each as objects, %.1f bytes each as arrays\n",
+                numProducts, (double) objectBytes / numProducts, (double) tableBytes / numProducts);
+        assertEquals(numProducts, counts.getProducts().size());
+        assertEquals(purchases.size(), products.size());
+        assertTrue(3 * tableBytes < objectBytes);
+    }
+}
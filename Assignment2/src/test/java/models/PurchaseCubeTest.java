@@ -0,0 +1,96 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseCubeTest {
+    static final LocalDate DAY1 = LocalDate.of(2021, 10, 1);
+    static final LocalDate DAY2 = LocalDate.of(2021, 10, 2);
+
+    PurchaseTracker purchaseTracker;
+    PurchaseCube cube;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        cube = purchaseTracker.buildCubeFromVault("/purchases");
+    }
+
+    /**
+     * imports the purchases of a part of the vault with a separate tracker, for comparison
+     */
+    private Map<Long, Integer> importCounts(String resourceName) {
+        PurchaseTracker tracker = new PurchaseTracker();
+        tracker.importProductsFromVault("/products.txt");
+        tracker.importPurchasesFromVault(resourceName);
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Purchase purchase : tracker.getPurchases()) {
+            counts.put(purchase.getBarcode(), purchase.getCount());
+        }
+        return counts;
+    }
+
+    private static Map<Long, Integer> toCounts(List<Purchase> purchases) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Purchase purchase : purchases) {
+            counts.put(purchase.getBarcode(), purchase.getCount());
+        }
+        return counts;
+    }
+
+    @Test
+    void dimensionsFollowTheVault() {
+        assertEquals(List.of(DAY1, DAY2), cube.getDays());
+        assertEquals(List.of("Amsterdam", "Rotterdam", PurchaseCube.ONLINE), cube.getCities());
+        assertEquals(List.of("coolsingel", "lijnbaan"), cube.getStores("Rotterdam"));
+        assertEquals(8, cube.getStores(null).size());
+    }
+
+    @Test
+    void rollupsMatchTheImport() {
+        assertEquals(16730, cube.getVolume(null, null, null, null));
+        assertEquals(importCounts("/purchases"), toCounts(cube.getPurchases(null, null, null, null)));
+        assertEquals(importCounts("/purchases/20211001/Rotterdam"),
+                toCounts(cube.getPurchases(DAY1, DAY1, "Rotterdam", null)));
+        assertEquals(importCounts("/purchases/20211002/Amsterdam/vijzelstraat.txt"),
+                toCounts(cube.getPurchases(DAY2, DAY2, "Amsterdam", "vijzelstraat")));
+
+        long volume = 0;
+        for (String city : cube.getCities()) {
+            for (String store : cube.getStores(city)) {
+                volume += cube.getVolume(DAY1, DAY2, city, store);
+            }
+        }
+        assertEquals(16730, volume);
+        assertEquals(cube.getVolume(DAY1, DAY1, null, null) + cube.getVolume(DAY2, DAY2, null, null), volume);
+        assertEquals(0, cube.getVolume(DAY1, DAY2, "Utrecht", null));
+        assertEquals(0, cube.getVolume(DAY2, DAY2, PurchaseCube.ONLINE, "webshop"));
+    }
+
+    @Test
+    void topsAndRevenues() {
+        Comparator<Purchase> byCount = Comparator.comparingInt(Purchase::getCount).reversed();
+        List<Purchase> tops = cube.getTops(3, byCount, DAY1, DAY2, "Rotterdam", null);
+        assertEquals(3, tops.size());
+        List<Purchase> all = new ArrayList<>(cube.getPurchases(DAY1, DAY2, "Rotterdam", null));
+        all.sort(byCount);
+        for (int i = 0; i < tops.size(); i++) {
+            assertEquals(all.get(i).getCount(), tops.get(i).getCount());
+        }
+
+        double totalRevenue = 0.0;
+        for (Map<String, Double> storeRevenues : cube.getRevenueByStorePerDay(null, null).values()) {
+            for (double revenue : storeRevenues.values()) {
+                totalRevenue += revenue;
+            }
+        }
+        assertEquals(cube.getRevenue(null, null, null, null), totalRevenue, 0.01);
+        assertEquals(Set.of(DAY2), cube.getRevenueByStorePerDay(DAY2, null).keySet());
+    }
+}
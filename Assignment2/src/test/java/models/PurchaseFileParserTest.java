@@ -0,0 +1,59 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseFileParserTest {
+
+    @TempDir
+    Path folder;
+
+    private List<String> parse(PurchaseFileParser parser, String content) throws IOException {
+        Path file = this.folder.resolve("store.txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<>();
+        long numLines = parser.parse(file, (barcode, count) -> lines.add(barcode + "/" + count));
+        assertEquals(lines.size(), numLines);
+        return lines;
+    }
+
+    @Test
+    public void parsesPurchaseLines() throws IOException {
+        PurchaseFileParser parser = new PurchaseFileParser();
+        assertEquals(List.of("8712100516382/10", "8718907136068/29"),
+                this.parse(parser, "8712100516382, 10\n8718907136068, 29\n"));
+        // windows line endings, a missing count, a negative count and no newline at the end
+        assertEquals(List.of("8712100516382/10", "8718907136068/0", "8711327345210/-3"),
+                this.parse(parser, "8712100516382, 10\r\n8718907136068\r\n8711327345210, -3"));
+        assertTrue(this.parse(parser, "").isEmpty());
+    }
+
+    @Test
+    public void skipsCorruptLines() throws IOException {
+        PurchaseFileParser parser = new PurchaseFileParser();
+        assertEquals(List.of("8712100516382/10", "8711327345210/3"),
+                this.parse(parser, "8712100516382, 10\n\nbarcode, count\n, 7\n8711327345210, 3, extra\n"));
+    }
+
+    @Test
+    public void parsesLinesAcrossBufferBoundaries() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            long barcode = SyntheticProducts.barcode(i);
+            content.append(barcode).append(", ").append(i).append('\n');
+            expected.add(barcode + "/" + i);
+        }
+        // a tiny buffer splits many numbers in two
+        assertEquals(expected, this.parse(new PurchaseFileParser(7), content.toString()));
+    }
+}
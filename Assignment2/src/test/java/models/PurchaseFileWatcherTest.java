@@ -0,0 +1,58 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseFileWatcherTest {
+
+    @TempDir
+    Path root;
+
+    PurchaseTracker purchaseTracker;
+    long barcode1, barcode2;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.startStreaming(3);
+        barcode1 = purchaseTracker.getProducts().get(0).getBarcode();
+        barcode2 = purchaseTracker.getProducts().get(1).getBarcode();
+    }
+
+    private void append(Path file, String lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void followsAppendedLinesAndNewFiles() throws IOException {
+        PurchaseFileWatcher watcher = new PurchaseFileWatcher(purchaseTracker, root);
+        Path store = root.resolve("20211002").resolve("Amsterdam").resolve("vijzelstraat.txt");
+
+        append(store, barcode1 + ", 10\n" + barcode2 + ", 5\n" + barcode1 + ", 2");
+        // the last line is not complete yet
+        assertEquals(2, watcher.poll());
+        assertEquals(15, purchaseTracker.getTotalCount());
+
+        append(store, "0\n");
+        append(root.resolve("20211002").resolve("webshop.txt"), barcode2 + ", 1\n404040404040404, 7\n");
+        root.resolve("20211002").resolve("notes.csv").toFile().createNewFile();
+        assertEquals(2, watcher.poll());
+        assertEquals(15 + 20 + 1, purchaseTracker.getTotalCount());
+        assertEquals(0, watcher.poll());
+        assertEquals(4, watcher.getNumSubmitted());
+
+        assertEquals(barcode1, purchaseTracker.getLiveTopsByCount().get(0).getBarcode());
+        assertEquals(30, purchaseTracker.getLiveTopsByCount().get(0).getCount());
+    }
+}
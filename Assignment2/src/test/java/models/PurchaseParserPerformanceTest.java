@@ -0,0 +1,83 @@
+package models;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * compares the throughput of the text-based and the byte-level parsing of raw purchase files
+ * the size of the generated corpus can be raised by -Dcorpus.megabytes=..., e.g. to a few GB for a nightly run
+ */
+public class PurchaseParserPerformanceTest {
+    private static final int CORPUS_MEGABYTES = Integer.getInteger("corpus.megabytes", 16);
+
+    @TempDir
+    static Path folder;
+    static Path corpus;
+    static OrderedList<Product> products;
+    static LongIndexMap productIndex;
+
+    @BeforeAll
+    static void generateCorpus() throws IOException {
+        products = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
+        PurchaseTracker.importItemsFromFile(products,
+                PurchaseParserPerformanceTest.class.getResource("/products.txt").getPath(),
+                Product::fromLine);
+        products.sort();
+        productIndex = new LongIndexMap(products.size());
+        for (int index = 0; index < products.size(); index++) {
+            productIndex.put(products.get(index).getBarcode(), index);
+        }
+
+        corpus = folder.resolve("corpus.txt");
+        Random random = new Random(20211002L);
+        long targetSize = CORPUS_MEGABYTES * 1024L * 1024L;
+        try (BufferedWriter writer = Files.newBufferedWriter(corpus)) {
+            long size = 0;
+            while (size < targetSize) {
+                String line = products.get(random.nextInt(products.size())).getBarcode() + ", " + (1 + random.nextInt(99));
+                writer.write(line);
+                writer.newLine();
+                size += line.length() + 1;
+            }
+        }
+    }
+
+    @Test
+    public void compareParserThroughput() throws IOException {
+        double megabytes = Files.size(corpus) / (1024.0 * 1024.0);
+
+        System.gc();
+        long start = System.nanoTime();
+        long[] textTotal = new long[1];
+        try (Stream<String> lines = Files.lines(corpus)) {
+            lines.forEach(line -> {
+                Purchase purchase = Purchase.fromLine(line, products);
+                if (purchase != null) textTotal[0] += purchase.getCount();
+            });
+        }
+        double textSeconds = (System.nanoTime() - start) / 1E9;
+
+        System.gc();
+        start = System.nanoTime();
+        long[] byteTotal = new long[1];
+        new PurchaseFileParser().parse(corpus, (barcode, count) -> {
+            if (productIndex.get(barcode) >= 0) byteTotal[0] += count;
+        });
+        double byteSeconds = (System.nanoTime() - start) / 1E9;
+
+        System.out.printf("Parsed %.1f MB: text %.1f MB/s, byte-level %.1f MB/s%n",
+                megabytes, megabytes / textSeconds, megabytes / byteSeconds);
+        assertEquals(textTotal[0], byteTotal[0]);
+    }
+}
@@ -0,0 +1,84 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * measures the error of the approximate PurchaseSketch against the exact aggregation by an OrderedArrayList,
+ * on a skewed (Zipf-like) stream of purchases, for several sketch sizes
+ */
+public class PurchaseSketchAccuracyTest {
+    private static final int NUMBER_OF_BARCODES = 20_000;
+    private static final int NUMBER_OF_PURCHASES = 500_000;
+    private static final int NUMBER_OF_TOPS = 10;
+    private static final int SORT_INTERVAL = 1_000;     // the exact list is re-sorted after this number of merges
+
+    @Test
+    void compareSketchesWithExactAggregation() {
+        Product[] products = SyntheticProducts.create(NUMBER_OF_BARCODES);
+        ProductCatalogue catalogue = new ProductCatalogue(Arrays.asList(products));
+
+        // draw product ranks with probability proportional to 1 / rank
+        double[] cumulative = new double[NUMBER_OF_BARCODES];
+        double sum = 0;
+        for (int i = 0; i < NUMBER_OF_BARCODES; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(7);
+        int[] stream = new int[NUMBER_OF_PURCHASES];
+        for (int p = 0; p < NUMBER_OF_PURCHASES; p++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            stream[p] = rank < 0 ? -rank - 1 : rank;
+        }
+
+        OrderedList<Purchase> exact = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        for (int p = 0; p < NUMBER_OF_PURCHASES; p++) {
+            exact.merge(new Purchase(products[stream[p]], 1), (p1, p2) -> {
+                p1.addCount(p2.getCount());
+                return p1;
+            });
+            if (p % SORT_INTERVAL == 0) exact.sort();
+        }
+        List<Purchase> exactTops = new ArrayList<>(exact);
+        exactTops.sort(Comparator.comparing(Purchase::getCount).reversed().thenComparing(Purchase::getBarcode));
+        Set<Long> exactTopBarcodes = new HashSet<>();
+        for (int rank = 0; rank < NUMBER_OF_TOPS; rank++) {
+            exactTopBarcodes.add(exactTops.get(rank).getBarcode());
+        }
+
+        System.out.printf("%d purchases of %d distinct products, exact top %d\n",
+                NUMBER_OF_PURCHASES, exact.size(), NUMBER_OF_TOPS);
+        System.out.println("   width  tops  precision  top-recall  count error (mean/max)  distinct error");
+        int[][] configurations = {{256, 16, 8}, {1024, 64, 12}, {4096, 256, 14}};
+        for (int[] configuration : configurations) {
+            PurchaseSketch sketch = new PurchaseSketch(4, configuration[0], configuration[1], configuration[2]);
+            for (int p = 0; p < NUMBER_OF_PURCHASES; p++) {
+                sketch.add(products[stream[p]].getBarcode(), 1);
+            }
+
+            int hits = 0;
+            for (Purchase purchase : sketch.getTops(NUMBER_OF_TOPS, catalogue)) {
+                if (exactTopBarcodes.contains(purchase.getBarcode())) hits++;
+            }
+            double totalError = 0, maxError = 0;
+            for (Purchase purchase : exact) {
+                double error = sketch.estimateCount(purchase.getBarcode()) - purchase.getCount();
+                totalError += error;
+                maxError = Math.max(maxError, error);
+            }
+            double distinctError = Math.abs(sketch.estimateDistinctProducts() - exact.size()) / (double) exact.size();
+
+            System.out.printf("%8d %5d %10d %10.0f%% %12.1f / %-10.0f %13.1f%%\n",
+                    configuration[0], configuration[1], configuration[2], 100.0 * hits / NUMBER_OF_TOPS,
+                    totalError / exact.size(), maxError, 100 * distinctError);
+            if (configuration[0] >= 1024) {
+                assertTrue(hits >= NUMBER_OF_TOPS - 1);
+                assertTrue(distinctError < 0.1);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseSketchTest {
+
+    @Test
+    void countMinNeverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(4, 100);
+        assertEquals(128, sketch.getWidth());
+        Map<Long, Integer> exact = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long barcode = 1000 + random.nextInt(500);
+            sketch.add(barcode, 1);
+            exact.merge(barcode, 1, Integer::sum);
+        }
+        assertEquals(10_000, sketch.getTotalCount());
+        for (Map.Entry<Long, Integer> entry : exact.entrySet()) {
+            assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue());
+        }
+    }
+
+    @Test
+    void spaceSavingMonitorsFrequentBarcodes() {
+        SpaceSaving summary = new SpaceSaving(10);
+        // barcode 1 takes half of all purchases, the other purchases are spread over 1000 barcodes
+        for (int i = 0; i < 2000; i++) {
+            summary.add(1, 1);
+            summary.add(100 + i % 1000, 1);
+        }
+        assertEquals(10, summary.size());
+        assertEquals(1, summary.getTopBarcodes(1)[0]);
+        assertTrue(summary.getCount(1) >= 2000);
+        assertTrue(summary.getCount(1) - summary.getError(1) <= 2000);
+        assertEquals(0, summary.getCount(99));
+    }
+
+    @Test
+    void hyperLogLogEstimatesDistinctBarcodes() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        assertEquals(0, sketch.estimate());
+        for (long barcode = 0; barcode < 50_000; barcode++) {
+            sketch.add(8710000000000L + barcode);
+            sketch.add(8710000000000L + barcode / 2);
+        }
+        assertEquals(50_000, sketch.estimate(), 50_000 * 0.05);
+    }
+
+    @Test
+    void mergedSketchesMatchOneSketch() {
+        PurchaseSketch all = new PurchaseSketch(), part1 = new PurchaseSketch(), part2 = new PurchaseSketch();
+        Random random = new Random(2);
+        for (int i = 0; i < 20_000; i++) {
+            long barcode = 5000 + (long) Math.abs(random.nextGaussian() * 200);
+            all.add(barcode, 1);
+            (i % 3 == 0 ? part1 : part2).add(barcode, 1);
+        }
+        part1.merge(part2);
+        assertEquals(all.getTotalCount(), part1.getTotalCount());
+        assertEquals(all.estimateDistinctProducts(), part1.estimateDistinctProducts());
+        assertEquals(all.estimateCount(5000), part1.estimateCount(5000));
+    }
+
+    @Test
+    void sketchesCanBeSavedAndLoaded() throws IOException {
+        PurchaseSketch sketch = new PurchaseSketch(3, 64, 8, 6);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(i % 37, 1 + i % 3);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        PurchaseSketch loaded = PurchaseSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.getTotalCount(), loaded.getTotalCount());
+        assertEquals(sketch.estimateDistinctProducts(), loaded.estimateDistinctProducts());
+        for (long barcode = 0; barcode < 37; barcode++) {
+            assertEquals(sketch.estimateCount(barcode), loaded.estimateCount(barcode));
+        }
+        // a loaded sketch can be merged further
+        loaded.merge(sketch);
+        assertEquals(2 * sketch.getTotalCount(), loaded.getTotalCount());
+    }
+
+    @Test
+    void storeSketchesOfTheVaultMergeIntoTheTotals() {
+        PurchaseTracker purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.importPurchasesFromVault("/purchases");
+        Map<String, PurchaseSketch> sketches = purchaseTracker.sketchPurchasesFromVault("/purchases");
+        assertEquals(14, sketches.size());
+        assertTrue(sketches.containsKey("20211001/webshop"));
+
+        PurchaseSketch total = new PurchaseSketch();
+        for (PurchaseSketch sketch : sketches.values()) {
+            total.merge(sketch);
+        }
+        assertEquals(16730, total.getTotalCount());
+        assertEquals(61, total.estimateDistinctProducts(), 3);
+
+        List<Purchase> exact = new ArrayList<>(purchaseTracker.getPurchases());
+        exact.sort(Comparator.comparing(Purchase::getCount).reversed());
+        List<Purchase> tops = total.getTops(3, purchaseTracker.getCatalogue());
+        assertEquals(exact.get(0).getBarcode(), tops.get(0).getBarcode());
+        assertTrue(tops.get(0).getCount() >= exact.get(0).getCount());
+    }
+}
@@ -0,0 +1,160 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseSnapshotTest {
+
+    @TempDir
+    Path folder;
+
+    PurchaseTracker purchaseTracker;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.importPurchasesFromVault("/purchases");
+    }
+
+    private static Map<Long, Integer> countsOf(PurchaseTracker tracker) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Purchase purchase : tracker.getPurchases()) {
+            counts.put(purchase.getBarcode(), purchase.getCount());
+        }
+        return counts;
+    }
+
+    private void append(Path file, String lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void loadedSnapshotRestoresProductsAndPurchases() {
+        Path snapshotFile = folder.resolve("tracker.snapshot");
+        purchaseTracker.saveSnapshot(snapshotFile);
+        assertTrue(Files.exists(snapshotFile));
+        assertFalse(Files.exists(folder.resolve("tracker.snapshot.tmp")));
+
+        PurchaseTracker restoredTracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+        assertTrue(restoredTracker.loadSnapshot(snapshotFile));
+        assertFalse(restoredTracker.loadSnapshot(folder.resolve("missing.snapshot")));
+
+        assertEquals(purchaseTracker.getProducts().size(), restoredTracker.getProducts().size());
+        for (Product product : purchaseTracker.getProducts()) {
+            Product restored = restoredTracker.findProduct(product.getBarcode());
+            assertNotNull(restored);
+            assertEquals(product.getTitle(), restored.getTitle());
+            assertEquals(product.getPrice(), restored.getPrice());
+        }
+        assertEquals(countsOf(purchaseTracker), countsOf(restoredTracker));
+        // the restored purchases refer to the restored products
+        Purchase purchase = restoredTracker.getPurchases().get(0);
+        assertSame(restoredTracker.findProduct(purchase.getBarcode()), purchase.getProduct());
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path otherFile = folder.resolve("other.snapshot");
+        append(otherFile, "not a snapshot");
+        assertThrows(IllegalStateException.class, () -> purchaseTracker.loadSnapshot(otherFile));
+    }
+
+    @Test
+    public void titlePoolThatFillsTheWriteBuffer() {
+        // the header, the title count and the length of the title leave 2 bytes of the 1 MiB buffer for the product count
+        String title = "x".repeat((1 << 20) - 8 - 4 - 4 - 2);
+        List<Product> products = List.of(new Product(8712100516382L, title, 8.5));
+        Path snapshotFile = folder.resolve("titles.snapshot");
+        new PurchaseSnapshot(products, List.of(), Map.of()).write(snapshotFile);
+
+        PurchaseSnapshot snapshot = PurchaseSnapshot.read(snapshotFile);
+        assertEquals(1, snapshot.getProducts().size());
+        assertEquals(title, snapshot.getProducts().get(0).getTitle());
+        assertEquals(8.5, snapshot.getProducts().get(0).getPrice());
+    }
+
+    @Test
+    public void unterminatedLastLinesAreMergedOnce() throws IOException {
+        long barcode1 = purchaseTracker.getProducts().get(0).getBarcode();
+        long barcode2 = purchaseTracker.getProducts().get(1).getBarcode();
+        Path vault = folder.resolve("vault");
+        Path store = vault.resolve("20211003").resolve("Amsterdam").resolve("damrak.txt");
+        // the last line of a complete file has no trailing newline
+        append(store, barcode1 + ", 10\n" + barcode2 + ", 7");
+
+        for (PurchaseTracker.AggregationMode mode : PurchaseTracker.AggregationMode.values()) {
+            PurchaseTracker tracker = new PurchaseTracker(mode);
+            tracker.importProductsFromVault("/products.txt");
+            tracker.importPurchasesFromFolder(vault.toString());
+            assertEquals(Map.of(barcode1, 10, barcode2, 7), countsOf(tracker));
+            assertEquals(17, tracker.getLedger().getTotalCount());
+            // the last line has been merged, so the file is not merged again
+            assertEquals(0, tracker.importPurchasesIncrementally(vault));
+            assertEquals(17, tracker.getLedger().getTotalCount());
+        }
+
+        PurchaseTracker tracker = new PurchaseTracker();
+        tracker.importProductsFromVault("/products.txt");
+        assertEquals(1, tracker.importPurchasesIncrementally(vault));
+        assertEquals(Map.of(barcode1, 10, barcode2, 7), countsOf(tracker));
+        assertEquals(0, tracker.importPurchasesIncrementally(vault));
+
+        // lines that are appended later are merged once, after the unterminated line
+        append(store, "\n" + barcode1 + ", 3\n");
+        assertEquals(1, tracker.importPurchasesIncrementally(vault));
+        assertEquals(Map.of(barcode1, 13, barcode2, 7), countsOf(tracker));
+        assertEquals(20, tracker.getLedger().getTotalCount());
+        assertEquals(0, tracker.importPurchasesIncrementally(vault));
+    }
+
+    @Test
+    public void incrementalImportMergesOnlyNewAndAppendedLines() throws IOException {
+        long barcode1 = purchaseTracker.getProducts().get(0).getBarcode();
+        long barcode2 = purchaseTracker.getProducts().get(1).getBarcode();
+        Path vault = folder.resolve("vault");
+        Path store = vault.resolve("20211003").resolve("Amsterdam").resolve("damrak.txt");
+        append(store, barcode1 + ", 10\n" + barcode2 + ", 5\n");
+
+        PurchaseTracker tracker = new PurchaseTracker();
+        tracker.importProductsFromVault("/products.txt");
+        assertEquals(1, tracker.importPurchasesIncrementally(vault));
+        assertEquals(15, tracker.getPurchases().stream().mapToInt(Purchase::getCount).sum());
+
+        // restart from a snapshot, and merge the lines and files that were added in the mean time
+        Path snapshotFile = folder.resolve("tracker.snapshot");
+        tracker.saveSnapshot(snapshotFile);
+        append(store, barcode1 + ", 3\n");
+        append(vault.resolve("20211003").resolve("webshop.txt"), barcode2 + ", 1\n");
+
+        PurchaseTracker restartedTracker = new PurchaseTracker();
+        assertTrue(restartedTracker.loadSnapshot(snapshotFile));
+        assertEquals(15, restartedTracker.getPurchases().stream().mapToInt(Purchase::getCount).sum());
+        assertEquals(2, restartedTracker.importPurchasesIncrementally(vault));
+        assertEquals(0, restartedTracker.importPurchasesIncrementally(vault));
+
+        Map<Long, Integer> counts = countsOf(restartedTracker);
+        assertEquals(13, counts.get(barcode1));
+        assertEquals(6, counts.get(barcode2));
+
+        // a rewritten file cannot be merged incrementally, so all files are imported again
+        Files.write(store, (barcode1 + ", 1\n").getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, restartedTracker.importPurchasesIncrementally(vault));
+        counts = countsOf(restartedTracker);
+        assertEquals(1, counts.get(barcode1));
+        assertEquals(1, counts.get(barcode2));
+    }
+}
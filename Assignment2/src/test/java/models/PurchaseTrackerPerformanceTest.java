@@ -0,0 +1,82 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * benchmarks the full import of synthetic vaults of 10^4 purchases and up, with every aggregation mode
+ * the largest corpus can be raised by -Dcorpus.purchases=..., e.g. to 100000000 for a nightly run
+ */
+public class PurchaseTrackerPerformanceTest {
+    private static final long MAX_PURCHASES = Long.getLong("corpus.purchases", 1_000_000L);
+    private static final String[] CITIES = {"Amsterdam", "Rotterdam"};
+    private static final String[] STORES = {"centrum", "noord", "zuid"};
+    private static final int DAYS = 2;
+
+    @TempDir
+    Path folder;
+
+    /**
+     * generates a vault with the lay-out purchases/yyyyMMdd/city/store.txt and a webshop.txt per day
+     *
+     * @return the total count of all generated purchases
+     */
+    private long generateVault(Path root, long numPurchases, OrderedList<Product> products) throws IOException {
+        Random random = new Random(numPurchases);
+        int numFiles = DAYS * (CITIES.length * STORES.length + 1);
+        long totalCount = 0;
+        for (int file = 0; file < numFiles; file++) {
+            Path day = root.resolve(String.format("202110%02d", 1 + file / (numFiles / DAYS)));
+            int store = file % (numFiles / DAYS);
+            Path purchaseFile = store == CITIES.length * STORES.length ? day.resolve("webshop.txt")
+                    : day.resolve(CITIES[store / STORES.length]).resolve(STORES[store % STORES.length] + ".txt");
+            Files.createDirectories(purchaseFile.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(purchaseFile)) {
+                for (long line = file; line < numPurchases; line += numFiles) {
+                    int count = 1 + random.nextInt(9);
+                    writer.write(products.get(random.nextInt(products.size())).getBarcode() + ", " + count);
+                    writer.newLine();
+                    totalCount += count;
+                }
+            }
+        }
+        return totalCount;
+    }
+
+    @Test
+    public void importSyntheticVaults() throws IOException {
+        PurchaseTracker reference = new PurchaseTracker();
+        reference.importProductsFromVault("/products.txt");
+
+        Benchmark benchmark = new Benchmark(1, 2);
+        for (long numPurchases = 10_000; numPurchases <= MAX_PURCHASES; numPurchases *= 10) {
+            Path root = this.folder.resolve("vault" + numPurchases);
+            long totalCount = this.generateVault(root, numPurchases, (OrderedList<Product>) reference.getProducts());
+
+            for (PurchaseTracker.AggregationMode mode : PurchaseTracker.AggregationMode.values()) {
+                PurchaseTracker tracker = new PurchaseTracker(mode);
+                tracker.importProductsFromVault("/products.txt");
+                benchmark.run(String.format("import %d purchases, %s", numPurchases, mode), numPurchases, 1, null, () -> {
+                    tracker.importPurchasesFromFolder(root.toString());
+                    return tracker.getPurchases().size();
+                });
+                assertEquals(totalCount, tracker.getPurchases().stream().mapToLong(Purchase::getCount).sum());
+            }
+
+            PurchaseTracker tracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+            tracker.importProductsFromVault("/products.txt");
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            benchmark.run(String.format("import %d purchases, parallel x%d", numPurchases, parallelism), numPurchases, 1, null,
+                    () -> tracker.importPurchasesFromFolderInParallel(root, parallelism));
+            assertEquals(totalCount, tracker.getPurchases().stream().mapToLong(Purchase::getCount).sum());
+        }
+    }
+}
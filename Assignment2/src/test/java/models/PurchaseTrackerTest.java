@@ -3,6 +3,11 @@ package models;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class PurchaseTrackerTest {
@@ -24,4 +29,179 @@ public class PurchaseTrackerTest {
         assertEquals(61, purchaseTracker.getPurchases().size());
         assertEquals(16730, purchaseTracker.getPurchases().stream().mapToInt(Purchase::getCount).sum());
     }
+
+    @Test
+    public void barcodeIndexModeMatchesOrderedListMode() {
+        PurchaseTracker indexedTracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+        indexedTracker.importProductsFromVault("/products.txt");
+        indexedTracker.importPurchasesFromVault("/purchases");
+
+        Map<Long, Integer> expected = new HashMap<>();
+        for (Purchase purchase : purchaseTracker.getPurchases()) {
+            expected.put(purchase.getBarcode(), purchase.getCount());
+        }
+        Map<Long, Integer> actual = new HashMap<>();
+        for (Purchase purchase : indexedTracker.getPurchases()) {
+            actual.put(purchase.getBarcode(), purchase.getCount());
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), indexedTracker.getPurchases().size());
+
+        // the indexed mode sorts the purchases once, after the import
+        List<Purchase> purchases = indexedTracker.getPurchases();
+        for (int i = 1; i < purchases.size(); i++) {
+            assertTrue(purchases.get(i - 1).getBarcode() < purchases.get(i).getBarcode());
+        }
+    }
+
+    @Test
+    public void parallelImportMatchesSequentialImport() {
+        PurchaseTracker parallelTracker = new PurchaseTracker();
+        parallelTracker.importProductsFromVault("/products.txt");
+        parallelTracker.importPurchasesFromVaultInParallel("/purchases", 4);
+
+        Map<Long, Integer> expected = new HashMap<>();
+        for (Purchase purchase : purchaseTracker.getPurchases()) {
+            expected.put(purchase.getBarcode(), purchase.getCount());
+        }
+        List<Purchase> purchases = parallelTracker.getPurchases();
+        assertEquals(expected.size(), purchases.size());
+        for (int i = 0; i < purchases.size(); i++) {
+            assertEquals(expected.get(purchases.get(i).getBarcode()), purchases.get(i).getCount());
+            if (i > 0) assertTrue(purchases.get(i - 1).getBarcode() < purchases.get(i).getBarcode());
+        }
+    }
+
+    /**
+     * ranks all purchases of the tracker by sorting, for comparison with the live tops
+     */
+    private static List<Purchase> sortedTops(PurchaseTracker tracker, Comparator<Purchase> ranker, int n) {
+        List<Purchase> tops = new ArrayList<>(tracker.getPurchases());
+        tops.sort(ranker.thenComparing(Purchase::getBarcode));
+        return tops.subList(0, Math.min(n, tops.size()));
+    }
+
+    @Test
+    public void streamingMaintainsLiveTopsAndTotals() {
+        Comparator<Purchase> byCount = Comparator.comparingInt(Purchase::getCount).reversed();
+        Comparator<Purchase> byRevenue = Comparator.comparingDouble(
+                (Purchase p) -> p.getCount() * p.getProduct().getPrice()).reversed();
+
+        purchaseTracker.startStreaming(5);
+        assertEquals(sortedTops(purchaseTracker, byCount, 5), purchaseTracker.getLiveTopsByCount());
+        assertEquals(sortedTops(purchaseTracker, byRevenue, 5), purchaseTracker.getLiveTopsByRevenue());
+        assertEquals(16730, purchaseTracker.getTotalCount());
+
+        Random random = new Random(2021L);
+        List<Product> products = purchaseTracker.getProducts();
+        long expectedCount = 16730;
+        for (int i = 0; i < 5000; i++) {
+            Product product = products.get(random.nextInt(products.size()));
+            // mostly sales, and now and then a return
+            int count = i % 100 == 99 ? -random.nextInt(20) : random.nextInt(50);
+            purchaseTracker.submit(new Purchase(product, count));
+            expectedCount += count;
+
+            if (i % 500 == 0) {
+                assertEquals(sortedTops(purchaseTracker, byCount, 5), purchaseTracker.getLiveTopsByCount());
+                assertEquals(sortedTops(purchaseTracker, byRevenue, 5), purchaseTracker.getLiveTopsByRevenue());
+            }
+        }
+        assertEquals(sortedTops(purchaseTracker, byCount, 5), purchaseTracker.getLiveTopsByCount());
+        assertEquals(sortedTops(purchaseTracker, byRevenue, 5), purchaseTracker.getLiveTopsByRevenue());
+        assertEquals(expectedCount, purchaseTracker.getTotalCount());
+        assertEquals(purchaseTracker.getPurchases().stream().mapToDouble(p -> p.getCount() * p.getProduct().getPrice()).sum(),
+                purchaseTracker.getTotalRevenue(), 0.01);
+        assertEquals(expectedCount, purchaseTracker.getPurchases().stream().mapToInt(Purchase::getCount).sum());
+    }
+
+    @Test
+    public void streamingRequiresStartAndKnownProducts() {
+        Purchase purchase = new Purchase(purchaseTracker.getProducts().get(0), 1);
+        assertThrows(IllegalStateException.class, () -> purchaseTracker.submit(purchase));
+        purchaseTracker.startStreaming(3);
+        assertTrue(purchaseTracker.isStreaming());
+        assertFalse(purchaseTracker.submit(404040404040404L, 1));
+
+        // a new import stops the streaming
+        purchaseTracker.importPurchasesFromVault("/purchases");
+        assertFalse(purchaseTracker.isStreaming());
+    }
+
+    @Test
+    public void concurrentFeedsAreMergedByShard() throws Exception {
+        Comparator<Purchase> byCount = Comparator.comparingInt(Purchase::getCount).reversed();
+        Comparator<Purchase> byRevenue = Comparator.comparingDouble(
+                (Purchase p) -> p.getCount() * p.getProduct().getPrice()).reversed();
+        // no purchases yet, so the feeds also append new barcodes concurrently
+        PurchaseTracker streamingTracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+        streamingTracker.importProductsFromVault("/products.txt");
+        streamingTracker.startStreaming(5);
+
+        List<Product> products = streamingTracker.getProducts();
+        int numFeeds = 4, numSubmits = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(numFeeds);
+        List<Future<Long>> feeds = new ArrayList<>();
+        for (int f = 0; f < numFeeds; f++) {
+            long seed = f;
+            feeds.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long count = 0;
+                for (int i = 0; i < numSubmits; i++) {
+                    int amount = i % 100 == 99 ? -random.nextInt(5) : 1 + random.nextInt(10);
+                    assertTrue(streamingTracker.submit(products.get(random.nextInt(products.size())).getBarcode(), amount));
+                    count += amount;
+                    if (i % 5000 == 0) assertFalse(streamingTracker.getLiveTopsByCount().isEmpty());
+                }
+                return count;
+            }));
+        }
+        long expectedCount = 0;
+        for (Future<Long> feed : feeds) {
+            expectedCount += feed.get();
+        }
+        executor.shutdown();
+
+        List<Purchase> purchases = streamingTracker.getPurchases();
+        assertEquals(products.size(), purchases.size());
+        assertEquals(products.size(), purchases.stream().mapToLong(Purchase::getBarcode).distinct().count());
+        assertEquals(expectedCount, purchases.stream().mapToInt(Purchase::getCount).sum());
+        assertEquals(expectedCount, streamingTracker.getTotalCount());
+        assertEquals(purchases.stream().mapToDouble(p -> p.getCount() * p.getProduct().getPrice()).sum(),
+                streamingTracker.getTotalRevenue(), 0.01);
+        assertEquals(sortedTops(streamingTracker, byCount, 5), streamingTracker.getLiveTopsByCount());
+        assertEquals(sortedTops(streamingTracker, byRevenue, 5), streamingTracker.getLiveTopsByRevenue());
+
+        // a price change reorders the ranking by revenue
+        Purchase last = sortedTops(streamingTracker, byRevenue, purchases.size()).get(purchases.size() - 1);
+        assertTrue(streamingTracker.changePrice(last.getBarcode(), 1000.0));
+        assertEquals(last, streamingTracker.getLiveTopsByRevenue().get(0));
+        assertEquals(sortedTops(streamingTracker, byRevenue, 5), streamingTracker.getLiveTopsByRevenue());
+    }
+
+    @Test
+    public void findsProductsByBarcodePrefix() {
+        List<Product> expected = new ArrayList<>();
+        for (Product product : purchaseTracker.getProducts()) {
+            if (String.valueOf(product.getBarcode()).startsWith("8712100")) expected.add(product);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new ArrayList<>(purchaseTracker.findProductsByBarcodePrefix("8712100")));
+        assertTrue(purchaseTracker.findProductsByBarcodePrefix("1234").isEmpty());
+
+        // prefixes of the shorter barcodes, and of barcodes of several lengths
+        for (String prefix : List.of("770835", "77", "7", "8")) {
+            expected.clear();
+            for (Product product : purchaseTracker.getProducts()) {
+                if (String.valueOf(product.getBarcode()).startsWith(prefix)) expected.add(product);
+            }
+            expected.sort(Comparator.comparing(Product::getBarcode));
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, new ArrayList<>(purchaseTracker.findProductsByBarcodePrefix(prefix)));
+        }
+        assertEquals(10, purchaseTracker.findProductsByBarcodePrefix("770835").size());
+        assertTrue(purchaseTracker.findProductsByBarcodePrefix("0770835").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> purchaseTracker.findProductsByBarcodePrefix(""));
+        assertThrows(IllegalArgumentException.class, () -> purchaseTracker.findProductsByBarcodePrefix("77a"));
+    }
 }
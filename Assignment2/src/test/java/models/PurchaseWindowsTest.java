@@ -0,0 +1,162 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseWindowsTest {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long START = LocalDate.of(2021, 10, 1).toEpochDay() * DAY;
+
+    PurchaseTracker purchaseTracker;
+    ProductCatalogue catalogue;
+    long barcode1, barcode2;
+    double price1, price2;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        catalogue = purchaseTracker.getCatalogue();
+        barcode1 = catalogue.getProduct(0).getBarcode();
+        barcode2 = catalogue.getProduct(1).getBarcode();
+        price1 = catalogue.getProduct(0).getPrice();
+        price2 = catalogue.getProduct(1).getPrice();
+    }
+
+    @Test
+    public void windowsSlideOverTheBuckets() {
+        PurchaseWindows windows = new PurchaseWindows(catalogue);
+        assertTrue(windows.add(barcode1, 5, START));
+        assertTrue(windows.add(barcode1, 3, START + 30 * MINUTE));
+        assertTrue(windows.add(barcode2, 2, START + 2 * HOUR));
+        assertFalse(windows.add(1L, 2, START));
+
+        assertEquals(3, windows.getCount(barcode1, PurchaseWindows.Window.HOUR, START + 65 * MINUTE));
+        assertEquals(0, windows.getCount(barcode1, PurchaseWindows.Window.HOUR, START + 2 * HOUR));
+        assertEquals(8, windows.getCount(barcode1, PurchaseWindows.Window.DAY, START + 23 * HOUR));
+        assertEquals(0, windows.getCount(barcode1, PurchaseWindows.Window.DAY, START + DAY));
+        assertEquals(8, windows.getCount(barcode1, PurchaseWindows.Window.WEEK, START + 6 * DAY));
+        assertEquals(8 * price1, windows.getRevenue(barcode1, PurchaseWindows.Window.WEEK, START + DAY), 0.001);
+        assertEquals(10, windows.getTotalCount(PurchaseWindows.Window.DAY, START + 2 * HOUR));
+        assertEquals(8 * price1 + 2 * price2,
+                windows.getTotalRevenue(PurchaseWindows.Window.DAY, START + 2 * HOUR), 0.001);
+
+        // a purchase of a week later reuses the buckets of the ring, which do not count anymore,
+        // except for the purchase of barcode2 in the hour bucket that is still within the week
+        assertTrue(windows.add(barcode1, 1, START + 7 * DAY + 10 * MINUTE));
+        assertEquals(1, windows.getCount(barcode1, PurchaseWindows.Window.WEEK, START + 7 * DAY + 10 * MINUTE));
+        assertEquals(1, windows.getCount(barcode1, PurchaseWindows.Window.HOUR, START + 7 * DAY + 10 * MINUTE));
+        assertEquals(1 + 2, windows.getTotalCount(PurchaseWindows.Window.WEEK, START + 7 * DAY + 10 * MINUTE));
+
+        // a late purchase still lands in its bucket within the last week, but not any later than that
+        assertTrue(windows.add(barcode1, 4, START + 6 * DAY));
+        assertEquals(5, windows.getCount(barcode1, PurchaseWindows.Window.WEEK, START + 7 * DAY + 10 * MINUTE));
+        assertFalse(windows.add(barcode1, 100, START));
+        assertEquals(5, windows.getCount(barcode1, PurchaseWindows.Window.WEEK, START + 7 * DAY + 10 * MINUTE));
+    }
+
+    @Test
+    public void purchasesOlderThanTheWindowsAreRejected() {
+        PurchaseWindows windows = new PurchaseWindows(catalogue);
+        assertTrue(windows.add(barcode1, 5, START + 7 * DAY));
+
+        // a first purchase of barcode2 that is older than the week is not added to its new row either
+        assertFalse(windows.add(barcode2, 3, START));
+        assertEquals(0, windows.getCount(barcode2, PurchaseWindows.Window.WEEK, START + HOUR));
+        assertEquals(0, windows.getTotalCount(PurchaseWindows.Window.WEEK, START + HOUR));
+        assertEquals(5, windows.getTotalCount(PurchaseWindows.Window.WEEK, START + 7 * DAY));
+        assertEquals(1, windows.getRollup(PurchaseWindows.Window.WEEK, START + 7 * DAY).getPurchases().size());
+
+        // a purchase of two hours ago is still within the week, but no longer within the ring of the last hour
+        assertTrue(windows.add(barcode2, 2, START + 7 * DAY - 2 * HOUR));
+        assertEquals(2, windows.getCount(barcode2, PurchaseWindows.Window.WEEK, START + 7 * DAY));
+        assertEquals(0, windows.getCount(barcode2, PurchaseWindows.Window.HOUR, START + 7 * DAY - 2 * HOUR));
+        assertEquals(0, windows.getTotalCount(PurchaseWindows.Window.HOUR, START + 7 * DAY - 2 * HOUR));
+        assertEquals(5 + 2, windows.getTotalCount(PurchaseWindows.Window.WEEK, START + 7 * DAY));
+        assertEquals(5 * price1 + 2 * price2,
+                windows.getTotalRevenue(PurchaseWindows.Window.WEEK, START + 7 * DAY), 0.001);
+    }
+
+    @Test
+    public void rowsGrowWithThePurchasedProducts() {
+        // a large catalogue of which only every 7th product is purchased, in a random order of arrival
+        ProductCatalogue largeCatalogue = new ProductCatalogue(Arrays.asList(SyntheticProducts.create(10_000)));
+        PurchaseWindows windows = new PurchaseWindows(largeCatalogue);
+        List<Integer> purchased = new ArrayList<>();
+        for (int i = 0; i < 10_000; i += 7) {
+            purchased.add(i);
+        }
+        Collections.shuffle(purchased, new Random(2021L));
+        long totalCount = 0;
+        for (int i : purchased) {
+            assertTrue(windows.add(SyntheticProducts.barcode(i), 1 + i % 5, START + i));
+            totalCount += 1 + i % 5;
+        }
+
+        PurchaseWindows.Rollup rollup = windows.getRollup(PurchaseWindows.Window.HOUR, START + 10 * MINUTE);
+        assertEquals(totalCount, rollup.getTotalCount());
+        assertEquals(purchased.size(), rollup.getPurchases().size());
+        for (int i = 0; i < 100; i++) {
+            long expected = i % 7 == 0 ? 1 + i % 5 : 0;
+            assertEquals(expected, windows.getCount(SyntheticProducts.barcode(i), PurchaseWindows.Window.DAY, START + HOUR));
+            assertEquals(expected, rollup.getCount(SyntheticProducts.barcode(i)));
+            assertEquals(expected * (1.0 + i % 10), rollup.getRevenue(SyntheticProducts.barcode(i)), 0.001);
+        }
+    }
+
+    @Test
+    public void revenuesFollowThePriceOfTheDay() {
+        catalogue.changePrice(barcode1, LocalDate.of(2021, 10, 2), 2 * price1);
+        PurchaseWindows windows = new PurchaseWindows(catalogue);
+        windows.add(barcode1, 1, START + 23 * HOUR);
+        windows.add(barcode1, 1, START + 25 * HOUR);
+
+        assertEquals(3 * price1, windows.getRevenue(barcode1, PurchaseWindows.Window.DAY, START + 25 * HOUR), 0.001);
+        assertEquals(2 * price1, windows.getRevenue(barcode1, PurchaseWindows.Window.HOUR, START + 25 * HOUR), 0.001);
+    }
+
+    @Test
+    public void rollupsAreEmittedToTheSink() throws InterruptedException {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(START + 90 * MINUTE), ZoneOffset.UTC);
+        PurchaseWindows windows = purchaseTracker.startWindows(clock);
+        purchaseTracker.importPurchasesFromVault("/purchases");
+        purchaseTracker.startStreaming(3);
+        purchaseTracker.submit(barcode1, 6);
+        purchaseTracker.submit(barcode2, 4);
+        windows.add(barcode2, 1, START);
+
+        List<PurchaseWindows.Rollup> rollups = new ArrayList<>();
+        windows.emitRollups(rollups::add);
+        assertEquals(3, rollups.size());
+        assertEquals(PurchaseWindows.Window.HOUR, rollups.get(0).getWindow());
+        assertEquals(10, rollups.get(0).getTotalCount());
+        assertEquals(11, rollups.get(1).getTotalCount());
+        assertEquals(5, rollups.get(2).getCount(barcode2));
+        assertEquals(6 * price1 + 5 * price2, rollups.get(2).getTotalRevenue(), 0.001);
+        assertEquals(2, rollups.get(2).getPurchases().size());
+        assertSame(windows, purchaseTracker.getWindows());
+
+        List<PurchaseWindows.Rollup> emitted = new ArrayList<>();
+        windows.startRollups(10, rollup -> {
+            synchronized (emitted) {
+                emitted.add(rollup);
+            }
+        });
+        Thread.sleep(100);
+        windows.close();
+        synchronized (emitted) {
+            assertTrue(emitted.size() >= 3);
+            assertEquals(10, emitted.get(0).getTotalCount());
+        }
+    }
+}
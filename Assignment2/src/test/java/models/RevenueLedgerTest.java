@@ -0,0 +1,211 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RevenueLedgerTest {
+
+    @TempDir
+    Path folder;
+
+    PurchaseTracker purchaseTracker;
+
+    @BeforeEach
+    void setup() {
+        purchaseTracker = new PurchaseTracker();
+        purchaseTracker.importProductsFromVault("/products.txt");
+        purchaseTracker.importPurchasesFromVault("/purchases");
+    }
+
+    private static double revenueOf(PurchaseTracker tracker) {
+        double revenue = 0.0;
+        for (Purchase purchase : tracker.getPurchases()) {
+            revenue += purchase.getCount() * purchase.getProduct().getPrice();
+        }
+        return revenue;
+    }
+
+    private static void assertSameSubtotals(RevenueLedger expected, RevenueLedger actual) {
+        assertEquals(expected.getTotalCount(), actual.getTotalCount());
+        assertEquals(expected.getTotalRevenue(), actual.getTotalRevenue(), 0.001);
+        assertEquals(expected.getCities(), actual.getCities());
+        for (String city : expected.getCities()) {
+            assertEquals(expected.getCityCount(city), actual.getCityCount(city));
+            assertEquals(expected.getCityRevenue(city), actual.getCityRevenue(city), 0.001);
+            assertEquals(expected.getStores(city), actual.getStores(city));
+            for (String store : expected.getStores(city)) {
+                assertEquals(expected.getStoreRevenue(city, store), actual.getStoreRevenue(city, store), 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void ledgerFollowsEveryImport() {
+        RevenueLedger ledger = purchaseTracker.getLedger();
+        assertEquals(16730, ledger.getTotalCount());
+        assertEquals(revenueOf(purchaseTracker), ledger.getTotalRevenue(), 0.001);
+        assertEquals(List.of("Amsterdam", "Rotterdam", PurchaseCube.ONLINE), ledger.getCities());
+
+        long cityCounts = 0;
+        double cityRevenues = 0.0;
+        for (String city : ledger.getCities()) {
+            long storeCounts = 0;
+            for (String store : ledger.getStores(city)) {
+                storeCounts += ledger.getStoreCount(city, store);
+            }
+            assertEquals(ledger.getCityCount(city), storeCounts);
+            cityCounts += ledger.getCityCount(city);
+            cityRevenues += ledger.getCityRevenue(city);
+        }
+        assertEquals(ledger.getTotalCount(), cityCounts);
+        assertEquals(ledger.getTotalRevenue(), cityRevenues, 0.001);
+        assertEquals(List.of("webshop"), ledger.getStores(PurchaseCube.ONLINE));
+        assertEquals(0, ledger.getStoreCount("Utrecht", "centrum"));
+
+        PurchaseTracker indexTracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+        indexTracker.importProductsFromVault("/products.txt");
+        indexTracker.importPurchasesFromVault("/purchases");
+        assertSameSubtotals(ledger, indexTracker.getLedger());
+        indexTracker.importPurchasesFromVaultInParallel("/purchases", 4);
+        assertSameSubtotals(ledger, indexTracker.getLedger());
+
+        Path columnRoot = folder.resolve("columnar");
+        indexTracker.convertVaultToColumnar("/purchases", columnRoot);
+        indexTracker.importPurchasesFromColumnarFolder(columnRoot);
+        assertSameSubtotals(ledger, indexTracker.getLedger());
+
+        // all files of the vault are new to a fresh tracker
+        PurchaseTracker incrementalTracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+        incrementalTracker.importProductsFromVault("/products.txt");
+        incrementalTracker.importPurchasesFromVaultIncrementally("/purchases");
+        assertSameSubtotals(ledger, incrementalTracker.getLedger());
+    }
+
+    @Test
+    public void priceChangesAdjustAllSubtotals() {
+        RevenueLedger ledger = purchaseTracker.getLedger();
+        Purchase purchase = purchaseTracker.getPurchases().get(0);
+        double oldPrice = purchase.getProduct().getPrice();
+        double totalRevenue = ledger.getTotalRevenue();
+
+        assertTrue(purchaseTracker.changePrice(purchase.getBarcode(), oldPrice + 1.25));
+        assertFalse(purchaseTracker.changePrice(1L, 1.0));
+        assertEquals(oldPrice + 1.25, purchaseTracker.findProduct(purchase.getBarcode()).getPrice());
+        assertEquals(totalRevenue + 1.25 * purchase.getCount(), ledger.getTotalRevenue(), 0.001);
+        assertEquals(revenueOf(purchaseTracker), ledger.getTotalRevenue(), 0.001);
+
+        // the subtotals equal those of a tracker that imported the purchases at the new price
+        PurchaseTracker repricedTracker = new PurchaseTracker(PurchaseTracker.AggregationMode.BARCODE_INDEX);
+        repricedTracker.importProductsFromVault("/products.txt");
+        assertTrue(repricedTracker.changePrice(purchase.getBarcode(), oldPrice + 1.25));
+        repricedTracker.importPurchasesFromVault("/purchases");
+        assertSameSubtotals(repricedTracker.getLedger(), ledger);
+
+        // a change back restores the original revenues, also of the streamed purchases
+        purchaseTracker.startStreaming(3);
+        purchaseTracker.submit(purchase.getBarcode(), 10);
+        assertTrue(purchaseTracker.changePrice(purchase.getBarcode(), oldPrice));
+        assertEquals(totalRevenue + 10 * oldPrice, ledger.getTotalRevenue(), 0.001);
+        assertEquals(ledger.getTotalRevenue(), purchaseTracker.getTotalRevenue(), 0.001);
+        assertEquals(revenueOf(purchaseTracker), ledger.getTotalRevenue(), 0.001);
+    }
+
+    @Test
+    public void priceChangesReachTheCatalogueAndTheWindows() {
+        long barcode = 8712100516382L;
+        Clock clock = Clock.fixed(Instant.parse("2021-10-01T12:00:00Z"), ZoneOffset.UTC);
+        purchaseTracker.startStreaming(3);
+        PurchaseWindows windows = purchaseTracker.startWindows(clock);
+        double totalRevenue = purchaseTracker.getTotalRevenue();
+        long count = purchaseTracker.getPurchases().stream()
+                .filter(p -> p.getBarcode() == barcode).mapToLong(Purchase::getCount).sum();
+        double oldPrice = purchaseTracker.findProduct(barcode).getPrice();
+
+        assertTrue(purchaseTracker.changePrice(barcode, 10.0));
+        assertEquals(10.0, purchaseTracker.getCatalogue().getPrice(barcode, LocalDate.of(2021, 10, 1)));
+        assertEquals(10.0, purchaseTracker.findProduct(barcode).getPrice());
+        assertTrue(purchaseTracker.submit(barcode, 2));
+
+        assertEquals(20.0, windows.getRevenue(barcode, PurchaseWindows.Window.HOUR, clock.millis()), 0.001);
+        assertEquals(totalRevenue + count * (10.0 - oldPrice) + 20.0, purchaseTracker.getTotalRevenue(), 0.001);
+        assertEquals(purchaseTracker.getLedger().getTotalRevenue(), purchaseTracker.getTotalRevenue());
+        assertEquals(revenueOf(purchaseTracker), purchaseTracker.getTotalRevenue(), 0.001);
+        assertEquals(purchaseTracker.getLedger().getTotalCount(), purchaseTracker.getTotalCount());
+    }
+
+    @Test
+    public void priceChangesReachTheLedgerTheCubeAndTheWindows() {
+        long barcode = 8712100516382L;
+        LocalDate day1 = LocalDate.of(2021, 10, 1), day2 = LocalDate.of(2021, 10, 2);
+        Clock clock = Clock.fixed(Instant.parse("2021-10-02T12:00:00Z"), ZoneOffset.UTC);
+        PurchaseCube cube = purchaseTracker.buildCubeFromVault("/purchases");
+        purchaseTracker.startStreaming(3);
+        PurchaseWindows windows = purchaseTracker.startWindows(clock);
+        assertTrue(purchaseTracker.submit(barcode, 2));
+        double oldPrice = purchaseTracker.findProduct(barcode).getPrice();
+        long countOnDay2 = cube.getPurchases(day2, day2, null, null).stream()
+                .filter(p -> p.getBarcode() == barcode).mapToLong(Purchase::getCount).sum();
+        double revenueOnDay1 = cube.getRevenue(day1, day1, null, null);
+        double totalRevenue = purchaseTracker.getTotalRevenue();
+        assertSameRevenues(cube, windows, clock);
+
+        // a dated change only rebooks the purchases from its day on, also the streamed ones of that day
+        assertTrue(purchaseTracker.changePrice(barcode, day2, 10.0));
+        assertFalse(purchaseTracker.changePrice(1L, day2, 1.0));
+        assertEquals(totalRevenue + (countOnDay2 + 2) * (10.0 - oldPrice), purchaseTracker.getTotalRevenue(), 0.001);
+        assertEquals(revenueOnDay1, cube.getRevenue(day1, day1, null, null), 0.001);
+        assertEquals(20.0, windows.getRevenue(barcode, PurchaseWindows.Window.HOUR, clock.millis()), 0.001);
+        assertSameRevenues(cube, windows, clock);
+
+        // a change of the base price only rebooks the days before the dated change, and keeps that change
+        assertTrue(purchaseTracker.changePrice(barcode, 100.0));
+        assertEquals(10.0, purchaseTracker.getCatalogue().getPrice(barcode, day2));
+        assertEquals(20.0, windows.getRevenue(barcode, PurchaseWindows.Window.HOUR, clock.millis()), 0.001);
+        assertSameRevenues(cube, windows, clock);
+
+        // the windows follow a later change of the day of their buckets
+        assertTrue(purchaseTracker.changePrice(barcode, day2, 1.0));
+        assertEquals(2.0, windows.getRevenue(barcode, PurchaseWindows.Window.HOUR, clock.millis()), 0.001);
+        assertSameRevenues(cube, windows, clock);
+    }
+
+    /**
+     * asserts that the ledger books the purchases of the vault at the revenues of the cube,
+     * and the streamed purchases at the revenues of the windows
+     */
+    private void assertSameRevenues(PurchaseCube cube, PurchaseWindows windows, Clock clock) {
+        RevenueLedger ledger = purchaseTracker.getLedger();
+        double streamedRevenue = windows.getTotalRevenue(PurchaseWindows.Window.WEEK, clock.millis());
+        assertEquals(cube.getRevenue(null, null, null, null) + streamedRevenue, ledger.getTotalRevenue(), 0.001);
+        assertEquals(windows.getRollup(PurchaseWindows.Window.WEEK, clock.millis()).getTotalRevenue(), streamedRevenue, 0.001);
+        for (String city : cube.getCities()) {
+            assertEquals(cube.getRevenue(null, null, city, null), ledger.getCityRevenue(city), 0.001);
+            for (String store : cube.getStores(city)) {
+                assertEquals(cube.getRevenue(null, null, city, store), ledger.getStoreRevenue(city, store), 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void filesAreLocatedInTheVault() {
+        assertArrayEquals(new String[]{"Amsterdam", "damrak"},
+                RevenueLedger.locate(Paths.get("purchases", "20211001", "Amsterdam", "damrak.txt")));
+        assertArrayEquals(new String[]{PurchaseCube.ONLINE, "webshop"},
+                RevenueLedger.locate(Paths.get("purchases", "20211001", "webshop.pcol")));
+        assertEquals(LocalDate.of(2021, 10, 1).toEpochDay(),
+                RevenueLedger.dayOf(Paths.get("purchases", "20211001", "Amsterdam", "damrak.txt")));
+        assertEquals(RevenueLedger.UNDATED, RevenueLedger.dayOf(Paths.get("purchases", "Amsterdam", "damrak.txt")));
+        assertEquals(RevenueLedger.UNDATED, RevenueLedger.dayOf(Paths.get("purchases", "20211399", "webshop.txt")));
+    }
+}
@@ -0,0 +1,31 @@
+package models;
+
+/**
+ * the synthetic catalogue of the performance and accuracy tests:
+ * distinct 13-digit barcodes that are spread over the barcode range, with prices between 1.0 and 10.0
+ */
+class SyntheticProducts {
+
+    private SyntheticProducts() {
+    }
+
+    /**
+     * @param i the index of the product in the synthetic catalogue
+     * @return the barcode of the product
+     */
+    static long barcode(int i) {
+        return 8710000000000L + 7919L * i;
+    }
+
+    /**
+     * @param numProducts the size of the catalogue
+     * @return the products of the synthetic catalogue, in barcode order
+     */
+    static Product[] create(int numProducts) {
+        Product[] products = new Product[numProducts];
+        for (int i = 0; i < numProducts; i++) {
+            products[i] = new Product(barcode(i), "product" + i, 1.0 + i % 10);
+        }
+        return products;
+    }
+}
@@ -0,0 +1,185 @@
+package graphs;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * immutable snapshot of a DirectedGraph in primitive arrays, with pre-calculated edge weights
+ * vertices are numbered by a dense index 0 <= v < getNumVertices()
+ * the out-going edges of vertex v have edge index firstEdge[v] <= e < firstEdge[v+1]
+ * (also known as the compressed sparse row lay-out)
+ * batch algorithms that visit every vertex many times can use this snapshot without any hashing or boxing
+ *
+ * @param <V> the vertex type of the original graph
+ * @param <E> the edge type of the original graph
+ */
+public class CompactGraph<V extends Identifiable, E> {
+
+    private final List<V> vertices;                  // the vertex at each dense index
+    private final Map<String, Integer> indices;      // the dense index of each vertex id
+    private final List<E> edges;                     // the edge information at each edge index
+    private final int[] firstEdge;                   // the first edge index of each vertex, with firstEdge[n] == m
+    private final int[] edgeSource;                  // the from-vertex of each edge
+    private final int[] edgeTarget;                  // the to-vertex of each edge
+    private final double[] edgeWeight;               // the weight of each edge
+
+    /**
+     * representation invariants:
+     * 1. vertices.get(indices.get(id)).getId().equals(id) for all vertex ids in the graph
+     * 2. firstEdge[0] == 0, firstEdge[v] <= firstEdge[v+1] and firstEdge[getNumVertices()] == getNumEdges()
+     * 3. edgeSource[e] == v for all firstEdge[v] <= e < firstEdge[v+1]
+     **/
+
+    /**
+     * takes a snapshot of the graph, changes to the graph later on are not reflected in the snapshot
+     *
+     * @param graph        the graph to be copied
+     * @param weightMapper provides a function, by which the weight of an edge can be retrieved or calculated
+     */
+    public CompactGraph(DirectedGraph<V, E> graph, Function<E, Double> weightMapper) {
+        // the dense indices of the snapshot are the handles of the graph at the time of the snapshot
+        int n = graph.getNumVertices();
+        this.vertices = new ArrayList<>(graph.getRegistry().getVertices());
+        this.indices = new HashMap<>(2 * n);
+        for (int v = 0; v < n; v++) {
+            this.indices.put(graph.getRegistry().getId(v), v);
+        }
+
+        int m = 0;
+        for (int v = 0; v < n; v++) {
+            m += graph.getNumNeighbours(v);
+        }
+        this.edges = new ArrayList<>(m);
+        this.firstEdge = new int[n + 1];
+        this.edgeSource = new int[m];
+        this.edgeTarget = new int[m];
+        this.edgeWeight = new double[m];
+
+        // copy the out-going edges of every vertex into consecutive positions of the edge arrays
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            this.firstEdge[v] = e;
+            for (int i = 0; i < graph.getNumNeighbours(v); i++) {
+                E edge = graph.getNeighbourEdge(v, i);
+                this.edges.add(edge);
+                this.edgeSource[e] = v;
+                this.edgeTarget[e] = graph.getNeighbourHandle(v, i);
+                this.edgeWeight[e] = weightMapper.apply(edge);
+                e++;
+            }
+        }
+        this.firstEdge[n] = e;
+    }
+
+    public int getNumVertices() {
+        return this.vertices.size();
+    }
+
+    public int getNumEdges() {
+        return this.edgeTarget.length;
+    }
+
+    /**
+     * @param v the dense index of a vertex
+     * @return the vertex at the given index
+     */
+    public V getVertex(int v) {
+        return this.vertices.get(v);
+    }
+
+    /**
+     * @param id the id of a vertex in the graph
+     * @return the dense index of the vertex, or -1 if the id is not found in the snapshot
+     */
+    public int indexOf(String id) {
+        return this.indices.getOrDefault(id, -1);
+    }
+
+    public int indexOf(V vertex) {
+        return vertex == null ? -1 : this.indexOf(vertex.getId());
+    }
+
+    public int getFirstEdge(int v) {
+        return this.firstEdge[v];
+    }
+
+    public int getEndEdge(int v) {
+        return this.firstEdge[v + 1];
+    }
+
+    public int getEdgeSource(int e) {
+        return this.edgeSource[e];
+    }
+
+    public int getEdgeTarget(int e) {
+        return this.edgeTarget[e];
+    }
+
+    public double getEdgeWeight(int e) {
+        return this.edgeWeight[e];
+    }
+
+    /**
+     * @param e an edge index
+     * @return the edge information of the original graph at the given edge index
+     */
+    public E getEdge(int e) {
+        return this.edges.get(e);
+    }
+
+    /**
+     * finds the edge index of the directed edge between from and to
+     *
+     * @return the edge index, or -1 if there is no edge from 'from' to 'to'
+     */
+    public int findEdge(int from, int to) {
+        for (int e = this.firstEdge[from]; e < this.firstEdge[from + 1]; e++) {
+            if (this.edgeTarget[e] == to) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * calculates the shortest paths from the source towards all vertices in the graph
+     * according to Dijkstra's algorithm, optionally bounded by a maximum weight sum
+     * vertices that cannot be reached within maxWeightSum keep weightSumTo == Double.POSITIVE_INFINITY
+     *
+     * @param source       the index of the start vertex
+     * @param maxWeightSum the search stops at vertices with a larger weight sum (use Double.POSITIVE_INFINITY for no bound)
+     * @param weightSumTo  receives the total weight of the shortest path towards every vertex (length >= getNumVertices())
+     * @param edgeTo       receives the last edge index on the shortest path towards every vertex, or -1 (optional, may be null)
+     * @param heap         a (re-usable) heap for the search
+     * @return the number of vertices that have been reached
+     */
+    public int shortestPaths(int source, double maxWeightSum, double[] weightSumTo, int[] edgeTo, IntMinHeap heap) {
+        int n = this.getNumVertices();
+        Arrays.fill(weightSumTo, 0, n, Double.POSITIVE_INFINITY);
+        if (edgeTo != null) Arrays.fill(edgeTo, 0, n, -1);
+        heap.clear();
+
+        weightSumTo[source] = 0.0;
+        heap.push(source, 0.0);
+        int numReached = 0;
+
+        while (!heap.isEmpty()) {
+            double weightSum = heap.minKey();
+            int v = heap.removeMin();
+            // skip stale heap entries of vertices that have been reached by a shorter path already
+            if (weightSum > weightSumTo[v]) continue;
+            numReached++;
+
+            // relax the out-going edges of v
+            for (int e = this.firstEdge[v]; e < this.firstEdge[v + 1]; e++) {
+                int w = this.edgeTarget[e];
+                double newWeightSum = weightSum + this.edgeWeight[e];
+                if (newWeightSum < weightSumTo[w] && newWeightSum <= maxWeightSum) {
+                    weightSumTo[w] = newWeightSum;
+                    if (edgeTo != null) edgeTo[w] = e;
+                    heap.push(w, newWeightSum);
+                }
+            }
+        }
+
+        return numReached;
+    }
+}
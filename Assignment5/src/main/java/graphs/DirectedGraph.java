@@ -6,24 +6,62 @@ import java.util.stream.Collectors;
 
 public class DirectedGraph<V extends Identifiable, E> {
 
-    private final Map<String, V> vertices = new HashMap<>();
+    private final VertexRegistry<V> vertices = new VertexRegistry<>();
     private final Map<V, Map<V, E>> edges = new HashMap<>();
+    private final List<Adjacency> adjacencies = new ArrayList<>();
 
     /**
      * representation invariants:
-     * 1.  the vertices map stores all vertices by their identifying id (which prevents duplicates)
+     * 1.  the vertices registry stores all vertices by their identifying id (which prevents duplicates)
+     * and gives each of them a dense int handle
      * 2.  the edges map stores all directed outgoing edges by their from-vertex and then in the nested map by their to-vertex
      * 3.  there can only be two directed edges between any two given vertices v1 and v2:
      * one from v1 to v2 in edges.get(v1).get(v2)
      * one from v2 to v1 in edges.get(v2).get(v1)
-     * 4.  every vertex instance in the key-sets of edges shall also occur in the vertices map and visa versa
+     * 4.  every vertex instance in the key-sets of edges shall also occur in the vertices registry and visa versa
+     * 5.  adjacencies.get(h) holds the same outgoing edges as edges.get(vertices.getVertex(h)),
+     * by the handles of their to-vertices
      **/
 
+    /**
+     * the out-going edges of one vertex by the handle of their to-vertex, in order of addition
+     */
+    private static class Adjacency {
+        private int[] targets = new int[4];
+        private Object[] edges = new Object[4];
+        private int size = 0;
+
+        private void add(int target, Object edge) {
+            if (this.size == this.targets.length) {
+                this.targets = Arrays.copyOf(this.targets, 2 * this.size);
+                this.edges = Arrays.copyOf(this.edges, 2 * this.size);
+            }
+            this.targets[this.size] = target;
+            this.edges[this.size++] = edge;
+        }
+    }
+
     public DirectedGraph() {
     }
 
     public Collection<V> getVertices() {
-        return vertices.values();
+        return vertices.getVertices();
+    }
+
+    /**
+     * @return the registry of all vertices with their int handles
+     */
+    public VertexRegistry<V> getRegistry() {
+        return this.vertices;
+    }
+
+    /**
+     * @param id the String that the vertex is identified by
+     * @return the int handle of the vertex that matches the given id,
+     * -1 if none of the vertices matches the id
+     */
+    public int getHandle(String id) {
+        return this.vertices.getHandle(id);
     }
 
     /**
@@ -34,7 +72,8 @@ public class DirectedGraph<V extends Identifiable, E> {
      * null if none of the vertices matches the id
      */
     public V getVertexById(String id) {
-        return vertices.get(id);
+        int handle = this.vertices.getHandle(id);
+        return handle < 0 ? null : this.vertices.getVertex(handle);
     }
 
     /**
@@ -56,6 +95,57 @@ public class DirectedGraph<V extends Identifiable, E> {
         return this.getNeighbours(this.getVertexById(fromVertexId));
     }
 
+    /**
+     * retrieves the neighbour vertices of the vertex with the given handle, without any hashing
+     *
+     * @param fromHandle the handle of the vertex of which the neighbours should be found
+     * @return null if fromHandle is not a handle in the graph
+     * a (read-only) view of the neighbours in order of addition of their edges otherwise
+     */
+    public Collection<V> getNeighbours(int fromHandle) {
+        if (!this.vertices.isHandle(fromHandle)) return null;
+        Adjacency adjacency = this.adjacencies.get(fromHandle);
+
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                return vertices.getVertex(adjacency.targets[index]);
+            }
+
+            @Override
+            public int size() {
+                return adjacency.size;
+            }
+        };
+    }
+
+    /**
+     * @param fromHandle the handle of a vertex in the graph
+     * @return the number of out-going edges of the vertex
+     */
+    public int getNumNeighbours(int fromHandle) {
+        return this.adjacencies.get(fromHandle).size;
+    }
+
+    /**
+     * @param fromHandle the handle of a vertex in the graph
+     * @param index      0 <= index < getNumNeighbours(fromHandle)
+     * @return the handle of the neighbour at the end of the index-th out-going edge of the vertex
+     */
+    public int getNeighbourHandle(int fromHandle, int index) {
+        return this.adjacencies.get(fromHandle).targets[index];
+    }
+
+    /**
+     * @param fromHandle the handle of a vertex in the graph
+     * @param index      0 <= index < getNumNeighbours(fromHandle)
+     * @return the edge information of the index-th out-going edge of the vertex
+     */
+    @SuppressWarnings("unchecked")
+    public E getNeighbourEdge(int fromHandle, int index) {
+        return (E) this.adjacencies.get(fromHandle).edges[index];
+    }
+
     /**
      * retrieves the collection of edges
      * which connects the 'fromVertex' with its neighbours
@@ -88,16 +178,18 @@ public class DirectedGraph<V extends Identifiable, E> {
      */
     public V addOrGetVertex(V newVertex) {
         // get the vertex that is/was in this spot
-        V currentVertex = this.vertices.putIfAbsent(newVertex.getId(), newVertex);
+        int currentHandle = this.vertices.getHandle(newVertex.getId());
 
-        // If currentVertex is null, then that means that there was no vertex with the same id as newVertex
-        if (currentVertex == null) {
+        // If there is no handle yet, then that means that there was no vertex with the same id as newVertex
+        if (currentHandle < 0) {
+            this.vertices.register(newVertex);
             this.edges.put(newVertex, new HashMap<>());
+            this.adjacencies.add(new Adjacency());
             return newVertex;
         }
 
         // a proper vertex shall be returned at all times
-        return currentVertex;
+        return this.vertices.getVertex(currentHandle);
     }
 
 
@@ -122,7 +214,11 @@ public class DirectedGraph<V extends Identifiable, E> {
         there can only be one directed edge from fromVertex to toVertex,
         so the edge can only be added if there was no edge before it
         */
-        return this.edges.get(fromVertex).putIfAbsent(toVertex, newEdge) == null;
+        if (this.edges.get(fromVertex).putIfAbsent(toVertex, newEdge) != null) return false;
+
+        // register the edge by handles too
+        this.adjacencies.get(this.vertices.getHandle(fromVertex)).add(this.vertices.getHandle(toVertex), newEdge);
+        return true;
     }
 
     /**
@@ -195,7 +291,26 @@ public class DirectedGraph<V extends Identifiable, E> {
      * @return null if no connection has been set up between these vertices in the specified direction
      */
     public E getEdge(String fromId, String toId) {
-        return this.getEdge(this.vertices.get(fromId), this.vertices.get(toId));
+        return this.getEdge(this.getVertexById(fromId), this.getVertexById(toId));
+    }
+
+    /**
+     * retrieves the directed edge between the vertices with handles 'fromHandle' and 'toHandle', if any
+     * without hashing, by a scan of the out-going edges of fromHandle
+     *
+     * @param fromHandle the handle of the start vertex of the designated edge
+     * @param toHandle   the handle of the end vertex of the designated edge
+     * @return null if no connection has been set up between these vertices in the specified direction
+     */
+    @SuppressWarnings("unchecked")
+    public E getEdge(int fromHandle, int toHandle) {
+        if (!this.vertices.isHandle(fromHandle)) return null;
+
+        Adjacency adjacency = this.adjacencies.get(fromHandle);
+        for (int i = 0; i < adjacency.size; i++) {
+            if (adjacency.targets[i] == toHandle) return (E) adjacency.edges[i];
+        }
+        return null;
     }
 
     /**
@@ -220,10 +335,27 @@ public class DirectedGraph<V extends Identifiable, E> {
 
     /**
      * Remove vertices without any connection from the graph
+     * the handles of the remaining vertices are renumbered, maintaining their relative order
      */
     public void removeUnconnectedVertices() {
-        this.edges.entrySet().removeIf(e -> e.getValue().size() == 0);
-        this.vertices.entrySet().removeIf(e -> !this.edges.containsKey(e.getValue()));
+        // a vertex is connected if it has an out-going or an in-coming edge
+        boolean[] keep = new boolean[this.vertices.size()];
+        for (int handle = 0; handle < keep.length; handle++) {
+            Adjacency adjacency = this.adjacencies.get(handle);
+            if (adjacency.size > 0) keep[handle] = true;
+            for (int i = 0; i < adjacency.size; i++) keep[adjacency.targets[i]] = true;
+        }
+
+        int[] newHandles = this.vertices.retain(keep);
+        List<Adjacency> oldAdjacencies = new ArrayList<>(this.adjacencies);
+        this.adjacencies.clear();
+        for (int handle = 0; handle < keep.length; handle++) {
+            if (!keep[handle]) continue;
+            Adjacency adjacency = oldAdjacencies.get(handle);
+            for (int i = 0; i < adjacency.size; i++) adjacency.targets[i] = newHandles[adjacency.targets[i]];
+            this.adjacencies.add(adjacency);
+        }
+        this.edges.entrySet().removeIf(e -> this.vertices.getHandle(e.getKey()) < 0);
     }
 
     /**
@@ -282,43 +414,57 @@ public class DirectedGraph<V extends Identifiable, E> {
      * or no path can be found from start to target
      */
     public DGPath depthFirstSearch(String startId, String targetId) {
+        return this.depthFirstSearch(this.getHandle(startId), this.getHandle(targetId));
+    }
 
-        V start = getVertexById(startId);
-        V target = getVertexById(targetId);
-        if (start == null || target == null) return null;
+    /**
+     * Uses a depth-first search algorithm to find a path from the start vertex to the target vertex in the graph
+     * All vertices that are being visited by the search should also be registered in path.visited
+     *
+     * @param startHandle  the handle of the vertex to start the depth first search from
+     * @param targetHandle the handle of the vertex to be found by the depth first search algorithm
+     * @return the path from start to target
+     * returns null if either start or target is not a handle in the graph
+     * or no path can be found from start to target
+     */
+    public DGPath depthFirstSearch(int startHandle, int targetHandle) {
+        if (!this.vertices.isHandle(startHandle) || !this.vertices.isHandle(targetHandle)) return null;
 
         DGPath path = new DGPath();
+        boolean[] visited = new boolean[this.vertices.size()];
 
         // calculate the path from start to target by recursive depth-first-search
-        return this.depthFirstSearch(start, target, path);
+        return this.depthFirstSearch(startHandle, targetHandle, path, visited);
     }
 
     /**
      * Uses a depth-first search algorithm to find a path to the target vertex in the graph
      * All vertices that are being visited by the search should also be registered in path.visited
      *
-     * @param current the vertex that is currently being visited
-     * @param target  the vertex to be found
+     * @param current the handle of the vertex that is currently being visited
+     * @param target  the handle of the vertex to be found
      * @param path    the DGPath that can eventually hold the path and the visited vertices
+     * @param visited tracks the visited vertices by handle, such that no hashing is needed to check them
      * @return the path from start to target
-     * returns null if either start or target cannot be matched with a vertex in the graph
-     * or no path can be found from start to target
+     * returns null if no path can be found from current to target
      */
-    private DGPath depthFirstSearch(V current, V target, DGPath path) {
-        // the current vertex should not be visited, because the
-        if (path.visited.contains(current)) return null;
-        path.visited.add(current);
+    private DGPath depthFirstSearch(int current, int target, DGPath path, boolean[] visited) {
+        // the current vertex should not be visited twice
+        if (visited[current]) return null;
+        visited[current] = true;
+        path.visited.add(this.vertices.getVertex(current));
 
         // we found a path if the target has been found
-        if (current.equals(target)) {
-            path.vertices.addLast(current);
+        if (current == target) {
+            path.vertices.addLast(this.vertices.getVertex(current));
             return path;
         }
 
         // the target has not been found yet, so we look further
-        for (V neighbour : this.getNeighbours(current)) {
-            if (depthFirstSearch(neighbour, target, path) != null) {
-                path.vertices.addFirst(current);
+        Adjacency adjacency = this.adjacencies.get(current);
+        for (int i = 0; i < adjacency.size; i++) {
+            if (depthFirstSearch(adjacency.targets[i], target, path, visited) != null) {
+                path.vertices.addFirst(this.vertices.getVertex(current));
                 return path;
             }
         }
@@ -339,69 +485,80 @@ public class DirectedGraph<V extends Identifiable, E> {
      * or no path can be found from start to target
      */
     public DGPath breadthFirstSearch(String startId, String targetId) {
+        return this.breadthFirstSearch(this.getHandle(startId), this.getHandle(targetId));
+    }
 
-        V start = getVertexById(startId);
-        V target = getVertexById(targetId);
-        if (start == null || target == null) return null;
+    /**
+     * Uses a breadth-first search algorithm to find a path from the start vertex to the target vertex in the graph
+     * All vertices that are being visited by the search should also be registered in path.visited
+     *
+     * @param startHandle  the handle of the vertex to start the breadth first search from
+     * @param targetHandle the handle of the vertex to find with breadth first search
+     * @return the path from start to target
+     * returns null if either start or target is not a handle in the graph
+     * or no path can be found from start to target
+     */
+    public DGPath breadthFirstSearch(int startHandle, int targetHandle) {
+        if (!this.vertices.isHandle(startHandle) || !this.vertices.isHandle(targetHandle)) return null;
 
         // initialise the result path of the search
         DGPath path = new DGPath();
-        path.visited.add(start);
-        path.vertices.addLast(target);
+        path.visited.add(this.vertices.getVertex(startHandle));
+        path.vertices.addLast(this.vertices.getVertex(targetHandle));
 
         // easy target
-        if (start.equals(target)) {
+        if (startHandle == targetHandle) {
             return path;
         }
 
         // calculate the path from start to target by breadth-first-search
+        // every vertex enters the queue at most once, so an array of all handles suffices
+        int[] queue = new int[this.vertices.size()];
+        int head = 0, tail = 0;
+        int[] visitedFrom = new int[this.vertices.size()];
+        Arrays.fill(visitedFrom, -2);    // -2 marks an unvisited vertex, -1 the start of the search
 
-        Queue<V> queue = new LinkedList<>();
-        Map<V, V> visitedFromTo = new HashMap<>();
-
-        queue.offer(start);
-        visitedFromTo.put(start, null);
-
-        V current = queue.poll();
+        queue[tail++] = startHandle;
+        visitedFrom[startHandle] = -1;
 
         // go through the layers of the graph to try and find the target
-        while (current != null) {
-            for (V neighbour : this.getNeighbours(current)) {
-                if (neighbour.equals(target)) {
-                    while (current != null) {
-                        path.vertices.addFirst(current);
-                        current = visitedFromTo.get(current);
+        while (head < tail) {
+            int current = queue[head++];
+            Adjacency adjacency = this.adjacencies.get(current);
+            for (int i = 0; i < adjacency.size; i++) {
+                int neighbour = adjacency.targets[i];
+                if (neighbour == targetHandle) {
+                    while (current >= 0) {
+                        path.vertices.addFirst(this.vertices.getVertex(current));
+                        current = visitedFrom[current];
                     }
                     return path;
-                } else if (!path.visited.contains(neighbour)) {
-                    visitedFromTo.put(neighbour, current);
-                    path.visited.add(neighbour);
-                    queue.offer(neighbour);
+                } else if (visitedFrom[neighbour] == -2) {
+                    visitedFrom[neighbour] = current;
+                    path.visited.add(this.vertices.getVertex(neighbour));
+                    queue[tail++] = neighbour;
                 }
             }
-            current = queue.poll();
         }
 
         return null;
     }
 
-    // helper class to register the state of a vertex in dijkstra shortest path algorithm
-    // your may change this class or delete it altogether follow a different approach in your implementation
-    private class DSPNode implements Comparable<DSPNode> {
-        protected V vertex;                // the graph vertex that is concerned with this DSPNode
-        protected V fromVertex = null;     // the parent's node vertex that has an edge towards this node's vertex
-        protected boolean marked = false;  // indicates DSP processing has been marked complete for this vertex
-        protected double weightSumTo = Double.MAX_VALUE;   // sum of weights of current shortest path to this node's vertex
-
-        private DSPNode(V vertex) {
-            this.vertex = vertex;
-        }
-
-        // comparable interface helps to find a node with the shortest current path, sofar
-        @Override
-        public int compareTo(DSPNode dspv) {
-            return Double.compare(weightSumTo, dspv.weightSumTo);
-        }
+    /**
+     * creates a path along the given sequence of connected vertices
+     * for algorithms in this package that construct their paths outside of this class
+     *
+     * @param pathVertices the vertices of the path, connected by directed edges in the given order
+     * @param totalWeight  the total weight of the path according to the weightMapper of the algorithm
+     * @param visited      the vertices that shall be registered as visited
+     * @return the new path
+     */
+    DGPath createPath(Collection<V> pathVertices, double totalWeight, Collection<V> visited) {
+        DGPath path = new DGPath();
+        path.vertices.addAll(pathVertices);
+        path.totalWeight = totalWeight;
+        path.visited.addAll(visited);
+        return path;
     }
 
     /**
@@ -417,84 +574,75 @@ public class DirectedGraph<V extends Identifiable, E> {
      */
     public DGPath dijkstraShortestPath(String startId, String targetId,
                                        Function<E, Double> weightMapper) {
+        return this.dijkstraShortestPath(this.getHandle(startId), this.getHandle(targetId), weightMapper);
+    }
 
-        V start = getVertexById(startId);
-        V target = getVertexById(targetId);
-        if (start == null || target == null) return null;
+    /**
+     * Calculates the edge-weighted shortest path from start to target
+     * according to Dijkstra's algorithm of a minimum spanning tree
+     * the progress of the search is tracked in arrays by handle, with a heap of the nearest unmarked vertices
+     *
+     * @param startHandle  handle of the start vertex of the search
+     * @param targetHandle handle of the target vertex of the search
+     * @param weightMapper provides a function, by which the weight of an edge can be retrieved or calculated
+     * @return the shortest path from start to target
+     * returns null if either start or target is not a handle in the graph
+     * or no path can be found from start to target
+     */
+    @SuppressWarnings("unchecked")
+    public DGPath dijkstraShortestPath(int startHandle, int targetHandle,
+                                       Function<E, Double> weightMapper) {
+        if (!this.vertices.isHandle(startHandle) || !this.vertices.isHandle(targetHandle)) return null;
 
         // initialise the result path of the search
         DGPath path = new DGPath();
-        path.visited.add(start);
+        path.visited.add(this.vertices.getVertex(startHandle));
 
         // easy target
-        if (start.equals(target)) {
-            path.vertices.add(start);
+        if (startHandle == targetHandle) {
+            path.vertices.add(this.vertices.getVertex(startHandle));
             return path;
         }
 
-        // keep track of the DSP status of all visited nodes
-        // you may choose a different approach of tracking progress of the algorithm, if you wish
-        Map<V, DSPNode> progressData = new HashMap<>();
+        // keep track of the DSP status of all vertices by handle
+        int n = this.vertices.size();
+        double[] weightSumTo = new double[n];      // sum of weights of current shortest path to each vertex
+        int[] fromHandle = new int[n];             // the vertex that has an edge towards each vertex on that path
+        boolean[] marked = new boolean[n];         // indicates DSP processing has been marked complete for a vertex
+        Arrays.fill(weightSumTo, Double.MAX_VALUE);
+        Arrays.fill(fromHandle, -1);
+        IntMinHeap nearest = new IntMinHeap();
 
-        // initialise the progress of the start node
-        DSPNode nextDspNode = new DSPNode(start);
-        nextDspNode.weightSumTo = 0.0;
-        progressData.put(start, nextDspNode);
+        weightSumTo[startHandle] = 0.0;
+        nearest.push(startHandle, 0.0);
 
-        while (nextDspNode != null) {
-            // mark the dspNode to show that the weightSumTo of this node is the smallest possible
-            nextDspNode.marked = true;
+        while (!nearest.isEmpty()) {
+            // the nearest unmarked vertex has the smallest possible weightSumTo
+            int current = nearest.removeMin();
+            if (marked[current]) continue;
+            marked[current] = true;
 
             // build and return the path when the target is marked
-            if (nextDspNode.vertex.equals(target)) {
-                // the path from the start to the target vertex is the same as the weightSumTo of the target vertex
-                path.totalWeight = nextDspNode.weightSumTo;
-
-                /*
-                build the path by getting the fromVertex, the fromVertex of the first nextDspNode (where the
-                vertex is start) is null, so the path is found when the fromVertex is null
-                */
-                while (nextDspNode.vertex != null) {
-                    path.vertices.addFirst(nextDspNode.vertex);
-                    nextDspNode.vertex = progressData.get(nextDspNode.vertex).fromVertex;
+            if (current == targetHandle) {
+                path.totalWeight = weightSumTo[current];
+                for (int handle = current; handle >= 0; handle = fromHandle[handle]) {
+                    path.vertices.addFirst(this.vertices.getVertex(handle));
                 }
-
                 return path;
             }
 
-            // relaxing the neighbours of the vertex in nextDspNode
-            for (V neighbour : this.getNeighbours(nextDspNode.vertex)) {
-                // create a new neighbourDspNode instance of the current neighbour
-                DSPNode neighbourDspNode = new DSPNode(neighbour);
-
-                /*
-                set the weightSumTo to the weight of the neighbour dspNode (neighbourDspNode)
-                plus the weightSumTo of the next dspNode (nextDspNode)
-                 */
-                neighbourDspNode.weightSumTo = nextDspNode.weightSumTo
-                        + weightMapper.apply(this.getEdge(nextDspNode.vertex, neighbour));
-                neighbourDspNode.fromVertex = nextDspNode.vertex;
-
-//                progressData.merge(neighbour, neighbourDspNode, DSPNode::compareTo); // try to find a BiFunction to set the minimum;
-
-                /*
-                if the neighbour has already been added,
-                then check if the current weightSumTo is smaller than the one in the map
-                */
-                if (progressData.getOrDefault(neighbour, neighbourDspNode).weightSumTo >= neighbourDspNode.weightSumTo)
-                    progressData.put(neighbour, neighbourDspNode);
-                path.visited.add(neighbour);
+            // relaxing the neighbours of the current vertex
+            Adjacency adjacency = this.adjacencies.get(current);
+            for (int i = 0; i < adjacency.size; i++) {
+                int neighbour = adjacency.targets[i];
+                double newWeightSum = weightSumTo[current] + weightMapper.apply((E) adjacency.edges[i]);
+                if (!marked[neighbour] && newWeightSum < weightSumTo[neighbour]) {
+                    weightSumTo[neighbour] = newWeightSum;
+                    fromHandle[neighbour] = current;
+                    nearest.push(neighbour, newWeightSum);
+                }
+                path.visited.add(this.vertices.getVertex(neighbour));
             }
-
-            /*
-            find the nearest node that is not marked yet and has the minimum value
-            according to the compareTo of the DSPNode class
-             */
-            nextDspNode = progressData.values()
-                    .stream()
-                    .filter(dspNode -> !dspNode.marked)
-                    .min(DSPNode::compareTo)
-                    .orElse(null);
         }
 
         // no path found
@@ -502,6 +650,107 @@ public class DirectedGraph<V extends Identifiable, E> {
     }
 
 
+    /**
+     * represents a tree (or forest) of connections in the graph, e.g. a minimum spanning tree
+     */
+    public class DGTree {
+        private List<Map.Entry<V, V>> connections = new ArrayList<>();
+        private Set<V> vertices = new LinkedHashSet<>();
+        private double totalWeight = 0.0;
+
+        /**
+         * representation invariants:
+         * 1. every connection (from, to) is a directed edge in the graph: getEdge(from, to) != null
+         * 2. the connections do not form a cycle, when taken as undirected
+         * 3. vertices contains all end points of the connections
+         * totalWeight is the sum of the weights of the connections, according to the weightMapper of the algorithm
+         **/
+
+        private DGTree(CompactGraph<V, E> graph, int[] edgeIndices) {
+            for (int e : edgeIndices) {
+                V from = graph.getVertex(graph.getEdgeSource(e));
+                V to = graph.getVertex(graph.getEdgeTarget(e));
+                this.connections.add(new AbstractMap.SimpleImmutableEntry<>(from, to));
+                this.vertices.add(from);
+                this.vertices.add(to);
+                this.totalWeight += graph.getEdgeWeight(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.connections.stream()
+                    .map(c -> c.getKey().getId() + "-" + c.getValue().getId())
+                    .collect(Collectors.joining(", ",
+                            String.format("Weight=%f Size=%d (", this.totalWeight, this.connections.size()), ")"));
+        }
+
+        /**
+         * @return the (from, to) vertex pairs of the connections in the tree
+         */
+        public List<Map.Entry<V, V>> getConnections() {
+            return this.connections;
+        }
+
+        public Set<V> getVertices() {
+            return this.vertices;
+        }
+
+        public double getTotalWeight() {
+            return this.totalWeight;
+        }
+    }
+
+    /**
+     * Calculates a minimum spanning forest of the graph by Kruskal's algorithm
+     * Every directed edge is taken as a connection between its vertices in both directions,
+     * unconnected parts of the graph get a tree of their own
+     *
+     * @param weightMapper provides a function, by which the weight of an edge can be retrieved or calculated
+     * @return the connections of the minimum spanning forest
+     */
+    public DGTree kruskalMinimumSpanningTree(Function<E, Double> weightMapper) {
+        CompactGraph<V, E> graph = new CompactGraph<>(this, weightMapper);
+        return new DGTree(graph, SpanningTrees.kruskal(graph, null));
+    }
+
+    /**
+     * Calculates a minimum spanning forest of the graph by (heap-based) Prim's algorithm
+     * Prim follows out-going edges, so all connections are expected to be available in both directions,
+     * as set up by addConnection
+     *
+     * @param weightMapper provides a function, by which the weight of an edge can be retrieved or calculated
+     * @return the connections of the minimum spanning forest
+     */
+    public DGTree primMinimumSpanningTree(Function<E, Double> weightMapper) {
+        CompactGraph<V, E> graph = new CompactGraph<>(this, weightMapper);
+        return new DGTree(graph, SpanningTrees.prim(graph));
+    }
+
+    /**
+     * Calculates a tree that connects all terminal vertices with at most twice the weight of the optimal Steiner tree
+     * using the metric closure of shortest paths between the terminals
+     *
+     * @param terminalIds  the ids of the vertices that must be connected
+     * @param weightMapper provides a function, by which the weight of an edge can be retrieved or calculated
+     * @return the tree that connects the terminals
+     * returns null if any of the terminals cannot be matched with a vertex in the graph
+     * or the terminals are not connected to each other
+     */
+    public DGTree steinerTree(Collection<String> terminalIds, Function<E, Double> weightMapper) {
+        CompactGraph<V, E> graph = new CompactGraph<>(this, weightMapper);
+
+        int[] terminals = new int[terminalIds.size()];
+        int t = 0;
+        for (String id : terminalIds) {
+            terminals[t] = graph.indexOf(id);
+            if (terminals[t++] < 0) return null;
+        }
+
+        int[] treeEdges = SpanningTrees.steiner(graph, terminals);
+        return treeEdges == null ? null : new DGTree(graph, treeEdges);
+    }
+
     @Override
     public String toString() {
         return this.getVertices().stream()
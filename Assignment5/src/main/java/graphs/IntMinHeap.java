@@ -0,0 +1,107 @@
+package graphs;
+
+import java.util.Arrays;
+
+/**
+ * binary min-heap of int items (e.g. vertex indices) that are prioritised by a double key
+ * the heap does not support decrease-key: an item can be pushed again with a smaller key,
+ * and the caller shall skip the stale entries that are popped later on (lazy deletion)
+ * all state is kept in primitive arrays, such that searches do not allocate per visited vertex
+ */
+public class IntMinHeap {
+    private int[] items;
+    private double[] keys;
+    private int size = 0;
+
+    /**
+     * representation invariant:
+     * for all 0 < i < size: keys[(i-1)/2] <= keys[i]
+     * items[i] is the item that has been pushed with keys[i]
+     **/
+
+    public IntMinHeap() {
+        this(16);
+    }
+
+    public IntMinHeap(int initialCapacity) {
+        this.items = new int[Math.max(1, initialCapacity)];
+        this.keys = new double[this.items.length];
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * adds an item with the given priority key to the heap
+     *
+     * @param item the item to be added
+     * @param key  the priority of the item, the smallest key is removed first
+     */
+    public void push(int item, double key) {
+        if (this.size == this.items.length) {
+            this.items = Arrays.copyOf(this.items, 2 * this.size);
+            this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+        }
+
+        // sift the new item up from the bottom of the heap
+        int child = this.size++;
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (this.keys[parent] <= key) break;
+            this.items[child] = this.items[parent];
+            this.keys[child] = this.keys[parent];
+            child = parent;
+        }
+        this.items[child] = item;
+        this.keys[child] = key;
+    }
+
+    /**
+     * @return the smallest key in the heap
+     */
+    public double minKey() {
+        return this.keys[0];
+    }
+
+    /**
+     * @return the item with the smallest key in the heap
+     */
+    public int minItem() {
+        return this.items[0];
+    }
+
+    /**
+     * removes the item with the smallest key from the heap
+     *
+     * @return the item that has been removed
+     */
+    public int removeMin() {
+        int minItem = this.items[0];
+        int lastItem = this.items[--this.size];
+        double lastKey = this.keys[this.size];
+
+        // sift the last item down from the top of the heap
+        int parent = 0;
+        int child;
+        while ((child = 2 * parent + 1) < this.size) {
+            if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) child++;
+            if (lastKey <= this.keys[child]) break;
+            this.items[parent] = this.items[child];
+            this.keys[parent] = this.keys[child];
+            parent = child;
+        }
+        this.items[parent] = lastItem;
+        this.keys[parent] = lastKey;
+
+        return minItem;
+    }
+}
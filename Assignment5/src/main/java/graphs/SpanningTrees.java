@@ -0,0 +1,268 @@
+package graphs;
+
+import java.util.Arrays;
+
+/**
+ * minimum spanning tree and Steiner tree algorithms on the primitive arrays of a CompactGraph
+ * the graph is treated as undirected: a directed edge connects its two vertices in both directions
+ * all algorithms return the edge indices of the selected connections
+ */
+class SpanningTrees {
+
+    // ranges up to this size are sorted by insertion sort
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private SpanningTrees() {
+    }
+
+    /**
+     * finds a minimum spanning forest by Kruskal's algorithm:
+     * adds the edges in order of increasing weight, unless they would close a cycle
+     *
+     * @param graph      the graph snapshot
+     * @param candidates the edges that may be used, or null if all edges may be used
+     * @return the edge indices of the spanning forest
+     */
+    static int[] kruskal(CompactGraph<?, ?> graph, boolean[] candidates) {
+        int m = graph.getNumEdges();
+        int[] order = new int[m];
+        double[] weights = new double[m];
+        int numCandidates = 0;
+        for (int e = 0; e < m; e++) {
+            if ((candidates == null || candidates[e]) && graph.getEdgeSource(e) != graph.getEdgeTarget(e)) {
+                order[numCandidates++] = e;
+            }
+            weights[e] = graph.getEdgeWeight(e);
+        }
+        sortByWeight(order, weights, 0, numCandidates - 1);
+
+        UnionFind components = new UnionFind(graph.getNumVertices());
+        int[] treeEdges = new int[Math.max(0, graph.getNumVertices() - 1)];
+        int numTreeEdges = 0;
+        for (int i = 0; i < numCandidates && numTreeEdges < treeEdges.length; i++) {
+            int e = order[i];
+            // the reverse direction of an edge that has been selected already is rejected as a cycle here too
+            if (components.union(graph.getEdgeSource(e), graph.getEdgeTarget(e))) {
+                treeEdges[numTreeEdges++] = e;
+            }
+        }
+        return Arrays.copyOf(treeEdges, numTreeEdges);
+    }
+
+    /**
+     * finds a minimum spanning forest by Prim's algorithm:
+     * grows a tree from a root by repeatedly adding the cheapest edge towards a vertex outside the tree
+     * Prim follows out-going edges only, so it expects that every connection is available in both directions
+     * (as set up by DirectedGraph.addConnection)
+     *
+     * @param graph the graph snapshot
+     * @return the edge indices of the spanning forest
+     */
+    static int[] prim(CompactGraph<?, ?> graph) {
+        int n = graph.getNumVertices();
+        double[] cheapestWeight = new double[n];
+        int[] cheapestEdge = new int[n];
+        boolean[] inTree = new boolean[n];
+        Arrays.fill(cheapestWeight, Double.POSITIVE_INFINITY);
+        Arrays.fill(cheapestEdge, -1);
+        IntMinHeap heap = new IntMinHeap(n);
+
+        int[] treeEdges = new int[Math.max(0, n - 1)];
+        int numTreeEdges = 0;
+
+        // start a new tree from every vertex that has not been reached by earlier trees
+        for (int root = 0; root < n; root++) {
+            if (inTree[root]) continue;
+            cheapestWeight[root] = 0.0;
+            heap.push(root, 0.0);
+
+            while (!heap.isEmpty()) {
+                double weight = heap.minKey();
+                int v = heap.removeMin();
+                // skip stale heap entries
+                if (inTree[v] || weight > cheapestWeight[v]) continue;
+                inTree[v] = true;
+                if (cheapestEdge[v] >= 0) treeEdges[numTreeEdges++] = cheapestEdge[v];
+
+                for (int e = graph.getFirstEdge(v); e < graph.getEndEdge(v); e++) {
+                    int w = graph.getEdgeTarget(e);
+                    if (!inTree[w] && graph.getEdgeWeight(e) < cheapestWeight[w]) {
+                        cheapestWeight[w] = graph.getEdgeWeight(e);
+                        cheapestEdge[w] = e;
+                        heap.push(w, cheapestWeight[w]);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(treeEdges, numTreeEdges);
+    }
+
+    /**
+     * approximates a minimum Steiner tree that connects all terminals, within a factor 2 of the optimum
+     * (Kou, Markowsky and Berman):
+     * 1. calculate the metric closure: the shortest paths between all pairs of terminals
+     * 2. find a minimum spanning tree of the closure
+     * 3. replace every closure connection by its shortest path in the graph
+     * 4. find a minimum spanning tree of the resulting subgraph
+     * 5. prune leaves that are not terminals
+     *
+     * @param graph     the graph snapshot
+     * @param terminals the vertex indices that must be connected
+     * @return the edge indices of the Steiner tree, or null if the terminals are not connected
+     */
+    static int[] steiner(CompactGraph<?, ?> graph, int[] terminals) {
+        int n = graph.getNumVertices();
+        int t = terminals.length;
+        if (t <= 1) return new int[0];
+
+        // 1. metric closure by a shortest path search from every terminal
+        double[][] weightSumTo = new double[t][n];
+        int[][] edgeTo = new int[t][n];
+        IntMinHeap heap = new IntMinHeap(n);
+        for (int i = 0; i < t; i++) {
+            graph.shortestPaths(terminals[i], Double.POSITIVE_INFINITY, weightSumTo[i], edgeTo[i], heap);
+        }
+
+        // 2. dense Prim on the complete closure graph of the terminals
+        double[] cheapestWeight = new double[t];
+        int[] cheapestFrom = new int[t];
+        boolean[] inTree = new boolean[t];
+        Arrays.fill(cheapestWeight, Double.POSITIVE_INFINITY);
+        cheapestWeight[0] = 0.0;
+        cheapestFrom[0] = -1;
+
+        // 3. the graph edges on the shortest paths of the closure tree become candidates
+        boolean[] candidates = new boolean[graph.getNumEdges()];
+        for (int round = 0; round < t; round++) {
+            int next = -1;
+            for (int j = 0; j < t; j++) {
+                if (!inTree[j] && (next < 0 || cheapestWeight[j] < cheapestWeight[next])) next = j;
+            }
+            if (cheapestWeight[next] == Double.POSITIVE_INFINITY) return null;
+            inTree[next] = true;
+
+            if (cheapestFrom[next] >= 0) {
+                // walk back along the shortest path from terminal cheapestFrom[next] towards terminal next
+                int[] pathEdges = edgeTo[cheapestFrom[next]];
+                for (int v = terminals[next]; pathEdges[v] >= 0; v = graph.getEdgeSource(pathEdges[v])) {
+                    candidates[pathEdges[v]] = true;
+                }
+            }
+
+            for (int j = 0; j < t; j++) {
+                double weight = weightSumTo[next][terminals[j]];
+                if (!inTree[j] && weight < cheapestWeight[j]) {
+                    cheapestWeight[j] = weight;
+                    cheapestFrom[j] = next;
+                }
+            }
+        }
+
+        // 4. a minimum spanning tree of the union of the shortest paths
+        int[] treeEdges = kruskal(graph, candidates);
+
+        // 5. repeatedly prune non-terminal leaves
+        return pruneLeaves(graph, treeEdges, terminals);
+    }
+
+    /**
+     * removes leaves that are not terminals from a forest, until all remaining leaves are terminals
+     */
+    private static int[] pruneLeaves(CompactGraph<?, ?> graph, int[] treeEdges, int[] terminals) {
+        int n = graph.getNumVertices();
+        int k = treeEdges.length;
+        boolean[] isTerminal = new boolean[n];
+        for (int terminal : terminals) isTerminal[terminal] = true;
+
+        // index the tree edges by both of their end points
+        int[] degree = new int[n];
+        for (int e : treeEdges) {
+            degree[graph.getEdgeSource(e)]++;
+            degree[graph.getEdgeTarget(e)]++;
+        }
+        int[] firstIncident = new int[n + 1];
+        for (int v = 0; v < n; v++) firstIncident[v + 1] = firstIncident[v] + degree[v];
+        int[] fill = Arrays.copyOf(firstIncident, n);
+        int[] incident = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            incident[fill[graph.getEdgeSource(treeEdges[i])]++] = i;
+            incident[fill[graph.getEdgeTarget(treeEdges[i])]++] = i;
+        }
+
+        boolean[] removed = new boolean[k];
+        int[] leaves = new int[n];
+        int numLeaves = 0;
+        for (int v = 0; v < n; v++) {
+            if (degree[v] == 1 && !isTerminal[v]) leaves[numLeaves++] = v;
+        }
+        int numRemoved = 0;
+        while (numLeaves > 0) {
+            int leaf = leaves[--numLeaves];
+            for (int j = firstIncident[leaf]; j < firstIncident[leaf + 1]; j++) {
+                int i = incident[j];
+                if (removed[i]) continue;
+                // remove the only remaining edge of the leaf, which may turn its neighbour into a leaf
+                removed[i] = true;
+                numRemoved++;
+                int e = treeEdges[i];
+                int other = graph.getEdgeSource(e) == leaf ? graph.getEdgeTarget(e) : graph.getEdgeSource(e);
+                degree[leaf]--;
+                if (--degree[other] == 1 && !isTerminal[other]) leaves[numLeaves++] = other;
+            }
+        }
+
+        int[] result = new int[k - numRemoved];
+        int r = 0;
+        for (int i = 0; i < k; i++) {
+            if (!removed[i]) result[r++] = treeEdges[i];
+        }
+        return result;
+    }
+
+    /**
+     * sorts the edge indices order[from..to] by increasing weight, without boxing
+     * quick sort with a median-of-three pivot, finishing small ranges by insertion sort
+     */
+    private static void sortByWeight(int[] order, double[] weights, int from, int to) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            int mid = (from + to) >>> 1;
+            // order the first, middle and last element, such that the middle holds the median
+            if (weights[order[mid]] < weights[order[from]]) swap(order, mid, from);
+            if (weights[order[to]] < weights[order[from]]) swap(order, to, from);
+            if (weights[order[to]] < weights[order[mid]]) swap(order, to, mid);
+            double pivot = weights[order[mid]];
+
+            int left = from, right = to;
+            while (left <= right) {
+                while (weights[order[left]] < pivot) left++;
+                while (weights[order[right]] > pivot) right--;
+                if (left <= right) swap(order, left++, right--);
+            }
+
+            // recurse into the smaller part and continue with the larger part, to limit the recursion depth
+            if (right - from < to - left) {
+                sortByWeight(order, weights, from, right);
+                from = left;
+            } else {
+                sortByWeight(order, weights, left, to);
+                to = right;
+            }
+        }
+
+        for (int i = from + 1; i <= to; i++) {
+            int e = order[i];
+            int j = i - 1;
+            while (j >= from && weights[order[j]] > weights[e]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = e;
+        }
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int swap = order[i];
+        order[i] = order[j];
+        order[j] = swap;
+    }
+}
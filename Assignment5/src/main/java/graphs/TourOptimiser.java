@@ -0,0 +1,290 @@
+package graphs;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * orders a list of stops into a short tour along the graph (a travelling salesman heuristic)
+ * 1. builds the stop-to-stop weight matrix by parallel one-to-many shortest path searches
+ * 2. constructs an initial tour by visiting the nearest unvisited stop first
+ * 3. improves the tour by 2-opt and Or-opt moves, until no move improves or a budget is exhausted
+ * 4. expands the tour into a full path along the graph
+ * the first stop is the start of the tour; the tour either returns to the start or ends at any stop
+ *
+ * @param <V> the vertex type of the graph
+ * @param <E> the edge type of the graph
+ */
+public class TourOptimiser<V extends Identifiable, E> {
+
+    // the longest segment of consecutive stops that is relocated by an Or-opt move
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+    // improvements smaller than this are ignored, to avoid endless cycling on rounding errors
+    private static final double MIN_IMPROVEMENT = 1E-9;
+
+    private final DirectedGraph<V, E> graph;
+    private final Function<E, Double> weightMapper;
+    private int maxIterations = 100_000;         // maximum number of improving moves to be applied
+    private long timeLimitMillis = 1000;         // maximum duration of the local search
+    private int numIterations = 0;               // number of improving moves applied by the latest optimisation
+
+    public TourOptimiser(DirectedGraph<V, E> graph, Function<E, Double> weightMapper) {
+        this.graph = graph;
+        this.weightMapper = weightMapper;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @return the number of improving moves that have been applied by the latest optimisation
+     */
+    public int getNumIterations() {
+        return this.numIterations;
+    }
+
+    /**
+     * finds a short tour along all stops and expands it into a path along the graph
+     *
+     * @param stopIds       the ids of the vertices to be visited, starting at the first one
+     * @param returnToStart whether the tour shall end at the first stop again
+     * @return the path along all stops, with the stops registered as visited vertices
+     * returns null if any of the stops cannot be matched with a vertex in the graph
+     * or some stop cannot be reached from another
+     */
+    public DirectedGraph<V, E>.DGPath optimiseTour(List<String> stopIds, boolean returnToStart) {
+        if (stopIds.isEmpty()) return null;
+        CompactGraph<V, E> compactGraph = new CompactGraph<>(this.graph, this.weightMapper);
+
+        int k = stopIds.size();
+        int[] stops = new int[k];
+        for (int i = 0; i < k; i++) {
+            stops[i] = compactGraph.indexOf(stopIds.get(i));
+            if (stops[i] < 0) return null;
+        }
+
+        double[] matrix = buildWeightMatrix(compactGraph, stops);
+        for (double weight : matrix) {
+            if (weight == Double.POSITIVE_INFINITY) return null;
+        }
+
+        int[] tour = nearestNeighbourTour(matrix, k);
+        this.numIterations = improveTour(tour, matrix, returnToStart,
+                this.maxIterations, System.currentTimeMillis() + this.timeLimitMillis);
+
+        return this.expandTour(compactGraph, stops, tour, returnToStart);
+    }
+
+    /**
+     * calculates the shortest path weights between all pairs of stops, one parallel search per stop
+     *
+     * @return the k*k matrix in row-major order: matrix[i*k+j] is the weight from stop i to stop j
+     */
+    static double[] buildWeightMatrix(CompactGraph<?, ?> graph, int[] stops) {
+        int k = stops.length;
+        double[] matrix = new double[k * k];
+        IntStream.range(0, k).parallel().forEach(i -> {
+            double[] weightSumTo = new double[graph.getNumVertices()];
+            graph.shortestPaths(stops[i], Double.POSITIVE_INFINITY, weightSumTo, null, new IntMinHeap());
+            for (int j = 0; j < k; j++) {
+                matrix[i * k + j] = weightSumTo[stops[j]];
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * constructs a tour that starts at stop 0 and continues each time to the nearest unvisited stop
+     *
+     * @return the order of the stops in the tour
+     */
+    static int[] nearestNeighbourTour(double[] matrix, int k) {
+        int[] tour = new int[k];
+        boolean[] visited = new boolean[k];
+        visited[0] = true;
+        for (int position = 1; position < k; position++) {
+            int current = tour[position - 1];
+            int nearest = -1;
+            for (int j = 0; j < k; j++) {
+                if (!visited[j] && (nearest < 0 || matrix[current * k + j] < matrix[current * k + nearest])) {
+                    nearest = j;
+                }
+            }
+            tour[position] = nearest;
+            visited[nearest] = true;
+        }
+        return tour;
+    }
+
+    /**
+     * improves the tour in place by 2-opt and Or-opt moves, applying the first improving move that is found
+     * every candidate move is evaluated in O(1) from the weights at the end points of the changed connections
+     * 2-opt reverses a segment of the tour, which changes its directed weight if the weights are asymmetric;
+     * prefix sums of the leg weights along the tour in both directions give that change by one subtraction
+     * tour[0] remains the start of the tour
+     *
+     * @param tour          the order of the stops, with tour[0] == 0
+     * @param matrix        the k*k weight matrix in row-major order
+     * @param returnToStart whether the tour ends at the start again
+     * @param maxIterations the maximum number of improving moves to be applied
+     * @param deadline      the System.currentTimeMillis() after which no more moves are attempted
+     * @return the number of improving moves that have been applied
+     */
+    static int improveTour(int[] tour, double[] matrix, boolean returnToStart, int maxIterations, long deadline) {
+        int k = tour.length;
+        int numIterations = 0;
+        boolean improved = true;
+        // forward[p] is the weight of the legs tour[0] -> .. -> tour[p], backward[p] of the legs tour[p] -> .. -> tour[0]
+        double[] forward = new double[k];
+        double[] backward = new double[k];
+
+        while (improved && numIterations < maxIterations && System.currentTimeMillis() < deadline) {
+            improved = false;
+
+            for (int p = 1; p < k; p++) {
+                forward[p] = forward[p - 1] + weight(matrix, k, tour[p - 1], tour[p]);
+                backward[p] = backward[p - 1] + weight(matrix, k, tour[p], tour[p - 1]);
+            }
+
+            // 2-opt: reverse the segment tour[i..j], i.e. replace connections (a,b),(c,d) by (a,c),(b,d)
+            for (int i = 1; i < k - 1 && !improved; i++) {
+                int a = tour[i - 1], b = tour[i];
+                for (int j = i + 1; j < k; j++) {
+                    int c = tour[j];
+                    int d = j + 1 < k ? tour[j + 1] : -1;
+                    // the legs within the segment are travelled in the opposite direction after the reversal
+                    double delta = weight(matrix, k, a, c) + endWeight(matrix, k, b, d, returnToStart)
+                            - weight(matrix, k, a, b) - endWeight(matrix, k, c, d, returnToStart)
+                            + (backward[j] - backward[i]) - (forward[j] - forward[i]);
+                    if (delta < -MIN_IMPROVEMENT) {
+                        reverse(tour, i, j);
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+
+            // Or-opt: move the segment tour[i..i+len-1] in between tour[p] and tour[p+1], keeping its direction
+            for (int len = 1; len <= MAX_OR_OPT_SEGMENT && !improved; len++) {
+                for (int i = 1; i + len <= k && !improved; i++) {
+                    int first = tour[i], last = tour[i + len - 1];
+                    int before = tour[i - 1];
+                    int after = i + len < k ? tour[i + len] : -1;
+                    double removeGain = weight(matrix, k, before, first) + endWeight(matrix, k, last, after, returnToStart)
+                            - endWeight(matrix, k, before, after, returnToStart);
+
+                    for (int p = 0; p < k; p++) {
+                        // the segment must go in between two stops outside the segment
+                        if (p >= i - 1 && p < i + len) continue;
+                        int from = tour[p];
+                        int to = p + 1 < k ? tour[p + 1] : -1;
+                        double insertCost = weight(matrix, k, from, first) + endWeight(matrix, k, last, to, returnToStart)
+                                - endWeight(matrix, k, from, to, returnToStart);
+                        if (insertCost - removeGain < -MIN_IMPROVEMENT) {
+                            moveSegment(tour, i, len, p);
+                            improved = true;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (improved) numIterations++;
+        }
+        return numIterations;
+    }
+
+    /**
+     * calculates the total weight of the tour on the directed weights of the matrix
+     */
+    static double tourWeight(int[] tour, double[] matrix, boolean returnToStart) {
+        int k = tour.length;
+        double total = 0.0;
+        for (int i = 1; i < k; i++) {
+            total += matrix[tour[i - 1] * k + tour[i]];
+        }
+        if (returnToStart && k > 1) total += matrix[tour[k - 1] * k + tour[0]];
+        return total;
+    }
+
+    private static double weight(double[] matrix, int k, int from, int to) {
+        return matrix[from * k + to];
+    }
+
+    /**
+     * the weight of a connection that may be the end of the tour (to == -1),
+     * which returns to stop 0 or costs nothing, depending on returnToStart
+     */
+    private static double endWeight(double[] matrix, int k, int from, int to, boolean returnToStart) {
+        if (to < 0) {
+            if (!returnToStart) return 0.0;
+            to = 0;
+        }
+        return weight(matrix, k, from, to);
+    }
+
+    private static void reverse(int[] tour, int i, int j) {
+        while (i < j) {
+            int swap = tour[i];
+            tour[i++] = tour[j];
+            tour[j--] = swap;
+        }
+    }
+
+    /**
+     * moves the segment tour[i..i+len-1] to the position directly after tour[p]
+     */
+    private static void moveSegment(int[] tour, int i, int len, int p) {
+        int[] segment = Arrays.copyOfRange(tour, i, i + len);
+        if (p < i) {
+            // shift tour[p+1..i-1] to the right, to make room after tour[p]
+            System.arraycopy(tour, p + 1, tour, p + 1 + len, i - p - 1);
+            System.arraycopy(segment, 0, tour, p + 1, len);
+        } else {
+            // shift tour[i+len..p] to the left, into the place of the segment
+            System.arraycopy(tour, i + len, tour, i, p - i - len + 1);
+            System.arraycopy(segment, 0, tour, p - len + 1, len);
+        }
+    }
+
+    /**
+     * connects the consecutive stops of the tour by their shortest paths in the graph
+     */
+    private DirectedGraph<V, E>.DGPath expandTour(CompactGraph<V, E> compactGraph, int[] stops, int[] tour,
+                                                   boolean returnToStart) {
+        int n = compactGraph.getNumVertices();
+        double[] weightSumTo = new double[n];
+        int[] edgeTo = new int[n];
+        IntMinHeap heap = new IntMinHeap(n);
+
+        List<V> pathVertices = new ArrayList<>();
+        List<V> visited = new ArrayList<>();
+        pathVertices.add(compactGraph.getVertex(stops[tour[0]]));
+        double totalWeight = 0.0;
+
+        int numLegs = returnToStart && tour.length > 1 ? tour.length : tour.length - 1;
+        for (int leg = 0; leg < numLegs; leg++) {
+            int from = stops[tour[leg]];
+            int to = stops[tour[(leg + 1) % tour.length]];
+            compactGraph.shortestPaths(from, Double.POSITIVE_INFINITY, weightSumTo, edgeTo, heap);
+            totalWeight += weightSumTo[to];
+
+            // walk back from the end of the leg towards its start
+            Deque<V> legVertices = new ArrayDeque<>();
+            for (int v = to; v != from; v = compactGraph.getEdgeSource(edgeTo[v])) {
+                legVertices.addFirst(compactGraph.getVertex(v));
+            }
+            pathVertices.addAll(legVertices);
+        }
+
+        for (int stop : stops) {
+            visited.add(compactGraph.getVertex(stop));
+        }
+        return this.graph.createPath(pathVertices, totalWeight, visited);
+    }
+}
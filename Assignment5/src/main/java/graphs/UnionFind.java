@@ -0,0 +1,73 @@
+package graphs;
+
+/**
+ * disjoint sets of dense int ids 0 <= id < size, with union by size and path compression
+ * used by Kruskal's minimum spanning tree algorithm to detect cycles
+ */
+public class UnionFind {
+    private final int[] parent;    // the parent of each id in its set tree, roots are their own parent
+    private final int[] setSize;   // the number of ids in the set, only maintained at the roots
+    private int numSets;
+
+    public UnionFind(int size) {
+        this.parent = new int[size];
+        this.setSize = new int[size];
+        for (int id = 0; id < size; id++) {
+            this.parent[id] = id;
+            this.setSize[id] = 1;
+        }
+        this.numSets = size;
+    }
+
+    /**
+     * finds the representative of the set that contains id
+     * all ids on the way to the root are re-linked directly to the root
+     *
+     * @param id the id to be found
+     * @return the root id of the set
+     */
+    public int find(int id) {
+        int root = id;
+        while (this.parent[root] != root) {
+            root = this.parent[root];
+        }
+        // compress the path towards the root
+        while (this.parent[id] != root) {
+            int next = this.parent[id];
+            this.parent[id] = root;
+            id = next;
+        }
+        return root;
+    }
+
+    /**
+     * joins the sets of id1 and id2
+     *
+     * @return whether two different sets have been joined,
+     * false if id1 and id2 were in the same set already
+     */
+    public boolean union(int id1, int id2) {
+        int root1 = this.find(id1);
+        int root2 = this.find(id2);
+        if (root1 == root2) return false;
+
+        // hang the smaller tree below the larger one
+        if (this.setSize[root1] < this.setSize[root2]) {
+            int swap = root1;
+            root1 = root2;
+            root2 = swap;
+        }
+        this.parent[root2] = root1;
+        this.setSize[root1] += this.setSize[root2];
+        this.numSets--;
+        return true;
+    }
+
+    public boolean connected(int id1, int id2) {
+        return this.find(id1) == this.find(id2);
+    }
+
+    public int getNumSets() {
+        return this.numSets;
+    }
+}
@@ -0,0 +1,122 @@
+package graphs;
+
+import java.util.*;
+
+/**
+ * registers vertices under a dense int handle 0 <= handle < size(), in order of registration
+ * the handle can be used instead of the vertex or its id on hot paths, to avoid hashing and equality tests
+ * the registry also keeps the (interned) id of every vertex, such that ids can be compared by identity
+ *
+ * @param <V> the vertex type
+ */
+public class VertexRegistry<V extends Identifiable> {
+
+    private final Map<String, Integer> handles = new HashMap<>();    // the handle of each vertex id
+    private final List<V> vertices = new ArrayList<>();              // the vertex at each handle
+    private final List<String> ids = new ArrayList<>();              // the interned id at each handle
+
+    /**
+     * representation invariants:
+     * 1. handles.get(ids.get(h)) == h for all 0 <= h < size()
+     * 2. ids.get(h) == vertices.get(h).getId() at the moment of registration
+     **/
+
+    /**
+     * registers the vertex, if no vertex with the same id has been registered yet
+     *
+     * @param vertex the vertex to be registered
+     * @return the handle of the vertex with the same id as the given vertex
+     */
+    public int register(V vertex) {
+        String id = vertex.getId();
+        Integer handle = this.handles.get(id);
+        if (handle != null) return handle;
+
+        this.handles.put(id, this.vertices.size());
+        this.vertices.add(vertex);
+        this.ids.add(id);
+        return this.vertices.size() - 1;
+    }
+
+    /**
+     * @param id the id of a vertex
+     * @return the handle of the vertex, or -1 if no vertex with this id has been registered
+     */
+    public int getHandle(String id) {
+        if (id == null) return -1;
+        Integer handle = this.handles.get(id);
+        return handle == null ? -1 : handle;
+    }
+
+    public int getHandle(V vertex) {
+        return vertex == null ? -1 : this.getHandle(vertex.getId());
+    }
+
+    public boolean isHandle(int handle) {
+        return handle >= 0 && handle < this.vertices.size();
+    }
+
+    public V getVertex(int handle) {
+        return this.vertices.get(handle);
+    }
+
+    /**
+     * @return the id of the vertex at the handle, as it was registered
+     */
+    public String getId(int handle) {
+        return this.ids.get(handle);
+    }
+
+    /**
+     * finds the registered instance of an id, such that equal ids can be compared by identity afterwards
+     *
+     * @param id an id, e.g. as read from a file
+     * @return the registered instance of the id, or null if no vertex with this id has been registered
+     */
+    public String intern(String id) {
+        int handle = this.getHandle(id);
+        return handle < 0 ? null : this.ids.get(handle);
+    }
+
+    public int size() {
+        return this.vertices.size();
+    }
+
+    /**
+     * @return a read-only view of all registered vertices, in order of their handles
+     */
+    public List<V> getVertices() {
+        return Collections.unmodifiableList(this.vertices);
+    }
+
+    /**
+     * removes all vertices that shall not be kept, and renumbers the remaining handles densely,
+     * maintaining their relative order
+     *
+     * @param keep for every current handle whether the vertex shall be kept
+     * @return for every current handle its new handle, or -1 if the vertex has been removed
+     */
+    int[] retain(boolean[] keep) {
+        int[] newHandles = new int[this.vertices.size()];
+        List<V> keptVertices = new ArrayList<>();
+        List<String> keptIds = new ArrayList<>();
+        this.handles.clear();
+
+        for (int handle = 0; handle < newHandles.length; handle++) {
+            if (keep[handle]) {
+                newHandles[handle] = keptVertices.size();
+                this.handles.put(this.ids.get(handle), keptVertices.size());
+                keptVertices.add(this.vertices.get(handle));
+                keptIds.add(this.ids.get(handle));
+            } else {
+                newHandles[handle] = -1;
+            }
+        }
+
+        this.vertices.clear();
+        this.vertices.addAll(keptVertices);
+        this.ids.clear();
+        this.ids.addAll(keptIds);
+        return newHandles;
+    }
+}
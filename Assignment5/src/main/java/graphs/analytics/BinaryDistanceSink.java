@@ -0,0 +1,39 @@
+package graphs.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * writes shortest path weights in a compact binary form:
+ * the number of vertices n as an int, followed by one record per source vertex
+ * consisting of the source index as an int and n doubles with the weights towards every vertex index
+ * unreachable vertices are written as Double.POSITIVE_INFINITY
+ */
+public class BinaryDistanceSink implements DistanceSink {
+
+    private final DataOutputStream output;
+
+    /**
+     * @param numVertices the number of vertices in each row
+     * @param output      the destination of the records, which will be closed by this sink
+     */
+    public BinaryDistanceSink(int numVertices, OutputStream output) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        this.output.writeInt(numVertices);
+    }
+
+    @Override
+    public void acceptRow(int source, double[] weightSumTo, int numVertices) throws IOException {
+        this.output.writeInt(source);
+        for (int target = 0; target < numVertices; target++) {
+            this.output.writeDouble(weightSumTo[target]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.output.close();
+    }
+}
@@ -0,0 +1,48 @@
+package graphs.analytics;
+
+import graphs.CompactGraph;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * writes shortest path weights as text lines with format: from;to;weight
+ * using the same delimiter as the csv resources of the route planner
+ * unreachable pairs are omitted
+ */
+public class CsvDistanceSink implements DistanceSink {
+    private static final String DELIMITER = ";";
+
+    private final CompactGraph<?, ?> graph;
+    private final Writer writer;
+
+    /**
+     * @param graph  the graph snapshot that provides the vertex ids for the dense indices
+     * @param writer the destination of the csv lines, which will be closed by this sink
+     */
+    public CsvDistanceSink(CompactGraph<?, ?> graph, Writer writer) throws IOException {
+        this.graph = graph;
+        this.writer = new BufferedWriter(writer);
+        this.writer.write("from" + DELIMITER + "to" + DELIMITER + "weight\n");
+    }
+
+    @Override
+    public void acceptRow(int source, double[] weightSumTo, int numVertices) throws IOException {
+        String fromId = this.graph.getVertex(source).getId();
+        for (int target = 0; target < numVertices; target++) {
+            if (target == source || weightSumTo[target] == Double.POSITIVE_INFINITY) continue;
+            this.writer.write(fromId);
+            this.writer.write(DELIMITER);
+            this.writer.write(this.graph.getVertex(target).getId());
+            this.writer.write(DELIMITER);
+            this.writer.write(String.format(Locale.ENGLISH, "%.6f\n", weightSumTo[target]));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+}
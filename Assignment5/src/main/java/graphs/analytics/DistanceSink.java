@@ -0,0 +1,36 @@
+package graphs.analytics;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * receives the rows of an all-pairs shortest path calculation one source vertex at a time,
+ * such that the complete distance matrix never needs to be kept in memory
+ * GraphAnalytics delivers the rows one at a time, but not in any particular order of source
+ */
+public interface DistanceSink extends Closeable {
+
+    /**
+     * a sink that discards all rows, for when only the summarising metrics are needed
+     */
+    DistanceSink NONE = new DistanceSink() {
+        @Override
+        public void acceptRow(int source, double[] weightSumTo, int numVertices) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * accepts the shortest path weights from one source vertex towards all vertices
+     * the array is re-used by the caller after this method returns
+     *
+     * @param source      the dense index of the source vertex
+     * @param weightSumTo the weight sum of the shortest path towards each vertex index,
+     *                    Double.POSITIVE_INFINITY if the vertex cannot be reached
+     * @param numVertices the number of valid entries in weightSumTo
+     */
+    void acceptRow(int source, double[] weightSumTo, int numVertices) throws IOException;
+}
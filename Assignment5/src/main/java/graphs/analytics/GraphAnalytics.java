@@ -0,0 +1,449 @@
+package graphs.analytics;
+
+import graphs.CompactGraph;
+import graphs.DirectedGraph;
+import graphs.Identifiable;
+import graphs.IntMinHeap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * batch calculations of graph metrics that need the shortest paths between all pairs of vertices:
+ * all-pairs shortest paths, eccentricity, diameter, closeness centrality and betweenness centrality
+ * the calculations run on a snapshot of the graph in primitive arrays and use all available cores
+ * results are reported by dense vertex index of the snapshot, see CompactGraph.getVertex()
+ *
+ * @param <V> the vertex type of the graph
+ * @param <E> the edge type of the graph
+ */
+public class GraphAnalytics<V extends Identifiable, E> {
+
+    // up to this number of vertices the n*n distance matrix of Floyd-Warshall is affordable
+    public static final int FLOYD_WARSHALL_MAX_VERTICES = 750;
+    // number of chunks of work per thread, to balance the load when some sources take longer than others
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final CompactGraph<V, E> graph;
+    private final int parallelism;
+
+    public GraphAnalytics(DirectedGraph<V, E> graph, Function<E, Double> weightMapper) {
+        this(new CompactGraph<>(graph, weightMapper));
+    }
+
+    public GraphAnalytics(CompactGraph<V, E> graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param graph       the snapshot of the graph to be analysed
+     * @param parallelism the number of threads to be used by the batch calculations
+     */
+    public GraphAnalytics(CompactGraph<V, E> graph, int parallelism) {
+        this.graph = graph;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public CompactGraph<V, E> getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * summarising metrics of the shortest paths from every vertex
+     */
+    public static class PathMetrics {
+        private final double[] eccentricity;     // the largest finite weight sum from each vertex
+        private final int[] farthest;            // the vertex index at that largest weight sum
+        private final double[] closeness;        // the closeness centrality of each vertex
+        private int diameterFrom = -1;
+        private int diameterTo = -1;
+        private double diameter = 0.0;
+
+        private PathMetrics(int numVertices) {
+            this.eccentricity = new double[numVertices];
+            this.farthest = new int[numVertices];
+            this.closeness = new double[numVertices];
+        }
+
+        public double[] getEccentricity() {
+            return this.eccentricity;
+        }
+
+        public double[] getCloseness() {
+            return this.closeness;
+        }
+
+        /**
+         * @return the largest weight sum of all shortest paths between connected pairs of vertices
+         */
+        public double getDiameter() {
+            return this.diameter;
+        }
+
+        /**
+         * @return the vertex index of the start of a shortest path that spans the diameter, or -1 for an empty graph
+         */
+        public int getDiameterFrom() {
+            return this.diameterFrom;
+        }
+
+        /**
+         * @return the vertex index of the end of a shortest path that spans the diameter, or -1 for an empty graph
+         */
+        public int getDiameterTo() {
+            return this.diameterTo;
+        }
+    }
+
+    /**
+     * betweenness centrality scores of all vertices and all edges
+     * the scores count ordered pairs (s,t), so a bi-directional connection contributes from both sides
+     */
+    public static class Betweenness {
+        private final double[] vertexScores;
+        private final double[] edgeScores;
+
+        private Betweenness(int numVertices, int numEdges) {
+            this.vertexScores = new double[numVertices];
+            this.edgeScores = new double[numEdges];
+        }
+
+        /**
+         * @return for each vertex index the sum over all pairs (s,t) with s != v != t
+         * of the fraction of shortest paths from s to t that pass through v
+         */
+        public double[] getVertexScores() {
+            return this.vertexScores;
+        }
+
+        /**
+         * @return for each edge index the sum over all pairs (s,t)
+         * of the fraction of shortest paths from s to t that use the edge
+         */
+        public double[] getEdgeScores() {
+            return this.edgeScores;
+        }
+    }
+
+    /**
+     * calculates the shortest path weights between all pairs of vertices and streams them into the sink, row by row
+     * uses a parallel Floyd-Warshall on small graphs and repeated, parallel Dijkstra searches on large graphs
+     * the sink is closed when all rows have been delivered
+     *
+     * @param sink receives every row of the distance matrix exactly once
+     * @return eccentricity, closeness and diameter metrics that have been derived from the distances
+     */
+    public PathMetrics allPairsShortestPaths(DistanceSink sink) throws IOException {
+        int n = this.graph.getNumVertices();
+        PathMetrics metrics = new PathMetrics(n);
+
+        try (sink) {
+            if (n <= FLOYD_WARSHALL_MAX_VERTICES) {
+                this.floydWarshall(metrics, sink);
+            } else {
+                this.repeatedDijkstra(metrics, sink);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // the diameter is the largest eccentricity
+        for (int v = 0; v < n; v++) {
+            if (metrics.diameterFrom < 0 || metrics.eccentricity[v] > metrics.diameter) {
+                metrics.diameter = metrics.eccentricity[v];
+                metrics.diameterFrom = v;
+                metrics.diameterTo = metrics.farthest[v];
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * calculates the closeness centrality of every vertex, without retaining the distances
+     * see processRow() for the definition of closeness on graphs that are not strongly connected
+     *
+     * @return the closeness centrality by vertex index
+     */
+    public double[] closenessCentrality() {
+        try {
+            return this.allPairsShortestPaths(DistanceSink.NONE).getCloseness();
+        } catch (IOException e) {
+            // the NONE sink does not do any i/o
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the largest weight sum of all shortest paths between connected pairs of vertices
+     */
+    public double diameter() {
+        try {
+            return this.allPairsShortestPaths(DistanceSink.NONE).getDiameter();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void floydWarshall(PathMetrics metrics, DistanceSink sink) {
+        int n = this.graph.getNumVertices();
+        double[] weightSumTo = new double[n * n];
+        Arrays.fill(weightSumTo, Double.POSITIVE_INFINITY);
+        for (int v = 0; v < n; v++) {
+            weightSumTo[v * n + v] = 0.0;
+            for (int e = this.graph.getFirstEdge(v); e < this.graph.getEndEdge(v); e++) {
+                int w = this.graph.getEdgeTarget(e);
+                weightSumTo[v * n + w] = Math.min(weightSumTo[v * n + w], this.graph.getEdgeWeight(e));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            for (int k = 0; k < n; k++) {
+                final int viaK = k;
+                // all rows can be updated independently, because row k itself does not change in round k
+                this.runInParallel(pool, n, (from, to) -> {
+                    int rowK = viaK * n;
+                    for (int i = from; i < to; i++) {
+                        int rowI = i * n;
+                        double weightIK = weightSumTo[rowI + viaK];
+                        if (weightIK == Double.POSITIVE_INFINITY) continue;
+                        for (int j = 0; j < n; j++) {
+                            double viaWeight = weightIK + weightSumTo[rowK + j];
+                            if (viaWeight < weightSumTo[rowI + j]) weightSumTo[rowI + j] = viaWeight;
+                        }
+                    }
+                });
+            }
+
+            // stream the rows into the sink
+            this.runInParallel(pool, n, (from, to) -> {
+                double[] row = new double[n];
+                for (int source = from; source < to; source++) {
+                    System.arraycopy(weightSumTo, source * n, row, 0, n);
+                    this.processRow(source, row, metrics, sink);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void repeatedDijkstra(PathMetrics metrics, DistanceSink sink) {
+        int n = this.graph.getNumVertices();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            this.runInParallel(pool, n, (from, to) -> {
+                // every chunk of sources re-uses its own search workspace
+                double[] row = new double[n];
+                IntMinHeap heap = new IntMinHeap(n);
+                for (int source = from; source < to; source++) {
+                    this.graph.shortestPaths(source, Double.POSITIVE_INFINITY, row, null, heap);
+                    this.processRow(source, row, metrics, sink);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * derives the metrics of one source from its row of shortest path weights and delivers the row to the sink
+     * closeness follows the Wasserman-Faust definition, which also applies to graphs that are not strongly connected:
+     * closeness(v) = (r-1)/(n-1) * (r-1)/sum, with r the number of vertices reachable from v (including v)
+     * and sum the total weight of the shortest paths towards them
+     */
+    private void processRow(int source, double[] row, PathMetrics metrics, DistanceSink sink) {
+        int n = this.graph.getNumVertices();
+        int numReached = 0;
+        double weightSum = 0.0;
+        double eccentricity = 0.0;
+        int farthest = source;
+        for (int target = 0; target < n; target++) {
+            double weight = row[target];
+            if (weight == Double.POSITIVE_INFINITY) continue;
+            numReached++;
+            weightSum += weight;
+            if (weight > eccentricity) {
+                eccentricity = weight;
+                farthest = target;
+            }
+        }
+
+        // every source updates its own positions in the metrics arrays only
+        metrics.eccentricity[source] = eccentricity;
+        metrics.farthest[source] = farthest;
+        metrics.closeness[source] = (numReached > 1 && weightSum > 0.0)
+                ? ((numReached - 1.0) / (n - 1.0)) * ((numReached - 1.0) / weightSum)
+                : 0.0;
+
+        // the sink can only process one row at a time
+        synchronized (sink) {
+            try {
+                sink.acceptRow(source, row, n);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * calculates the betweenness centrality of all vertices and edges
+     * by Brandes' algorithm with a Dijkstra search from every source vertex in parallel
+     *
+     * @return the vertex and edge betweenness scores
+     */
+    public Betweenness betweennessCentrality() {
+        int n = this.graph.getNumVertices();
+        int m = this.graph.getNumEdges();
+        Betweenness result = new Betweenness(n, m);
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            this.runInParallel(pool, n, (from, to) -> {
+                // every chunk accumulates into its own arrays, which are added to the result at the end
+                double[] vertexScores = new double[n];
+                double[] edgeScores = new double[m];
+                double[] weightSumTo = new double[n];
+                double[] numPaths = new double[n];
+                double[] dependency = new double[n];
+                int[] settledOrder = new int[n];
+                boolean[] settled = new boolean[n];
+                IntMinHeap heap = new IntMinHeap(n);
+
+                for (int source = from; source < to; source++) {
+                    this.accumulateBrandes(source, vertexScores, edgeScores,
+                            weightSumTo, numPaths, dependency, settledOrder, settled, heap);
+                }
+
+                synchronized (result) {
+                    for (int v = 0; v < n; v++) result.vertexScores[v] += vertexScores[v];
+                    for (int e = 0; e < m; e++) result.edgeScores[e] += edgeScores[e];
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * one Brandes iteration: counts the shortest paths from the source by Dijkstra
+     * and then accumulates the dependencies of the source on all vertices and edges, in reverse order of distance
+     */
+    private void accumulateBrandes(int source, double[] vertexScores, double[] edgeScores,
+                                   double[] weightSumTo, double[] numPaths, double[] dependency,
+                                   int[] settledOrder, boolean[] settled, IntMinHeap heap) {
+        int n = this.graph.getNumVertices();
+        Arrays.fill(weightSumTo, Double.POSITIVE_INFINITY);
+        Arrays.fill(numPaths, 0.0);
+        Arrays.fill(dependency, 0.0);
+        Arrays.fill(settled, false);
+        heap.clear();
+
+        weightSumTo[source] = 0.0;
+        numPaths[source] = 1.0;
+        heap.push(source, 0.0);
+        int numSettled = 0;
+
+        while (!heap.isEmpty()) {
+            int v = heap.removeMin();
+            if (settled[v]) continue;
+            settled[v] = true;
+            settledOrder[numSettled++] = v;
+
+            for (int e = this.graph.getFirstEdge(v); e < this.graph.getEndEdge(v); e++) {
+                int w = this.graph.getEdgeTarget(e);
+                double newWeightSum = weightSumTo[v] + this.graph.getEdgeWeight(e);
+                if (newWeightSum < weightSumTo[w]) {
+                    weightSumTo[w] = newWeightSum;
+                    numPaths[w] = numPaths[v];
+                    heap.push(w, newWeightSum);
+                } else if (newWeightSum == weightSumTo[w] && !settled[w]) {
+                    // another shortest path towards w
+                    numPaths[w] += numPaths[v];
+                }
+            }
+        }
+
+        // all successors w of v on shortest paths have been settled after v, so their dependency is complete
+        for (int i = numSettled - 1; i >= 0; i--) {
+            int v = settledOrder[i];
+            for (int e = this.graph.getFirstEdge(v); e < this.graph.getEndEdge(v); e++) {
+                int w = this.graph.getEdgeTarget(e);
+                if (w != source && settled[w] && weightSumTo[v] + this.graph.getEdgeWeight(e) == weightSumTo[w]) {
+                    double contribution = numPaths[v] / numPaths[w] * (1.0 + dependency[w]);
+                    edgeScores[e] += contribution;
+                    dependency[v] += contribution;
+                }
+            }
+            if (v != source) vertexScores[v] += dependency[v];
+        }
+    }
+
+    /**
+     * finds the indices of the k largest scores, in descending order of score
+     *
+     * @param scores the scores by vertex or edge index
+     * @param k      the number of indices to be returned
+     * @return at most k indices
+     */
+    public static int[] topIndices(double[] scores, int k) {
+        k = Math.max(0, Math.min(k, scores.length));
+        // keep the k largest scores in a min-heap, such that the smallest of them can be replaced
+        IntMinHeap tops = new IntMinHeap(k + 1);
+        for (int i = 0; i < scores.length; i++) {
+            tops.push(i, scores[i]);
+            if (tops.size() > k) tops.removeMin();
+        }
+        int[] result = new int[tops.size()];
+        for (int rank = result.length - 1; rank >= 0; rank--) {
+            result[rank] = tops.removeMin();
+        }
+        return result;
+    }
+
+    /**
+     * processes the index range [from, to) of a chunk of work
+     */
+    private interface ChunkTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * splits the index range [0, size) into chunks and runs the task on all chunks in parallel
+     * exceptions of the task are re-thrown in the calling thread
+     */
+    private void runInParallel(ForkJoinPool pool, int size, ChunkTask task) {
+        int numChunks = Math.max(1, Math.min(size, CHUNKS_PER_THREAD * this.parallelism));
+        List<Callable<Void>> chunks = new ArrayList<>(numChunks);
+        for (int c = 0; c < numChunks; c++) {
+            int from = (int) ((long) size * c / numChunks);
+            int to = (int) ((long) size * (c + 1) / numChunks);
+            chunks.add(() -> {
+                task.run(from, to);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for graph analytics", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package route_planner;
+
+import graphs.CompactGraph;
+import graphs.IntMinHeap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * reconstructs the road segments that have been driven from a stream of (noisy) GPS positions per vehicle,
+ * by a hidden Markov model as proposed by Newson and Krumm (2009):
+ * 1. the hidden states of a GPS position are the nearby road segments, found by a spatial index
+ * 2. the emission probability of a segment decreases with the distance between the position and the segment,
+ *    following a Gaussian distribution of the GPS noise
+ * 3. the transition probability between segments of consecutive positions decreases with the difference between
+ *    the route distance along the roads and the straight distance between the positions (exponential distribution);
+ *    route distances are found by shortest path searches that are bounded by the straight distance plus a maximum detour
+ * 4. the most likely sequence of segments is decoded incrementally by the Viterbi algorithm:
+ *    a position is reported as matched as soon as all surviving candidate sequences agree on its segment
+ * positions of different vehicles can be matched concurrently; positions of the same vehicle shall be provided in order
+ * the matcher works on a snapshot of the road map; later changes to the map are not reflected
+ */
+public class MapMatcher {
+
+    private final CompactGraph<Junction, Road> graph;
+    private final RoadSegmentIndex index;
+    private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+
+    private double sigma = 0.05;             // standard deviation of the GPS noise in km
+    private double beta = 0.5;               // scale of the route versus straight distance difference in km
+    private double searchRadius = 0.25;      // maximum distance between a position and its candidate segments in km
+    private double maxDetour = 2.0;          // maximum difference between route and straight distance in km
+    private int maxCandidates = 8;           // maximum number of candidate segments per position
+
+    /**
+     * a GPS position that has been matched onto a road segment
+     */
+    public static class MatchedPoint {
+        private final int sequenceNr;        // the sequence number of the position in the stream of its vehicle
+        private final Junction from;
+        private final Junction to;
+        private final Road road;
+        private final double fraction;       // the relative position along the segment from 'from' towards 'to'
+
+        MatchedPoint(int sequenceNr, Junction from, Junction to, Road road, double fraction) {
+            this.sequenceNr = sequenceNr;
+            this.from = from;
+            this.to = to;
+            this.road = road;
+            this.fraction = fraction;
+        }
+
+        public int getSequenceNr() {
+            return this.sequenceNr;
+        }
+
+        public Junction getFrom() {
+            return this.from;
+        }
+
+        public Junction getTo() {
+            return this.to;
+        }
+
+        public Road getRoad() {
+            return this.road;
+        }
+
+        public double getFraction() {
+            return this.fraction;
+        }
+
+        public double getLocationX() {
+            return this.from.getLocationX() + this.fraction * (this.to.getLocationX() - this.from.getLocationX());
+        }
+
+        public double getLocationY() {
+            return this.from.getLocationY() + this.fraction * (this.to.getLocationY() - this.from.getLocationY());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "#%d %s(%s->%s@%.2f)", this.sequenceNr, this.road.getName(),
+                    this.from.getName(), this.to.getName(), this.fraction);
+        }
+    }
+
+    /**
+     * a candidate segment in the Viterbi trellis, with a link to its most likely predecessor
+     */
+    private static class Node {
+        private final int segment;
+        private final double fraction;
+        private final int sequenceNr;
+        private Node previous;               // null at the start of the trellis, or once the predecessors have been reported
+        private boolean reported = false;
+
+        Node(int segment, double fraction, int sequenceNr, Node previous) {
+            this.segment = segment;
+            this.fraction = fraction;
+            this.sequenceNr = sequenceNr;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * the state of the matching of a single vehicle: the candidates of its latest matched position
+     */
+    private static class Track {
+        private int numPositions = 0;        // the number of positions that have been received
+        private double lastX, lastY;         // the latest position that had any candidate segments
+        private Node[] candidates = new Node[0];
+        private double[] logProbabilities = new double[0];
+    }
+
+    /**
+     * the search arrays of a single thread, re-used for all positions of all vehicles
+     */
+    private static class Workspace {
+        private final int[] segments;
+        private final double[] distances;
+        private final double[] fractions;
+        private final double[] weightSumTo;  // all entries are POSITIVE_INFINITY in between searches
+        private final int[] touched;         // the vertices with a finite weightSumTo during a search
+        private final IntMinHeap heap = new IntMinHeap();
+
+        Workspace(int maxCandidates, int numVertices) {
+            this.segments = new int[maxCandidates];
+            this.distances = new double[maxCandidates];
+            this.fractions = new double[maxCandidates];
+            this.weightSumTo = new double[numVertices];
+            Arrays.fill(this.weightSumTo, Double.POSITIVE_INFINITY);
+            this.touched = new int[numVertices];
+        }
+    }
+
+    /**
+     * @param roadMap  the road map to match positions onto
+     */
+    public MapMatcher(RoadMap roadMap) {
+        this.graph = new CompactGraph<>(roadMap, Road::getLength);
+        this.index = new RoadSegmentIndex(this.graph, 2 * this.searchRadius);
+    }
+
+    public void setSigma(double sigma) {
+        this.sigma = sigma;
+    }
+
+    public void setBeta(double beta) {
+        this.beta = beta;
+    }
+
+    /**
+     * @param searchRadius the maximum distance between a position and its candidate segments in km,
+     *                     positions without any segment within this radius are skipped as outliers
+     */
+    public void setSearchRadius(double searchRadius) {
+        this.searchRadius = searchRadius;
+    }
+
+    /**
+     * @param maxDetour the maximum difference between the route distance and the straight distance
+     *                  between consecutive positions in km, which bounds the shortest path searches
+     */
+    public void setMaxDetour(double maxDetour) {
+        this.maxDetour = maxDetour;
+    }
+
+    public void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * @return the number of vehicles that have an unfinished track
+     */
+    public int getNumVehicles() {
+        return this.tracks.size();
+    }
+
+    /**
+     * matches the next GPS position of a vehicle
+     *
+     * @param vehicleId the id of the vehicle
+     * @param x         RD x-coordinate of the position in km
+     * @param y         RD y-coordinate of the position in km
+     * @return the earlier (and current) positions of the vehicle of which the road segment has been decided
+     * by this position, in order of their sequence numbers; the list is empty if nothing has been decided yet
+     */
+    public List<MatchedPoint> update(String vehicleId, double x, double y) {
+        Track track = this.tracks.computeIfAbsent(vehicleId, id -> new Track());
+        synchronized (track) {
+            return this.update(track, x, y);
+        }
+    }
+
+    /**
+     * ends the track of a vehicle, and reports the most likely segments of its remaining positions
+     *
+     * @param vehicleId the id of the vehicle
+     * @return the positions of the vehicle that had not been reported yet, in order of their sequence numbers
+     */
+    public List<MatchedPoint> finish(String vehicleId) {
+        Track track = this.tracks.remove(vehicleId);
+        List<MatchedPoint> matched = new ArrayList<>();
+        if (track == null) return matched;
+        synchronized (track) {
+            this.reportBest(track, matched);
+        }
+        return matched;
+    }
+
+    /**
+     * matches a complete trace of positions, independent of any vehicle tracks
+     *
+     * @param xs RD x-coordinates of the positions in km
+     * @param ys RD y-coordinates of the positions in km
+     * @return the matched positions, positions without nearby segments are left out
+     */
+    public List<MatchedPoint> match(double[] xs, double[] ys) {
+        Track track = new Track();
+        List<MatchedPoint> matched = new ArrayList<>();
+        for (int i = 0; i < xs.length; i++) {
+            matched.addAll(this.update(track, xs[i], ys[i]));
+        }
+        this.reportBest(track, matched);
+        return matched;
+    }
+
+    /**
+     * performs a single Viterbi step for the next position of the track
+     */
+    private List<MatchedPoint> update(Track track, double x, double y) {
+        Workspace workspace = this.getWorkspace();
+        List<MatchedPoint> matched = new ArrayList<>();
+        int sequenceNr = track.numPositions++;
+
+        int numCandidates = this.index.findNearestSegments(x, y, this.searchRadius,
+                workspace.segments, workspace.distances, workspace.fractions);
+        // outliers without nearby segments are skipped
+        if (numCandidates == 0) return matched;
+
+        Node[] candidates = new Node[numCandidates];
+        double[] logProbabilities = new double[numCandidates];
+        Arrays.fill(logProbabilities, Double.NEGATIVE_INFINITY);
+        int[] best = new int[numCandidates];
+        Arrays.fill(best, -1);
+
+        if (track.candidates.length > 0) {
+            double straightDistance = Math.hypot(x - track.lastX, y - track.lastY);
+            double[] routeDistances = new double[numCandidates];
+            for (int i = 0; i < track.candidates.length; i++) {
+                if (track.logProbabilities[i] == Double.NEGATIVE_INFINITY) continue;
+                this.routeDistances(track.candidates[i], straightDistance, workspace, numCandidates, routeDistances);
+                for (int j = 0; j < numCandidates; j++) {
+                    double detour = Math.abs(routeDistances[j] - straightDistance);
+                    if (detour > this.maxDetour) continue;
+                    double logProbability = track.logProbabilities[i] - detour / this.beta;
+                    if (logProbability > logProbabilities[j]) {
+                        logProbabilities[j] = logProbability;
+                        best[j] = i;
+                    }
+                }
+            }
+        }
+
+        boolean connected = false;
+        for (int j = 0; j < numCandidates; j++) {
+            connected |= best[j] >= 0;
+        }
+        if (!connected) {
+            // the position cannot be reached from the previous one: report the best sequence so far, and restart
+            this.reportBest(track, matched);
+            Arrays.fill(logProbabilities, 0.0);
+        }
+
+        // add the emission probabilities, and normalise such that the most likely candidate has log probability 0
+        double maxLogProbability = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < numCandidates; j++) {
+            double z = workspace.distances[j] / this.sigma;
+            logProbabilities[j] -= 0.5 * z * z;
+            maxLogProbability = Math.max(maxLogProbability, logProbabilities[j]);
+            candidates[j] = new Node(workspace.segments[j], workspace.fractions[j], sequenceNr,
+                    connected && best[j] >= 0 ? track.candidates[best[j]] : null);
+        }
+        for (int j = 0; j < numCandidates; j++) {
+            logProbabilities[j] -= maxLogProbability;
+        }
+
+        track.candidates = candidates;
+        track.logProbabilities = logProbabilities;
+        track.lastX = x;
+        track.lastY = y;
+
+        // report the positions on which all surviving sequences agree
+        Node convergence = convergence(candidates, logProbabilities);
+        if (convergence != null) this.report(convergence, matched);
+        return matched;
+    }
+
+    /**
+     * calculates the route distances from a candidate of the previous position towards all current candidates,
+     * either along the same segment, or via a bounded shortest path search from the end of the segment
+     */
+    private void routeDistances(Node from, double straightDistance, Workspace workspace,
+                                int numCandidates, double[] routeDistances) {
+        double length = this.graph.getEdgeWeight(from.segment);
+        double remaining = (1.0 - from.fraction) * length;
+        double maxWeightSum = straightDistance + this.maxDetour - remaining;
+        int numTouched = maxWeightSum >= 0.0 ?
+                this.boundedSearch(this.graph.getEdgeTarget(from.segment), maxWeightSum, workspace) : 0;
+
+        for (int j = 0; j < numCandidates; j++) {
+            int segment = workspace.segments[j];
+            double routeDistance = remaining + workspace.weightSumTo[this.graph.getEdgeSource(segment)]
+                    + workspace.fractions[j] * this.graph.getEdgeWeight(segment);
+            if (segment == from.segment && workspace.fractions[j] >= from.fraction) {
+                routeDistance = Math.min(routeDistance, (workspace.fractions[j] - from.fraction) * length);
+            }
+            routeDistances[j] = routeDistance;
+        }
+
+        // reset the touched entries only, such that a search costs nothing outside its bound
+        for (int i = 0; i < numTouched; i++) {
+            workspace.weightSumTo[workspace.touched[i]] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Dijkstra's shortest path search from the source, bounded by a maximum weight sum
+     *
+     * @return the number of vertices in workspace.touched that have received a finite weightSumTo
+     */
+    private int boundedSearch(int source, double maxWeightSum, Workspace workspace) {
+        double[] weightSumTo = workspace.weightSumTo;
+        IntMinHeap heap = workspace.heap;
+        heap.clear();
+        weightSumTo[source] = 0.0;
+        workspace.touched[0] = source;
+        int numTouched = 1;
+        heap.push(source, 0.0);
+
+        while (!heap.isEmpty()) {
+            double weightSum = heap.minKey();
+            int v = heap.removeMin();
+            if (weightSum > weightSumTo[v]) continue;
+            for (int e = this.graph.getFirstEdge(v); e < this.graph.getEndEdge(v); e++) {
+                int w = this.graph.getEdgeTarget(e);
+                double newWeightSum = weightSum + this.graph.getEdgeWeight(e);
+                if (newWeightSum < weightSumTo[w] && newWeightSum <= maxWeightSum) {
+                    if (weightSumTo[w] == Double.POSITIVE_INFINITY) workspace.touched[numTouched++] = w;
+                    weightSumTo[w] = newWeightSum;
+                    heap.push(w, newWeightSum);
+                }
+            }
+        }
+        return numTouched;
+    }
+
+    /**
+     * finds the latest node that is shared by the sequences of all surviving candidates
+     *
+     * @return the shared node, or null if the sequences have not converged
+     */
+    private static Node convergence(Node[] candidates, double[] logProbabilities) {
+        List<Node> cursors = new ArrayList<>();
+        for (int j = 0; j < candidates.length; j++) {
+            if (logProbabilities[j] > Double.NEGATIVE_INFINITY) cursors.add(candidates[j]);
+        }
+        // all sequences have the same length, so they can be traced back in lockstep
+        while (true) {
+            boolean shared = true;
+            for (Node cursor : cursors) {
+                if (cursor == null) return null;
+                shared &= cursor == cursors.get(0);
+            }
+            if (shared) return cursors.get(0);
+            cursors.replaceAll(cursor -> cursor.previous);
+        }
+    }
+
+    /**
+     * reports the most likely sequence of the track so far
+     */
+    private void reportBest(Track track, List<MatchedPoint> matched) {
+        int best = -1;
+        for (int j = 0; j < track.candidates.length; j++) {
+            if (best < 0 || track.logProbabilities[j] > track.logProbabilities[best]) best = j;
+        }
+        if (best >= 0) this.report(track.candidates[best], matched);
+        track.candidates = new Node[0];
+        track.logProbabilities = new double[0];
+    }
+
+    /**
+     * reports the node and its predecessors that have not been reported before, in order of their sequence numbers,
+     * and releases the predecessors of the node
+     */
+    private void report(Node node, List<MatchedPoint> matched) {
+        Deque<Node> unreported = new ArrayDeque<>();
+        for (Node n = node; n != null && !n.reported; n = n.previous) {
+            unreported.addFirst(n);
+        }
+        for (Node n : unreported) {
+            n.reported = true;
+            matched.add(new MatchedPoint(n.sequenceNr,
+                    this.graph.getVertex(this.graph.getEdgeSource(n.segment)),
+                    this.graph.getVertex(this.graph.getEdgeTarget(n.segment)),
+                    this.graph.getEdge(n.segment), n.fraction));
+        }
+        node.previous = null;
+    }
+
+    private Workspace getWorkspace() {
+        Workspace workspace = this.workspaces.get();
+        if (workspace == null || workspace.segments.length != this.maxCandidates) {
+            workspace = new Workspace(this.maxCandidates, this.graph.getNumVertices());
+            this.workspaces.set(workspace);
+        }
+        return workspace;
+    }
+}
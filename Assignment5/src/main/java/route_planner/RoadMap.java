@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
 
@@ -139,6 +140,17 @@ public class RoadMap extends DirectedGraph<Junction, Road> {
      * @param path          optional search path with visited vertices to be coloured into the map
      */
     public void svgDrawMap(String resourceName, DGPath path) {
+        this.svgDrawMap(resourceName, path, null);
+    }
+
+    /**
+     * produces an .svg file in the target classpath folder, which depicts the roadMap, the optional path
+     * and the optional tree of connections
+     * @param resourceName  name of the file to be generated
+     * @param path          optional search path with visited vertices to be coloured into the map
+     * @param tree          optional tree of connections, e.g. a spanning tree, to be highlighted in the map
+     */
+    public void svgDrawMap(String resourceName, DGPath path, DGTree tree) {
         try {
             //Path resources = Paths.get(this.getClass().getResource("/").getPath());
             //String svgPath = resources.toAbsolutePath() + "/" + resourceName;
@@ -158,10 +170,18 @@ public class RoadMap extends DirectedGraph<Junction, Road> {
                 this.svgDrawRoads(svgWriter, junction);
             }
 
-            // on top of that, draw all junctions with a colour depending on their status in the optional path
+            // on top of that, draw all junctions with a colour depending on their status in the optional path or tree
             for (Junction junction: getVertices()) {
                 junction.svgDraw(svgWriter,
-                        path != null && path.getVisited().contains(junction) ? "yellowgreen" : "black");
+                        path != null && path.getVisited().contains(junction) ? "yellowgreen" :
+                        tree != null && tree.getVertices().contains(junction) ? "crimson" : "black");
+            }
+
+            // on top of that, highlight the tree connections, if any have been provided
+            if (tree != null) {
+                for (Map.Entry<Junction, Junction> connection: tree.getConnections()) {
+                    connection.getValue().svgDrawRoad(svgWriter, connection.getKey(), 1.0, "crimson");
+                }
             }
 
             // on top of that, highlight the path, if any has been provided
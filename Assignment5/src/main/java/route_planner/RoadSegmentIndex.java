@@ -0,0 +1,175 @@
+package route_planner;
+
+import graphs.CompactGraph;
+
+/**
+ * spatial index of the road segments of a road map, on a uniform grid of square cells
+ * every road segment (an edge of the compact graph) is registered in all cells that overlap its bounding box
+ * the segments of cell c are cellSegments[cellStart[c]] .. cellSegments[cellStart[c+1]-1]
+ * a search for nearby segments only inspects the cells around the search position
+ */
+public class RoadSegmentIndex {
+
+    private final CompactGraph<Junction, Road> graph;
+    private final double cellSize;           // the width and height of a grid cell in km
+    private final double minX, minY;         // the RD-coordinates of the lower left corner of the grid
+    private final int numColumns, numRows;
+    private final int[] cellStart;           // the first position in cellSegments of each cell, cellStart[numCells] == cellSegments.length
+    private final int[] cellSegments;        // the edge indices of the segments in each cell
+
+    /**
+     * representation invariants:
+     * 1. cellStart[0] == 0 and cellStart[c] <= cellStart[c+1]
+     * 2. every edge e of the graph is listed in cell c if the bounding box of e overlaps cell c
+     **/
+
+    /**
+     * @param graph    a snapshot of the road map, providing the segments to be indexed
+     * @param cellSize the size of the grid cells in km, preferably in the order of the search radius
+     */
+    public RoadSegmentIndex(CompactGraph<Junction, Road> graph, double cellSize) {
+        this.graph = graph;
+        this.cellSize = cellSize;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            Junction junction = graph.getVertex(v);
+            minX = Math.min(minX, junction.getLocationX());
+            minY = Math.min(minY, junction.getLocationY());
+            maxX = Math.max(maxX, junction.getLocationX());
+            maxY = Math.max(maxY, junction.getLocationY());
+        }
+        if (graph.getNumVertices() == 0) {
+            minX = minY = maxX = maxY = 0.0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.numColumns = (int) ((maxX - minX) / cellSize) + 1;
+        this.numRows = (int) ((maxY - minY) / cellSize) + 1;
+
+        // first count the segments per cell, then fill the cells in a second pass
+        int numCells = this.numColumns * this.numRows;
+        this.cellStart = new int[numCells + 1];
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            this.visitCells(e, null);
+        }
+        for (int c = 0; c < numCells; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+        this.cellSegments = new int[this.cellStart[numCells]];
+        int[] fill = new int[numCells];
+        for (int e = 0; e < graph.getNumEdges(); e++) {
+            this.visitCells(e, fill);
+        }
+    }
+
+    /**
+     * counts the segment in all cells of its bounding box (fill == null),
+     * or registers the segment into these cells at the next fill position
+     */
+    private void visitCells(int e, int[] fill) {
+        Junction from = this.graph.getVertex(this.graph.getEdgeSource(e));
+        Junction to = this.graph.getVertex(this.graph.getEdgeTarget(e));
+        int column0 = this.column(Math.min(from.getLocationX(), to.getLocationX()));
+        int column1 = this.column(Math.max(from.getLocationX(), to.getLocationX()));
+        int row0 = this.row(Math.min(from.getLocationY(), to.getLocationY()));
+        int row1 = this.row(Math.max(from.getLocationY(), to.getLocationY()));
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                int c = row * this.numColumns + column;
+                if (fill == null) {
+                    this.cellStart[c + 1]++;
+                } else {
+                    this.cellSegments[this.cellStart[c] + fill[c]++] = e;
+                }
+            }
+        }
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(this.numColumns - 1, (int) Math.floor((x - this.minX) / this.cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(this.numRows - 1, (int) Math.floor((y - this.minY) / this.cellSize)));
+    }
+
+    public CompactGraph<Junction, Road> getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * finds the nearest road segments within a radius around a position
+     * the results are ordered by increasing distance; if more segments are found than fit into the result arrays,
+     * only the nearest ones are kept
+     *
+     * @param x         RD x-coordinate of the position in km
+     * @param y         RD y-coordinate of the position in km
+     * @param radius    the maximum distance between the position and a segment in km
+     * @param segments  receives the edge indices of the segments found
+     * @param distances receives the distance between the position and each segment found
+     * @param fractions receives the relative position 0.0 <= fraction <= 1.0 along each segment,
+     *                  of the point on the segment that is nearest to the position
+     * @return the number of segments that have been found
+     */
+    public int findNearestSegments(double x, double y, double radius,
+                                   int[] segments, double[] distances, double[] fractions) {
+        int count = 0;
+        if (x + radius < this.minX || y + radius < this.minY) return 0;
+        int column0 = this.column(x - radius), column1 = this.column(x + radius);
+        int row0 = this.row(y - radius), row1 = this.row(y + radius);
+
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                int c = row * this.numColumns + column;
+                for (int i = this.cellStart[c]; i < this.cellStart[c + 1]; i++) {
+                    int e = this.cellSegments[i];
+                    Junction from = this.graph.getVertex(this.graph.getEdgeSource(e));
+                    Junction to = this.graph.getVertex(this.graph.getEdgeTarget(e));
+                    double fraction = projectionFraction(x, y, from, to);
+                    double distance = Math.hypot(
+                            x - (from.getLocationX() + fraction * (to.getLocationX() - from.getLocationX())),
+                            y - (from.getLocationY() + fraction * (to.getLocationY() - from.getLocationY())));
+                    if (distance > radius) continue;
+                    if (count == segments.length && distance >= distances[count - 1]) continue;
+
+                    // long segments are registered in multiple cells, so skip the ones found already
+                    boolean found = false;
+                    for (int j = 0; j < count && !found; j++) {
+                        found = segments[j] == e;
+                    }
+                    if (found) continue;
+
+                    // insert the segment in order of distance, dropping the farthest one if the results are full
+                    int j = count < segments.length ? count++ : count - 1;
+                    while (j > 0 && distances[j - 1] > distance) {
+                        segments[j] = segments[j - 1];
+                        distances[j] = distances[j - 1];
+                        fractions[j] = fractions[j - 1];
+                        j--;
+                    }
+                    segments[j] = e;
+                    distances[j] = distance;
+                    fractions[j] = fraction;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * calculates the relative position along the straight line between two junctions,
+     * of the point on that line that is nearest to a given position
+     *
+     * @return the fraction of the way from 'from' towards 'to', between 0.0 and 1.0
+     */
+    static double projectionFraction(double x, double y, Junction from, Junction to) {
+        double dX = to.getLocationX() - from.getLocationX();
+        double dY = to.getLocationY() - from.getLocationY();
+        double lengthSquared = dX * dX + dY * dY;
+        if (lengthSquared == 0.0) return 0.0;
+        double fraction = ((x - from.getLocationX()) * dX + (y - from.getLocationY()) * dY) / lengthSquared;
+        return Math.max(0.0, Math.min(1.0, fraction));
+    }
+}
@@ -1,5 +1,11 @@
 package route_planner;
 
+import graphs.CompactGraph;
+import graphs.TourOptimiser;
+import graphs.analytics.GraphAnalytics;
+
+import java.util.List;
+
 public class RoutePlannerMain {
 
     public static void main(String[] args) {
@@ -29,6 +35,16 @@ public class RoutePlannerMain {
         final String TO_ID = "Meppel";
         doPathSearches(roadMap, FROM_ID, TO_ID);
 
+        // find the critical junctions and road segments of the network
+        doNetworkAnalysis(roadMap);
+
+        // plan a network along the roads that connects all junctions, or only a few selected junctions
+        doNetworkPlanning(roadMap, List.of("Amsterdam", "Rotterdam", "Utrecht", "Eindhoven", "Groningen"));
+
+        // plan the fastest delivery round along a number of stops
+        doDeliveryPlanning(roadMap, List.of("Amsterdam", "Zwolle", "Eindhoven", "Meppel", "Rotterdam",
+                "Groningen", "Utrecht"));
+
         // now we have an accident between Diemen and Weesp...
         // change the roadMap such that max average speed from Diemen to Weesp is only 5 km/h
         roadMap.getEdge("Diemen", "Weesp").setMaxSpeed(5);
@@ -72,4 +88,49 @@ public class RoutePlannerMain {
 
         System.out.println();
     }
+
+    private static void doDeliveryPlanning(RoadMap roadMap, List<String> stopIds) {
+        TourOptimiser<Junction, Road> optimiser =
+                new TourOptimiser<>(roadMap, road -> road.getLength() / road.getMaxSpeed());
+        RoadMap.DGPath path = optimiser.optimiseTour(stopIds, true);
+        System.out.printf("\nDelivery round along %s after %d improvements:\n%s\n\n",
+                stopIds, optimiser.getNumIterations(), path);
+        roadMap.svgDrawMap("Delivery.svg", path);
+    }
+
+    private static void doNetworkPlanning(RoadMap roadMap, List<String> terminalIds) {
+        System.out.printf("\nNetwork planning by road length:\n");
+
+        RoadMap.DGTree tree = roadMap.kruskalMinimumSpanningTree(Road::getLength);
+        System.out.printf("Minimum spanning tree: %.1f km with %d road segments\n",
+                tree.getTotalWeight(), tree.getConnections().size());
+        roadMap.svgDrawMap("MST.svg", null, tree);
+
+        tree = roadMap.steinerTree(terminalIds, Road::getLength);
+        System.out.println("Steiner tree " + terminalIds + ": " + tree);
+        roadMap.svgDrawMap("Steiner.svg", null, tree);
+        System.out.println();
+    }
+
+    private static void doNetworkAnalysis(RoadMap roadMap) {
+        GraphAnalytics<Junction, Road> analytics =
+                new GraphAnalytics<>(roadMap, road -> road.getLength() / road.getMaxSpeed());
+        CompactGraph<Junction, Road> graph = analytics.getGraph();
+
+        System.out.printf("\nNetwork analysis by travel time of %d junctions:\n", graph.getNumVertices());
+        System.out.printf("Network diameter: %.2f hours\n", analytics.diameter());
+
+        GraphAnalytics.Betweenness betweenness = analytics.betweennessCentrality();
+        System.out.println("Most critical junctions:");
+        for (int v : GraphAnalytics.topIndices(betweenness.getVertexScores(), 5)) {
+            System.out.printf("  %s (%.0f)\n", graph.getVertex(v), betweenness.getVertexScores()[v]);
+        }
+        System.out.println("Most critical road segments:");
+        for (int e : GraphAnalytics.topIndices(betweenness.getEdgeScores(), 5)) {
+            System.out.printf("  %s: %s - %s (%.0f)\n", graph.getEdge(e).getName(),
+                    graph.getVertex(graph.getEdgeSource(e)), graph.getVertex(graph.getEdgeTarget(e)),
+                    betweenness.getEdgeScores()[e]);
+        }
+        System.out.println();
+    }
 }
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -85,4 +87,87 @@ public class OurDirectedGraphTest {
         assertTrue(path.toString().contains("(Wijmpje Beukers, Eetcafe Schotsheuvel, de Ebeling)"));
     }
 
+    @Test
+    void checkMinimumSpanningTrees() {
+        DirectedGraph<Restaurant, Integer>.DGTree kruskal = amsterdam.kruskalMinimumSpanningTree(Integer::doubleValue);
+        DirectedGraph<Restaurant, Integer>.DGTree prim = amsterdam.primMinimumSpanningTree(Integer::doubleValue);
+
+        // Cafe De Gieter has no connections, so 5 restaurants are connected by 4 connections
+        assertEquals(420.0, kruskal.getTotalWeight(), 0.0001);
+        assertEquals(4, kruskal.getConnections().size());
+        assertEquals(5, kruskal.getVertices().size());
+        assertEquals(kruskal.getTotalWeight(), prim.getTotalWeight(), 0.0001);
+        assertEquals(4, prim.getConnections().size());
+        assertFalse(kruskal.getVertices().contains(gieter));
+        assertTrue(kruskal.toString().contains("Weight=420"));
+    }
+
+    @Test
+    void checkSteinerTree() {
+        DirectedGraph<Restaurant, Integer>.DGTree tree =
+                amsterdam.steinerTree(List.of("Wijmpje Beukers", "Cafe Vrijdag"), Integer::doubleValue);
+        assertNotNull(tree);
+        // the shortest path Wijmpje Beukers - Eetcafe Schotsheuvel - de Ebeling - Cafe Vrijdag
+        assertEquals(230.0, tree.getTotalWeight(), 0.0001);
+        assertEquals(3, tree.getConnections().size());
+        assertFalse(tree.getVertices().contains(loetje), "non-terminal leaves should be pruned");
+
+        tree = amsterdam.steinerTree(List.of("Wijmpje Beukers", "Cafe Vrijdag", "Loetje"), Integer::doubleValue);
+        assertNotNull(tree);
+        assertTrue(tree.getTotalWeight() <= 2 * 420.0);
+        assertTrue(tree.getVertices().containsAll(List.of(wijmpje, vrijdag, loetje)));
+
+        assertNull(amsterdam.steinerTree(List.of("Loetje", "Cafe De Gieter"), Integer::doubleValue));
+        assertNull(amsterdam.steinerTree(List.of("Loetje", "De Kas"), Integer::doubleValue));
+    }
+
+    @Test
+    void checkVertexHandles() {
+        VertexRegistry<Restaurant> registry = amsterdam.getRegistry();
+        // handles are dense and follow the order of addition
+        assertEquals(0, amsterdam.getHandle("Eetcafe Schotsheuvel"));
+        assertEquals(5, amsterdam.getHandle("Cafe De Gieter"));
+        assertEquals(-1, amsterdam.getHandle("De Kas"));
+        assertSame(gieter, registry.getVertex(5));
+        assertSame(registry.getId(1), registry.intern(new String("de Ebeling")));
+        assertNull(registry.intern("De Kas"));
+
+        int schotsHandle = amsterdam.getHandle("Eetcafe Schotsheuvel");
+        int ebelingHandle = amsterdam.getHandle("de Ebeling");
+        assertEquals(amsterdam.getEdge(schots, ebeling), amsterdam.getEdge(schotsHandle, ebelingHandle));
+        assertNull(amsterdam.getEdge(schotsHandle, amsterdam.getHandle("Cafe Vrijdag")));
+        assertEquals(3, amsterdam.getNumNeighbours(schotsHandle));
+        assertTrue(amsterdam.getNeighbours(schotsHandle).containsAll(amsterdam.getNeighbours(schots)));
+        assertNull(amsterdam.getNeighbours(42));
+    }
+
+    @Test
+    void checkSearchesByHandle() {
+        int wijmpjeHandle = amsterdam.getHandle("Wijmpje Beukers");
+        int vrijdagHandle = amsterdam.getHandle("Cafe Vrijdag");
+
+        assertEquals(amsterdam.dijkstraShortestPath("Wijmpje Beukers", "Cafe Vrijdag", Integer::doubleValue).toString(),
+                amsterdam.dijkstraShortestPath(wijmpjeHandle, vrijdagHandle, Integer::doubleValue).toString());
+        assertEquals(4, amsterdam.breadthFirstSearch(wijmpjeHandle, vrijdagHandle).getVertices().size());
+        assertNotNull(amsterdam.depthFirstSearch(wijmpjeHandle, vrijdagHandle));
+        assertNull(amsterdam.depthFirstSearch(wijmpjeHandle, amsterdam.getHandle("Cafe De Gieter")));
+        assertNull(amsterdam.breadthFirstSearch(-1, vrijdagHandle));
+    }
+
+    @Test
+    void checkHandlesAfterRemoveUnconnectedVertices() {
+        DirectedGraph<Restaurant, Integer> zuid = new DirectedGraph<>();
+        zuid.addOrGetVertex(new Restaurant("Cafe De Gieter"));
+        zuid.addConnection(new Restaurant("Loetje"), new Restaurant("de Ebeling"), 200);
+        // De Kas has an in-coming edge only, but still is connected
+        zuid.addEdge(new Restaurant("Loetje"), new Restaurant("De Kas"), 300);
+
+        zuid.removeUnconnectedVertices();
+        assertEquals(3, zuid.getNumVertices());
+        assertEquals(-1, zuid.getHandle("Cafe De Gieter"));
+        assertEquals(0, zuid.getHandle("Loetje"));
+        assertEquals(2, zuid.getHandle("De Kas"));
+        assertEquals(300, zuid.getEdge(zuid.getHandle("Loetje"), zuid.getHandle("De Kas")));
+        assertNotNull(zuid.breadthFirstSearch("de Ebeling", "De Kas"));
+    }
 }
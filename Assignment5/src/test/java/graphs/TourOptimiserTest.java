@@ -0,0 +1,136 @@
+package graphs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TourOptimiserTest {
+
+    DirectedGraph<Restaurant, Integer> amsterdam = new DirectedGraph<>();
+    TourOptimiser<Restaurant, Integer> optimiser;
+
+    @BeforeEach
+    void setup() {
+        Restaurant schots = this.amsterdam.addOrGetVertex(new Restaurant("Eetcafe Schotsheuvel"));
+        Restaurant ebeling = this.amsterdam.addOrGetVertex(new Restaurant("de Ebeling"));
+        this.amsterdam.addConnection(schots, ebeling, 120);
+        Restaurant loetje = this.amsterdam.addOrGetVertex(new Restaurant("Loetje"));
+        this.amsterdam.addConnection(loetje, ebeling, 200);
+        this.amsterdam.addConnection(loetje, schots, 190);
+        Restaurant vrijdag = this.amsterdam.addOrGetVertex(new Restaurant("Cafe Vrijdag"));
+        this.amsterdam.addConnection(vrijdag, ebeling, 50);
+        Restaurant wijmpje = this.amsterdam.addOrGetVertex(new Restaurant("Wijmpje Beukers"));
+        this.amsterdam.addConnection(wijmpje, schots, 60);
+        this.amsterdam.addOrGetVertex(new Restaurant("Cafe De Gieter"));
+
+        this.optimiser = new TourOptimiser<>(this.amsterdam, Integer::doubleValue);
+    }
+
+    /**
+     * calculates the weight matrix between random points in a square
+     */
+    private static double[] randomMatrix(int k, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[k], y = new double[k];
+        for (int i = 0; i < k; i++) {
+            x[i] = 100 * random.nextDouble();
+            y[i] = 100 * random.nextDouble();
+        }
+        double[] matrix = new double[k * k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                matrix[i * k + j] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+            }
+        }
+        return matrix;
+    }
+
+    @Test
+    void localSearchImprovesNearestNeighbourTour() {
+        int k = 200;
+        for (boolean returnToStart : new boolean[]{true, false}) {
+            double[] matrix = randomMatrix(k, 2021L);
+            int[] tour = TourOptimiser.nearestNeighbourTour(matrix, k);
+            double nearestNeighbourWeight = TourOptimiser.tourWeight(tour, matrix, returnToStart);
+
+            int numIterations = TourOptimiser.improveTour(tour, matrix, returnToStart,
+                    Integer.MAX_VALUE, System.currentTimeMillis() + 10_000);
+
+            assertTrue(numIterations > 0);
+            assertTrue(TourOptimiser.tourWeight(tour, matrix, returnToStart) < nearestNeighbourWeight);
+            assertEquals(0, tour[0], "the tour should keep its start");
+            assertEquals(k, Arrays.stream(tour).distinct().count(), "every stop should be visited once");
+        }
+    }
+
+    @Test
+    void localSearchRespectsIterationBudget() {
+        int k = 100;
+        double[] matrix = randomMatrix(k, 2022L);
+        int[] tour = TourOptimiser.nearestNeighbourTour(matrix, k);
+        int[] nearestNeighbourTour = tour.clone();
+
+        assertEquals(0, TourOptimiser.improveTour(tour, matrix, true, 0, System.currentTimeMillis() + 10_000));
+        assertArrayEquals(nearestNeighbourTour, tour);
+        assertEquals(5, TourOptimiser.improveTour(tour, matrix, true, 5, System.currentTimeMillis() + 10_000));
+    }
+
+    @Test
+    void everyMoveShortensAsymmetricTour() {
+        int k = 60;
+        double[] matrix = randomMatrix(k, 2023L);
+        Random random = new Random(2024L);
+        for (int i = 0; i < matrix.length; i++) {
+            // one-way detours make the weights asymmetric
+            matrix[i] += 50 * random.nextDouble();
+        }
+        for (boolean returnToStart : new boolean[]{true, false}) {
+            int[] tour = TourOptimiser.nearestNeighbourTour(matrix, k);
+            double weight = TourOptimiser.tourWeight(tour, matrix, returnToStart);
+            while (TourOptimiser.improveTour(tour, matrix, returnToStart, 1, System.currentTimeMillis() + 10_000) == 1) {
+                double improvedWeight = TourOptimiser.tourWeight(tour, matrix, returnToStart);
+                assertTrue(improvedWeight < weight, "every applied move should shorten the directed tour");
+                weight = improvedWeight;
+            }
+            assertEquals(k, Arrays.stream(tour).distinct().count(), "every stop should be visited once");
+        }
+    }
+
+    @Test
+    void optimiseTourExpandsIntoConnectedPath() {
+        DirectedGraph<Restaurant, Integer>.DGPath path =
+                this.optimiser.optimiseTour(List.of("Wijmpje Beukers", "Loetje", "Cafe Vrijdag"), false);
+        assertNotNull(path);
+
+        List<Restaurant> vertices = new ArrayList<>(path.getVertices());
+        assertSame(this.amsterdam.getVertexById("Wijmpje Beukers"), vertices.get(0));
+        double weight = 0.0;
+        for (int i = 1; i < vertices.size(); i++) {
+            Integer edge = this.amsterdam.getEdge(vertices.get(i - 1), vertices.get(i));
+            assertNotNull(edge, "consecutive vertices of the path should be connected");
+            weight += edge;
+        }
+        assertEquals(weight, path.getTotalWeight(), 0.0001);
+        // Wijmpje - Schotsheuvel - Ebeling - Vrijdag - Ebeling - Loetje
+        assertEquals(60 + 120 + 50 + 50 + 200, path.getTotalWeight(), 0.0001);
+        assertEquals(3, path.getVisited().size());
+    }
+
+    @Test
+    void optimiseTourReturnsToStart() {
+        DirectedGraph<Restaurant, Integer>.DGPath path =
+                this.optimiser.optimiseTour(List.of("Loetje", "Cafe Vrijdag", "Wijmpje Beukers"), true);
+        assertNotNull(path);
+        List<Restaurant> vertices = new ArrayList<>(path.getVertices());
+        assertSame(vertices.get(0), vertices.get(vertices.size() - 1));
+    }
+
+    @Test
+    void optimiseTourUnknownOrUnreachableStops() {
+        assertNull(this.optimiser.optimiseTour(List.of("Loetje", "De Kas"), false));
+        assertNull(this.optimiser.optimiseTour(List.of("Loetje", "Cafe De Gieter"), false));
+    }
+}
@@ -0,0 +1,165 @@
+package graphs.analytics;
+
+import graphs.CompactGraph;
+import graphs.Country;
+import graphs.DirectedGraph;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphAnalyticsTest {
+
+    DirectedGraph<Country, Integer> europe = new DirectedGraph<>();
+    DirectedGraph<Country, Integer> line = new DirectedGraph<>();
+
+    @BeforeEach
+    void setUp() {
+        for (String id : new String[]{"NL", "BE", "DE", "LUX", "FR", "UK", "RO", "HU"}) {
+            this.europe.addOrGetVertex(new Country(id));
+        }
+        this.europe.addConnection("BE", "NL", 100);
+        this.europe.addConnection("NL", "DE", 200);
+        this.europe.addConnection("BE", "DE", 30);
+        this.europe.addConnection("LUX", "BE", 60);
+        this.europe.addConnection("LUX", "DE", 50);
+        this.europe.addConnection("FR", "LUX", 30);
+        this.europe.addConnection("FR", "BE", 110);
+        this.europe.addConnection("FR", "DE", 50);
+        this.europe.addConnection("UK", "BE", 70);
+        this.europe.addConnection("UK", "FR", 150);
+        this.europe.addConnection("UK", "NL", 250);
+        this.europe.addConnection("RO", "HU", 250);
+
+        // A - B - C - D
+        this.line.addConnection(new Country("A"), new Country("B"), 1);
+        this.line.addConnection(new Country("B"), new Country("C"), 1);
+        this.line.addConnection(new Country("C"), new Country("D"), 1);
+    }
+
+    @Test
+    void allPairsMatchesDijkstraShortestPath() throws IOException {
+        GraphAnalytics<Country, Integer> analytics = new GraphAnalytics<>(this.europe, Integer::doubleValue);
+        CompactGraph<Country, Integer> graph = analytics.getGraph();
+        double[][] matrix = new double[graph.getNumVertices()][];
+
+        analytics.allPairsShortestPaths(new DistanceSink() {
+            @Override
+            public void acceptRow(int source, double[] weightSumTo, int numVertices) {
+                assertNull(matrix[source], "every row should be delivered once");
+                matrix[source] = weightSumTo.clone();
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        for (Country from : this.europe.getVertices()) {
+            for (Country to : this.europe.getVertices()) {
+                DirectedGraph<Country, Integer>.DGPath path =
+                        this.europe.dijkstraShortestPath(from.getId(), to.getId(), Integer::doubleValue);
+                double weight = matrix[graph.indexOf(from)][graph.indexOf(to)];
+                if (path == null) {
+                    assertEquals(Double.POSITIVE_INFINITY, weight);
+                } else {
+                    assertEquals(path.getTotalWeight(), weight, 0.0001);
+                }
+            }
+        }
+    }
+
+    @Test
+    void floydWarshallAndDijkstraAgreeOnLargeGraph() throws IOException {
+        // a grid with more vertices than the Floyd-Warshall threshold, such that repeated Dijkstra is used
+        int size = 28;
+        DirectedGraph<Country, Integer> grid = new DirectedGraph<>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                grid.addOrGetVertex(new Country(x + "/" + y));
+                if (x > 0) grid.addConnection((x - 1) + "/" + y, x + "/" + y, 1 + (x * y) % 7);
+                if (y > 0) grid.addConnection(x + "/" + (y - 1), x + "/" + y, 1 + (x + y) % 5);
+            }
+        }
+        assertTrue(grid.getNumVertices() > GraphAnalytics.FLOYD_WARSHALL_MAX_VERTICES);
+
+        GraphAnalytics.PathMetrics metrics =
+                new GraphAnalytics<>(grid, Integer::doubleValue).allPairsShortestPaths(DistanceSink.NONE);
+        CompactGraph<Country, Integer> graph = new CompactGraph<>(grid, Integer::doubleValue);
+        String fromId = graph.getVertex(metrics.getDiameterFrom()).getId();
+        String toId = graph.getVertex(metrics.getDiameterTo()).getId();
+
+        assertEquals(grid.dijkstraShortestPath(fromId, toId, Integer::doubleValue).getTotalWeight(),
+                metrics.getDiameter(), 0.0001);
+    }
+
+    @Test
+    void diameterAndClosenessOfALine() {
+        GraphAnalytics<Country, Integer> analytics =
+                new GraphAnalytics<>(new CompactGraph<>(this.line, Integer::doubleValue), 2);
+        CompactGraph<Country, Integer> graph = analytics.getGraph();
+
+        assertEquals(3.0, analytics.diameter(), 0.0001);
+        double[] closeness = analytics.closenessCentrality();
+        assertEquals(3.0 / 6.0, closeness[graph.indexOf("A")], 0.0001);
+        assertEquals(3.0 / 4.0, closeness[graph.indexOf("B")], 0.0001);
+    }
+
+    @Test
+    void betweennessOfALine() {
+        GraphAnalytics<Country, Integer> analytics = new GraphAnalytics<>(this.line, Integer::doubleValue);
+        CompactGraph<Country, Integer> graph = analytics.getGraph();
+        GraphAnalytics.Betweenness betweenness = analytics.betweennessCentrality();
+
+        // B is on the paths from A to C and from A to D, in both directions
+        assertEquals(0.0, betweenness.getVertexScores()[graph.indexOf("A")], 0.0001);
+        assertEquals(4.0, betweenness.getVertexScores()[graph.indexOf("B")], 0.0001);
+        // the edge B->C is used by A->C, A->D, B->C and B->D
+        int edgeBC = graph.findEdge(graph.indexOf("B"), graph.indexOf("C"));
+        assertEquals(4.0, betweenness.getEdgeScores()[edgeBC], 0.0001);
+
+        int[] tops = GraphAnalytics.topIndices(betweenness.getVertexScores(), 2);
+        assertEquals(2, tops.length);
+        assertTrue(graph.getVertex(tops[0]).getId().matches("[BC]"));
+        assertTrue(graph.getVertex(tops[1]).getId().matches("[BC]"));
+    }
+
+    @Test
+    void betweennessSplitsEqualPaths() {
+        // two equally short paths from NL to LUX: via BE and via DE
+        DirectedGraph<Country, Integer> square = new DirectedGraph<>();
+        square.addConnection(new Country("NL"), new Country("BE"), 1);
+        square.addConnection(new Country("NL"), new Country("DE"), 1);
+        square.addConnection(new Country("BE"), new Country("LUX"), 1);
+        square.addConnection(new Country("DE"), new Country("LUX"), 1);
+
+        GraphAnalytics<Country, Integer> analytics = new GraphAnalytics<>(square, Integer::doubleValue);
+        double[] scores = analytics.betweennessCentrality().getVertexScores();
+        assertEquals(1.0, scores[analytics.getGraph().indexOf("BE")], 0.0001);
+        assertEquals(1.0, scores[analytics.getGraph().indexOf("NL")], 0.0001);
+    }
+
+    @Test
+    void sinksWriteReachablePairs() throws IOException {
+        GraphAnalytics<Country, Integer> analytics = new GraphAnalytics<>(this.europe, Integer::doubleValue);
+
+        StringWriter csv = new StringWriter();
+        analytics.allPairsShortestPaths(new CsvDistanceSink(analytics.getGraph(), csv));
+        String[] lines = csv.toString().split("\n");
+        // header + 6*5 pairs in the western group + 2 pairs between RO and HU
+        assertEquals(1 + 30 + 2, lines.length);
+        assertTrue(csv.toString().contains("UK;LUX;130.000000\n"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        analytics.allPairsShortestPaths(new BinaryDistanceSink(8, bytes));
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(8, input.readInt());
+        assertEquals(4 + 8 * (4 + 8 * 8), bytes.size());
+    }
+}
@@ -0,0 +1,177 @@
+package route_planner;
+
+import graphs.CompactGraph;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapMatcherTest {
+
+    static RoadMap roadMap;
+
+    @BeforeAll
+    static void setup() {
+        RoadMap.reSeedRandomizer(20211220L);
+        roadMap = new RoadMap("Junctions0.csv", "Roads0.csv");
+    }
+
+    /**
+     * generates noisy positions at regular intervals along the straight lines between consecutive junctions
+     *
+     * @return the x-coordinates in [0] and the y-coordinates in [1]
+     */
+    private static double[][] trace(List<String> junctionIds, double interval, double noise, long seed) {
+        Random random = new Random(seed);
+        List<Double> xs = new ArrayList<>(), ys = new ArrayList<>();
+        for (int i = 1; i < junctionIds.size(); i++) {
+            Junction from = roadMap.getVertexById(junctionIds.get(i - 1));
+            Junction to = roadMap.getVertexById(junctionIds.get(i));
+            double length = from.getDistance(to);
+            // stay clear of the junctions themselves, where any of the connected roads would fit
+            for (double offset = interval / 2; offset < length; offset += interval) {
+                double fraction = offset / length;
+                xs.add(from.getLocationX() + fraction * (to.getLocationX() - from.getLocationX())
+                        + noise * random.nextGaussian());
+                ys.add(from.getLocationY() + fraction * (to.getLocationY() - from.getLocationY())
+                        + noise * random.nextGaussian());
+            }
+        }
+        double[][] trace = new double[2][xs.size()];
+        for (int i = 0; i < xs.size(); i++) {
+            trace[0][i] = xs.get(i);
+            trace[1][i] = ys.get(i);
+        }
+        return trace;
+    }
+
+    private static List<String> segmentSequence(List<MapMatcher.MatchedPoint> matched) {
+        List<String> segments = new ArrayList<>();
+        for (MapMatcher.MatchedPoint point : matched) {
+            String segment = point.getFrom().getName() + "-" + point.getTo().getName();
+            if (segments.isEmpty() || !segments.get(segments.size() - 1).equals(segment)) segments.add(segment);
+        }
+        return segments;
+    }
+
+    @Test
+    void nearestSegmentsMatchBruteForce() {
+        CompactGraph<Junction, Road> graph = new CompactGraph<>(roadMap, Road::getLength);
+        RoadSegmentIndex index = new RoadSegmentIndex(graph, 1.0);
+        Random random = new Random(2022L);
+        int[] segments = new int[64];
+        double[] distances = new double[64], fractions = new double[64];
+
+        for (int p = 0; p < 200; p++) {
+            double x = 90 + 70 * random.nextDouble(), y = 450 + 50 * random.nextDouble();
+            int count = index.findNearestSegments(x, y, 3.0, segments, distances, fractions);
+
+            Set<Integer> expected = new HashSet<>();
+            for (int e = 0; e < graph.getNumEdges(); e++) {
+                Junction from = graph.getVertex(graph.getEdgeSource(e)), to = graph.getVertex(graph.getEdgeTarget(e));
+                double fraction = RoadSegmentIndex.projectionFraction(x, y, from, to);
+                double distance = Math.hypot(
+                        x - from.getLocationX() - fraction * (to.getLocationX() - from.getLocationX()),
+                        y - from.getLocationY() - fraction * (to.getLocationY() - from.getLocationY()));
+                if (distance <= 3.0) expected.add(e);
+            }
+            Set<Integer> found = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                found.add(segments[i]);
+                if (i > 0) assertTrue(distances[i - 1] <= distances[i], "results should be ordered by distance");
+            }
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void nearestSegmentsKeepsTheNearestOnly() {
+        RoadSegmentIndex index = new RoadSegmentIndex(new CompactGraph<>(roadMap, Road::getLength), 1.0);
+        Junction amsterdam = roadMap.getVertexById("Amsterdam");
+        int[] segments = new int[2];
+        double[] distances = new double[2], fractions = new double[2];
+        // all segments connected to Amsterdam pass through the junction at distance 0.0
+        assertEquals(2, index.findNearestSegments(amsterdam.getLocationX(), amsterdam.getLocationY(), 1.0,
+                segments, distances, fractions));
+        assertEquals(0.0, distances[1], 0.0001);
+        assertEquals(0, index.findNearestSegments(0.0, 0.0, 1.0, segments, distances, fractions));
+    }
+
+    @Test
+    void matchTraceAlongRoute() {
+        MapMatcher matcher = new MapMatcher(roadMap);
+        double[][] trace = trace(List.of("Oostzaan", "Amsterdam", "Amsterdam-Z", "Ouder-Amstel"), 0.5, 0.02, 1L);
+
+        List<MapMatcher.MatchedPoint> matched = matcher.match(trace[0], trace[1]);
+
+        assertEquals(trace[0].length, matched.size(), "every position should be matched");
+        for (int i = 0; i < matched.size(); i++) {
+            assertEquals(i, matched.get(i).getSequenceNr());
+        }
+        assertEquals(List.of("Oostzaan-Amsterdam", "Amsterdam-Amsterdam-Z", "Amsterdam-Z-Ouder-Amstel"),
+                segmentSequence(matched));
+        assertEquals("A2", matched.get(matched.size() - 1).getRoad().getName());
+    }
+
+    @Test
+    void matchResolvesDirectionOfTravel() {
+        MapMatcher matcher = new MapMatcher(roadMap);
+        double[][] trace = trace(List.of("Ouder-Amstel", "Amsterdam-Z", "Amsterdam"), 0.5, 0.02, 2L);
+
+        assertEquals(List.of("Ouder-Amstel-Amsterdam-Z", "Amsterdam-Z-Amsterdam"),
+                segmentSequence(matcher.match(trace[0], trace[1])));
+    }
+
+    @Test
+    void matchSkipsOutliers() {
+        MapMatcher matcher = new MapMatcher(roadMap);
+        double[][] trace = trace(List.of("Diemen", "Weesp"), 0.5, 0.02, 3L);
+        // replace a position in the middle by a position far away from any road
+        int outlier = trace[0].length / 2;
+        trace[0][outlier] = 200.0;
+        trace[1][outlier] = 300.0;
+
+        List<MapMatcher.MatchedPoint> matched = matcher.match(trace[0], trace[1]);
+
+        assertEquals(trace[0].length - 1, matched.size());
+        assertTrue(matched.stream().noneMatch(point -> point.getSequenceNr() == outlier));
+        assertEquals(List.of("Diemen-Weesp"), segmentSequence(matched));
+    }
+
+    @Test
+    void streamingMatchesInterleavedVehicles() {
+        MapMatcher matcher = new MapMatcher(roadMap);
+        Map<String, double[][]> traces = new LinkedHashMap<>();
+        traces.put("truck", trace(List.of("Oostzaan", "Amsterdam", "Amsterdam-Z", "Ouder-Amstel"), 0.5, 0.02, 4L));
+        traces.put("van", trace(List.of("Velsen", "Badhoevedorp", "Amsterdam-Z", "Diemen"), 0.5, 0.02, 5L));
+        traces.put("bus", trace(List.of("Amersfoort", "Weesp", "Diemen", "Amsterdam"), 0.5, 0.02, 6L));
+
+        // feed the positions of all vehicles in turn, as if they are reported concurrently
+        Map<String, List<MapMatcher.MatchedPoint>> streamed = new HashMap<>();
+        int maxLength = traces.values().stream().mapToInt(trace -> trace[0].length).max().orElse(0);
+        for (int i = 0; i < maxLength; i++) {
+            for (Map.Entry<String, double[][]> entry : traces.entrySet()) {
+                double[][] trace = entry.getValue();
+                if (i < trace[0].length) {
+                    streamed.computeIfAbsent(entry.getKey(), id -> new ArrayList<>())
+                            .addAll(matcher.update(entry.getKey(), trace[0][i], trace[1][i]));
+                }
+            }
+        }
+        assertEquals(3, matcher.getNumVehicles());
+        // most positions should have been decided before the end of the trace
+        assertTrue(streamed.get("truck").size() > traces.get("truck")[0].length / 2);
+
+        for (Map.Entry<String, double[][]> entry : traces.entrySet()) {
+            List<MapMatcher.MatchedPoint> matched = streamed.get(entry.getKey());
+            matched.addAll(matcher.finish(entry.getKey()));
+            List<MapMatcher.MatchedPoint> offline = matcher.match(entry.getValue()[0], entry.getValue()[1]);
+            assertEquals(segmentSequence(offline), segmentSequence(matched));
+            assertEquals(entry.getValue()[0].length, matched.size());
+        }
+        assertEquals(0, matcher.getNumVehicles());
+        assertTrue(matcher.finish("truck").isEmpty());
+    }
+}